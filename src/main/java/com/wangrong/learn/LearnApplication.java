@@ -1,9 +1,14 @@
 package com.wangrong.learn;
 
+import com.wangrong.stream.instrument.StreamMetricsConfiguration;
+import com.wangrong.stream.parallel.AdaptiveExecutionConfiguration;
+import com.wangrong.stream.parallel.ParallelStreamConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
 
 @SpringBootApplication
+@Import({StreamMetricsConfiguration.class, AdaptiveExecutionConfiguration.class, ParallelStreamConfiguration.class})
 public class LearnApplication {
 
     public static void main(String[] args) {
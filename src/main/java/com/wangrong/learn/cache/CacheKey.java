@@ -0,0 +1,74 @@
+package com.wangrong.learn.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * 响应缓存的 key：操作名 + 按名字排序的参数
+ * 参数是端点解析之后、实际用于查询的值，REST 与 SOAP 端点用相同的参数构造 key，
+ * 因此 GET /persons/summary?minAge=50 与 <PersonSummaryRequest><minAge>50</minAge></PersonSummaryRequest>
+ * 得到相同的 key，共享同一个缓存条目。参数顺序、值两侧的空白都不影响 key。
+ *
+ * 用法：
+ * CacheKey key = CacheKey.of("person.summary", Collections.singletonMap("minAge", minAge));
+ */
+public final class CacheKey {
+
+    private final String operation;
+
+    private final SortedMap<String, String> parameters;
+
+    private final int hash;
+
+    private CacheKey(String operation, SortedMap<String, String> parameters) {
+        this.operation = Objects.requireNonNull(operation, "operation");
+        this.parameters = Collections.unmodifiableSortedMap(parameters);
+        this.hash = operation.hashCode() * 31 + parameters.hashCode();
+    }
+
+    /**
+     * 由 REST 参数构造，值为 null 的参数被忽略
+     */
+    public static CacheKey of(String operation, Map<String, ?> parameters) {
+        SortedMap<String, String> normalized = new TreeMap<>();
+        parameters.forEach((name, value) -> {
+            if (value != null) {
+                normalized.put(name, value.toString().trim());
+            }
+        });
+        return new CacheKey(operation, normalized);
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public SortedMap<String, String> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheKey)) {
+            return false;
+        }
+        CacheKey that = (CacheKey) o;
+        return hash == that.hash && operation.equals(that.operation) && parameters.equals(that.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return operation + parameters;
+    }
+}
@@ -0,0 +1,69 @@
+package com.wangrong.learn.cache;
+
+/**
+ * TinyLFU 的访问频率估计：4 行 count-min sketch，每个计数器最大 15
+ * 累计 sampleSize 次访问后所有计数器减半，使频率随时间衰减，过去的热点不会永久占据缓存。
+ * 非线程安全，只在 TinyLfuCache 的淘汰锁内使用。
+ */
+final class FrequencySketch {
+
+    private static final int[] SEEDS = {0x97CB3127, 0x9E3779B9, 0xC2B2AE35, 0x27D4EB2F};
+
+    private static final int MAX_COUNT = 15;
+
+    private final byte[] table;
+
+    private final int mask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    FrequencySketch(long maximumSize) {
+        int width = Integer.highestOneBit((int) Math.min(1 << 24, Math.max(16, maximumSize)) - 1) << 1;
+        this.table = new byte[width * SEEDS.length];
+        this.mask = width - 1;
+        this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * Math.max(16, maximumSize));
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = index(hash, row);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, table[index(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (byte) (table[i] >>> 1);
+        }
+        additions >>>= 1;
+    }
+
+    private int index(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) & 3];
+        return row * (mask + 1) + ((h ^ (h >>> 16)) & mask);
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
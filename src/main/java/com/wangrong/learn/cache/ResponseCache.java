@@ -0,0 +1,103 @@
+package com.wangrong.learn.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * REST 与 SOAP 端点共用的响应缓存，见 TinyLfuCache 与 CacheKey
+ * 指标以 cache=responses 为标签发布，见 TinyLfuCacheMetrics。
+ * stale-while-revalidate 的后台刷新在独立的小线程池上执行，队列满时放弃刷新、继续返回旧值。
+ *
+ * 用法：
+ * return responseCache.get(CacheKey.of("person.summary", params), () -> personMapper.summary(minAge));
+ */
+@Component
+@EnableConfigurationProperties(ResponseCacheProperties.class)
+public class ResponseCache implements MeterBinder, DisposableBean {
+
+    private final boolean enabled;
+
+    private final ThreadPoolExecutor refreshExecutor;
+
+    private final TinyLfuCache<CacheKey, Object> cache;
+
+    public ResponseCache(ResponseCacheProperties properties) {
+        this.enabled = properties.isEnabled();
+        int threads = Math.max(1, properties.getRefreshThreads());
+        AtomicInteger count = new AtomicInteger();
+        this.refreshExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getRefreshQueueCapacity())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "cache-refresh-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.refreshExecutor.allowCoreThreadTimeOut(true);
+        this.cache = TinyLfuCache.builder("responses")
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .staleWhileRevalidate(properties.getStaleWhileRevalidate())
+                .refreshExecutor(refreshExecutor)
+                .build();
+    }
+
+    /**
+     * 缓存中的值必须与 loader 返回的类型一致：同一个操作名只对应一种响应类型
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(CacheKey key, Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        return (T) cache.get(key, k -> loader.get());
+    }
+
+    /**
+     * 未过期时返回缓存值，否则返回 null，不触发加载；缓存关闭时总是返回 null
+     * 用于在提交到执行器之前先在请求线程上查缓存，见 PersonController
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getIfPresent(CacheKey key) {
+        return enabled ? (T) cache.getIfPresent(key) : null;
+    }
+
+    /**
+     * 数据变更后让某个请求的缓存失效
+     */
+    public void invalidate(CacheKey key) {
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public TinyLfuCache<CacheKey, Object> getCache() {
+        return cache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new TinyLfuCacheMetrics(cache, Tags.empty()).bindTo(registry);
+    }
+
+    @Override
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,90 @@
+package com.wangrong.learn.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 响应缓存配置
+ * learn.cache.enabled=true
+ * learn.cache.maximum-size=10000
+ * learn.cache.expire-after-write=30s
+ * learn.cache.stale-while-revalidate=30s
+ * learn.cache.refresh-threads=2
+ * learn.cache.refresh-queue-capacity=100
+ */
+@ConfigurationProperties(prefix = "learn.cache")
+public class ResponseCacheProperties {
+
+    /**
+     * 关闭后每次请求都直接执行查询
+     */
+    private boolean enabled = true;
+
+    private long maximumSize = 10_000;
+
+    private Duration expireAfterWrite = Duration.ofSeconds(30);
+
+    /**
+     * 过期后仍返回旧值并在后台刷新的时间，0 表示过期后同步重新加载
+     */
+    private Duration staleWhileRevalidate = Duration.ZERO;
+
+    /**
+     * 后台刷新的线程数，刷新会执行阻塞的查询，不使用公共 ForkJoinPool
+     */
+    private int refreshThreads = 2;
+
+    /**
+     * 等待刷新的任务数上限，超出时放弃这次刷新，继续返回旧值
+     */
+    private int refreshQueueCapacity = 100;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public Duration getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    public void setExpireAfterWrite(Duration expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+    }
+
+    public Duration getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    public void setStaleWhileRevalidate(Duration staleWhileRevalidate) {
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    public int getRefreshThreads() {
+        return refreshThreads;
+    }
+
+    public void setRefreshThreads(int refreshThreads) {
+        this.refreshThreads = refreshThreads;
+    }
+
+    public int getRefreshQueueCapacity() {
+        return refreshQueueCapacity;
+    }
+
+    public void setRefreshQueueCapacity(int refreshQueueCapacity) {
+        this.refreshQueueCapacity = refreshQueueCapacity;
+    }
+}
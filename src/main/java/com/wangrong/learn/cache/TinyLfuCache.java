@@ -0,0 +1,607 @@
+package com.wangrong.learn.cache;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * W-TinyLFU 风格的进程内缓存
+ * 条目先进入容量约 1% 的窗口 LRU，被挤出窗口时与主区（SLRU：试用段 + 保护段）的淘汰候选比较访问频率，
+ * 频率更高的留下；频率由 FrequencySketch 估计。一次性的扫描访问不会把热点条目挤出缓存。
+ *
+ * - 同一 key 并发未命中时只执行一次 loader，其余线程等待同一个结果（请求合并）
+ * - expireAfterWrite 之后条目过期；配置了 staleWhileRevalidate 时，过期后的这段时间内仍返回旧值，
+ *   同时在后台重新加载
+ * - 读操作先记入分段的读缓冲，拿到淘汰锁的线程批量回放，更新访问顺序和频率；
+ *   只有某一段缓冲已满且锁被占用时才丢弃这次记录，读路径不会阻塞
+ * - invalidate 之后，之前已开始的加载完成时不会写回旧值
+ *
+ * 没有使用 Caffeine：项目没有引入 spring-boot-starter-cache / Caffeine，Boot 只管理其版本，不在类路径上。
+ * 这里只实现 ResponseCache 用到的部分（约等于 Caffeine 的 maximumSize + expireAfterWrite + refreshAfterWrite），
+ * 对外只暴露 get / getIfPresent / put / invalidate 与计数；需要更多功能时应换成 Caffeine，
+ * 改动限于 ResponseCache 与 TinyLfuCacheMetrics（换成 CaffeineCacheMetrics）。
+ *
+ * 用法：
+ * PersonSummary summary = cache.get(key, k -> personMapper.summary(minAge));
+ */
+public final class TinyLfuCache<K, V> {
+
+    private final String name;
+
+    private final long maximumSize;
+
+    private final long expireAfterWriteNanos;
+
+    private final long staleWhileRevalidateNanos;
+
+    private final LongSupplier ticker;
+
+    private final Executor refreshExecutor;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final FrequencySketch sketch;
+
+    private final ReadBuffer<K, V> readBuffer = new ReadBuffer<>();
+
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+
+    private final AccessOrder<K, V> protectedSegment = new AccessOrder<>();
+
+    private final long windowMaximum;
+
+    private final long protectedMaximum;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder staleHits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder loadSuccesses = new LongAdder();
+
+    private final LongAdder loadFailures = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder puts = new LongAdder();
+
+    private TinyLfuCache(Builder builder) {
+        this.name = builder.name;
+        this.maximumSize = builder.maximumSize;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.staleWhileRevalidateNanos = builder.staleWhileRevalidateNanos;
+        this.ticker = builder.ticker;
+        this.refreshExecutor = builder.refreshExecutor;
+        this.sketch = new FrequencySketch(maximumSize);
+        this.windowMaximum = Math.max(1, maximumSize / 100);
+        this.protectedMaximum = (maximumSize - windowMaximum) * 4 / 5;
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 返回缓存值，不存在或已过期时调用 loader 加载
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Objects.requireNonNull(key, "key");
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            long age = ticker.getAsLong() - node.writeTime;
+            if (expireAfterWriteNanos == 0 || age < expireAfterWriteNanos) {
+                hits.increment();
+                recordAccess(node);
+                return node.value;
+            }
+            if (age < expireAfterWriteNanos + staleWhileRevalidateNanos) {
+                hits.increment();
+                staleHits.increment();
+                recordAccess(node);
+                refresh(key, loader);
+                return node.value;
+            }
+            remove(node);
+        }
+        misses.increment();
+        return load(key, loader);
+    }
+
+    /**
+     * 未过期时返回缓存值，否则返回 null，不触发加载
+     * 命中计入 hitCount；未命中不计入 missCount，调用方随后的 get 会计入，避免同一次请求记两次未命中
+     */
+    public V getIfPresent(K key) {
+        V value = present(key);
+        if (value != null) {
+            hits.increment();
+        }
+        return value;
+    }
+
+    private V present(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null || (expireAfterWriteNanos > 0 && ticker.getAsLong() - node.writeTime >= expireAfterWriteNanos)) {
+            return null;
+        }
+        recordAccess(node);
+        return node.value;
+    }
+
+    public void put(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        evictionLock.lock();
+        try {
+            putLocked(key, value);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 同时作废正在进行的加载：加载完成后不写回缓存，等待它的调用方仍会拿到加载结果
+     */
+    public void invalidate(K key) {
+        evictionLock.lock();
+        try {
+            loading.remove(key);
+            Node<K, V> node = data.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        evictionLock.lock();
+        try {
+            loading.clear();
+            data.values().forEach(this::unlink);
+            data.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long size() {
+        return data.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * 返回旧值并触发后台重新加载的次数（包含在 hitCount 中）
+     */
+    public long staleHitCount() {
+        return staleHits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long loadSuccessCount() {
+        return loadSuccesses.sum();
+    }
+
+    public long loadFailureCount() {
+        return loadFailures.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long putCount() {
+        return puts.sum();
+    }
+
+    private V load(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            return join(existing);
+        }
+        try {
+            //上一个加载可能刚好在 get 与 putIfAbsent 之间完成
+            V value = present(key);
+            if (value == null) {
+                value = loadValue(key, loader, future);
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    private void refresh(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        if (loading.putIfAbsent(key, future) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    future.complete(loadValue(key, loader, future));
+                } catch (RuntimeException | Error e) {
+                    //刷新失败时保留旧值，直到 stale 窗口结束
+                    future.completeExceptionally(e);
+                } finally {
+                    loading.remove(key, future);
+                }
+            });
+        } catch (RuntimeException e) {
+            loading.remove(key, future);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 加载并写入缓存；加载期间 key 被 invalidate（loading 中已不是 future）时不写入
+     */
+    private V loadValue(K key, Function<? super K, ? extends V> loader, CompletableFuture<V> future) {
+        V value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            loadFailures.increment();
+            throw e;
+        }
+        if (value == null) {
+            loadFailures.increment();
+            throw new IllegalStateException("loader returned null for key " + key + " in cache " + name);
+        }
+        loadSuccesses.increment();
+        evictionLock.lock();
+        try {
+            if (loading.get(key) == future) {
+                putLocked(key, value);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        return value;
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 在淘汰锁内调用
+     */
+    private void putLocked(K key, V value) {
+        Node<K, V> node = new Node<>(key, value, ticker.getAsLong());
+        puts.increment();
+        drainReadBuffer();
+        Node<K, V> old = data.put(key, node);
+        if (old != null) {
+            unlink(old);
+        }
+        window.addLast(node);
+        sketch.increment(key);
+        evict();
+    }
+
+    private void recordAccess(Node<K, V> node) {
+        boolean recorded = readBuffer.offer(node);
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            drainReadBuffer();
+            if (!recorded) {
+                onAccess(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 在淘汰锁内调用
+     */
+    private void drainReadBuffer() {
+        readBuffer.drainTo(this::onAccess);
+    }
+
+    /**
+     * 在淘汰锁内调用；已被移除的条目只计频率
+     */
+    private void onAccess(Node<K, V> node) {
+        sketch.increment(node.key);
+        if (node.segment == window) {
+            window.moveToLast(node);
+        } else if (node.segment == probation) {
+            //试用段再次命中，晋升到保护段，保护段溢出的条目降回试用段
+            probation.remove(node);
+            protectedSegment.addLast(node);
+            while (protectedSegment.size > protectedMaximum) {
+                probation.addLast(protectedSegment.removeFirst());
+            }
+        } else if (node.segment == protectedSegment) {
+            protectedSegment.moveToLast(node);
+        }
+    }
+
+    private void remove(Node<K, V> node) {
+        evictionLock.lock();
+        try {
+            if (data.remove(node.key, node)) {
+                unlink(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 窗口溢出的条目与主区的淘汰候选比较频率，直到窗口和总量都不超限；在淘汰锁内调用
+     */
+    private void evict() {
+        while (window.size > windowMaximum) {
+            Node<K, V> candidate = window.removeFirst();
+            if (probation.size + protectedSegment.size < maximumSize - windowMaximum) {
+                probation.addLast(candidate);
+                continue;
+            }
+            AccessOrder<K, V> victimSegment = probation.size > 0 ? probation : protectedSegment;
+            Node<K, V> victim = victimSegment.first();
+            if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                victimSegment.remove(victim);
+                evictNode(victim);
+                probation.addLast(candidate);
+            } else {
+                evictNode(candidate);
+            }
+        }
+    }
+
+    private void evictNode(Node<K, V> node) {
+        if (data.remove(node.key, node)) {
+            evictions.increment();
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        if (node.segment != null) {
+            node.segment.remove(node);
+        }
+    }
+
+    private static final class Node<K, V> {
+
+        final K key;
+
+        final V value;
+
+        final long writeTime;
+
+        AccessOrder<K, V> segment;
+
+        Node<K, V> prev;
+
+        Node<K, V> next;
+
+        Node(K key, V value, long writeTime) {
+            this.key = key;
+            this.value = value;
+            this.writeTime = writeTime;
+        }
+    }
+
+    /**
+     * 有损的分段读缓冲：线程按 id 选一段，每段是 16 个槽的环；槽被占用（该段已满）或与其他线程争用同一位置时放弃写入。
+     * 只在淘汰锁内回放并清空，回放顺序不必与访问顺序一致。
+     */
+    private static final class ReadBuffer<K, V> {
+
+        private static final int SLOTS = 16;
+
+        private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 4 - 1)) << 1;
+
+        private final AtomicReferenceArray<Node<K, V>> slots = new AtomicReferenceArray<>(STRIPES * SLOTS);
+
+        private final AtomicLongArray writes = new AtomicLongArray(STRIPES);
+
+        boolean offer(Node<K, V> node) {
+            int stripe = (int) (Thread.currentThread().getId() * 0x9E3779B9L >>> 16) & (STRIPES - 1);
+            long write = writes.get(stripe);
+            int index = stripe * SLOTS + (int) (write & (SLOTS - 1));
+            if (slots.get(index) != null || !writes.compareAndSet(stripe, write, write + 1)) {
+                return false;
+            }
+            slots.lazySet(index, node);
+            return true;
+        }
+
+        void drainTo(Consumer<Node<K, V>> consumer) {
+            for (int i = 0; i < slots.length(); i++) {
+                if (slots.get(i) != null) {
+                    Node<K, V> node = slots.getAndSet(i, null);
+                    if (node != null) {
+                        consumer.accept(node);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 按访问顺序排列的双向链表，头部最久未访问
+     */
+    private static final class AccessOrder<K, V> {
+
+        Node<K, V> head;
+
+        Node<K, V> tail;
+
+        long size;
+
+        Node<K, V> first() {
+            return head;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.segment = this;
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        Node<K, V> removeFirst() {
+            Node<K, V> node = head;
+            remove(node);
+            return node;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.segment = null;
+            size--;
+        }
+    }
+
+    public static final class Builder {
+
+        private final String name;
+
+        private long maximumSize = 10_000;
+
+        private long expireAfterWriteNanos;
+
+        private long staleWhileRevalidateNanos;
+
+        private LongSupplier ticker = System::nanoTime;
+
+        private Executor refreshExecutor = ForkJoinPool.commonPool();
+
+        private Builder(String name) {
+            this.name = Objects.requireNonNull(name, "name");
+        }
+
+        /**
+         * 最多缓存的条目数，默认 10000
+         */
+        public Builder maximumSize(long maximumSize) {
+            if (maximumSize < 2) {
+                throw new IllegalArgumentException("maximumSize must be at least 2: " + maximumSize);
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * 写入后的有效期，默认（或 0）不过期
+         */
+        public Builder expireAfterWrite(Duration duration) {
+            this.expireAfterWriteNanos = nonNegative(duration, "expireAfterWrite");
+            return this;
+        }
+
+        /**
+         * 过期后仍可返回旧值的时间，期间后台重新加载；需要同时配置 expireAfterWrite
+         */
+        public Builder staleWhileRevalidate(Duration duration) {
+            this.staleWhileRevalidateNanos = nonNegative(duration, "staleWhileRevalidate");
+            return this;
+        }
+
+        /**
+         * 纳秒时钟，测试中可以替换
+         */
+        public Builder ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker, "ticker");
+            return this;
+        }
+
+        /**
+         * 后台重新加载使用的执行器，默认 ForkJoinPool.commonPool()
+         * loader 会阻塞（查询数据库等）时应传入独立的有界线程池，以免占满公共池
+         */
+        public Builder refreshExecutor(Executor refreshExecutor) {
+            this.refreshExecutor = Objects.requireNonNull(refreshExecutor, "refreshExecutor");
+            return this;
+        }
+
+        public <K, V> TinyLfuCache<K, V> build() {
+            if (staleWhileRevalidateNanos > 0 && expireAfterWriteNanos == 0) {
+                throw new IllegalStateException("staleWhileRevalidate requires expireAfterWrite");
+            }
+            return new TinyLfuCache<>(this);
+        }
+
+        private static long nonNegative(Duration duration, String name) {
+            if (duration.isNegative()) {
+                throw new IllegalArgumentException(name + " must not be negative: " + duration);
+            }
+            return duration.toNanos();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.wangrong.learn.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+/**
+ * 把 TinyLfuCache 的计数注册到 Micrometer
+ * 通用指标（cache.gets、cache.puts、cache.evictions、cache.size）沿用 CacheMeterBinder 的命名，
+ * 另外注册 cache.gets.stale（返回旧值并后台刷新的次数）和 cache.loads（按 result=success/failure 区分）。
+ */
+public class TinyLfuCacheMetrics extends CacheMeterBinder {
+
+    private final TinyLfuCache<?, ?> cache;
+
+    public TinyLfuCacheMetrics(TinyLfuCache<?, ?> cache, Iterable<Tag> tags) {
+        super(cache, cache.getName(), tags);
+        this.cache = cache;
+    }
+
+    @Override
+    protected Long size() {
+        return cache.size();
+    }
+
+    @Override
+    protected long hitCount() {
+        return cache.hitCount();
+    }
+
+    @Override
+    protected Long missCount() {
+        return cache.missCount();
+    }
+
+    @Override
+    protected Long evictionCount() {
+        return cache.evictionCount();
+    }
+
+    @Override
+    protected long putCount() {
+        return cache.putCount();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets.stale", cache, TinyLfuCache::staleHitCount)
+                .tags(getTagsWithCacheName())
+                .description("过期后仍返回旧值并在后台刷新的次数")
+                .register(registry);
+        FunctionCounter.builder("cache.loads", cache, TinyLfuCache::loadSuccessCount)
+                .tags(getTagsWithCacheName())
+                .tag("result", "success")
+                .description("加载次数")
+                .register(registry);
+        FunctionCounter.builder("cache.loads", cache, TinyLfuCache::loadFailureCount)
+                .tags(getTagsWithCacheName())
+                .tag("result", "failure")
+                .description("加载次数")
+                .register(registry);
+    }
+}
@@ -0,0 +1,100 @@
+package com.wangrong.learn.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.search.Search;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /actuator/datasource：连接池与 mapper 语句的概况，数据来自 hikaricp.* 与 mybatis.statement 指标
+ * pools：每个连接池的活动、空闲、等待线程数，以及取连接的等待时间与超时次数；
+ * statements：每条语句的次数与耗时，按总耗时降序。
+ * 等待时间高而语句耗时正常说明连接池不够用，反之是语句慢。
+ */
+@Component
+@Endpoint(id = "datasource")
+public class DataSourceEndpoint {
+
+    private final MeterRegistry registry;
+
+    public DataSourceEndpoint(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @ReadOperation
+    public Map<String, Object> datasource() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("pools", pools());
+        result.put("statements", statements());
+        return result;
+    }
+
+    private Map<String, Map<String, Object>> pools() {
+        Map<String, Map<String, Object>> pools = new TreeMap<>();
+        for (Gauge active : Search.in(registry).name("hikaricp.connections.active").gauges()) {
+            String pool = active.getId().getTag("pool");
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("active", (long) active.value());
+            summary.put("idle", gauge("hikaricp.connections.idle", pool));
+            summary.put("pending", gauge("hikaricp.connections.pending", pool));
+            summary.put("total", gauge("hikaricp.connections", pool));
+            summary.put("max", gauge("hikaricp.connections.max", pool));
+            Timer acquire = Search.in(registry).name("hikaricp.connections.acquire").tag("pool", pool).timer();
+            if (acquire != null) {
+                summary.put("acquire", timing(acquire));
+            }
+            Search timeouts = Search.in(registry).name("hikaricp.connections.timeout").tag("pool", pool);
+            summary.put("timeouts", timeouts.counter() == null ? 0 : (long) timeouts.counter().count());
+            pools.put(pool, summary);
+        }
+        return pools;
+    }
+
+    private List<Map<String, Object>> statements() {
+        List<Timer> timers = new ArrayList<>(Search.in(registry).name(StatementMetricsInterceptor.METRIC).timers());
+        timers.sort(Comparator.comparingDouble((Timer timer) -> timer.totalTime(TimeUnit.NANOSECONDS)).reversed());
+        List<Map<String, Object>> statements = new ArrayList<>();
+        for (Timer timer : timers) {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("statement", timer.getId().getTag("statement"));
+            summary.put("command", timer.getId().getTag("command"));
+            summary.put("exception", timer.getId().getTag("exception"));
+            summary.putAll(timing(timer));
+            statements.add(summary);
+        }
+        return statements;
+    }
+
+    private Long gauge(String name, String pool) {
+        Gauge gauge = Search.in(registry).name(name).tag("pool", pool).gauge();
+        return gauge == null ? null : (long) gauge.value();
+    }
+
+    /**
+     * 次数、平均与最大耗时（毫秒）；配置了 management.metrics.distribution.percentiles 时附带分位数
+     */
+    private static Map<String, Object> timing(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        Map<String, Object> timing = new LinkedHashMap<>();
+        timing.put("count", snapshot.count());
+        timing.put("meanMs", snapshot.mean(TimeUnit.MILLISECONDS));
+        timing.put("maxMs", snapshot.max(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            timing.put("p" + Math.round(percentile.percentile() * 100) + "Ms", percentile.value(TimeUnit.MILLISECONDS));
+        }
+        return timing;
+    }
+}
@@ -0,0 +1,39 @@
+package com.wangrong.learn.datasource;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * 标记当前线程上的查询为只读，配置了只读副本时路由到副本（见 ReadReplicaDataSource）
+ * 只读事务（@Transactional(readOnly = true)）同样路由到副本。没有配置副本时标记不起作用。
+ * 标记只在取得连接时生效：在 call 内取得的连接在 call 返回后继续使用，仍然是副本上的连接。
+ *
+ * 用法：
+ * Cursor<Person> cursor = ReadOnlyRouting.call(() -> mapper.scanAll());
+ */
+public final class ReadOnlyRouting {
+
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+
+    private ReadOnlyRouting() {
+    }
+
+    public static <T> T call(Supplier<T> supplier) {
+        Boolean previous = READ_ONLY.get();
+        READ_ONLY.set(Boolean.TRUE);
+        try {
+            return supplier.get();
+        } finally {
+            if (previous == null) {
+                READ_ONLY.remove();
+            } else {
+                READ_ONLY.set(previous);
+            }
+        }
+    }
+
+    public static boolean isReadOnly() {
+        return Boolean.TRUE.equals(READ_ONLY.get()) || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}
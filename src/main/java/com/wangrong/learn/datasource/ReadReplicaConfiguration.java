@@ -0,0 +1,59 @@
+package com.wangrong.learn.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+/**
+ * learn.datasource.replica.enabled=true 时，用主库与副本两个连接池替换 Boot 自动配置的数据源
+ * 主库仍按 spring.datasource.*（含 spring.datasource.hikari.*）配置，副本按 learn.datasource.replica.*。
+ * 两个池都在 dataSource bean 内部创建：Boot 在每个 DataSource bean 初始化后执行 schema 初始化，
+ * 把池单独声明为 bean 会在 dataSource 创建过程中反过来依赖它自己。
+ * 池的 hikaricp.* 指标在这里直接注册（pool=primary / replica）。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "learn.datasource.replica", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties({DataSourceProperties.class, ReplicaDataSourceProperties.class})
+public class ReadReplicaConfiguration {
+
+    @Bean
+    public ReadReplicaDataSource dataSource(DataSourceProperties properties, ReplicaDataSourceProperties replicaProperties,
+                                            Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName(ReadReplicaDataSource.PRIMARY);
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+
+        DataSourceBuilder<HikariDataSource> builder = DataSourceBuilder.create(getClass().getClassLoader())
+                .type(HikariDataSource.class)
+                .url(replicaProperties.getUrl())
+                .username(replicaProperties.getUsername())
+                .password(replicaProperties.getPassword());
+        if (StringUtils.hasText(replicaProperties.getDriverClassName())) {
+            builder.driverClassName(replicaProperties.getDriverClassName());
+        }
+        HikariDataSource replica = builder.build();
+        replica.setPoolName(ReadReplicaDataSource.REPLICA);
+        replica.setReadOnly(true);
+        binder.bind("learn.datasource.replica.hikari", Bindable.ofInstance(replica));
+
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        }
+        return new ReadReplicaDataSource(primary, replica);
+    }
+}
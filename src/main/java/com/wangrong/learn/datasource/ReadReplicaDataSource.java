@@ -0,0 +1,64 @@
+package com.wangrong.learn.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按 ReadOnlyRouting 在主库与只读副本之间选择连接的数据源，关闭时关闭两个连接池
+ * 路由包在 LazyConnectionDataSourceProxy 中：DataSourceTransactionManager 在设置只读标记之前就取连接，
+ * 延迟到第一条语句执行时再取真正的连接，只读事务才能路由到副本。
+ */
+public class ReadReplicaDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    static final String REPLICA = "replica";
+
+    private final HikariDataSource primary;
+
+    private final HikariDataSource replica;
+
+    public ReadReplicaDataSource(HikariDataSource primary, HikariDataSource replica) {
+        super(routing(primary, replica));
+        this.primary = primary;
+        this.replica = replica;
+    }
+
+    public HikariDataSource getPrimary() {
+        return primary;
+    }
+
+    public HikariDataSource getReplica() {
+        return replica;
+    }
+
+    @Override
+    public void close() {
+        try {
+            replica.close();
+        } finally {
+            primary.close();
+        }
+    }
+
+    private static AbstractRoutingDataSource routing(HikariDataSource primary, HikariDataSource replica) {
+        AbstractRoutingDataSource routing = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return ReadOnlyRouting.isReadOnly() ? REPLICA : PRIMARY;
+            }
+        };
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        targets.put(REPLICA, replica);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+}
@@ -0,0 +1,67 @@
+package com.wangrong.learn.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 只读副本配置，连接池参数见 learn.datasource.replica.hikari.*（与 spring.datasource.hikari.* 相同）
+ * learn.datasource.replica.enabled=true
+ * learn.datasource.replica.url=jdbc:mysql://replica:3306/learn
+ * learn.datasource.replica.username=reader
+ * learn.datasource.replica.password=secret
+ */
+@ConfigurationProperties(prefix = "learn.datasource.replica")
+public class ReplicaDataSourceProperties {
+
+    private boolean enabled;
+
+    private String url;
+
+    private String username;
+
+    private String password;
+
+    /**
+     * 为空时由 url 推断
+     */
+    private String driverClassName;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getDriverClassName() {
+        return driverClassName;
+    }
+
+    public void setDriverClassName(String driverClassName) {
+        this.driverClassName = driverClassName;
+    }
+}
@@ -0,0 +1,112 @@
+package com.wangrong.learn.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录每条 mapper 语句的耗时：mybatis.statement，标签 statement（如 com.wangrong.learn.person.PersonMapper.findAll）、
+ * command（select/insert/...）、exception（None 或异常类名）
+ * 与 hikaricp.connections.acquire（等待连接的时间）对照，可以区分连接池不够用和语句本身慢：
+ * 前者 acquire 升高而语句耗时不变，后者相反。分位数与直方图由 management.metrics.distribution.* 配置。
+ *
+ * 游标查询（queryCursor）只计打开游标的时间；BATCH 执行器中的 update 只是加入批次，实际执行在 flushStatements。
+ * mybatis-spring-boot 会把容器中的 Interceptor 注册到 SqlSessionFactory。
+ */
+@Component
+@ConditionalOnProperty(prefix = "learn.datasource.statement-metrics", name = "enabled", matchIfMissing = true)
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor",
+                args = {MappedStatement.class, Object.class, RowBounds.class}),
+        @Signature(type = Executor.class, method = "update",
+                args = {MappedStatement.class, Object.class})
+})
+public class StatementMetricsInterceptor implements Interceptor {
+
+    static final String METRIC = "mybatis.statement";
+
+    private final ObjectProvider<MeterRegistry> registryProvider;
+
+    /**
+     * 成功执行的计时器按语句缓存，热路径上不再构造标签
+     */
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry registry;
+
+    public StatementMetricsInterceptor(ObjectProvider<MeterRegistry> registryProvider) {
+        this.registryProvider = registryProvider;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MeterRegistry registry = registry();
+        if (registry == null) {
+            return invocation.proceed();
+        }
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        long start = registry.config().clock().monotonicTime();
+        try {
+            Object result = invocation.proceed();
+            timers.computeIfAbsent(statement.getId(), id -> timer(registry, statement, "None"))
+                    .record(registry.config().clock().monotonicTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Throwable e) {
+            timer(registry, statement, e.getClass().getSimpleName())
+                    .record(registry.config().clock().monotonicTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+
+    /**
+     * 容器启动期间 MeterRegistry 可能还没创建，此时不记录
+     */
+    private MeterRegistry registry() {
+        MeterRegistry current = registry;
+        if (current == null) {
+            current = registryProvider.getIfAvailable();
+            registry = current;
+        }
+        return current;
+    }
+
+    private static Timer timer(MeterRegistry registry, MappedStatement statement, String exception) {
+        return Timer.builder(METRIC)
+                .tag("statement", statement.getId())
+                .tag("command", statement.getSqlCommandType().name().toLowerCase())
+                .tag("exception", exception)
+                .description("mapper 语句的执行耗时")
+                .register(registry);
+    }
+}
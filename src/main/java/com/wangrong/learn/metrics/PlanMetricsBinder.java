@@ -0,0 +1,64 @@
+package com.wangrong.learn.metrics;
+
+import com.wangrong.stream.parallel.AdaptiveExecutor;
+import com.wangrong.stream.parallel.PlanMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把 AdaptiveExecutor 的决定与实际耗时注册到 Micrometer
+ * stream.plan.executions：按 mode（sequential/parallel）的执行次数与耗时
+ * stream.plan.elements：按 mode 处理的元素数
+ * stream.plan.samplings / stream.plan.corrections：抽样次数、并行比估计慢而提高阈值的次数
+ * 以 pipeline 作为标签，新出现的流水线在第一次执行时注册。
+ */
+@Component
+public class PlanMetricsBinder implements MeterBinder {
+
+    private final AdaptiveExecutor adaptiveExecutor;
+
+    public PlanMetricsBinder(AdaptiveExecutor adaptiveExecutor) {
+        this.adaptiveExecutor = adaptiveExecutor;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        adaptiveExecutor.onNewPipeline(plan -> bind(registry, plan));
+    }
+
+    private void bind(MeterRegistry registry, PlanMetrics plan) {
+        Tags tags = Tags.of("pipeline", plan.getPipeline());
+        FunctionTimer.builder("stream.plan.executions", plan,
+                PlanMetrics::getSequentialRuns, PlanMetrics::getSequentialNanos, TimeUnit.NANOSECONDS)
+                .tags(tags.and("mode", "sequential"))
+                .description("串行执行的次数与耗时")
+                .register(registry);
+        FunctionTimer.builder("stream.plan.executions", plan,
+                PlanMetrics::getParallelRuns, PlanMetrics::getParallelNanos, TimeUnit.NANOSECONDS)
+                .tags(tags.and("mode", "parallel"))
+                .description("并行执行的次数与耗时")
+                .register(registry);
+        FunctionCounter.builder("stream.plan.elements", plan, PlanMetrics::getSequentialElements)
+                .tags(tags.and("mode", "sequential"))
+                .description("串行处理的元素数")
+                .register(registry);
+        FunctionCounter.builder("stream.plan.elements", plan, PlanMetrics::getParallelElements)
+                .tags(tags.and("mode", "parallel"))
+                .description("并行处理的元素数")
+                .register(registry);
+        FunctionCounter.builder("stream.plan.samplings", plan, PlanMetrics::getSamplings)
+                .tags(tags)
+                .description("抽样估计单个元素耗时的次数")
+                .register(registry);
+        FunctionCounter.builder("stream.plan.corrections", plan, PlanMetrics::getCorrections)
+                .tags(tags)
+                .description("并行执行比估计的串行耗时慢、提高并行阈值的次数")
+                .register(registry);
+    }
+}
@@ -0,0 +1,71 @@
+package com.wangrong.learn.metrics;
+
+import com.wangrong.stream.parallel.ParallelStreamExecutor;
+import com.wangrong.stream.parallel.PoolMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 把 ParallelStreamExecutor 各个专用池的状态注册到 Micrometer，命名参照 ExecutorServiceMetrics 对 ForkJoinPool 的指标
+ * stream.pool.pipelines：按 result（completed/failed/rejected）结束或被拒绝的流水线数
+ * stream.pool.pending：已提交、未结束的流水线数（max-pending 限制的就是它）
+ * stream.pool.parallelism / stream.pool.size / stream.pool.active / stream.pool.running：并行度与线程数
+ * stream.pool.queued：排队的任务与提交数，stream.pool.steals：工作窃取次数
+ * 以 pool 作为标签，池在启动时按配置创建，这里一次注册全部。
+ */
+@Component
+public class PoolMetricsBinder implements MeterBinder {
+
+    private final ParallelStreamExecutor parallelStreamExecutor;
+
+    public PoolMetricsBinder(ParallelStreamExecutor parallelStreamExecutor) {
+        this.parallelStreamExecutor = parallelStreamExecutor;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String pool : parallelStreamExecutor.poolNames()) {
+            bind(registry, pool);
+        }
+    }
+
+    private void bind(MeterRegistry registry, String pool) {
+        Tags tags = Tags.of("pool", pool);
+        counter(registry, pool, "stream.pool.pipelines", PoolMetrics::getCompleted, tags.and("result", "completed"),
+                "正常结束的流水线数");
+        counter(registry, pool, "stream.pool.pipelines", PoolMetrics::getFailed, tags.and("result", "failed"),
+                "抛出异常的流水线数");
+        counter(registry, pool, "stream.pool.pipelines", PoolMetrics::getRejected, tags.and("result", "rejected"),
+                "达到 max-pending 被拒绝的流水线数");
+        counter(registry, pool, "stream.pool.steals", PoolMetrics::getStealCount, tags, "工作窃取次数");
+        gauge(registry, pool, "stream.pool.pending", PoolMetrics::getPending, tags, "已提交、未结束的流水线数");
+        gauge(registry, pool, "stream.pool.parallelism", PoolMetrics::getParallelism, tags, "目标并行度");
+        gauge(registry, pool, "stream.pool.size", PoolMetrics::getPoolSize, tags, "已启动的工作线程数");
+        gauge(registry, pool, "stream.pool.active", PoolMetrics::getActiveThreadCount, tags, "正在执行或窃取任务的线程数");
+        gauge(registry, pool, "stream.pool.running", PoolMetrics::getRunningThreadCount, tags, "没有阻塞的工作线程数");
+        gauge(registry, pool, "stream.pool.queued", metrics -> metrics.getQueuedTaskCount() + metrics.getQueuedSubmissionCount(),
+                tags, "工作队列中的任务数与尚未开始的提交数");
+    }
+
+    private void counter(MeterRegistry registry, String pool, String name, ToDoubleFunction<PoolMetrics> value,
+                         Tags tags, String description) {
+        FunctionCounter.builder(name, parallelStreamExecutor, executor -> value.applyAsDouble(executor.metrics(pool)))
+                .tags(tags)
+                .description(description)
+                .register(registry);
+    }
+
+    private void gauge(MeterRegistry registry, String pool, String name, ToDoubleFunction<PoolMetrics> value,
+                       Tags tags, String description) {
+        Gauge.builder(name, parallelStreamExecutor, executor -> value.applyAsDouble(executor.metrics(pool)))
+                .tags(tags)
+                .description(description)
+                .register(registry);
+    }
+}
@@ -0,0 +1,58 @@
+package com.wangrong.learn.metrics;
+
+import com.wangrong.stream.instrument.StageMetrics;
+import com.wangrong.stream.instrument.StreamMetricsRegistry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把 StreamMetricsRegistry 中的阶段指标注册到 Micrometer
+ * stream.stage.input / stream.stage.output：进出元素数
+ * stream.stage.selectivity：选择率
+ * stream.stage.sampled：抽样元素的耗时
+ * 以 pipeline、stage 作为标签，新出现的阶段在创建时注册。
+ */
+@Component
+public class StreamMetricsBinder implements MeterBinder {
+
+    private final StreamMetricsRegistry streamMetricsRegistry;
+
+    public StreamMetricsBinder(StreamMetricsRegistry streamMetricsRegistry) {
+        this.streamMetricsRegistry = streamMetricsRegistry;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (streamMetricsRegistry.isEnabled()) {
+            streamMetricsRegistry.onNewStage(stage -> bind(registry, stage));
+        }
+    }
+
+    private void bind(MeterRegistry registry, StageMetrics stage) {
+        Tags tags = Tags.of("pipeline", stage.getPipeline(), "stage", stage.getStage());
+        FunctionCounter.builder("stream.stage.input", stage, StageMetrics::getInput)
+                .tags(tags)
+                .description("进入阶段的元素数")
+                .register(registry);
+        FunctionCounter.builder("stream.stage.output", stage, StageMetrics::getOutput)
+                .tags(tags)
+                .description("离开阶段的元素数")
+                .register(registry);
+        Gauge.builder("stream.stage.selectivity", stage, StageMetrics::getSelectivity)
+                .tags(tags)
+                .description("输出 / 输入")
+                .register(registry);
+        FunctionTimer.builder("stream.stage.sampled", stage,
+                StageMetrics::getSampledCount, StageMetrics::getSampledNanos, TimeUnit.NANOSECONDS)
+                .tags(tags)
+                .description("抽样元素的处理耗时")
+                .register(registry);
+    }
+}
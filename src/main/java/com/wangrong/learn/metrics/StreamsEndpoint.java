@@ -0,0 +1,57 @@
+package com.wangrong.learn.metrics;
+
+import com.wangrong.stream.instrument.StageMetrics;
+import com.wangrong.stream.instrument.StreamMetricsRegistry;
+import com.wangrong.stream.parallel.AdaptiveExecutor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /actuator/streams：各流水线阶段的进出元素数、选择率、抽样耗时与线程分布，
+ * 以及 AdaptiveExecutor 对各流水线的最近一次决定和按执行方式累计的耗时（plans）
+ * /actuator/streams/{pipeline}：单条流水线
+ * DELETE /actuator/streams：计数清零，AdaptiveExecutor 下次执行时重新抽样
+ */
+@Component
+@Endpoint(id = "streams")
+public class StreamsEndpoint {
+
+    private final StreamMetricsRegistry registry;
+
+    private final AdaptiveExecutor adaptiveExecutor;
+
+    public StreamsEndpoint(StreamMetricsRegistry registry, AdaptiveExecutor adaptiveExecutor) {
+        this.registry = registry;
+        this.adaptiveExecutor = adaptiveExecutor;
+    }
+
+    @ReadOperation
+    public Map<String, Object> streams() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", registry.isEnabled());
+        result.put("sampleRate", registry.getSampleRate());
+        Map<String, List<StageMetrics>> pipelines = new LinkedHashMap<>();
+        registry.pipelines().forEach(pipeline -> pipelines.put(pipeline, registry.stages(pipeline)));
+        result.put("pipelines", pipelines);
+        result.put("plans", adaptiveExecutor.metrics());
+        return result;
+    }
+
+    @ReadOperation
+    public List<StageMetrics> pipeline(@Selector String pipeline) {
+        return registry.stages(pipeline);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        registry.reset();
+        adaptiveExecutor.reset();
+    }
+}
@@ -0,0 +1,80 @@
+package com.wangrong.learn.mybatis;
+
+/**
+ * BatchingSink 在某一时刻的指标快照，延迟单位为毫秒
+ */
+public final class BatchMetrics {
+
+    private final String name;
+
+    private final long batches;
+
+    private final long rows;
+
+    private final long failedBatches;
+
+    private final double meanLatency;
+
+    private final double p50Latency;
+
+    private final double p99Latency;
+
+    private final double maxLatency;
+
+    BatchMetrics(String name, long batches, long rows, long failedBatches,
+                 double meanLatency, double p50Latency, double p99Latency, double maxLatency) {
+        this.name = name;
+        this.batches = batches;
+        this.rows = rows;
+        this.failedBatches = failedBatches;
+        this.meanLatency = meanLatency;
+        this.p50Latency = p50Latency;
+        this.p99Latency = p99Latency;
+        this.maxLatency = maxLatency;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 成功提交的批次数
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * 成功写入的行数
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public long getFailedBatches() {
+        return failedBatches;
+    }
+
+    public double getMeanLatency() {
+        return meanLatency;
+    }
+
+    public double getP50Latency() {
+        return p50Latency;
+    }
+
+    public double getP99Latency() {
+        return p99Latency;
+    }
+
+    public double getMaxLatency() {
+        return maxLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchMetrics{name=" + name + ", batches=" + batches + ", rows=" + rows
+                + ", failedBatches=" + failedBatches + ", meanLatency=" + meanLatency
+                + ", p50Latency=" + p50Latency + ", p99Latency=" + p99Latency + ", maxLatency=" + maxLatency + "}";
+    }
+}
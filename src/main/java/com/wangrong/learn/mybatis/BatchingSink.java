@@ -0,0 +1,257 @@
+package com.wangrong.learn.mybatis;
+
+import com.wangrong.stream.statistics.QuantileSketch;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 流的批量写入终端：stream.forEach(sink)
+ * 元素攒满 batchSize 个后放入有界队列，由写入线程在一个事务内用 ExecutorType.BATCH 会话执行 mapper 方法，
+ * flushStatements 后提交；队列满时 accept 阻塞，流的处理速度不会超过数据库的写入速度。
+ * MySQL 需要在连接串中加 rewriteBatchedStatements=true，驱动才会把一批 INSERT 改写成多值语句。
+ *
+ * 任一批次失败后后续 accept 立即抛出异常，close() 等待剩余批次写完，并抛出第一个失败的原因。
+ * 批次之间不在同一个事务中，失败前已提交的批次不会回滚。
+ *
+ * 用法：
+ * try (BatchingSink<Person> sink = factory.create("persons", PersonMapper.class, PersonMapper::insert)) {
+ *     persons.forEach(sink);
+ * }
+ */
+public final class BatchingSink<T> implements Consumer<T>, AutoCloseable {
+
+    /**
+     * 写入线程的结束标记
+     */
+    private static final List<Object> END = Collections.emptyList();
+
+    private final String name;
+
+    private final SqlSessionFactory sqlSessionFactory;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Class<?> mapperType;
+
+    private final BiConsumer<Object, T> writer;
+
+    private final int batchSize;
+
+    private final int writers;
+
+    private final BlockingQueue<List<Object>> queue;
+
+    private final ExecutorService executor;
+
+    private final List<Future<?>> futures = new ArrayList<>();
+
+    private final Timer timer;
+
+    private final QuantileSketch latencies = new QuantileSketch();
+
+    private List<Object> current;
+
+    private long batches;
+
+    private long rows;
+
+    private long failedBatches;
+
+    private double totalLatency;
+
+    private double maxLatency;
+
+    private volatile Throwable failure;
+
+    private boolean closed;
+
+    @SuppressWarnings("unchecked")
+    <M> BatchingSink(String name, SqlSessionFactory sqlSessionFactory, TransactionTemplate transactionTemplate,
+                     Class<M> mapperType, BiConsumer<? super M, ? super T> writer,
+                     BatchingSinkProperties properties, Timer timer) {
+        if (properties.getBatchSize() < 1 || properties.getWriters() < 1 || properties.getQueueCapacity() < 1) {
+            throw new IllegalArgumentException("batchSize, writers and queueCapacity must be positive");
+        }
+        this.name = name;
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.transactionTemplate = transactionTemplate;
+        this.mapperType = mapperType;
+        this.writer = (BiConsumer<Object, T>) writer;
+        this.batchSize = properties.getBatchSize();
+        this.writers = properties.getWriters();
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.timer = timer;
+        this.current = new ArrayList<>(batchSize);
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(writers, runnable -> {
+            Thread thread = new Thread(runnable, "batching-sink-" + name + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < writers; i++) {
+            futures.add(executor.submit(() -> {
+                write();
+                return null;
+            }));
+        }
+    }
+
+    /**
+     * 并行流中会被多个线程调用，攒批的部分串行执行
+     */
+    @Override
+    public synchronized void accept(T element) {
+        if (closed) {
+            throw new IllegalStateException("sink " + name + " already closed");
+        }
+        checkFailure();
+        current.add(element);
+        if (current.size() == batchSize) {
+            put(current);
+            current = new ArrayList<>(batchSize);
+        }
+    }
+
+    /**
+     * 写出剩余元素并等待所有批次完成
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (!current.isEmpty() && failure == null) {
+                put(current);
+            }
+            current = null;
+            for (int i = 0; i < writers; i++) {
+                put(END);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while closing sink " + name, e);
+        } catch (ExecutionException e) {
+            failure = e.getCause();
+        } finally {
+            executor.shutdownNow();
+        }
+        checkFailure();
+    }
+
+    public BatchMetrics metrics() {
+        synchronized (latencies) {
+            long count = latencies.getCount();
+            return new BatchMetrics(name, batches, rows, failedBatches,
+                    count == 0 ? 0 : totalLatency / count,
+                    count == 0 ? 0 : latencies.quantile(0.5),
+                    count == 0 ? 0 : latencies.quantile(0.99),
+                    maxLatency);
+        }
+    }
+
+    private void put(List<Object> batch) {
+        try {
+            if (batch == END) {
+                //每个写入线程都必须收到结束标记，否则会一直阻塞在 take 上，close() 也就等不到它结束；
+                //失败后写入线程只丢弃批次不再写库，队列很快会空出来
+                queue.put(END);
+                return;
+            }
+            //队列满时定时检查失败状态，写入失败后尽快抛给流线程
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while queueing batch for sink " + name, e);
+        }
+    }
+
+    private void checkFailure() {
+        Throwable cause = failure;
+        if (cause != null) {
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("batch write failed in sink " + name, cause);
+        }
+    }
+
+    /**
+     * 写入线程：取一批，在事务中用 BATCH 会话执行并提交
+     */
+    @SuppressWarnings("unchecked")
+    private void write() throws InterruptedException {
+        while (true) {
+            List<Object> batch = queue.take();
+            if (batch == END) {
+                return;
+            }
+            if (failure != null) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                //连接默认自动提交，放在事务中保证一批要么全部写入、要么全部回滚
+                transactionTemplate.execute(status -> {
+                    try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+                        Object mapper = session.getMapper(mapperType);
+                        for (Object element : batch) {
+                            writer.accept(mapper, (T) element);
+                        }
+                        session.flushStatements();
+                    }
+                    return null;
+                });
+            } catch (RuntimeException | Error e) {
+                failure = e;
+                record(batch.size(), System.nanoTime() - start, false);
+                continue;
+            }
+            record(batch.size(), System.nanoTime() - start, true);
+        }
+    }
+
+    private void record(int size, long nanos, boolean succeeded) {
+        double millis = nanos / 1_000_000.0;
+        synchronized (latencies) {
+            if (succeeded) {
+                batches++;
+                rows += size;
+                latencies.accept(millis);
+                totalLatency += millis;
+                maxLatency = Math.max(maxLatency, millis);
+            } else {
+                failedBatches++;
+            }
+        }
+        if (timer != null && succeeded) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
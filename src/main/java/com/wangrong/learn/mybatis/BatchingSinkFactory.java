@@ -0,0 +1,50 @@
+package com.wangrong.learn.mybatis;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.BiConsumer;
+
+/**
+ * 创建 BatchingSink，批次耗时同时记录到 Micrometer 的 learn.batching-sink.batch（以 sink 为标签）
+ */
+@Component
+@EnableConfigurationProperties(BatchingSinkProperties.class)
+public class BatchingSinkFactory {
+
+    private final SqlSessionFactory sqlSessionFactory;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BatchingSinkProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    public BatchingSinkFactory(SqlSessionFactory sqlSessionFactory, PlatformTransactionManager transactionManager,
+                               BatchingSinkProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+    }
+
+    public <M, T> BatchingSink<T> create(String name, Class<M> mapperType, BiConsumer<? super M, ? super T> writer) {
+        return create(name, mapperType, writer, properties);
+    }
+
+    public <M, T> BatchingSink<T> create(String name, Class<M> mapperType, BiConsumer<? super M, ? super T> writer,
+                                         BatchingSinkProperties properties) {
+        Timer timer = meterRegistry == null ? null : Timer.builder("learn.batching-sink.batch")
+                .tag("sink", name)
+                .description("每批写入并提交的耗时")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        return new BatchingSink<>(name, sqlSessionFactory, transactionTemplate, mapperType, writer, properties, timer);
+    }
+}
@@ -0,0 +1,52 @@
+package com.wangrong.learn.mybatis;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 批量写入配置
+ * learn.batching-sink.batch-size=500
+ * learn.batching-sink.writers=2
+ * learn.batching-sink.queue-capacity=4
+ */
+@ConfigurationProperties(prefix = "learn.batching-sink")
+public class BatchingSinkProperties {
+
+    /**
+     * 每批的行数，一批在一个 BATCH 会话中执行并提交
+     */
+    private int batchSize = 500;
+
+    /**
+     * 写入线程数
+     */
+    private int writers = 2;
+
+    /**
+     * 等待写入的批次上限，队列满时流线程阻塞（背压）
+     */
+    private int queueCapacity = 4;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getWriters() {
+        return writers;
+    }
+
+    public void setWriters(int writers) {
+        this.writers = writers;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+}
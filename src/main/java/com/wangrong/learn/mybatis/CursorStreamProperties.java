@@ -0,0 +1,54 @@
+package com.wangrong.learn.mybatis;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 游标流配置
+ * learn.cursor-stream.batch-size=1000
+ * learn.cursor-stream.prefetch-batches=2
+ * learn.cursor-stream.idle-timeout=60s
+ */
+@ConfigurationProperties(prefix = "learn.cursor-stream")
+public class CursorStreamProperties {
+
+    /**
+     * 预取线程每次从游标读取的行数
+     */
+    private int batchSize = 1000;
+
+    /**
+     * 已读出、等待消费的批次上限，内存中最多保留 (prefetchBatches + 1) * batchSize 行
+     */
+    private int prefetchBatches = 2;
+
+    /**
+     * 队列满后等待消费方取走批次的最长时间，超过后预取线程放弃并释放连接；应大于处理一批所需的时间
+     */
+    private Duration idleTimeout = Duration.ofSeconds(60);
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getPrefetchBatches() {
+        return prefetchBatches;
+    }
+
+    public void setPrefetchBatches(int prefetchBatches) {
+        this.prefetchBatches = prefetchBatches;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+}
@@ -0,0 +1,105 @@
+package com.wangrong.learn.mybatis;
+
+import com.wangrong.learn.datasource.ReadOnlyRouting;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 把返回 Cursor<T> 的 MyBatis 查询包装成 Stream<T>
+ * 先查出整个 List 再 stream() 时，百万行报表要把所有行同时放在内存里；
+ * 这里每个流独占一个 SqlSession，结果集按 mybatis.configuration.default-fetch-size 分批从数据库拉取，
+ * 后台线程预取下一批，当前批次处理完即可丢弃。
+ *
+ * 返回的流必须关闭（try-with-resources），关闭时停止预取并释放游标和连接。
+ * 读了一半既不读完也不关闭的流，预取线程在 learn.cursor-stream.idle-timeout 后放弃并释放连接，之后继续读取会抛出异常。
+ * 查询是只读的，配置了只读副本时在副本上执行（见 ReadOnlyRouting）。
+ *
+ * 当前线程有 Spring 事务时，会话拿到的是事务绑定的连接，不能交给其它线程使用，
+ * 此时不预取，在调用线程上直接按 fetch size 读取游标。
+ *
+ * 用法：
+ * try (Stream<Person> persons = template.stream(PersonMapper.class, PersonMapper::scanAll)) {
+ *     persons.filter(p -> p.getAge() > 18).forEach(...);
+ * }
+ */
+@Component
+@EnableConfigurationProperties(CursorStreamProperties.class)
+public class CursorStreamTemplate implements DisposableBean {
+
+    private final SqlSessionFactory sqlSessionFactory;
+
+    private final CursorStreamProperties properties;
+
+    private final ExecutorService prefetchExecutor;
+
+    public CursorStreamTemplate(SqlSessionFactory sqlSessionFactory, CursorStreamProperties properties) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.properties = properties;
+        AtomicInteger threads = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "cursor-prefetch-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.prefetchExecutor = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    public <M, T> Stream<T> stream(Class<M> mapperType, Function<? super M, Cursor<T>> query) {
+        return stream(mapperType, query, properties.getBatchSize(), properties.getPrefetchBatches());
+    }
+
+    public <M, T> Stream<T> stream(Class<M> mapperType, Function<? super M, Cursor<T>> query, int batchSize, int prefetchBatches) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        //游标在 SqlSession 关闭时失效，不能用 Spring 托管的 mapper（每次调用后即关闭会话）
+        SqlSession session = sqlSessionFactory.openSession();
+        Cursor<T> cursor;
+        try {
+            //连接在打开游标时取得，之后的预取沿用同一个连接
+            cursor = ReadOnlyRouting.call(() -> query.apply(session.getMapper(mapperType)));
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+        Runnable release = () -> {
+            try {
+                cursor.close();
+            } catch (IOException ignored) {
+                //连接随会话一起关闭
+            } finally {
+                session.close();
+            }
+        };
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            //事务绑定的连接只能在当前线程上使用；会话关闭时不会关闭事务的连接
+            Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(cursor.iterator(),
+                    Spliterator.ORDERED | Spliterator.NONNULL);
+            return StreamSupport.stream(spliterator, false).onClose(release);
+        }
+        PrefetchingSpliterator<T> spliterator = new PrefetchingSpliterator<>(cursor.iterator(), batchSize, prefetchBatches,
+                properties.getIdleTimeout(), release, prefetchExecutor);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::cancel);
+    }
+
+    @Override
+    public void destroy() {
+        prefetchExecutor.shutdownNow();
+    }
+}
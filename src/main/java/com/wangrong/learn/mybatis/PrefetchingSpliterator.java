@@ -0,0 +1,190 @@
+package com.wangrong.learn.mybatis;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 由后台线程按批预取的 Spliterator
+ * 预取线程从 source 中每次读 batchSize 个元素放入有界队列，消费线程处理当前批次时下一批已经在读取，
+ * 队列满时预取线程阻塞，内存占用与结果集大小无关。
+ *
+ * source 和 release（关闭游标与会话）只在预取线程上执行，同一时刻只有一个线程使用底层 JDBC 连接：
+ * 读完、出错或放弃时预取线程自己调用 release；cancel() 中断预取线程并等它退出，预取线程还没开始时才由调用方 release。
+ * 队列满且消费方超过 idleTimeout 没有取走任何批次时（例如流读了一半既没读完也没关闭），预取线程放弃并释放连接，
+ * 消费方读完已经预取的批次后收到异常，不会把截断的结果当成完整结果。
+ */
+final class PrefetchingSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+    /**
+     * 阻塞等待时检查取消与预取线程状态的间隔
+     */
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final BlockingQueue<List<Object>> queue;
+
+    private final Duration idleTimeout;
+
+    private final Runnable release;
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    /**
+     * 预取线程开始执行，或者 cancel() 抢先占用；二者只有一个能成功
+     */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private final CountDownLatch exited = new CountDownLatch(1);
+
+    private final Future<?> producer;
+
+    private volatile boolean cancelled;
+
+    private volatile Throwable failure;
+
+    private List<Object> batch = Collections.emptyList();
+
+    private int index;
+
+    private boolean finished;
+
+    PrefetchingSpliterator(Iterator<T> source, int batchSize, int prefetchBatches, Duration idleTimeout,
+                           Runnable release, ExecutorService executor) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, prefetchBatches));
+        this.idleTimeout = idleTimeout;
+        this.release = release;
+        this.producer = executor.submit(() -> produce(source, batchSize));
+    }
+
+    private void produce(Iterator<T> source, int batchSize) {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (!cancelled && source.hasNext()) {
+                List<Object> next = new ArrayList<>(batchSize);
+                while (next.size() < batchSize && source.hasNext()) {
+                    next.add(source.next());
+                }
+                if (!offer(next)) {
+                    break;
+                }
+            }
+        } catch (Throwable e) {
+            if (!cancelled) {
+                failure = e;
+            }
+        } finally {
+            //cancel() 的中断不应影响关闭连接
+            Thread.interrupted();
+            release();
+            exited.countDown();
+        }
+    }
+
+    /**
+     * 放入队列；取消或者消费方空闲超过 idleTimeout 时放弃
+     */
+    private boolean offer(List<Object> next) throws InterruptedException {
+        long deadline = System.nanoTime() + idleTimeout.toNanos();
+        while (!cancelled) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                failure = new IllegalStateException("stream not consumed for " + idleTimeout
+                        + ", prefetch stopped and cursor closed; close the stream when done");
+                return false;
+            }
+            if (queue.offer(next, Math.min(remaining, POLL_NANOS), TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (index == batch.size()) {
+            if (finished || !nextBatch()) {
+                return false;
+            }
+        }
+        action.accept((T) batch.get(index++));
+        return true;
+    }
+
+    /**
+     * 预取线程不放结束标记：它退出且队列为空即为结束，放弃时队列满也能结束
+     */
+    private boolean nextBatch() {
+        List<Object> next;
+        try {
+            while ((next = queue.poll(POLL_NANOS, TimeUnit.NANOSECONDS)) == null) {
+                //预取线程的 offer 先于 countDown，退出后队列为空说明没有更多批次
+                if (exited.getCount() == 0 && queue.isEmpty()) {
+                    finished = true;
+                    batch = Collections.emptyList();
+                    index = 0;
+                    Throwable cause = failure;
+                    if (cause != null) {
+                        throw cause instanceof RuntimeException ? (RuntimeException) cause
+                                : new IllegalStateException("prefetch failed", cause);
+                    }
+                    return false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the next batch", e);
+        }
+        batch = next;
+        index = 0;
+        return true;
+    }
+
+    /**
+     * 停止预取，中断预取线程并一直等到它退出（它会关闭游标和会话）
+     */
+    void cancel() {
+        cancelled = true;
+        if (started.compareAndSet(false, true)) {
+            //预取线程还没有开始，游标没有被其它线程用过
+            release();
+            return;
+        }
+        queue.clear();
+        //中断阻塞在 offer 或驱动读取上的预取线程
+        producer.cancel(true);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                exited.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void release() {
+        if (released.compareAndSet(false, true)) {
+            release.run();
+        }
+    }
+}
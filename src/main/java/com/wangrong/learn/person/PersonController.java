@@ -0,0 +1,54 @@
+package com.wangrong.learn.person;
+
+import com.wangrong.learn.cache.CacheKey;
+import com.wangrong.learn.cache.ResponseCache;
+import com.wangrong.learn.web.RequestExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/persons")
+public class PersonController {
+
+    private final PersonMapper personMapper;
+
+    private final RequestExecutor requestExecutor;
+
+    private final ResponseCache responseCache;
+
+    public PersonController(PersonMapper personMapper, RequestExecutor requestExecutor, ResponseCache responseCache) {
+        this.personMapper = personMapper;
+        this.requestExecutor = requestExecutor;
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * 年龄不小于 minAge 的人数与年龄统计，执行方式见 learn.web.execution.mode
+     * 结果与 SOAP 接口 PersonSummaryRequest 共用缓存，见 PersonSummaryEndpoint
+     * 先在请求线程上查缓存，命中时不占用执行器，也不会因为执行器已满而被拒绝
+     */
+    @GetMapping("/summary")
+    public CompletableFuture<PersonSummary> summary(@RequestParam(defaultValue = "0") int minAge) {
+        CacheKey key = CacheKey.of(PersonSummaryEndpoint.OPERATION, Collections.singletonMap("minAge", minAge));
+        PersonSummary cached = responseCache.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return requestExecutor.supply(() -> responseCache.get(key, () -> personMapper.summary(minAge)));
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String rejected(RejectedExecutionException e) {
+        return e.getMessage();
+    }
+}
@@ -0,0 +1,112 @@
+package com.wangrong.learn.person;
+
+import com.wangrong.learn.ws.StaxElements;
+import com.wangrong.learn.ws.StreamingPayloadHandler;
+import com.wangrong.learn.ws.UncheckedXMLStreamException;
+import org.springframework.stereotype.Component;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 流式 SOAP 接口：过滤请求中携带的人员，地址为 /services/stream
+ * 请求（参数元素必须出现在 person 之前）：
+ * <PersonFilterRequest xmlns="http://wangrong.com/learn/person">
+ *     <minAge>18</minAge><namePrefix>A</namePrefix>
+ *     <person><name>Andy</name><age>23</age></person>
+ *     ...
+ * </PersonFilterRequest>
+ * 响应按请求中的顺序列出符合条件的人员，最后是人数：
+ * <PersonFilterResponse xmlns="http://wangrong.com/learn/person">
+ *     <person><name>Andy</name><age>23</age></person>
+ *     ...
+ *     <count>1</count>
+ * </PersonFilterResponse>
+ * 每读到一个 person 就判断并写出，请求和响应都不会整体驻留在内存中。
+ */
+@Component
+public class PersonFilterEndpoint implements StreamingPayloadHandler {
+
+    private static final QName REQUEST = new QName(PersonSummaryEndpoint.NAMESPACE, "PersonFilterRequest");
+
+    private static final QName PERSON = new QName(PersonSummaryEndpoint.NAMESPACE, "person");
+
+    @Override
+    public QName getPayloadRoot() {
+        return REQUEST;
+    }
+
+    @Override
+    public void handle(XMLStreamReader payload, XMLStreamWriter response) throws XMLStreamException {
+        int minAge = 0;
+        String namePrefix = "";
+        //读取 person 之前的参数元素
+        while (payload.nextTag() == XMLStreamConstants.START_ELEMENT && !PERSON.equals(payload.getName())) {
+            String name = payload.getLocalName();
+            String value = payload.getElementText().trim();
+            if ("minAge".equals(name)) {
+                minAge = parseInt(payload, value);
+            } else if ("namePrefix".equals(name)) {
+                namePrefix = value;
+            }
+        }
+
+        String ns = PersonSummaryEndpoint.NAMESPACE;
+        response.setDefaultNamespace(ns);
+        response.writeStartElement(ns, "PersonFilterResponse");
+        int min = minAge;
+        String prefix = namePrefix;
+        long[] count = {0};
+        Stream<Person> persons = payload.isStartElement()
+                ? StaxElements.stream(payload, PERSON, PersonFilterEndpoint::readPerson)
+                : Stream.empty();
+        persons.filter(person -> person.getAge() >= min)
+                .filter(person -> person.getName().startsWith(prefix))
+                .forEach(person -> {
+                    writePerson(response, person);
+                    count[0]++;
+                });
+        StaxElements.writeLeaf(response, ns, "count", count[0]);
+        response.writeEndElement();
+    }
+
+    private static Person readPerson(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> leaves = StaxElements.readLeaves(reader);
+        Person person = new Person();
+        person.setName(leaves.getOrDefault("name", ""));
+        String age = leaves.get("age");
+        if (age == null) {
+            throw new XMLStreamException("person without age", reader.getLocation());
+        }
+        person.setAge(parseInt(reader, age));
+        return person;
+    }
+
+    /**
+     * 数字格式错误属于请求错误，以 XMLStreamException 抛出，返回 Client Fault
+     */
+    private static int parseInt(XMLStreamReader reader, String value) throws XMLStreamException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new XMLStreamException("invalid number: " + value, reader.getLocation());
+        }
+    }
+
+    private static void writePerson(XMLStreamWriter writer, Person person) {
+        try {
+            String ns = PersonSummaryEndpoint.NAMESPACE;
+            writer.writeStartElement(ns, "person");
+            StaxElements.writeLeaf(writer, ns, "name", person.getName());
+            StaxElements.writeLeaf(writer, ns, "age", person.getAge());
+            writer.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new UncheckedXMLStreamException(e);
+        }
+    }
+}
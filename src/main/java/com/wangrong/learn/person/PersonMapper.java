@@ -0,0 +1,41 @@
+package com.wangrong.learn.person;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+
+import java.util.List;
+
+@Mapper
+public interface PersonMapper {
+
+    @Select("SELECT id, name, age FROM person ORDER BY id")
+    List<Person> findAll();
+
+    /**
+     * 游标查询，配合 CursorStreamTemplate 使用
+     */
+    @Select("SELECT id, name, age FROM person ORDER BY id")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY)
+    Cursor<Person> scanAll();
+
+    @Select("SELECT id, name, age FROM person WHERE age >= #{minAge} ORDER BY id")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY)
+    Cursor<Person> scanByMinAge(@Param("minAge") int minAge);
+
+    /**
+     * 单行插入，配合 BatchingSink 在 BATCH 会话中批量执行
+     */
+    @Insert("INSERT INTO person (name, age) VALUES (#{name}, #{age})")
+    int insert(Person person);
+
+    @Select("SELECT COUNT(*) FROM person")
+    long count();
+
+    @Select("SELECT COUNT(*) AS count, AVG(age * 1.0) AS averageAge, MIN(age) AS minAge, MAX(age) AS maxAge FROM person WHERE age >= #{minAge}")
+    PersonSummary summary(@Param("minAge") int minAge);
+}
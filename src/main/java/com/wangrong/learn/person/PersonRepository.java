@@ -0,0 +1,27 @@
+package com.wangrong.learn.person;
+
+import com.wangrong.learn.mybatis.CursorStreamTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.stream.Stream;
+
+/**
+ * person 表的流式读取，返回的流需要关闭
+ */
+@Repository
+public class PersonRepository {
+
+    private final CursorStreamTemplate cursorStreamTemplate;
+
+    public PersonRepository(CursorStreamTemplate cursorStreamTemplate) {
+        this.cursorStreamTemplate = cursorStreamTemplate;
+    }
+
+    public Stream<Person> streamAll() {
+        return cursorStreamTemplate.stream(PersonMapper.class, PersonMapper::scanAll);
+    }
+
+    public Stream<Person> streamByMinAge(int minAge) {
+        return cursorStreamTemplate.stream(PersonMapper.class, mapper -> mapper.scanByMinAge(minAge));
+    }
+}
@@ -0,0 +1,18 @@
+package com.wangrong.learn.person;
+
+import lombok.Data;
+
+/**
+ * 年龄统计
+ */
+@Data
+public class PersonSummary {
+
+    private long count;
+
+    private Double averageAge;
+
+    private Integer minAge;
+
+    private Integer maxAge;
+}
@@ -0,0 +1,110 @@
+package com.wangrong.learn.person;
+
+import com.wangrong.learn.cache.CacheKey;
+import com.wangrong.learn.cache.ResponseCache;
+import org.springframework.ws.server.endpoint.annotation.Endpoint;
+import org.springframework.ws.server.endpoint.annotation.PayloadRoot;
+import org.springframework.ws.server.endpoint.annotation.RequestPayload;
+import org.springframework.ws.server.endpoint.annotation.ResponsePayload;
+import org.springframework.ws.soap.server.endpoint.annotation.FaultCode;
+import org.springframework.ws.soap.server.endpoint.annotation.SoapFault;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.util.Collections;
+
+/**
+ * 人员统计的 SOAP 接口，与 GET /persons/summary 等价，地址为 /services
+ * 请求：
+ * <PersonSummaryRequest xmlns="http://wangrong.com/learn/person"><minAge>50</minAge></PersonSummaryRequest>
+ * 响应：
+ * <PersonSummaryResponse xmlns="http://wangrong.com/learn/person">
+ *     <count>50</count><averageAge>74.5</averageAge><minAge>50</minAge><maxAge>99</maxAge>
+ * </PersonSummaryResponse>
+ * 缓存 key 由解析出的 minAge 构造，与 PersonController 相同，因此与相同参数的 REST 请求命中同一条目；
+ * 不直接用请求体构造 key，否则 key 与实际查询的参数可能不一致，
+ * 例如其他命名空间的 minAge 只进入 key、嵌套的 minAge 只进入查询。
+ * minAge 不是整数时返回 Client Fault。
+ */
+@Endpoint
+public class PersonSummaryEndpoint {
+
+    public static final String NAMESPACE = "http://wangrong.com/learn/person";
+
+    static final String OPERATION = "person.summary";
+
+    private final PersonMapper personMapper;
+
+    private final ResponseCache responseCache;
+
+    /**
+     * DocumentBuilderFactory 不是线程安全的，每个线程一个
+     */
+    private static final ThreadLocal<DocumentBuilderFactory> DOCUMENT_BUILDER_FACTORY = ThreadLocal.withInitial(() -> {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory;
+    });
+
+    public PersonSummaryEndpoint(PersonMapper personMapper, ResponseCache responseCache) {
+        this.personMapper = personMapper;
+        this.responseCache = responseCache;
+    }
+
+    @PayloadRoot(namespace = NAMESPACE, localPart = "PersonSummaryRequest")
+    @ResponsePayload
+    public Element summary(@RequestPayload Element request) throws ParserConfigurationException {
+        int minAge = intValue(request, "minAge", 0);
+        CacheKey key = CacheKey.of(OPERATION, Collections.singletonMap("minAge", minAge));
+        PersonSummary summary = responseCache.get(key, () -> personMapper.summary(minAge));
+
+        Document document = DOCUMENT_BUILDER_FACTORY.get().newDocumentBuilder().newDocument();
+        Element response = document.createElementNS(NAMESPACE, "PersonSummaryResponse");
+        document.appendChild(response);
+        append(response, "count", summary.getCount());
+        append(response, "averageAge", summary.getAverageAge());
+        append(response, "minAge", summary.getMinAge());
+        append(response, "maxAge", summary.getMaxAge());
+        return response;
+    }
+
+    private static int intValue(Element request, String name, int defaultValue) {
+        NodeList nodes = request.getElementsByTagNameNS(NAMESPACE, name);
+        if (nodes.getLength() == 0) {
+            return defaultValue;
+        }
+        String value = nodes.item(0).getTextContent().trim();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException(name + " is not an integer: " + value);
+        }
+    }
+
+    /**
+     * 值为 null 时（没有匹配的记录）省略该元素
+     */
+    private static void append(Element parent, String name, Object value) {
+        if (value != null) {
+            Element element = parent.getOwnerDocument().createElementNS(NAMESPACE, name);
+            element.setTextContent(value.toString());
+            parent.appendChild(element);
+        }
+    }
+
+    /**
+     * 请求内容错误，返回 Client Fault 而不是默认的 Server Fault
+     */
+    @SoapFault(faultCode = FaultCode.CLIENT)
+    static class InvalidRequestException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        InvalidRequestException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.wangrong.learn.startup;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.AutoConfigurationImportFilter;
+import org.springframework.boot.autoconfigure.AutoConfigurationMetadata;
+import org.springframework.boot.autoconfigure.condition.ConditionEvaluationReport;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.context.properties.source.ConfigurationPropertyName;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySource;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.context.properties.source.ConfigurationPropertyState;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+/**
+ * 没有任何 Azure 配置时，在导入阶段直接过滤掉 azure-spring-boot 的自动配置
+ * 这些自动配置自身的条件（@ConditionalOnProperty 等）最终也不会匹配，但要先加载类、解析注解，
+ * 每次启动都有这部分开销；过滤器在读取类之前按类名排除，与 OnClassCondition 的过滤方式相同。
+ * 环境中存在 azure.* 或 management.metrics.export.azuremonitor.* 属性时不做过滤。
+ * 属性名按宽松绑定的规则匹配，与 @ConfigurationProperties 一致，例如环境变量 AZURE_STORAGE_ACCOUNT_NAME 也算 azure.* 配置。
+ * 被过滤的自动配置会记录到条件评估报告中（/actuator/conditions）。
+ *
+ * 通过 META-INF/spring.factories 注册。
+ */
+public class AzureAutoConfigurationFilter implements AutoConfigurationImportFilter, Condition, EnvironmentAware, BeanFactoryAware {
+
+    static final String AZURE_PACKAGE = "com.microsoft.azure.";
+
+    private static final ConfigurationPropertyName[] AZURE_PROPERTY_PREFIXES = {
+            ConfigurationPropertyName.of("azure"), ConfigurationPropertyName.of("management.metrics.export.azuremonitor")};
+
+    private Environment environment;
+
+    private BeanFactory beanFactory;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public boolean[] match(String[] autoConfigurationClasses, AutoConfigurationMetadata autoConfigurationMetadata) {
+        boolean[] matches = new boolean[autoConfigurationClasses.length];
+        boolean configured = isAzureConfigured(environment);
+        ConditionEvaluationReport report = beanFactory instanceof ConfigurableListableBeanFactory
+                ? ConditionEvaluationReport.get((ConfigurableListableBeanFactory) beanFactory) : null;
+        for (int i = 0; i < autoConfigurationClasses.length; i++) {
+            String className = autoConfigurationClasses[i];
+            matches[i] = configured || className == null || !className.startsWith(AZURE_PACKAGE);
+            if (!matches[i] && report != null) {
+                report.recordConditionEvaluation(className, this,
+                        ConditionOutcome.noMatch("no azure.* properties configured"));
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        return isAzureConfigured(context.getEnvironment());
+    }
+
+    static boolean isAzureConfigured(Environment environment) {
+        if (!(environment instanceof ConfigurableEnvironment)) {
+            return true;
+        }
+        for (ConfigurationPropertySource source : ConfigurationPropertySources.get(environment)) {
+            for (ConfigurationPropertyName prefix : AZURE_PROPERTY_PREFIXES) {
+                //不能枚举的属性源返回 UNKNOWN，与之前一样不计入
+                if (source.containsDescendantOf(prefix) == ConfigurationPropertyState.PRESENT) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
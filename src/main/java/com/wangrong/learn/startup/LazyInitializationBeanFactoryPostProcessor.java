@@ -0,0 +1,35 @@
+package com.wangrong.learn.startup;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 把所有应用 bean 改为懒加载，第一次被使用时才创建
+ * Spring Boot 2.1 还没有 spring.main.lazy-initialization，这里用 BeanFactoryPostProcessor 实现同样的效果。
+ * 基础设施 bean（ROLE_INFRASTRUCTURE）与 excludedBeans 中列出的 bean 保持立即创建。
+ * 代价是第一次请求要承担创建开销，配置错误也推迟到第一次使用时才暴露，因此只在 lazy profile 中开启。
+ */
+public class LazyInitializationBeanFactoryPostProcessor implements BeanFactoryPostProcessor {
+
+    private final Set<String> excludedBeans;
+
+    public LazyInitializationBeanFactoryPostProcessor(Collection<String> excludedBeans) {
+        this.excludedBeans = new HashSet<>(excludedBeans);
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            if (definition.getRole() != BeanDefinition.ROLE_INFRASTRUCTURE && !excludedBeans.contains(name)) {
+                definition.setLazyInit(true);
+            }
+        }
+    }
+}
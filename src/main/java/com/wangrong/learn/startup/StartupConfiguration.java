@@ -0,0 +1,30 @@
+package com.wangrong.learn.startup;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.Collections;
+import java.util.List;
+
+@Configuration
+@EnableConfigurationProperties(StartupProperties.class)
+public class StartupConfiguration {
+
+    /**
+     * BeanFactoryPostProcessor 在配置绑定之前创建，排除列表直接用 Binder 从 Environment 读取；
+     * 声明为 static，不会让本配置类提前实例化
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "learn.startup", name = "lazy-initialization", havingValue = "true")
+    public static LazyInitializationBeanFactoryPostProcessor lazyInitializationBeanFactoryPostProcessor(Environment environment) {
+        List<String> exclusions = Binder.get(environment)
+                .bind("learn.startup.lazy-exclusions", Bindable.listOf(String.class))
+                .orElse(Collections.emptyList());
+        return new LazyInitializationBeanFactoryPostProcessor(exclusions);
+    }
+}
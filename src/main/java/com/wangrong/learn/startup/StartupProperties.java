@@ -0,0 +1,78 @@
+package com.wangrong.learn.startup;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 启动相关配置
+ * learn.startup.lazy-initialization=true
+ * learn.startup.lazy-exclusions=requestExecutor
+ * learn.startup.timing.enabled=true
+ * learn.startup.timing.top=10
+ */
+@ConfigurationProperties(prefix = "learn.startup")
+public class StartupProperties {
+
+    /**
+     * bean 懒加载，见 LazyInitializationBeanFactoryPostProcessor；lazy profile 中开启
+     */
+    private boolean lazyInitialization;
+
+    /**
+     * 懒加载模式下仍然立即创建的 bean 名
+     */
+    private List<String> lazyExclusions = new ArrayList<>();
+
+    private final Timing timing = new Timing();
+
+    public boolean isLazyInitialization() {
+        return lazyInitialization;
+    }
+
+    public void setLazyInitialization(boolean lazyInitialization) {
+        this.lazyInitialization = lazyInitialization;
+    }
+
+    public List<String> getLazyExclusions() {
+        return lazyExclusions;
+    }
+
+    public void setLazyExclusions(List<String> lazyExclusions) {
+        this.lazyExclusions = lazyExclusions;
+    }
+
+    public Timing getTiming() {
+        return timing;
+    }
+
+    /**
+     * 启动耗时报告，见 StartupTimingListener；该监听器在配置绑定之前运行，直接从 Environment 读取这两项
+     */
+    public static class Timing {
+
+        private boolean enabled = true;
+
+        /**
+         * 报告中列出的最慢 bean 与配置类的个数
+         */
+        private int top = 10;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getTop() {
+            return top;
+        }
+
+        public void setTop(int top) {
+            this.top = top;
+        }
+    }
+}
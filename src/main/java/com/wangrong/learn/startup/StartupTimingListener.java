@@ -0,0 +1,205 @@
+package com.wangrong.learn.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.PropertyValues;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.context.event.ApplicationFailedEvent;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.event.ApplicationStartingEvent;
+import org.springframework.boot.context.event.SpringApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * 记录启动各阶段与每个 bean 的创建耗时，启动完成时输出报告（见 StartupTimings）
+ * 阶段：environment（准备 Environment）、context（创建上下文、加载配置源）、
+ * refresh（解析配置、创建 bean、启动 Web 服务器）、runners（ApplicationRunner / CommandLineRunner）。
+ * bean 耗时从实例化前到初始化后，嵌套创建的依赖从外层 bean 的自身耗时中扣除。
+ * 只记录启动期间创建的 bean：启动完成（或失败）后不再记录，之后创建的 lazy / prototype bean 不会让报告无限增长。
+ *
+ * 通过 META-INF/spring.factories 注册，每个 SpringApplication 一个实例；
+ * 在配置绑定之前运行，learn.startup.timing.* 直接从 Environment 读取。
+ */
+public class StartupTimingListener implements ApplicationListener<SpringApplicationEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupTimingListener.class);
+
+    private final StartupTimings timings = new StartupTimings();
+
+    private boolean enabled = true;
+
+    private int top = 10;
+
+    private long startNanos;
+
+    private long phaseStartNanos;
+
+    private ConfigurableListableBeanFactory beanFactory;
+
+    private BeanTimingPostProcessor beanTiming;
+
+    @Override
+    public void onApplicationEvent(SpringApplicationEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event instanceof ApplicationStartingEvent) {
+            startNanos = System.nanoTime();
+            phaseStartNanos = startNanos;
+        } else if (event instanceof ApplicationEnvironmentPreparedEvent) {
+            Environment environment = ((ApplicationEnvironmentPreparedEvent) event).getEnvironment();
+            enabled = environment.getProperty("learn.startup.timing.enabled", Boolean.class, true);
+            top = environment.getProperty("learn.startup.timing.top", Integer.class, 10);
+            endPhase("environment");
+        } else if (event instanceof ApplicationPreparedEvent) {
+            endPhase("context");
+            beanFactory = ((ApplicationPreparedEvent) event).getApplicationContext().getBeanFactory();
+            beanFactory.registerSingleton("startupTimings", timings);
+            beanTiming = new BeanTimingPostProcessor();
+            beanFactory.addBeanPostProcessor(beanTiming);
+        } else if (event instanceof ApplicationStartedEvent) {
+            endPhase("refresh");
+        } else if (event instanceof ApplicationReadyEvent) {
+            endPhase("runners");
+            stopBeanTiming();
+            timings.complete(System.nanoTime() - startNanos);
+            logger.info(timings.report(top));
+        } else if (event instanceof ApplicationFailedEvent) {
+            stopBeanTiming();
+            timings.complete(System.nanoTime() - startNanos);
+            logger.info("Startup failed\n{}", timings.report(top));
+        }
+    }
+
+    private void stopBeanTiming() {
+        if (beanTiming != null) {
+            beanTiming.stop();
+            beanTiming = null;
+        }
+    }
+
+    private void endPhase(String phase) {
+        long now = System.nanoTime();
+        timings.phase(phase, now - phaseStartNanos);
+        phaseStartNanos = now;
+    }
+
+    /**
+     * 声明 bean 的配置类；扫描到的组件为其自身的类
+     */
+    private String configurationOf(String beanName) {
+        try {
+            BeanDefinition definition = beanFactory.getMergedBeanDefinition(beanName);
+            String factoryBean = definition.getFactoryBeanName();
+            if (factoryBean != null && beanFactory.containsBeanDefinition(factoryBean)) {
+                String className = beanFactory.getMergedBeanDefinition(factoryBean).getBeanClassName();
+                return className != null ? stripCglib(className) : factoryBean;
+            }
+            String className = definition.getBeanClassName();
+            return className != null ? stripCglib(className) : "?";
+        } catch (NoSuchBeanDefinitionException e) {
+            return "?";
+        }
+    }
+
+    private static String stripCglib(String className) {
+        int index = className.indexOf("$$");
+        return index < 0 ? className : className.substring(0, index);
+    }
+
+    private static final class Frame {
+
+        final String name;
+
+        final long start = System.nanoTime();
+
+        long childNanos;
+
+        Frame(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * 用每个线程的栈记录正在创建的 bean：外层 bean 的自身耗时 = 总耗时 - 嵌套创建的耗时
+     */
+    private final class BeanTimingPostProcessor implements InstantiationAwareBeanPostProcessor {
+
+        private final ThreadLocal<Deque<Frame>> creating = ThreadLocal.withInitial(ArrayDeque::new);
+
+        private volatile boolean stopped;
+
+        /**
+         * 启动结束：之后不再入栈，并释放启动线程上的栈
+         */
+        void stop() {
+            stopped = true;
+            creating.remove();
+        }
+
+        @Override
+        public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) throws BeansException {
+            if (!stopped) {
+                creating.get().push(new Frame(beanName));
+            }
+            return null;
+        }
+
+        /**
+         * 必须原样返回：默认实现返回 null，Spring 会退回到已废弃的 postProcessPropertyValues，
+         * 对每个 bean 类做一次 JavaBeans 内省，冷启动时多出约 1 秒
+         */
+        @Override
+        public PropertyValues postProcessProperties(PropertyValues pvs, Object bean, String beanName) throws BeansException {
+            return pvs;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            if (stopped) {
+                //其它线程在启动期间留下的栈
+                creating.remove();
+                return bean;
+            }
+            Deque<Frame> stack = creating.get();
+            //FactoryBean.getObject() 的结果也会经过这里，此时栈上没有对应的记录
+            if (!contains(stack, beanName)) {
+                return bean;
+            }
+            long now = System.nanoTime();
+            Frame frame;
+            //创建失败的 bean 不会回调，连同它一起出栈
+            do {
+                frame = stack.pop();
+            } while (!frame.name.equals(beanName));
+            long total = now - frame.start;
+            Frame parent = stack.peek();
+            if (parent != null) {
+                parent.childNanos += total;
+            }
+            timings.bean(beanName, configurationOf(beanName), Math.max(0, total - frame.childNanos), total);
+            return bean;
+        }
+
+        private boolean contains(Deque<Frame> stack, String beanName) {
+            for (Iterator<Frame> it = stack.iterator(); it.hasNext(); ) {
+                if (it.next().name.equals(beanName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.wangrong.learn.startup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次启动的耗时：各阶段、每个 bean 的自身耗时（不含其依赖的创建），以及按声明它们的配置类汇总的耗时
+ * 由 StartupTimingListener 填充，以 startupTimings 为名注册到容器中。
+ */
+public final class StartupTimings {
+
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+
+    private final List<BeanTiming> beans = new ArrayList<>();
+
+    private final Map<String, ConfigurationTiming> configurations = new LinkedHashMap<>();
+
+    private long totalNanos;
+
+    private boolean completed;
+
+    /**
+     * 阶段名 -> 耗时（毫秒），按发生顺序
+     */
+    public synchronized Map<String, Long> getPhases() {
+        Map<String, Long> phases = new LinkedHashMap<>();
+        phaseNanos.forEach((phase, nanos) -> phases.put(phase, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        return phases;
+    }
+
+    public synchronized long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    /**
+     * 启动是否已经完成（收到 ApplicationReadyEvent）
+     */
+    public synchronized boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * 自身耗时最长的 n 个 bean
+     */
+    public synchronized List<BeanTiming> slowestBeans(int n) {
+        List<BeanTiming> sorted = new ArrayList<>(beans);
+        sorted.sort(Comparator.comparingLong(BeanTiming::getSelfNanos).reversed());
+        return Collections.unmodifiableList(sorted.subList(0, Math.min(n, sorted.size())));
+    }
+
+    /**
+     * 所声明 bean 的自身耗时之和最长的 n 个配置类（包括自动配置）；扫描到的组件归到其自身的类
+     */
+    public synchronized List<ConfigurationTiming> slowestConfigurations(int n) {
+        List<ConfigurationTiming> sorted = new ArrayList<>(configurations.values());
+        sorted.sort(Comparator.comparingLong(ConfigurationTiming::getNanos).reversed());
+        return Collections.unmodifiableList(sorted.subList(0, Math.min(n, sorted.size())));
+    }
+
+    public synchronized int getBeanCount() {
+        return beans.size();
+    }
+
+    synchronized void phase(String phase, long nanos) {
+        phaseNanos.put(phase, nanos);
+    }
+
+    synchronized void bean(String name, String configuration, long selfNanos, long totalNanos) {
+        if (completed) {
+            return;
+        }
+        beans.add(new BeanTiming(name, configuration, selfNanos, totalNanos));
+        configurations.computeIfAbsent(configuration, ConfigurationTiming::new).add(selfNanos);
+    }
+
+    synchronized void complete(long totalNanos) {
+        this.totalNanos = totalNanos;
+        this.completed = true;
+    }
+
+    /**
+     * 多行文本报告，用于启动日志
+     */
+    public String report(int top) {
+        StringBuilder report = new StringBuilder("Startup took ").append(getTotalMillis()).append(" ms:");
+        getPhases().forEach((phase, millis) -> report.append(' ').append(phase).append(' ').append(millis).append(" ms,"));
+        report.setLength(report.length() - 1);
+        report.append("\nSlowest beans (self time, total time including dependencies):");
+        for (BeanTiming bean : slowestBeans(top)) {
+            report.append(String.format("%n  %6d ms %6d ms  %s [%s]", bean.getSelfMillis(), bean.getTotalMillis(),
+                    bean.getName(), bean.getConfiguration()));
+        }
+        report.append("\nSlowest configurations (sum of bean self time):");
+        for (ConfigurationTiming configuration : slowestConfigurations(top)) {
+            report.append(String.format("%n  %6d ms  %s (%d beans)", configuration.getMillis(),
+                    configuration.getName(), configuration.getBeans()));
+        }
+        return report.toString();
+    }
+
+    public static final class BeanTiming {
+
+        private final String name;
+
+        private final String configuration;
+
+        private final long selfNanos;
+
+        private final long totalNanos;
+
+        BeanTiming(String name, String configuration, long selfNanos, long totalNanos) {
+            this.name = name;
+            this.configuration = configuration;
+            this.selfNanos = selfNanos;
+            this.totalNanos = totalNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 声明该 bean 的配置类
+         */
+        public String getConfiguration() {
+            return configuration;
+        }
+
+        public long getSelfNanos() {
+            return selfNanos;
+        }
+
+        public long getSelfMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(selfNanos);
+        }
+
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+        }
+    }
+
+    public static final class ConfigurationTiming {
+
+        private final String name;
+
+        private long nanos;
+
+        private int beans;
+
+        ConfigurationTiming(String name) {
+            this.name = name;
+        }
+
+        void add(long selfNanos) {
+            nanos += selfNanos;
+            beans++;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        public int getBeans() {
+            return beans;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.wangrong.learn.web;
+
+/**
+ * 控制器的执行方式
+ */
+public enum ExecutionMode {
+
+    /**
+     * 在 Tomcat 请求线程上直接执行，线程在等待数据库时被占用
+     */
+    BLOCKING,
+
+    /**
+     * 提交到独立的有界执行器，Tomcat 线程立即释放，结果通过 CompletableFuture 异步写回
+     */
+    ASYNC
+}
@@ -0,0 +1,123 @@
+package com.wangrong.learn.web;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 按 learn.web.execution.mode 执行控制器中的阻塞调用
+ * BLOCKING：在请求线程上执行，返回已完成的 future，行为与直接返回结果相同；
+ * ASYNC：提交到独立的有界执行器，请求线程立即归还给 Tomcat。
+ * 虚拟线程通过反射创建（Executors.newVirtualThreadPerTaskExecutor），在 Java 8 上编译、在 21+ 上运行时生效，
+ * 并发数由信号量限制；否则使用固定大小的平台线程池和有界队列。超出上限时抛出 RejectedExecutionException。
+ *
+ * 用法：
+ * return requestExecutor.supply(() -> personMapper.summary(minAge));
+ */
+@Component
+@EnableConfigurationProperties(WebExecutionProperties.class)
+public class RequestExecutor implements DisposableBean {
+
+    private final ExecutionMode mode;
+
+    private final ExecutorService executorService;
+
+    private final Executor executor;
+
+    private final boolean virtual;
+
+    public RequestExecutor(WebExecutionProperties properties) {
+        this.mode = properties.getMode();
+        ExecutorService virtualExecutor = properties.isVirtualThreads() ? newVirtualThreadExecutor() : null;
+        if (virtualExecutor != null) {
+            this.virtual = true;
+            this.executorService = virtualExecutor;
+            this.executor = bounded(virtualExecutor, properties.getMaxConcurrency());
+        } else {
+            this.virtual = false;
+            AtomicInteger threads = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(properties.getMaxConcurrency(), properties.getMaxConcurrency(),
+                    60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "request-" + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            this.executorService = pool;
+            this.executor = pool;
+        }
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        if (mode == ExecutionMode.BLOCKING) {
+            return CompletableFuture.completedFuture(supplier.get());
+        }
+        return CompletableFuture.supplyAsync(supplier, executor);
+    }
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    /**
+     * 是否运行在虚拟线程上
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public void destroy() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * JDK 不支持虚拟线程时返回 null
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 虚拟线程不限数量，用信号量限制同时执行的任务数，拿不到许可时立即拒绝
+     */
+    private static Executor bounded(Executor delegate, int maxConcurrency) {
+        Semaphore permits = new Semaphore(maxConcurrency);
+        return task -> {
+            if (!permits.tryAcquire()) {
+                throw new RejectedExecutionException("too many concurrent requests: " + maxConcurrency);
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        };
+    }
+}
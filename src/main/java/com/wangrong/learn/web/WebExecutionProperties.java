@@ -0,0 +1,63 @@
+package com.wangrong.learn.web;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 控制器执行方式配置
+ * learn.web.execution.mode=async
+ * learn.web.execution.virtual-threads=true
+ * learn.web.execution.max-concurrency=400
+ * learn.web.execution.queue-capacity=1000
+ */
+@ConfigurationProperties(prefix = "learn.web.execution")
+public class WebExecutionProperties {
+
+    private ExecutionMode mode = ExecutionMode.BLOCKING;
+
+    /**
+     * JDK 支持时（21+）使用虚拟线程，否则退回到平台线程池
+     */
+    private boolean virtualThreads = true;
+
+    /**
+     * 同时执行的请求上限：平台线程池的线程数，或虚拟线程模式下的并发许可数
+     */
+    private int maxConcurrency = 400;
+
+    /**
+     * 平台线程池的排队上限，超出时返回 503
+     */
+    private int queueCapacity = 1000;
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    public void setMode(ExecutionMode mode) {
+        this.mode = mode;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+}
@@ -0,0 +1,184 @@
+package com.wangrong.learn.ws;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 基于 StAX 的流式读写工具
+ * stream() 把某个元素下重复出现的子元素映射为惰性的 Stream，每次只解析一个子元素，
+ * 之后可以接 Application 中同样的 filter/map/collect；整个请求不会同时驻留在内存中。
+ *
+ * 用法：
+ * Stream<Person> persons = StaxElements.stream(reader, new QName(NAMESPACE, "person"),
+ *         r -> toPerson(StaxElements.readLeaves(r)));
+ */
+public final class StaxElements {
+
+    private StaxElements() {
+    }
+
+    /**
+     * 读取单个元素，调用时 reader 停在该元素的 START_ELEMENT 上，返回时必须停在对应的 END_ELEMENT 上
+     */
+    @FunctionalInterface
+    public interface ElementReader<T> {
+
+        T read(XMLStreamReader reader) throws XMLStreamException;
+    }
+
+    /**
+     * 关闭 DTD 与外部实体，避免 XXE；合并相邻文本，一段文本只产生一个事件
+     */
+    public static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * 返回父元素下名为 element 的直接子元素组成的惰性流，其他子元素被跳过
+     * 调用时 reader 可以停在父元素的 START_ELEMENT 上、某个子元素的 END_ELEMENT 上，
+     * 或第一个要读取的子元素的 START_ELEMENT 上（先用 nextTag 读完前面的参数元素时），因此父元素不能与 element 同名。
+     * 流消费完时 reader 停在父元素的 END_ELEMENT 上。流只能顺序消费，且不能与 reader 的其他读取交错。
+     */
+    public static <T> Stream<T> stream(XMLStreamReader reader, QName element, ElementReader<? extends T> elementReader) {
+        return StreamSupport.stream(new ElementSpliterator<>(reader, element, elementReader), false);
+    }
+
+    /**
+     * 读取当前元素下只包含文本的子元素，以本地名为 key，保持出现顺序；包含子元素的子元素被跳过
+     * 调用时 reader 停在当前元素的 START_ELEMENT 上，返回时停在其 END_ELEMENT 上
+     */
+    public static Map<String, String> readLeaves(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> leaves = new LinkedHashMap<>();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String name = reader.getLocalName();
+            String text = readLeafText(reader);
+            if (text != null) {
+                leaves.put(name, text.trim());
+            }
+        }
+        return leaves;
+    }
+
+    /**
+     * 跳过当前元素及其所有子元素，返回时 reader 停在其 END_ELEMENT 上
+     */
+    public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * 写出只包含文本的元素，值为 null 时省略
+     */
+    public static void writeLeaf(XMLStreamWriter writer, String namespace, String localName, Object value) throws XMLStreamException {
+        if (value == null) {
+            return;
+        }
+        writer.writeStartElement(namespace, localName);
+        writer.writeCharacters(value.toString());
+        writer.writeEndElement();
+    }
+
+    /**
+     * 读取文本元素的内容；元素包含子元素时跳过并返回 null
+     */
+    private static String readLeafText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append(reader.getText());
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                    skipElement(reader);
+                    skipElement(reader);
+                    return null;
+                case XMLStreamConstants.END_ELEMENT:
+                    return text.toString();
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static final class ElementSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+        private final XMLStreamReader reader;
+
+        private final QName element;
+
+        private final ElementReader<? extends T> elementReader;
+
+        private boolean finished;
+
+        /**
+         * 创建时 reader 已停在第一个要读取的子元素上
+         */
+        private boolean positioned;
+
+        ElementSpliterator(XMLStreamReader reader, QName element, ElementReader<? extends T> elementReader) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.reader = reader;
+            this.element = element;
+            this.elementReader = elementReader;
+            this.positioned = reader.isStartElement() && matches(reader.getNamespaceURI(), reader.getLocalName());
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (finished) {
+                return false;
+            }
+            try {
+                while (true) {
+                    int event = positioned ? reader.getEventType() : reader.nextTag();
+                    positioned = false;
+                    if (event == XMLStreamConstants.END_ELEMENT) {
+                        finished = true;
+                        return false;
+                    }
+                    if (matches(reader.getNamespaceURI(), reader.getLocalName())) {
+                        action.accept(elementReader.read(reader));
+                        return true;
+                    }
+                    skipElement(reader);
+                }
+            } catch (XMLStreamException e) {
+                finished = true;
+                throw new UncheckedXMLStreamException(e);
+            }
+        }
+
+        private boolean matches(String namespace, String localName) {
+            String expected = element.getNamespaceURI();
+            return element.getLocalPart().equals(localName)
+                    && (expected.equals(namespace) || (expected.equals(XMLConstants.NULL_NS_URI) && namespace == null));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.wangrong.learn.ws;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * 流式 SOAP 端点，由 StreamingSoapServlet 按请求体根元素分发
+ * 与 @Endpoint 不同，请求不会先解析成 DOM：handle 拿到的 reader 停在请求体根元素的 START_ELEMENT 上，
+ * 重复元素可以用 StaxElements.stream 逐个读取；响应直接写到 writer（已写出 Envelope 与 Body），边读边写。
+ *
+ * 实现必须读到请求体根元素的 END_ELEMENT 为止，并写出完整的响应元素。
+ */
+public interface StreamingPayloadHandler {
+
+    /**
+     * 处理的请求体根元素
+     */
+    QName getPayloadRoot();
+
+    void handle(XMLStreamReader payload, XMLStreamWriter response) throws XMLStreamException;
+}
@@ -0,0 +1,25 @@
+package com.wangrong.learn.ws;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * 注册 StreamingSoapServlet，收集所有 StreamingPayloadHandler
+ */
+@Configuration
+@EnableConfigurationProperties(StreamingSoapProperties.class)
+public class StreamingSoapConfiguration {
+
+    @Bean
+    public ServletRegistrationBean<StreamingSoapServlet> streamingSoapServlet(StreamingSoapProperties properties,
+                                                                              List<StreamingPayloadHandler> handlers) {
+        ServletRegistrationBean<StreamingSoapServlet> registration = new ServletRegistrationBean<>(
+                new StreamingSoapServlet(handlers, properties.getBufferSize()), properties.getPath());
+        registration.setName("streamingSoapServlet");
+        return registration;
+    }
+}
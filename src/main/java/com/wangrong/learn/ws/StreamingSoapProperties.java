@@ -0,0 +1,38 @@
+package com.wangrong.learn.ws;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 流式 SOAP 入口配置
+ * learn.ws.streaming.path=/services/stream
+ * learn.ws.streaming.buffer-size=8192
+ */
+@ConfigurationProperties(prefix = "learn.ws.streaming")
+public class StreamingSoapProperties {
+
+    /**
+     * 映射路径；比 spring-ws 的 /services/* 更具体，不会被 MessageDispatcherServlet 接管
+     */
+    private String path = "/services/stream";
+
+    /**
+     * 响应缓冲区大小，超过后以 chunk 输出
+     */
+    private int bufferSize = 8192;
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+}
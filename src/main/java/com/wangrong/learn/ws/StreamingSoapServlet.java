@@ -0,0 +1,190 @@
+package com.wangrong.learn.ws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 流式 SOAP 入口：用 StAX 逐个事件读取 Envelope，按请求体根元素交给 StreamingPayloadHandler，
+ * 响应经过固定大小的缓冲区直接写到输出流（chunked），不构造 SAAJ/DOM 消息，请求和响应的大小都不影响内存占用。
+ * 支持 SOAP 1.1 与 1.2，响应使用与请求相同的版本；Header 被跳过。
+ *
+ * 响应开始输出前出错时返回 SOAP Fault（请求格式错误为 Client/Sender，其余为 Server/Receiver）；
+ * 已经输出部分响应后出错只能中断连接，客户端会得到不完整的 XML。
+ */
+public class StreamingSoapServlet extends HttpServlet {
+
+    static final String SOAP_11 = "http://schemas.xmlsoap.org/soap/envelope/";
+
+    static final String SOAP_12 = "http://www.w3.org/2003/05/soap-envelope";
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingSoapServlet.class);
+
+    private final Map<QName, StreamingPayloadHandler> handlers = new HashMap<>();
+
+    private final int bufferSize;
+
+    private final XMLInputFactory inputFactory = StaxElements.newInputFactory();
+
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+    public StreamingSoapServlet(Collection<? extends StreamingPayloadHandler> handlers, int bufferSize) {
+        for (StreamingPayloadHandler handler : handlers) {
+            StreamingPayloadHandler existing = this.handlers.put(handler.getPayloadRoot(), handler);
+            if (existing != null) {
+                throw new IllegalStateException("duplicate handlers for " + handler.getPayloadRoot() + ": "
+                        + existing.getClass().getName() + ", " + handler.getClass().getName());
+            }
+        }
+        this.bufferSize = bufferSize;
+        this.outputFactory.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, true);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        XMLStreamReader reader;
+        String soapNamespace;
+        StreamingPayloadHandler handler;
+        try {
+            reader = inputFactory.createXMLStreamReader(request.getInputStream());
+        } catch (XMLStreamException e) {
+            writeFault(response, SOAP_11, true, e.getMessage());
+            return;
+        }
+        try {
+            try {
+                reader.nextTag();
+                soapNamespace = reader.getNamespaceURI();
+                if (!"Envelope".equals(reader.getLocalName()) || !(SOAP_11.equals(soapNamespace) || SOAP_12.equals(soapNamespace))) {
+                    writeFault(response, SOAP_11, true, "not a SOAP envelope: " + reader.getName());
+                    return;
+                }
+                reader.nextTag();
+                if (isSoapElement(reader, soapNamespace, "Header")) {
+                    StaxElements.skipElement(reader);
+                    reader.nextTag();
+                }
+                if (!isSoapElement(reader, soapNamespace, "Body") || reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+                    writeFault(response, soapNamespace, true, "missing SOAP body payload");
+                    return;
+                }
+                handler = handlers.get(reader.getName());
+                if (handler == null) {
+                    writeFault(response, soapNamespace, true, "no endpoint for " + reader.getName());
+                    return;
+                }
+            } catch (XMLStreamException e) {
+                writeFault(response, SOAP_11, true, e.getMessage());
+                return;
+            }
+            handle(handler, reader, soapNamespace, response);
+        } finally {
+            close(reader);
+        }
+    }
+
+    private void handle(StreamingPayloadHandler handler, XMLStreamReader reader, String soapNamespace,
+                        HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(contentType(soapNamespace));
+        //JDK 的 StAX writer 逐字节写出，这里攒满 bufferSize 再交给容器，容器以 chunk 发出
+        OutputStream out = new BufferedOutputStream(response.getOutputStream(), bufferSize);
+        try {
+            XMLStreamWriter writer = outputFactory.createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.setPrefix("soapenv", soapNamespace);
+            writer.writeStartElement(soapNamespace, "Envelope");
+            writer.writeStartElement(soapNamespace, "Body");
+            handler.handle(reader, writer);
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+            out.flush();
+        } catch (XMLStreamException | UncheckedXMLStreamException e) {
+            failed(response, soapNamespace, true, e);
+        } catch (RuntimeException e) {
+            failed(response, soapNamespace, false, e);
+        }
+    }
+
+    private void failed(HttpServletResponse response, String soapNamespace, boolean client, Exception e) throws IOException {
+        if (response.isCommitted()) {
+            logger.warn("streaming SOAP response aborted after it was committed", e);
+            throw new IOException("streaming SOAP response aborted", e);
+        }
+        //尚未提交：丢弃已缓冲的部分响应，改为返回 Fault
+        response.reset();
+        if (!client) {
+            logger.error("streaming SOAP endpoint failed", e);
+        }
+        writeFault(response, soapNamespace, client, client ? e.getMessage() : "internal error");
+    }
+
+    private void writeFault(HttpServletResponse response, String soapNamespace, boolean client, String message) throws IOException {
+        response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        response.setContentType(contentType(soapNamespace));
+        try {
+            XMLStreamWriter writer = outputFactory.createXMLStreamWriter(response.getOutputStream(), "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.setPrefix("soapenv", soapNamespace);
+            writer.writeStartElement(soapNamespace, "Envelope");
+            writer.writeStartElement(soapNamespace, "Body");
+            writer.writeStartElement(soapNamespace, "Fault");
+            String text = String.valueOf(message);
+            if (SOAP_12.equals(soapNamespace)) {
+                writer.writeStartElement(soapNamespace, "Code");
+                StaxElements.writeLeaf(writer, soapNamespace, "Value", "soapenv:" + (client ? "Sender" : "Receiver"));
+                writer.writeEndElement();
+                writer.writeStartElement(soapNamespace, "Reason");
+                writer.writeStartElement(soapNamespace, "Text");
+                writer.writeAttribute(XMLConstants.XML_NS_URI, "lang", "en");
+                writer.writeCharacters(text);
+                writer.writeEndElement();
+                writer.writeEndElement();
+            } else {
+                StaxElements.writeLeaf(writer, "", "faultcode", "soapenv:" + (client ? "Client" : "Server"));
+                StaxElements.writeLeaf(writer, "", "faultstring", text);
+            }
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static boolean isSoapElement(XMLStreamReader reader, String soapNamespace, String localName) {
+        return reader.isStartElement() && soapNamespace.equals(reader.getNamespaceURI()) && localName.equals(reader.getLocalName());
+    }
+
+    private static String contentType(String soapNamespace) {
+        return SOAP_12.equals(soapNamespace) ? "application/soap+xml;charset=UTF-8" : "text/xml;charset=UTF-8";
+    }
+
+    private static void close(XMLStreamReader reader) {
+        try {
+            reader.close();
+        } catch (XMLStreamException ignored) {
+            //关闭 reader 不会关闭底层输入流，失败时无需处理
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.wangrong.learn.ws;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * 在 Stream 的 lambda 中抛出 XMLStreamException 时使用，与 UncheckedIOException 相同的用途
+ */
+public class UncheckedXMLStreamException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedXMLStreamException(XMLStreamException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized XMLStreamException getCause() {
+        return (XMLStreamException) super.getCause();
+    }
+}
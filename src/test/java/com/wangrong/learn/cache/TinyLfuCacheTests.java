@@ -0,0 +1,221 @@
+package com.wangrong.learn.cache;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class TinyLfuCacheTests {
+
+    @Test
+    public void sizeIsBounded() {
+        TinyLfuCache<Integer, Integer> cache = TinyLfuCache.builder("test").maximumSize(100).build();
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, i);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(9_900, cache.evictionCount());
+    }
+
+    @Test
+    public void frequentKeysSurviveScan() {
+        TinyLfuCache<Integer, Integer> cache = TinyLfuCache.builder("test").maximumSize(100).build();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.get(i, k -> k);
+            }
+        }
+        //热点持续被访问的同时扫描大量只出现一次的 key，LRU 在每两次热点访问之间就会把热点全部挤出
+        for (int i = 1000; i < 11_000; i++) {
+            cache.get(i, k -> k);
+            if (i % 200 == 0) {
+                for (int hot = 0; hot < 50; hot++) {
+                    cache.get(hot, k -> k);
+                }
+            }
+        }
+        int retained = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.getIfPresent(i) != null) {
+                retained++;
+            }
+        }
+        assertEquals(50, retained);
+    }
+
+    @Test
+    public void frequentKeysSurviveConcurrentScan() throws Exception {
+        TinyLfuCache<Integer, Integer> cache = TinyLfuCache.builder("test").maximumSize(100).build();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.get(i, k -> k);
+            }
+        }
+        //多个线程在扫描期间同时读热点，淘汰锁经常被占用，这些读仍要计入频率
+        AtomicBoolean scanning = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 7; t++) {
+                readers.add(executor.submit(() -> {
+                    while (scanning.get()) {
+                        for (int hot = 0; hot < 50; hot++) {
+                            cache.get(hot, k -> k);
+                        }
+                    }
+                }));
+            }
+            for (int i = 1000; i < 21_000; i++) {
+                cache.get(i, k -> k);
+                if (i % 200 == 0) {
+                    Thread.yield();
+                }
+            }
+            scanning.set(false);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        int retained = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.getIfPresent(i) != null) {
+                retained++;
+            }
+        }
+        assertEquals(50, retained);
+    }
+
+    @Test
+    public void invalidateDuringLoadIsNotOverwritten() throws Exception {
+        TinyLfuCache<String, Integer> cache = TinyLfuCache.builder("test").build();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> stale = executor.submit(() -> cache.get("a", k -> {
+                loading.countDown();
+                await(release);
+                return 1;
+            }));
+            loading.await();
+            cache.invalidate("a");
+            release.countDown();
+            //开始加载的调用方拿到自己的结果，但旧值不写回缓存
+            assertEquals(1, (int) stale.get());
+            assertNull(cache.getIfPresent("a"));
+            assertEquals(2, (int) cache.get("a", k -> 2));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void expireAfterWrite() {
+        AtomicLong now = new AtomicLong();
+        AtomicInteger loads = new AtomicInteger();
+        TinyLfuCache<String, Integer> cache = TinyLfuCache.builder("test")
+                .expireAfterWrite(Duration.ofSeconds(10))
+                .ticker(now::get)
+                .build();
+        assertEquals(1, (int) cache.get("a", k -> loads.incrementAndGet()));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(9));
+        assertEquals(1, (int) cache.get("a", k -> loads.incrementAndGet()));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertNull(cache.getIfPresent("a"));
+        assertEquals(2, (int) cache.get("a", k -> loads.incrementAndGet()));
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    public void staleWhileRevalidate() {
+        AtomicLong now = new AtomicLong();
+        AtomicInteger loads = new AtomicInteger();
+        List<Runnable> refreshes = new ArrayList<>();
+        TinyLfuCache<String, Integer> cache = TinyLfuCache.builder("test")
+                .expireAfterWrite(Duration.ofSeconds(10))
+                .staleWhileRevalidate(Duration.ofSeconds(5))
+                .ticker(now::get)
+                .refreshExecutor(refreshes::add)
+                .build();
+        cache.get("a", k -> loads.incrementAndGet());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(12));
+        //过期但在 stale 窗口内：返回旧值，只提交一次刷新
+        assertEquals(1, (int) cache.get("a", k -> loads.incrementAndGet()));
+        assertEquals(1, (int) cache.get("a", k -> loads.incrementAndGet()));
+        assertEquals(1, refreshes.size());
+        assertEquals(2, cache.staleHitCount());
+        refreshes.get(0).run();
+        assertEquals(2, (int) cache.get("a", k -> loads.incrementAndGet()));
+
+        //超出 stale 窗口后同步加载
+        now.addAndGet(TimeUnit.SECONDS.toNanos(20));
+        assertEquals(3, (int) cache.get("a", k -> loads.incrementAndGet()));
+        assertEquals(1, refreshes.size());
+    }
+
+    @Test
+    public void concurrentMissesLoadOnce() throws Exception {
+        TinyLfuCache<String, Integer> cache = TinyLfuCache.builder("test").build();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.get("a", k -> {
+                loading.countDown();
+                await(release);
+                return loads.incrementAndGet();
+            })));
+            loading.await();
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> cache.get("a", k -> loads.incrementAndGet())));
+            }
+            Thread.sleep(50);
+            release.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(1, (int) result.get());
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedLoadIsNotCached() {
+        TinyLfuCache<String, Integer> cache = TinyLfuCache.builder("test").build();
+        try {
+            cache.get("a", k -> {
+                throw new IllegalStateException("boom");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        assertEquals(1, cache.loadFailureCount());
+        assertEquals(2, (int) cache.get("a", k -> 2));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.wangrong.learn.datasource;
+
+import com.wangrong.learn.person.Person;
+import com.wangrong.learn.person.PersonMapper;
+import com.wangrong.learn.person.PersonRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "learn.datasource.replica.enabled=true",
+        "learn.datasource.replica.url=" + ReadReplicaRoutingTests.REPLICA_URL,
+        "learn.datasource.replica.username=sa"})
+@ActiveProfiles("test")
+public class ReadReplicaRoutingTests {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private PersonMapper personMapper;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private DataSourceEndpoint dataSourceEndpoint;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate.update("DELETE FROM person");
+        jdbcTemplate.update("INSERT INTO person (name, age) VALUES ('primary1', 1), ('primary2', 2), ('primary3', 3)");
+        //副本不做 schema 初始化，这里直接建表写入不同的数据，以便区分查询落在哪个库
+        JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+        replica.execute("CREATE TABLE IF NOT EXISTS person (id BIGINT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(64) NOT NULL, age INT NOT NULL)");
+        replica.update("DELETE FROM person");
+        replica.update("INSERT INTO person (name, age) VALUES ('replica1', 1), ('replica2', 2)");
+    }
+
+    @Test
+    public void routesReadOnlyQueriesToReplica() {
+        assertEquals(3, personMapper.findAll().size());
+        try (Stream<Person> persons = personRepository.streamAll()) {
+            assertEquals(Arrays.asList("replica1", "replica2"), persons.map(Person::getName).collect(Collectors.toList()));
+        }
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        assertEquals(2, (long) readOnly.execute(status -> personMapper.count()));
+        //标记只对取连接时的线程有效
+        assertEquals(3, personMapper.count());
+    }
+
+    @Test
+    public void publishesPoolAndStatementMetrics() {
+        personMapper.findAll();
+        try (Stream<Person> persons = personRepository.streamAll()) {
+            assertEquals(2, persons.count());
+        }
+        Timer findAll = meterRegistry.find(StatementMetricsInterceptor.METRIC)
+                .tags("statement", PersonMapper.class.getName() + ".findAll", "command", "select", "exception", "None")
+                .timer();
+        assertNotNull(findAll);
+        assertTrue(findAll.count() >= 1);
+        assertNotNull(meterRegistry.find("hikaricp.connections.acquire").tag("pool", "primary").timer());
+        assertNotNull(meterRegistry.find("hikaricp.connections.acquire").tag("pool", "replica").timer());
+
+        Map<String, Object> summary = dataSourceEndpoint.datasource();
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> pools = (Map<String, Map<String, Object>>) summary.get("pools");
+        assertEquals(Arrays.asList("primary", "replica"), pools.keySet().stream().sorted().collect(Collectors.toList()));
+        assertTrue(pools.get("replica").containsKey("acquire"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> statements = (List<Map<String, Object>>) summary.get("statements");
+        assertTrue(statements.stream().anyMatch(s -> s.get("statement").equals(PersonMapper.class.getName() + ".scanAll")));
+        assertTrue(statements.get(0).containsKey("p99Ms"));
+    }
+}
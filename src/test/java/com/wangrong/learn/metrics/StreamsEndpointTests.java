@@ -0,0 +1,88 @@
+package com.wangrong.learn.metrics;
+
+import com.wangrong.stream.instrument.InstrumentedStream;
+import com.wangrong.stream.instrument.StreamMetricsRegistry;
+import com.wangrong.stream.parallel.AdaptiveExecutor;
+import com.wangrong.stream.parallel.ParallelStreamExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class StreamsEndpointTests {
+
+    @Autowired
+    private StreamMetricsRegistry streamMetricsRegistry;
+
+    @Autowired
+    private AdaptiveExecutor adaptiveExecutor;
+
+    @Autowired
+    private ParallelStreamExecutor parallelStreamExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void exportsStageMetrics() {
+        long count = InstrumentedStream.of(streamMetricsRegistry, "test", IntStream.range(0, 1000).boxed())
+                .filter("even", i -> i % 2 == 0)
+                .stream()
+                .count();
+        assertEquals(500, count);
+
+        assertEquals(1000, meterRegistry.get("stream.stage.input").tag("pipeline", "test").tag("stage", "even")
+                .functionCounter().count(), 0);
+        assertEquals(0.5, meterRegistry.get("stream.stage.selectivity").tag("stage", "even").gauge().value(), 1e-9);
+
+        Map<?, ?> body = restTemplate.getForObject("/actuator/streams", Map.class);
+        Map<?, ?> pipelines = (Map<?, ?>) body.get("pipelines");
+        assertTrue(pipelines.containsKey("test"));
+        String stage = restTemplate.getForObject("/actuator/streams/test", String.class);
+        assertTrue(stage.contains("\"selectivity\":0.5"));
+    }
+
+    @Test
+    public void exportsExecutionPlans() {
+        List<String> persons = Arrays.asList("Max", "Peter", "Pamela", "David");
+        long count = adaptiveExecutor.execute("persons", persons, stream -> stream.filter(name -> name.startsWith("P")).count());
+        assertEquals(2, count);
+
+        assertEquals(1, meterRegistry.get("stream.plan.executions").tag("pipeline", "persons").tag("mode", "sequential")
+                .functionTimer().count(), 0);
+        assertEquals(4, meterRegistry.get("stream.plan.elements").tag("pipeline", "persons").tag("mode", "sequential")
+                .functionCounter().count(), 0);
+
+        String body = restTemplate.getForObject("/actuator/streams", String.class);
+        assertTrue(body, body.contains("\"pipeline\":\"persons\""));
+        assertTrue(body, body.contains("\"reason\":\"small\""));
+    }
+
+    @Test
+    public void exportsPoolMetrics() {
+        double completed = meterRegistry.get("stream.pool.pipelines").tag("pool", "batch").tag("result", "completed")
+                .functionCounter().count();
+        long sum = parallelStreamExecutor.execute("batch", () -> IntStream.range(0, 1000).parallel().asLongStream().sum());
+        assertEquals(999L * 1000 / 2, sum);
+
+        assertEquals(completed + 1, meterRegistry.get("stream.pool.pipelines").tag("pool", "batch").tag("result", "completed")
+                .functionCounter().count(), 0);
+        assertEquals(0, meterRegistry.get("stream.pool.pending").tag("pool", "batch").gauge().value(), 0);
+        assertEquals(2, meterRegistry.get("stream.pool.parallelism").tag("pool", "batch").gauge().value(), 0);
+    }
+}
@@ -0,0 +1,124 @@
+package com.wangrong.learn.person;
+
+import com.wangrong.learn.mybatis.BatchMetrics;
+import com.wangrong.learn.mybatis.BatchingSink;
+import com.wangrong.learn.mybatis.BatchingSinkFactory;
+import com.wangrong.learn.mybatis.BatchingSinkProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class BatchingSinkTests {
+
+    @Autowired
+    private BatchingSinkFactory batchingSinkFactory;
+
+    @Autowired
+    private PersonMapper personMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate.update("DELETE FROM person");
+    }
+
+    @Test
+    public void writesAllRowsInBatches() {
+        BatchingSinkProperties properties = new BatchingSinkProperties();
+        properties.setBatchSize(300);
+        properties.setWriters(2);
+        properties.setQueueCapacity(1);
+        BatchingSink<Person> sink = batchingSinkFactory.create("persons", PersonMapper.class, PersonMapper::insert, properties);
+        try (BatchingSink<Person> s = sink) {
+            IntStream.range(0, 10_000)
+                    .parallel()
+                    .mapToObj(i -> new Person(null, "name" + i, i % 100))
+                    .forEach(s);
+        }
+
+        assertEquals(10_000, personMapper.count());
+        BatchMetrics metrics = sink.metrics();
+        assertEquals(34, metrics.getBatches());
+        assertEquals(10_000, metrics.getRows());
+        assertEquals(0, metrics.getFailedBatches());
+        assertTrue(metrics.getP99Latency() <= metrics.getMaxLatency() * 1.02);
+        assertEquals(34, meterRegistry.get("learn.batching-sink.batch").tag("sink", "persons").timer().count());
+    }
+
+    @Test
+    public void failedBatchIsReported() {
+        BatchingSinkProperties properties = new BatchingSinkProperties();
+        properties.setBatchSize(100);
+        BatchingSink<Person> sink = batchingSinkFactory.create("broken", PersonMapper.class, PersonMapper::insert, properties);
+        try {
+            try (BatchingSink<Person> s = sink) {
+                //name 列最长 64 个字符
+                String tooLong = new String(new char[100]).replace('\0', 'x');
+                IntStream.range(0, 1_000)
+                        .mapToObj(i -> new Person(null, i == 550 ? tooLong : "name" + i, 1))
+                        .forEach(s);
+            }
+            fail("expected the failed batch to be rethrown");
+        } catch (RuntimeException expected) {
+            assertEquals(1, sink.metrics().getFailedBatches());
+        }
+        //失败的批次整体回滚
+        assertEquals(0, personMapper.count() % 100);
+        assertTrue(personMapper.count() <= 900);
+    }
+
+    @Test
+    public void closeReturnsWhenOneWriterFailsWhileOthersAreBusy() throws Exception {
+        BatchingSinkProperties properties = new BatchingSinkProperties();
+        properties.setBatchSize(1);
+        properties.setWriters(3);
+        properties.setQueueCapacity(1);
+        CountDownLatch slowStarted = new CountDownLatch(2);
+        BatchingSink<Person> sink = batchingSinkFactory.create("slow", PersonMapper.class, (PersonMapper mapper, Person person) -> {
+            try {
+                if (person.getName().equals("slow")) {
+                    slowStarted.countDown();
+                    Thread.sleep(1000);
+                } else {
+                    //两个写入线程都在慢批次中时失败，结束标记要等它们写完才能全部放进队列
+                    slowStarted.await();
+                    throw new IllegalStateException("boom");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, properties);
+        Stream.of("slow", "slow", "fail").map(name -> new Person(null, name, 1)).forEach(sink);
+        try {
+            CompletableFuture.runAsync(sink::close).get(10, TimeUnit.SECONDS);
+            fail("expected the failed batch to be rethrown");
+        } catch (ExecutionException e) {
+            assertEquals("boom", e.getCause().getMessage());
+        }
+        assertEquals(2, sink.metrics().getBatches());
+        assertEquals(1, sink.metrics().getFailedBatches());
+    }
+}
@@ -0,0 +1,153 @@
+package com.wangrong.learn.person;
+
+import com.wangrong.learn.cache.ResponseCache;
+import com.wangrong.learn.web.ExecutionMode;
+import com.wangrong.learn.web.RequestExecutor;
+import com.wangrong.learn.web.WebExecutionProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class PersonControllerTests {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private RequestExecutor requestExecutor;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PersonMapper personMapper;
+
+    @Before
+    public void setUp() {
+        responseCache.invalidateAll();
+        jdbcTemplate.update("DELETE FROM person");
+        for (int age = 0; age < 100; age++) {
+            jdbcTemplate.update("INSERT INTO person (name, age) VALUES (?, ?)", "name" + age, age);
+        }
+    }
+
+    @Test
+    public void asyncSummary() {
+        assertEquals(ExecutionMode.ASYNC, requestExecutor.getMode());
+        PersonSummary summary = restTemplate.getForObject("/persons/summary?minAge=50", PersonSummary.class);
+        assertEquals(50, summary.getCount());
+        assertEquals(74.5, summary.getAverageAge(), 1e-9);
+        assertEquals(Integer.valueOf(99), summary.getMaxAge());
+    }
+
+    @Test
+    public void blockingModeRunsOnCallerThread() throws Exception {
+        WebExecutionProperties properties = new WebExecutionProperties();
+        properties.setMode(ExecutionMode.BLOCKING);
+        RequestExecutor blocking = new RequestExecutor(properties);
+        try {
+            CompletableFuture<String> thread = blocking.supply(() -> Thread.currentThread().getName());
+            assertTrue(thread.isDone());
+            assertEquals(Thread.currentThread().getName(), thread.get());
+        } finally {
+            blocking.destroy();
+        }
+    }
+
+    @Test
+    public void restAndSoapShareCacheEntry() {
+        long misses = responseCache.getCache().missCount();
+        PersonSummary summary = restTemplate.getForObject("/persons/summary?minAge=90", PersonSummary.class);
+        assertEquals(10, summary.getCount());
+        assertEquals(misses + 1, responseCache.getCache().missCount());
+
+        //数据变化后 SOAP 请求仍命中 REST 请求写入的条目
+        jdbcTemplate.update("DELETE FROM person");
+        long hits = responseCache.getCache().hitCount();
+        String envelope = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+                + "<soapenv:Body><p:PersonSummaryRequest xmlns:p=\"" + PersonSummaryEndpoint.NAMESPACE + "\">"
+                + "<p:minAge> 90 </p:minAge></p:PersonSummaryRequest></soapenv:Body></soapenv:Envelope>";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.TEXT_XML);
+        String response = restTemplate.postForObject("/services", new HttpEntity<>(envelope, headers), String.class);
+        assertTrue(response, response.contains(">10</"));
+        assertTrue(response, response.contains(">94.5</"));
+        assertEquals(hits + 1, responseCache.getCache().hitCount());
+        assertEquals(misses + 1, responseCache.getCache().missCount());
+    }
+
+    @Test
+    public void soapPayloadCannotPoisonRestEntry() {
+        //其他命名空间的 minAge 不参与查询，查询按 minAge=0 执行，不能写到 minAge=50 的条目下
+        String response = postSoap("<p:PersonSummaryRequest xmlns:p=\"" + PersonSummaryEndpoint.NAMESPACE + "\">"
+                + "<x:minAge xmlns:x=\"urn:other\">50</x:minAge></p:PersonSummaryRequest>");
+        assertTrue(response, response.contains(">100</"));
+        PersonSummary summary = restTemplate.getForObject("/persons/summary?minAge=50", PersonSummary.class);
+        assertEquals(50, summary.getCount());
+
+        //嵌套的 minAge 参与查询，条目也写在 minAge=90 下，不会被 minAge=0 的请求读到
+        response = postSoap("<p:PersonSummaryRequest xmlns:p=\"" + PersonSummaryEndpoint.NAMESPACE + "\">"
+                + "<p:wrapper><p:minAge>90</p:minAge></p:wrapper></p:PersonSummaryRequest>");
+        assertTrue(response, response.contains(">10</"));
+        summary = restTemplate.getForObject("/persons/summary", PersonSummary.class);
+        assertEquals(100, summary.getCount());
+    }
+
+    @Test
+    public void cacheHitDoesNotUseExecutor() throws Exception {
+        restTemplate.getForObject("/persons/summary?minAge=80", PersonSummary.class);
+
+        //执行器已关闭，提交任何任务都会被拒绝
+        WebExecutionProperties properties = new WebExecutionProperties();
+        properties.setMode(ExecutionMode.ASYNC);
+        properties.setVirtualThreads(false);
+        RequestExecutor closed = new RequestExecutor(properties);
+        closed.destroy();
+        PersonController controller = new PersonController(personMapper, closed, responseCache);
+
+        CompletableFuture<PersonSummary> hit = controller.summary(80);
+        assertTrue(hit.isDone());
+        assertEquals(20, hit.get().getCount());
+        try {
+            controller.summary(81);
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+    }
+
+    @Test
+    public void invalidSoapParameterIsClientFault() {
+        String response = postSoap("<p:PersonSummaryRequest xmlns:p=\"" + PersonSummaryEndpoint.NAMESPACE + "\">"
+                + "<p:minAge>fifty</p:minAge></p:PersonSummaryRequest>");
+        assertTrue(response, response.contains(":Client</faultcode>"));
+        assertTrue(response, response.contains("minAge is not an integer: fifty"));
+    }
+
+    private String postSoap(String payload) {
+        String envelope = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+                + "<soapenv:Body>" + payload + "</soapenv:Body></soapenv:Envelope>";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.TEXT_XML);
+        return restTemplate.postForObject("/services", new HttpEntity<>(envelope, headers), String.class);
+    }
+}
@@ -0,0 +1,127 @@
+package com.wangrong.learn.person;
+
+import com.wangrong.learn.mybatis.CursorStreamProperties;
+import com.wangrong.learn.mybatis.CursorStreamTemplate;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class PersonRepositoryTests {
+
+    private static final int ROWS = 10_000;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private PersonMapper personMapper;
+
+    @Autowired
+    private CursorStreamTemplate cursorStreamTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate.update("DELETE FROM person");
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{"name" + i, i % 100});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO person (name, age) VALUES (?, ?)", rows);
+    }
+
+    @Test
+    public void streamsSameRowsAsList() {
+        List<Person> expected = personMapper.findAll();
+        List<Person> actual;
+        try (Stream<Person> persons = cursorStreamTemplate.stream(PersonMapper.class, PersonMapper::scanAll, 128, 1)) {
+            actual = persons.collect(Collectors.toList());
+        }
+        assertEquals(ROWS, actual.size());
+        assertEquals(expected, actual);
+
+        try (Stream<Person> adults = personRepository.streamByMinAge(18)) {
+            assertEquals(expected.stream().filter(p -> p.getAge() >= 18).count(), adults.count());
+        }
+    }
+
+    @Test
+    public void closingEarlyStopsPrefetch() {
+        for (int i = 0; i < 20; i++) {
+            try (Stream<Person> persons = cursorStreamTemplate.stream(PersonMapper.class, PersonMapper::scanAll, 16, 1)) {
+                assertEquals(5, persons.limit(5).count());
+            }
+        }
+        //连接都已归还，仍然可以正常查询
+        try (Stream<Person> persons = personRepository.streamAll()) {
+            assertEquals(ROWS, persons.count());
+        }
+    }
+
+    @Test
+    public void abandonedStreamReleasesConnection() throws InterruptedException {
+        CursorStreamProperties properties = new CursorStreamProperties();
+        properties.setIdleTimeout(Duration.ofMillis(200));
+        CursorStreamTemplate template = new CursorStreamTemplate(sqlSessionFactory, properties);
+        try {
+            //读了一半、没有关闭的流
+            Stream<Person> persons = template.stream(PersonMapper.class, PersonMapper::scanAll, 16, 1);
+            Iterator<Person> iterator = persons.iterator();
+            assertNotNull(iterator.next());
+            Thread.sleep(1000);
+            try {
+                while (iterator.hasNext()) {
+                    iterator.next();
+                }
+                fail("expected the abandoned prefetch to be reported");
+            } catch (IllegalStateException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().contains("not consumed"));
+            }
+            persons.close();
+        } finally {
+            template.destroy();
+        }
+    }
+
+    @Test
+    public void streamsOnCallingThreadInsideTransaction() {
+        Long count = new TransactionTemplate(transactionManager).execute(status -> {
+            //未提交的行只有事务自己的连接能看到
+            jdbcTemplate.update("INSERT INTO person (name, age) VALUES (?, ?)", "uncommitted", 1);
+            try (Stream<Person> persons = cursorStreamTemplate.stream(PersonMapper.class, PersonMapper::scanAll, 16, 1)) {
+                assertEquals(ROWS + 1, persons.count());
+            }
+            //关闭流不会关闭事务的连接
+            return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person", Long.class);
+        });
+        assertEquals(Long.valueOf(ROWS + 1), count);
+    }
+}
@@ -0,0 +1,74 @@
+package com.wangrong.learn.startup;
+
+import com.wangrong.learn.LearnApplication;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.condition.ConditionEvaluationReport;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.env.SystemEnvironmentPropertySource;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * 启动预算：lazy profile 下从 SpringApplication.run 开始到 ApplicationReadyEvent 的时间
+ * 预算可以用 -Dstartup.budget.ms 调整，默认值留有约 3 倍余量，只用来发现明显的退化（比如有 bean 又被立即创建）。
+ */
+public class StartupBudgetTests {
+
+    private static final long BUDGET_MILLIS = Long.getLong("startup.budget.ms", 15_000);
+
+    @Test
+    public void lazyStartupWithinBudget() {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(LearnApplication.class)
+                .profiles("test", "lazy")
+                .properties("server.port=0")
+                .run()) {
+            StartupTimings timings = context.getBean(StartupTimings.class);
+            assertTrue(timings.isCompleted());
+            assertTrue(timings.getPhases().keySet().containsAll(java.util.Arrays.asList("environment", "context", "refresh", "runners")));
+            assertTrue(timings.getBeanCount() > 0);
+            assertTrue(timings.report(10), timings.getTotalMillis() < BUDGET_MILLIS);
+
+            //控制器只在第一次请求时创建，启动完成后创建的 bean 不再记录
+            int beans = timings.getBeanCount();
+            assertFalse(context.getBeanFactory().containsSingleton("personController"));
+            assertNotNull(context.getBean(com.wangrong.learn.person.PersonController.class));
+            assertEquals(beans, timings.getBeanCount());
+
+            //没有 azure.* 配置时，Azure 自动配置在导入阶段被过滤
+            ConditionEvaluationReport report = ConditionEvaluationReport.get(context.getBeanFactory());
+            String storage = "com.microsoft.azure.spring.autoconfigure.storage.StorageAutoConfiguration";
+            assertFalse(report.getConditionAndOutcomesBySource().get(storage).isFullMatch());
+        }
+    }
+
+    @Test
+    public void azureAutoConfigurationKeptWhenConfigured() {
+        String[] candidates = {
+                "com.microsoft.azure.spring.autoconfigure.storage.StorageAutoConfiguration",
+                "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration"};
+        AzureAutoConfigurationFilter filter = new AzureAutoConfigurationFilter();
+
+        filter.setEnvironment(new MockEnvironment());
+        assertArrayEquals(new boolean[]{false, true}, filter.match(candidates, null));
+
+        filter.setEnvironment(new MockEnvironment().withProperty("azure.storage.account-name", "learn"));
+        assertArrayEquals(new boolean[]{true, true}, filter.match(candidates, null));
+
+        //环境变量按宽松绑定映射为 azure.storage.account-name
+        MockEnvironment environment = new MockEnvironment();
+        environment.getPropertySources().addFirst(new SystemEnvironmentPropertySource(
+                StandardEnvironment.SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME,
+                Collections.singletonMap("AZURE_STORAGE_ACCOUNT_NAME", "learn")));
+        filter.setEnvironment(environment);
+        assertArrayEquals(new boolean[]{true, true}, filter.match(candidates, null));
+
+        //名字只是以 azure 开头的属性不算
+        filter.setEnvironment(new MockEnvironment().withProperty("azurex.enabled", "true"));
+        assertArrayEquals(new boolean[]{false, true}, filter.match(candidates, null));
+    }
+}
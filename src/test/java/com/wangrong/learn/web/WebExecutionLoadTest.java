@@ -0,0 +1,189 @@
+package com.wangrong.learn.web;
+
+import com.wangrong.learn.LearnApplication;
+import com.wangrong.stream.statistics.QuantileSketch;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.Assume;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 阻塞模式与异步模式的压测对比
+ * 数据库用 H2 + 一个给每次查询增加固定延迟的 MyBatis 插件模拟（stub DB），延迟加在拿到 Hikari 连接之后，
+ * 连接池的大小限制与真实数据库一样生效。分别以两种模式启动应用，用同样的并发客户端请求 /persons/summary，
+ * 输出吞吐量和 p50/p99 延迟。两种模式同时处理的请求数相同：阻塞模式为 Tomcat 线程数，
+ * 异步模式的 max-concurrency 也设为这个值，比较的只是执行方式。平台线程池把超出的请求放进队列；
+ * 虚拟线程模式（JDK 21+）超出上限时直接拒绝，被拒绝的请求计入 errors。
+ *
+ * 默认跳过，运行：
+ * mvn test -Dtest=WebExecutionLoadTest -Dloadtest=true [-Dloadtest.concurrency=400 -Dloadtest.latency=50 -Dloadtest.seconds=10
+ *     -Dloadtest.tomcat-threads=200 -Dloadtest.pool-size=10]
+ */
+public class WebExecutionLoadTest {
+
+    private final int concurrency = Integer.getInteger("loadtest.concurrency", 400);
+
+    private final int latencyMillis = Integer.getInteger("loadtest.latency", 50);
+
+    private final int seconds = Integer.getInteger("loadtest.seconds", 10);
+
+    /**
+     * Tomcat 的线程数，也是异步模式同时执行的请求数
+     */
+    private final int tomcatThreads = Integer.getInteger("loadtest.tomcat-threads", 200);
+
+    /**
+     * Hikari 连接池大小
+     */
+    private final int poolSize = Integer.getInteger("loadtest.pool-size", 10);
+
+    @Test
+    public void compareModes() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("loadtest"));
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%-10s %-8s %10s %10s %10s %10s %8s", "mode", "virtual", "requests", "req/s", "p50(ms)", "p99(ms)", "errors"));
+        report.add(run(ExecutionMode.BLOCKING, false));
+        report.add(run(ExecutionMode.ASYNC, false));
+        ExecutorService virtualThreads = RequestExecutor.newVirtualThreadExecutor();
+        if (virtualThreads != null) {
+            virtualThreads.shutdown();
+            report.add(run(ExecutionMode.ASYNC, true));
+        }
+        report.forEach(System.out::println);
+    }
+
+    private String run(ExecutionMode mode, boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(LearnApplication.class)
+                .profiles("test")
+                .properties("server.port=0",
+                        "server.tomcat.max-threads=" + tomcatThreads,
+                        "server.tomcat.max-connections=10000",
+                        "server.tomcat.accept-count=10000",
+                        "learn.web.execution.mode=" + mode.name().toLowerCase(),
+                        "learn.web.execution.virtual-threads=" + virtualThreads,
+                        "learn.web.execution.max-concurrency=" + tomcatThreads,
+                        "learn.web.execution.queue-capacity=" + concurrency * 2,
+                        "spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                        //比较的是执行方式，每个请求都要查询数据库
+                        "learn.cache.enabled=false")
+                .initializers(ctx -> ctx.getBeanFactory().registerSingleton("stubDatabaseLatency", new StubDatabaseLatency(latencyMillis)))
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            boolean virtual = context.getBean(RequestExecutor.class).isVirtual();
+            URL url = new URL("http://localhost:" + port + "/persons/summary?minAge=18");
+            //预热
+            load(url, Math.min(concurrency, 50), TimeUnit.SECONDS.toNanos(2));
+            Result result = load(url, concurrency, TimeUnit.SECONDS.toNanos(seconds));
+            return String.format("%-10s %-8s %10d %10.1f %10.1f %10.1f %8d", mode, mode == ExecutionMode.ASYNC && virtual,
+                    result.requests, result.requests * 1e9 / result.nanos,
+                    result.latencies.quantile(0.5), result.latencies.quantile(0.99), result.errors);
+        }
+    }
+
+    private Result load(URL url, int clients, long durationNanos) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        long deadline = start + durationNanos;
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            futures.add(pool.submit(() -> {
+                Result result = new Result();
+                byte[] buffer = new byte[1024];
+                while (System.nanoTime() < deadline) {
+                    long begin = System.nanoTime();
+                    try {
+                        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                        int status = connection.getResponseCode();
+                        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                            while (in != null && in.read(buffer) >= 0) {
+                                //读完响应以便复用连接
+                            }
+                        }
+                        if (status != 200) {
+                            result.errors++;
+                            continue;
+                        }
+                    } catch (IOException e) {
+                        result.errors++;
+                        continue;
+                    }
+                    result.requests++;
+                    result.latencies.accept((System.nanoTime() - begin) / 1_000_000.0);
+                }
+                return result;
+            }));
+        }
+        Result total = new Result();
+        for (Future<Result> future : futures) {
+            Result result = future.get();
+            total.requests += result.requests;
+            total.errors += result.errors;
+            total.latencies.merge(result.latencies);
+        }
+        total.nanos = System.nanoTime() - start;
+        pool.shutdown();
+        return total;
+    }
+
+    private static final class Result {
+
+        long requests;
+
+        long errors;
+
+        long nanos;
+
+        final QuantileSketch latencies = new QuantileSketch();
+    }
+
+    /**
+     * 给每次查询增加固定延迟，模拟远程数据库的往返时间
+     * 拦截 StatementHandler.query：此时语句已经在借到的连接上准备好，等待期间一直占用连接
+     */
+    @Intercepts(@Signature(type = StatementHandler.class, method = "query",
+            args = {Statement.class, ResultHandler.class}))
+    static final class StubDatabaseLatency implements Interceptor {
+
+        private final long latencyMillis;
+
+        StubDatabaseLatency(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            Thread.sleep(latencyMillis);
+            return invocation.proceed();
+        }
+
+        @Override
+        public Object plugin(Object target) {
+            return Plugin.wrap(target, this);
+        }
+
+        @Override
+        public void setProperties(Properties properties) {
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.wangrong.learn.ws;
+
+import com.wangrong.learn.person.PersonSummaryEndpoint;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * 记录数可以用 -Dsoap.records 调整，例如 -Dsoap.records=1600000 约为 100MB 的请求
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class StreamingSoapServletTests {
+
+    private static final int RECORDS = Integer.getInteger("soap.records", 100_000);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void streamsLargeRequest() throws Exception {
+        long contentLength = writeRequest(new CountingOutputStream());
+        long expected = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            if (i % 100 >= 50 && i % 3 == 0) {
+                expected++;
+            }
+        }
+
+        //一边发送请求一边读取响应：服务端边读边写，客户端不读响应时双方都会阻塞在 socket 上
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Socket socket = new Socket("localhost", port)) {
+            Future<Long> sent = executor.submit(() -> {
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+                out.write(("POST /services/stream HTTP/1.0\r\n"
+                        + "Content-Type: text/xml;charset=UTF-8\r\n"
+                        + "Content-Length: " + contentLength + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                long written = writeRequest(out);
+                out.flush();
+                return written;
+            });
+            InputStream in = new BufferedInputStream(socket.getInputStream(), 1 << 16);
+            String statusLine = readLine(in);
+            assertTrue(statusLine, statusLine.contains(" 200 "));
+            while (!readLine(in).isEmpty()) {
+                //跳过响应头
+            }
+            XMLStreamReader reader = StaxElements.newInputFactory().createXMLStreamReader(in);
+            long persons = 0;
+            long count = -1;
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    if ("person".equals(reader.getLocalName())) {
+                        persons++;
+                    } else if ("count".equals(reader.getLocalName())) {
+                        count = Long.parseLong(reader.getElementText());
+                    }
+                }
+            }
+            assertEquals(contentLength, (long) sent.get());
+            assertEquals(expected, persons);
+            assertEquals(expected, count);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void unknownPayloadIsClientFault() {
+        ResponseEntity<String> response = post("<p:Unknown xmlns:p=\"" + PersonSummaryEndpoint.NAMESPACE + "\"/>");
+        assertEquals(500, response.getStatusCodeValue());
+        assertTrue(response.getBody(), response.getBody().contains("Client"));
+        assertTrue(response.getBody(), response.getBody().contains("no endpoint for"));
+    }
+
+    @Test
+    public void malformedRecordIsClientFault() {
+        ResponseEntity<String> response = post("<p:PersonFilterRequest xmlns:p=\"" + PersonSummaryEndpoint.NAMESPACE + "\">"
+                + "<p:person><p:name>Andy</p:name><p:age>23</p:age></p:person>"
+                + "<p:person><p:name>Bob</p:name><p:age>x</p:age></p:person>"
+                + "</p:PersonFilterRequest>");
+        assertEquals(500, response.getStatusCodeValue());
+        assertTrue(response.getBody(), response.getBody().contains("invalid number: x"));
+        assertFalse(response.getBody(), response.getBody().contains("Andy"));
+    }
+
+    @Test
+    public void soap12() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/soap+xml;charset=UTF-8"));
+        String envelope = "<env:Envelope xmlns:env=\"" + StreamingSoapServlet.SOAP_12 + "\"><env:Header/><env:Body>"
+                + "<PersonFilterRequest xmlns=\"" + PersonSummaryEndpoint.NAMESPACE + "\"><namePrefix>A</namePrefix>"
+                + "<person><name>Andy</name><age>23</age></person><person><name>Bob</name><age>30</age></person>"
+                + "</PersonFilterRequest></env:Body></env:Envelope>";
+        ResponseEntity<String> response = restTemplate.postForEntity("/services/stream", new HttpEntity<>(envelope, headers), String.class);
+        assertEquals(200, response.getStatusCodeValue());
+        assertTrue(response.getBody(), response.getBody().contains(StreamingSoapServlet.SOAP_12));
+        assertTrue(response.getBody(), response.getBody().contains("Andy"));
+        assertFalse(response.getBody(), response.getBody().contains("Bob"));
+        assertTrue(response.getBody(), response.getBody().matches("(?s).*<([a-z0-9]+:)?count>1</.*"));
+    }
+
+    private ResponseEntity<String> post(String payload) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.TEXT_XML);
+        String envelope = "<soapenv:Envelope xmlns:soapenv=\"" + StreamingSoapServlet.SOAP_11 + "\"><soapenv:Body>"
+                + payload + "</soapenv:Body></soapenv:Envelope>";
+        return restTemplate.postForEntity("/services/stream", new HttpEntity<>(envelope, headers), String.class);
+    }
+
+    /**
+     * 逐条生成请求，不在内存中拼接整个消息；年龄为 i % 100，每 3 条中有 1 条以 A 开头
+     */
+    private static long writeRequest(OutputStream target) throws IOException {
+        CountingOutputStream out = target instanceof CountingOutputStream ? (CountingOutputStream) target : new CountingOutputStream(target);
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        QName request = new QName(PersonSummaryEndpoint.NAMESPACE, "PersonFilterRequest");
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?><soapenv:Envelope xmlns:soapenv=\"" + StreamingSoapServlet.SOAP_11
+                + "\"><soapenv:Body><" + request.getLocalPart() + " xmlns=\"" + request.getNamespaceURI() + "\">"
+                + "<minAge>50</minAge><namePrefix>A</namePrefix>");
+        for (int i = 0; i < RECORDS; i++) {
+            writer.write("<person><name>" + (i % 3 == 0 ? "A" : "B") + i + "</name><age>" + i % 100 + "</age></person>");
+        }
+        writer.write("</" + request.getLocalPart() + "></soapenv:Body></soapenv:Envelope>");
+        writer.flush();
+        return out.count;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        long count;
+
+        CountingOutputStream() {
+            this(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+            });
+        }
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
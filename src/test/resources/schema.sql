@@ -0,0 +1,5 @@
+CREATE TABLE IF NOT EXISTS person (
+    id   BIGINT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(64) NOT NULL,
+    age  INT         NOT NULL
+);
@@ -0,0 +1,74 @@
+package com.wangrong.stream;
+
+import com.wangrong.stream.parallel.AdaptiveExecutor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * AdaptiveExecutor 的决定是否正确：在 元素数 × 每个元素的计算量 的矩阵上对比串行、并行与自动选择
+ * 每组参数结束时打印 AdaptiveExecutor 的最近一次决定，adaptive 的耗时应当接近 sequential 与 parallel 中较快的一个。
+ * work 为每个元素 Blackhole.consumeCPU 的令牌数，0 即只做求和。
+ * 只有一个 CPU 的机器上公共池的并行度为 1，AdaptiveExecutor 总是串行（single-thread）。
+ *
+ * 运行：java -jar target/benchmarks.jar AdaptiveExecutionBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AdaptiveExecutionBenchmark {
+
+    @Param({"4", "1000", "100000", "1000000"})
+    int size;
+
+    @Param({"0", "100"})
+    int work;
+
+    List<Person> persons;
+
+    AdaptiveExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        persons = BenchmarkData.persons(size);
+        executor = AdaptiveExecutor.builder().build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        //只有 adaptive 基准会产生决定
+        if (executor.metrics("ages") != null) {
+            System.out.println();
+            System.out.println("size=" + size + ", work=" + work + ": " + executor.metrics("ages"));
+        }
+    }
+
+    private long ages(Stream<Person> stream) {
+        int tokens = work;
+        return stream.mapToLong(p -> {
+            Blackhole.consumeCPU(tokens);
+            return p.age;
+        }).sum();
+    }
+
+    @Benchmark
+    public long sequential() {
+        return ages(persons.stream());
+    }
+
+    @Benchmark
+    public long parallel() {
+        return ages(persons.parallelStream());
+    }
+
+    @Benchmark
+    public long adaptive() {
+        return executor.execute("ages", persons, this::ages);
+    }
+}
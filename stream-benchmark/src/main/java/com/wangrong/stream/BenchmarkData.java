@@ -0,0 +1,64 @@
+package com.wangrong.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 基准测试数据生成
+ * 与 stream 模块中的 Person/Foo/Bar 同包，以便直接使用这些包级可见的类。
+ * 使用固定种子，保证每次运行的数据完全一致，结果可与基线比较。
+ */
+public final class BenchmarkData {
+
+    private static final long SEED = 20190423L;
+
+    private static final String[] PREFIXES = {"a", "b", "c"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 形如 howToWork() 中 "a1"、"b2"、"c1" 的字符串，约三分之一以 c 开头
+     */
+    public static List<String> codes(int size) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<String> codes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            codes.add(PREFIXES[random.nextInt(PREFIXES.length)] + random.nextInt(size));
+        }
+        return codes;
+    }
+
+    /**
+     * 年龄分布在 [0, 100)，人名从 size/4 个不同的名字中抽取，因此存在重复
+     */
+    public static List<Person> persons(int size) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        int distinctNames = Math.max(1, size / 4);
+        String[] names = new String[distinctNames];
+        for (int i = 0; i < distinctNames; i++) {
+            names[i] = (i % 2 == 0 ? "A" : "B") + "name" + i;
+        }
+        List<Person> persons = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            persons.add(new Person(names[random.nextInt(distinctNames)], random.nextInt(100)));
+        }
+        return persons;
+    }
+
+    /**
+     * flatMap() 中的 Foo -> Bar 结构，共 parents * children 个 Bar
+     */
+    public static List<Foo> foos(int parents, int children) {
+        List<Foo> foos = new ArrayList<>(parents);
+        for (int i = 0; i < parents; i++) {
+            Foo foo = new Foo("Foo" + i);
+            for (int j = 0; j < children; j++) {
+                foo.bars.add(new Bar("Bar" + j + " <- " + foo.name));
+            }
+            foos.add(foo);
+        }
+        return foos;
+    }
+}
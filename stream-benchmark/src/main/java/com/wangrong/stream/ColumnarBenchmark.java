@@ -0,0 +1,61 @@
+package com.wangrong.stream;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * List<Person> 对象流与 PersonTable 列式扫描的吞吐量对比
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ColumnarBenchmark {
+
+    @Param({"1000000", "10000000"})
+    int size;
+
+    List<Person> persons;
+
+    PersonTable table;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        persons = BenchmarkData.persons(size);
+        table = PersonTable.of(persons);
+    }
+
+    @Benchmark
+    public double objectAverageAge() {
+        return persons.stream().collect(Collectors.averagingInt(p -> p.age));
+    }
+
+    @Benchmark
+    public double columnarAverageAge() {
+        return table.select().averageAge();
+    }
+
+    /**
+     * filter -> group-by -> aggregate
+     */
+    @Benchmark
+    public Map<Integer, Long> objectFilterCountByAge() {
+        return persons.stream()
+                .filter(p -> p.name.startsWith("A") && p.age >= 18)
+                .collect(Collectors.groupingBy(p -> p.age, Collectors.counting()));
+    }
+
+    @Benchmark
+    public Map<Integer, Long> columnarFilterCountByAge() {
+        return table.select()
+                .whereName(name -> name.startsWith("A"))
+                .whereAge(age -> age >= 18)
+                .countByAge();
+    }
+}
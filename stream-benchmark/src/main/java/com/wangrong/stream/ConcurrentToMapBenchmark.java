@@ -0,0 +1,73 @@
+package com.wangrong.stream;
+
+import com.wangrong.stream.collector.StripedMapCollector;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 重复键拼接值的并行 toMap：Collectors.toMap、Collectors.toConcurrentMap 与 StripedMapCollector 在 8~64 个线程下的对比
+ * 并行流在 threads 个线程的 ForkJoinPool 中执行；key=age 只有 100 个键，线程集中写少数几个键，竞争最激烈，
+ * key=name 约有 size/4 个键，竞争分散。toMap 的耗时主要在合并阶段和反复的字符串拼接上。
+ * 这里用 10 万个元素：key=age 时每个键约 1000 个值，toMap 的拼接已接近平方级，规模再大时基准无法在合理时间内完成。
+ *
+ * 运行：java -jar target/benchmarks.jar ConcurrentToMapBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ConcurrentToMapBenchmark {
+
+    @Param({"100000"})
+    int size;
+
+    @Param({"8", "16", "32", "64"})
+    int threads;
+
+    @Param({"age", "name"})
+    String key;
+
+    List<Person> persons;
+
+    ForkJoinPool pool;
+
+    Function<Person, Object> keyMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        persons = BenchmarkData.persons(size);
+        pool = new ForkJoinPool(threads);
+        keyMapper = "age".equals(key) ? p -> p.age : p -> p.name;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Map<Object, String> toMap() {
+        return pool.submit(() -> persons.parallelStream()
+                .collect(Collectors.toMap(keyMapper, p -> p.name, (a, b) -> a + ";" + b))).join();
+    }
+
+    @Benchmark
+    public Map<Object, String> toConcurrentMap() {
+        return pool.submit(() -> persons.parallelStream()
+                .collect(Collectors.toConcurrentMap(keyMapper, p -> p.name, (a, b) -> a + ";" + b))).join();
+    }
+
+    @Benchmark
+    public Map<Object, String> striped() {
+        return pool.submit(() -> persons.parallelStream()
+                .collect(StripedMapCollector.joining(keyMapper, p -> p.name, ";"))).join();
+    }
+}
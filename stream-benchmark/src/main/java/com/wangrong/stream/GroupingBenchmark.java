@@ -0,0 +1,52 @@
+package com.wangrong.stream;
+
+import com.wangrong.stream.collector.IntGroupMap;
+import com.wangrong.stream.collector.IntKeyGroupingCollector;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Collectors.groupingBy(p -> p.age) 与 IntKeyGroupingCollector 的对比
+ * 配合 -prof gc 观察 gc.alloc.rate.norm，后者不产生 Integer 键和 ArrayList 分组。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GroupingBenchmark {
+
+    @Param({"1000", "1000000", "10000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    List<Person> persons;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        persons = BenchmarkData.persons(size);
+    }
+
+    private <T> Stream<T> stream(Collection<T> source) {
+        return parallel ? source.parallelStream() : source.stream();
+    }
+
+    @Benchmark
+    public Map<Integer, List<Person>> groupingBy() {
+        return stream(persons).collect(Collectors.groupingBy(p -> p.age));
+    }
+
+    @Benchmark
+    public IntGroupMap<Person> intKeyGroupingBy() {
+        return stream(persons).collect(IntKeyGroupingCollector.groupingBy(p -> p.age, 128));
+    }
+}
@@ -0,0 +1,68 @@
+package com.wangrong.stream;
+
+import com.wangrong.stream.instrument.InstrumentedStream;
+import com.wangrong.stream.instrument.StreamMetricsRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * InstrumentedStream 的开销：未包装的流、注册表关闭、注册表开启（每 64 个元素抽样计时）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InstrumentedStreamBenchmark {
+
+    @Param({"1000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    List<String> codes;
+
+    StreamMetricsRegistry enabled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        codes = BenchmarkData.codes(size);
+        enabled = new StreamMetricsRegistry(true, 64);
+    }
+
+    private <T> Stream<T> stream(Collection<T> source) {
+        return parallel ? source.parallelStream() : source.stream();
+    }
+
+    @Benchmark
+    public long plain() {
+        return stream(codes)
+                .filter(s -> s.startsWith("c"))
+                .map(String::toUpperCase)
+                .count();
+    }
+
+    @Benchmark
+    public long disabled() {
+        return instrumented(StreamMetricsRegistry.DISABLED);
+    }
+
+    @Benchmark
+    public long enabled() {
+        return instrumented(enabled);
+    }
+
+    private long instrumented(StreamMetricsRegistry registry) {
+        return InstrumentedStream.of(registry, "codes", stream(codes))
+                .filter("startsWithC", s -> s.startsWith("c"))
+                .map("toUpperCase", String::toUpperCase)
+                .stream()
+                .count();
+    }
+}
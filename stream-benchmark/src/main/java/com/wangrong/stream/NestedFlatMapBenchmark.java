@@ -0,0 +1,56 @@
+package com.wangrong.stream;
+
+import com.wangrong.stream.spliterator.NestedSpliterator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * flatMap(foo -> foo.bars.stream()) 与 NestedSpliterator 的对比，100K 个 Foo，每个 100 个 Bar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NestedFlatMapBenchmark {
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    List<Foo> foos;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        foos = BenchmarkData.foos(100_000, 100);
+    }
+
+    @Benchmark
+    public Object[] flatMapToArray() {
+        return (parallel ? foos.parallelStream() : foos.stream())
+                .flatMap(foo -> foo.bars.stream())
+                .toArray();
+    }
+
+    @Benchmark
+    public Object[] nestedToArray() {
+        return NestedSpliterator.stream(foos, foo -> foo.bars, parallel).toArray();
+    }
+
+    @Benchmark
+    public long flatMapFilterCount() {
+        return (parallel ? foos.parallelStream() : foos.stream())
+                .flatMap(foo -> foo.bars.stream())
+                .filter(bar -> bar.name.startsWith("Bar1"))
+                .count();
+    }
+
+    @Benchmark
+    public long nestedFilterCount() {
+        return NestedSpliterator.stream(foos, foo -> foo.bars, parallel)
+                .filter(bar -> bar.name.startsWith("Bar1"))
+                .count();
+    }
+}
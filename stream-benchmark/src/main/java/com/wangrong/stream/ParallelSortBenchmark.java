@@ -0,0 +1,58 @@
+package com.wangrong.stream;
+
+import com.wangrong.stream.sort.ExternalSortCollector;
+import com.wangrong.stream.sort.TopKCollector;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 并行流中 sorted() 与分段排序 + k 路归并、sorted().limit(k) 与按线程的有界堆的对比
+ * 运行：java -jar target/benchmarks.jar ParallelSortBenchmark -p size=10000000
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParallelSortBenchmark {
+
+    @Param({"1000000", "10000000"})
+    int size;
+
+    @Param({"100"})
+    int k;
+
+    List<String> codes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        codes = BenchmarkData.codes(size);
+    }
+
+    @Benchmark
+    public List<String> sorted() {
+        return codes.parallelStream().sorted().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> externalSort() {
+        return codes.parallelStream()
+                .collect(ExternalSortCollector.builder(Comparator.<String>naturalOrder()).build())
+                .toList();
+    }
+
+    @Benchmark
+    public List<String> sortedLimit() {
+        return codes.parallelStream().sorted().limit(k).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> topK() {
+        return codes.parallelStream().collect(TopKCollector.topK(k));
+    }
+}
@@ -0,0 +1,193 @@
+package com.wangrong.stream;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Application 中各个流模式的基准测试
+ * 每个模式在 1K/1M/10M 个元素上分别以串行和并行方式运行，
+ * 结合 -prof gc 可以得到每次操作的分配量（gc.alloc.rate.norm）。
+ *
+ * 运行：java -jar target/benchmarks.jar StreamPatternBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StreamPatternBenchmark {
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    /**
+     * 各数据集放在独立的 State 中，每个基准只初始化自己用到的数据，10M 规模下不会同时占用三份内存
+     */
+    @State(Scope.Benchmark)
+    public static class Codes {
+
+        @Param({"1000", "1000000", "10000000"})
+        int size;
+
+        List<String> codes;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            codes = BenchmarkData.codes(size);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Persons {
+
+        @Param({"1000", "1000000", "10000000"})
+        int size;
+
+        List<Person> persons;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            persons = BenchmarkData.persons(size);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Foos {
+
+        @Param({"1000", "1000000", "10000000"})
+        int size;
+
+        List<Foo> foos;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            foos = BenchmarkData.foos(Math.max(1, size / 10), 10);
+        }
+    }
+
+    private <T> Stream<T> stream(Collection<T> source) {
+        return parallel ? source.parallelStream() : source.stream();
+    }
+
+    /**
+     * howToWork(): filter -> map -> sorted
+     */
+    @Benchmark
+    public List<String> howToWork(Codes data) {
+        return stream(data.codes)
+                .filter(s -> s.startsWith("c"))
+                .map(String::toUpperCase)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * collect(): 过滤后收集为 List
+     */
+    @Benchmark
+    public List<Person> collectToList(Persons data) {
+        return stream(data.persons)
+                .filter(person -> person.name.startsWith("A"))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * collect(): 以年龄为 key 分组
+     */
+    @Benchmark
+    public Map<Integer, List<Person>> collectGroupingBy(Persons data) {
+        return stream(data.persons).collect(Collectors.groupingBy(p -> p.age));
+    }
+
+    /**
+     * collect(): averagingInt 与 summarizingInt 两次遍历
+     */
+    @Benchmark
+    public void collectStatistics(Persons data, Blackhole blackhole) {
+        blackhole.consume(stream(data.persons).collect(Collectors.averagingInt(p -> p.age)));
+        blackhole.consume(stream(data.persons).collect(Collectors.summarizingInt(p -> p.age)));
+    }
+
+    /**
+     * collect(): Collectors.joining
+     */
+    @Benchmark
+    public String collectJoining(Persons data) {
+        return stream(data.persons)
+                .map(person -> person.name)
+                .collect(Collectors.joining(" and "));
+    }
+
+    /**
+     * collect(): toMap 并拼接重复 key 的值
+     * 这里以人名为 key：若以年龄为 key，10M 数据下每个值会被反复拼接成数十万个名字，基准无法在合理时间内完成
+     */
+    @Benchmark
+    public Map<String, String> collectToMap(Persons data) {
+        return stream(data.persons)
+                .collect(Collectors.toMap(
+                        p -> p.name,
+                        p -> String.valueOf(p.age),
+                        (age1, age2) -> age1 + ";" + age2));
+    }
+
+    /**
+     * collect(): 基于 StringJoiner 的自定义收集器
+     */
+    @Benchmark
+    public String collectStringJoiner(Persons data) {
+        Collector<Person, StringJoiner, String> collector =
+                Collector.of(
+                        () -> new StringJoiner("|"),
+                        (j, p) -> j.add(p.name.toUpperCase()),
+                        StringJoiner::merge,
+                        StringJoiner::toString);
+        return stream(data.persons).collect(collector);
+    }
+
+    /**
+     * flatMap(): Foo -> Bar
+     */
+    @Benchmark
+    public long flatMap(Foos data) {
+        return stream(data.foos)
+                .flatMap(foo -> foo.bars.stream())
+                .filter(bar -> bar.name.startsWith("Bar1"))
+                .count();
+    }
+
+    /**
+     * reduce(): 两两比较取年龄最大的人
+     */
+    @Benchmark
+    public Optional<Person> reduceMax(Persons data) {
+        return stream(data.persons).reduce((p1, p2) -> p1.age > p2.age ? p1 : p2);
+    }
+
+    /**
+     * reduce(): 标识值 + 累加器 + 组合器求年龄总和
+     */
+    @Benchmark
+    public Integer reduceSum(Persons data) {
+        return stream(data.persons).reduce(0, (sum, p) -> sum + p.age, Integer::sum);
+    }
+
+    /**
+     * parallel(): filter -> map -> 带比较器的 sorted
+     */
+    @Benchmark
+    public List<String> parallelSorted(Codes data) {
+        return stream(data.codes)
+                .filter(s -> true)
+                .map(String::toUpperCase)
+                .sorted(String::compareTo)
+                .collect(Collectors.toList());
+    }
+}
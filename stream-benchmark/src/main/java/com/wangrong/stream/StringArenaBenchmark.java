@@ -0,0 +1,82 @@
+package com.wangrong.stream;
+
+import com.wangrong.stream.collector.ChunkedJoiningCollector;
+import com.wangrong.stream.columnar.ArenaString;
+import com.wangrong.stream.columnar.StringArena;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 人名为各自独立的 String 与 StringArena 去重后的 ArenaString：分组与连接的对比
+ * 从文件、数据库读出的字符串即使内容相同也是不同的对象，这里用 new String 复制一份模拟；
+ * String 分组时每次哈希命中都要逐字符比较，ArenaString 内容相同即同一实例，只比较引用。
+ * setUp 打印两种表示下人名的大致堆占用（Java 8 的 String 为 24 字节对象头 + char[]）。
+ *
+ * 运行：java -jar target/benchmarks.jar StringArenaBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StringArenaBenchmark {
+
+    @Param({"1000000"})
+    int size;
+
+    List<String> names;
+
+    List<ArenaString> interned;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        names = BenchmarkData.persons(size).stream()
+                .map(person -> new String(person.name))
+                .collect(Collectors.toList());
+        StringArena arena = new StringArena();
+        interned = names.stream().map(arena::intern).collect(Collectors.toList());
+        long stringBytes = names.stream().mapToLong(name -> 24 + align(16 + 2L * name.length())).sum();
+        long arenaBytes = align(16 + arena.byteSize()) + arena.size() * 40L;
+        System.out.println();
+        System.out.println("strings: " + stringBytes + " bytes, arena: " + arenaBytes + " bytes for " + arena.size() + " distinct names");
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) / 8 * 8;
+    }
+
+    @Benchmark
+    public Map<String, Long> groupStrings() {
+        return names.stream().collect(Collectors.groupingBy(name -> name, Collectors.counting()));
+    }
+
+    @Benchmark
+    public Map<ArenaString, Long> groupArena() {
+        return interned.stream().collect(Collectors.groupingBy(name -> name, Collectors.counting()));
+    }
+
+    @Benchmark
+    public String joinStrings() {
+        return names.stream().collect(ChunkedJoiningCollector.joining(","));
+    }
+
+    @Benchmark
+    public String joinArena() {
+        return interned.stream().collect(ChunkedJoiningCollector.joining(","));
+    }
+
+    /**
+     * 写入字符区的开销（每次新建字符区）
+     */
+    @Benchmark
+    public StringArena intern() {
+        StringArena arena = new StringArena();
+        names.forEach(arena::intern);
+        return arena;
+    }
+}
@@ -0,0 +1,213 @@
+package com.wangrong.stream.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准回归检查
+ * 读取 JMH 以 -rf csv 输出的本次结果和已提交的基线，逐项比较：
+ * 1.主指标：平均耗时等越小越好，吞吐量（thrpt）越大越好；
+ * 2.-prof gc 的 gc.alloc.rate.norm：每次操作的分配字节数，越小越好。
+ * 比较的是 99.9% 误差区间而不是分数本身：本次区间中最好的一端比基线区间中最差的一端还差、
+ * 且差距超过基线分数的阈值百分比时才算退化，单核机器或少量迭代带来的抖动不会让门禁随机失败。
+ * 任一项退化时以非零状态退出，使 Maven 构建失败。
+ * 基线中有而本次结果中没有的基准（被删除、改名或没有运行）同样判定失败，避免回归检查悄悄变空；
+ * 基线中不存在的基准（新增的基准）只打印，不参与判定。
+ *
+ * 用法：BenchmarkRegressionCheck baseline.csv result.csv thresholdPercent
+ * -Dbenchmark.update=true 时用本次结果覆盖基线。
+ */
+public class BenchmarkRegressionCheck {
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    /**
+     * 分配量的绝对容差（字节），避免 0 与几个字节之间的抖动被判定为退化
+     */
+    private static final double ALLOC_SLACK_BYTES = 64;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: BenchmarkRegressionCheck <baseline.csv> <result.csv> <thresholdPercent>");
+            System.exit(2);
+        }
+        Path baselinePath = Paths.get(args[0]);
+        Path resultPath = Paths.get(args[1]);
+        double threshold = Double.parseDouble(args[2]);
+
+        if (Boolean.getBoolean("benchmark.update")) {
+            Files.createDirectories(baselinePath.toAbsolutePath().getParent());
+            Files.copy(resultPath, baselinePath, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("baseline updated: " + baselinePath);
+            return;
+        }
+
+        Map<String, Row> baseline = read(baselinePath);
+        Map<String, Row> result = read(resultPath);
+        List<String> regressions = new ArrayList<>();
+        for (Row current : result.values()) {
+            Row base = baseline.get(current.key);
+            if (base == null) {
+                System.out.format("NEW   %s = %.3f +- %.3f %s%n", current.key, current.score, current.error, current.unit);
+                continue;
+            }
+            double change = current.change(base);
+            boolean regressed = change > threshold
+                    && !(current.isAllocation() && current.score - base.score <= ALLOC_SLACK_BYTES);
+            System.out.format("%s %s: %.3f +- %.3f -> %.3f +- %.3f %s (%+.1f%%, beyond error %+.1f%%)%n",
+                    regressed ? "FAIL " : "OK   ", current.key, base.score, base.error, current.score, current.error,
+                    current.unit, current.rawChange(base), change);
+            if (regressed) {
+                regressions.add(current.key);
+            }
+        }
+        List<String> missing = new ArrayList<>();
+        for (String key : baseline.keySet()) {
+            if (!result.containsKey(key)) {
+                System.out.format("MISS  %s%n", key);
+                missing.add(key);
+            }
+        }
+        if (!regressions.isEmpty()) {
+            System.err.format("%d benchmark(s) regressed by more than %.1f%% beyond the error interval: %s%n",
+                    regressions.size(), threshold, regressions);
+        }
+        if (!missing.isEmpty()) {
+            System.err.format("%d baseline benchmark(s) missing from the result: %s%n", missing.size(), missing);
+        }
+        if (!regressions.isEmpty() || !missing.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    static Map<String, Row> read(Path path) throws IOException {
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        Map<String, Row> rows = new LinkedHashMap<>();
+        if (lines.isEmpty()) {
+            return rows;
+        }
+        List<String> header = split(lines.get(0));
+        int benchmark = header.indexOf("Benchmark");
+        int mode = header.indexOf("Mode");
+        int score = header.indexOf("Score");
+        int error = header.indexOf("Score Error (99.9%)");
+        int unit = header.indexOf("Unit");
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            List<String> cells = split(line);
+            String name = cells.get(benchmark);
+            int colon = name.indexOf(':');
+            //只保留主指标与归一化分配量
+            if (colon >= 0 && !name.endsWith(ALLOC_NORM)) {
+                continue;
+            }
+            StringBuilder key = new StringBuilder(colon >= 0 ? name.substring(0, colon) + ":" + ALLOC_NORM : name);
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ")) {
+                    key.append(' ').append(header.get(i).substring(7)).append('=').append(cells.get(i));
+                }
+            }
+            Row row = new Row(key.toString(), cells.get(mode), Double.parseDouble(cells.get(score)),
+                    error >= 0 ? parseError(cells.get(error)) : 0, cells.get(unit));
+            rows.put(row.key, row);
+        }
+        return rows;
+    }
+
+    /**
+     * 只有一个样本时 JMH 输出 NaN，视为没有误差
+     */
+    static double parseError(String cell) {
+        double error = Double.parseDouble(cell);
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    /**
+     * 解析 JMH 输出的 CSV 行，字段可能带双引号
+     */
+    static List<String> split(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    static final class Row {
+
+        final String key;
+
+        final String mode;
+
+        final double score;
+
+        /**
+         * 99.9% 误差区间的半宽
+         */
+        final double error;
+
+        final String unit;
+
+        Row(String key, String mode, double score, double error, String unit) {
+            this.key = key;
+            this.mode = mode;
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+        }
+
+        boolean isAllocation() {
+            return key.contains(ALLOC_NORM);
+        }
+
+        private boolean higherIsBetter() {
+            return !isAllocation() && "thrpt".equals(mode);
+        }
+
+        /**
+         * 分数相对基线的变化百分比，正数表示变差
+         */
+        double rawChange(Row base) {
+            return percentOf(higherIsBetter() ? base.score - score : score - base.score, base.score);
+        }
+
+        /**
+         * 两个误差区间之间的距离相对基线分数的百分比，正数表示本次最好的情况也比基线最差的情况差；
+         * 区间重叠时为负数或 0
+         */
+        double change(Row base) {
+            double gap = higherIsBetter()
+                    ? (base.score - base.error) - (score + error)
+                    : (score - error) - (base.score + base.error);
+            return percentOf(gap, base.score);
+        }
+
+        private static double percentOf(double delta, double base) {
+            if (base == 0) {
+                return delta > 0 ? Double.POSITIVE_INFINITY : 0;
+            }
+            return delta / base * 100;
+        }
+    }
+}
@@ -1,5 +1,28 @@
 package com.wangrong.stream;
 
+import com.wangrong.stream.collector.ChunkedJoiningCollector;
+import com.wangrong.stream.collector.IntGroupMap;
+import com.wangrong.stream.collector.IntKeyGroupingCollector;
+import com.wangrong.stream.collector.SpillCodec;
+import com.wangrong.stream.collector.SpilledGroups;
+import com.wangrong.stream.collector.SpillingGroupingCollector;
+import com.wangrong.stream.collector.StripedMapCollector;
+import com.wangrong.stream.columnar.StringArena;
+import com.wangrong.stream.flow.FlowPipeline;
+import com.wangrong.stream.flow.IteratorPublisher;
+import com.wangrong.stream.instrument.InstrumentedStream;
+import com.wangrong.stream.instrument.StreamMetricsRegistry;
+import com.wangrong.stream.parallel.AdaptiveExecutor;
+import com.wangrong.stream.path.PathAccessor;
+import com.wangrong.stream.reduce.ParallelReducer;
+import com.wangrong.stream.snapshot.StreamSnapshot;
+import com.wangrong.stream.sort.ExternalSortCollector;
+import com.wangrong.stream.sort.TopKCollector;
+import com.wangrong.stream.spliterator.NestedSpliterator;
+import com.wangrong.stream.statistics.RecordStatistics;
+import com.wangrong.stream.statistics.RecordStatisticsCollector;
+
+import java.lang.invoke.MethodHandles;
 import java.util.*;
 import java.util.concurrent.ForkJoinPool;
 import java.util.function.Supplier;
@@ -129,6 +152,17 @@ public class Application {
                     System.out.println("anyMatch: " + s);
                     return s.startsWith("A"); // 过滤出以 A 为前缀的元素
                 });
+        /**
+         * 生产环境不要在 filter/map 里打印，用 InstrumentedStream 给每个阶段命名，
+         * 记录进出元素数、选择率，并抽样记录耗时和线程分布
+         */
+        StreamMetricsRegistry registry = new StreamMetricsRegistry(true, 1);
+        InstrumentedStream.of(registry, "executionSequence", Stream.of("d2", "a2", "b1", "b3", "c"))
+                .map("toUpperCase", String::toUpperCase)
+                .filter("startsWithA", s -> s.startsWith("A"))
+                .stream()
+                .anyMatch(s -> true);
+        registry.stages().forEach(System.out::println);
     }
 
     /**
@@ -147,6 +181,12 @@ public class Application {
                         .filter(s -> s.startsWith("a"));
         streamSupplier.get().anyMatch(s -> true);
         streamSupplier.get().noneMatch(s -> true);
+        //Supplier 每次都会重新执行上游的 filter；用快照只执行一次，之后的终端操作都基于物化后的数组
+        StreamSnapshot<String> snapshot = StreamSnapshot.of(
+                Stream.of("d2", "a2", "b1", "b3", "c")
+                        .filter(s -> s.startsWith("a")));
+        snapshot.stream().anyMatch(s -> true);
+        snapshot.stream().noneMatch(s -> true);
     }
 
     List<Person> persons = Arrays.asList(
@@ -172,6 +212,20 @@ public class Application {
                 .stream()
                 .collect(Collectors.groupingBy(p -> p.age));
         personsByAge.forEach((age, p) -> System.out.format("age %s: %s\n", age, p));
+        //原始类型键的分组收集器，年龄不会被装箱成 Integer，适合千万级数据
+        IntGroupMap<Person> personsByAgeUnboxed = persons
+                .stream()
+                .collect(IntKeyGroupingCollector.groupingBy(p -> p.age));
+        personsByAgeUnboxed.forEach((age, p) -> System.out.format("age %s: %s\n", age, p));
+        //分组数量很大时可以限制内存，超出预算的分组排序后溢写到临时文件，遍历时再归并，用完需要关闭以删除临时文件
+        try (SpilledGroups<Integer, String> namesByLength = persons
+                .stream()
+                .map(p -> p.name)
+                .collect(SpillingGroupingCollector.builder(String::length, Comparator.<Integer>naturalOrder(), SpillCodec.INT, SpillCodec.STRING)
+                        .memoryBudget(64L << 20)
+                        .build())) {
+            namesByLength.forEach((length, names) -> System.out.format("length %s: %s\n", length, names));
+        }
         //在流上执行聚合操作：计算所有人的平均年龄
         Double averageAge = persons
                 .stream()
@@ -182,6 +236,14 @@ public class Application {
                 .stream()
                 .collect(Collectors.summarizingInt(p -> p.age));
         System.out.println(ageSummary);
+        //一次遍历同时统计多个字段（count、sum、min、max、average、方差、分位数），不必为每个统计量各遍历一次
+        RecordStatistics<Person> personStatistics = persons
+                .stream()
+                .collect(RecordStatisticsCollector.<Person>builder()
+                        .intField("age", p -> p.age)
+                        .intField("nameLength", p -> p.name.length())
+                        .build());
+        System.out.println(personStatistics);
         //连接收集器,将所有人名连成一个字符串
         String phrase = persons
                 .stream()
@@ -199,6 +261,12 @@ public class Application {
                         p -> p.name,
                         (name1, name2) -> name1 + ";" + name2)); // 对于同样 key 的，将值拼接
         System.out.println(map);
+        //并行流中 toMap 为每个子任务建一个 HashMap 再两两合并，每次键冲突都重新拼接字符串；
+        //StripedMapCollector 让所有线程写入同一个分段加锁的表，值追加到每个键的 StringJoiner 中，没有合并阶段
+        Map<Integer, String> namesByAge = persons
+                .parallelStream()
+                .collect(StripedMapCollector.joining(p -> p.age, p -> p.name, ";"));
+        System.out.println(namesByAge);
         /**
          * 构建自定义收集器
          * 比如说，我们希望将流中的所有人转换成一个字符串，包含所有大写的名称，并以|分割。
@@ -218,6 +286,15 @@ public class Application {
                 );
         String names = persons.stream().collect(personStringJoinerStringCollector);//传入自定义的收集器
         System.out.println(names);
+        /**
+         * 上面的组合器每合并一次都要复制一遍 StringJoiner 的内容，并行流、数据量大时开销很大。
+         * ChunkedJoiningCollector 在叶子任务中只记录元素引用，终止器一次性拼接到预分配大小的 char[] 中，
+         * 也可以直接写到 Writer 或 WritableByteChannel。
+         */
+        String chunkedNames = persons.parallelStream()
+                .map(p -> p.name.toUpperCase())
+                .collect(ChunkedJoiningCollector.joining("|"));
+        System.out.println(chunkedNames);
     }
 
     /**
@@ -230,6 +307,16 @@ public class Application {
         //创建bars集合 每个foo包含三个bar
         foos.forEach(foo -> IntStream.range(1,4).forEach(i -> foo.bars.add(new Bar("Bar"+i+" <- "+ foo.name))));
         foos.stream().flatMap(foo -> foo.bars.stream()).forEach(bar -> System.out.println(bar.name));
+        //flatMap 会为每个 foo 创建一个流，并丢失元素总数；NestedSpliterator 直接按下标展开所有 bars，并行时可以均匀拆分
+        NestedSpliterator.stream(foos, foo -> foo.bars, false).forEach(bar -> System.out.println(bar.name));
+        //"Bar" + i + " <- " + foo.name 这类名字大多重复，StringArena 中每种内容只存一份字节，
+        //得到的 ArenaString 可以直接交给 joining，不必先变回 String
+        StringArena arena = new StringArena();
+        String barNames = foos.stream()
+                .flatMap(foo -> foo.bars.stream())
+                .map(bar -> arena.intern(bar.name))
+                .collect(ChunkedJoiningCollector.joining(", "));
+        System.out.println(barNames + " (" + arena.size() + " distinct, " + arena.byteSize() + " bytes)");
         //简化后
         IntStream.range(1,4)
                 .mapToObj(i -> new Foo("Foo"+i))
@@ -254,6 +341,13 @@ public class Application {
                 .flatMap(i -> Optional.ofNullable(i.foo))
                 .ifPresent(System.out::println);
         //如果不为空的话，每个flatMap的调用都会返回预期对象的Optional包装，否则返回为null的Optional包装类。
+        //但每次取值最多创建四个 Optional；热点路径上可以把路径编译成一个空值安全的 getter，取值时不创建中间对象
+        PathAccessor<Outer, String> foo = PathAccessor.of(MethodHandles.lookup(), Outer.class, "nested.inner.foo", String.class);
+        System.out.println(foo.apply(outer));
+        Stream.of(new Outer(), outer)
+                .filter(foo.isPresent())
+                .map(foo.orElse("none"))
+                .forEach(System.out::println);
     }
 
     /**
@@ -312,6 +406,27 @@ public class Application {
                             System.out.format("combiner: sum1=%s; sum2=%s\n", sum1, sum2);
                             return sum1+sum2;
                         });
+        /**
+         * 第二种写法在并行流中是错误的：所有线程共享并修改同一个标识值 new Person("",0)。
+         * ParallelReducer 由 supplier 为每个叶子任务创建新的容器，部分结果按平衡树组合；
+         * debug 模式抽样检查标识和结合律，Person 没有实现 equals，需要指定比较方式。
+         */
+        Person total = ParallelReducer.<Person, Person>builder(() -> new Person("", 0),
+                (p1, p2) -> {
+                    p1.age += p2.age;
+                    p1.name += p2.name;
+                    return p1;
+                },
+                (p1, p2) -> {
+                    p1.age += p2.age;
+                    p1.name += p2.name;
+                    return p1;
+                })
+                .debug(16)
+                .equivalence((p1, p2) -> p1.age == p2.age && p1.name.equals(p2.name))
+                .build()
+                .reduce(persons);
+        System.out.format("name=%s; age=%s\n", total.name, total.age);
     }
 
     /**
@@ -354,7 +469,39 @@ public class Application {
          * 所有并行流操作都共享相同的 JVM 相关的公共ForkJoinPool。
          * 所以你可能需要避免写出一些又慢又卡的流式操作，这很有可能会拖慢你应用中，
          * 严重依赖并行流的其它部分代码的性能。
+         * 重的批处理流水线可以通过 ParallelStreamExecutor 放到独立的、限定线程数的 ForkJoinPool 中执行。
+         */
+        //只需要前 k 个时，每个子任务维护容量为 k 的堆，不必对全部元素排序
+        List<String> top2 = Arrays.asList("a1", "a2", "b1", "c2", "c1")
+                .parallelStream()
+                .collect(TopKCollector.topK(2));
+        System.out.println(top2);
+        //全量排序：各子任务在自己的线程上排好一段，最后 k 路归并，数据量超过内存时可以溢写到磁盘
+        try (Stream<String> sorted = Arrays.asList("a1", "a2", "b1", "c2", "c1")
+                .parallelStream()
+                .collect(ExternalSortCollector.builder(Comparator.<String>naturalOrder()).build())
+                .stream()) {
+            sorted.forEach(System.out::println);
+        }
+        /**
+         * 什么时候并行更快取决于元素数和每个元素的计算量，写死 stream() 或 parallelStream() 都可能选错。
+         * AdaptiveExecutor 按数据源大小和前几个元素的实测耗时选择：persons 只有 4 个元素，直接串行执行。
+         */
+        AdaptiveExecutor executor = AdaptiveExecutor.builder().build();
+        List<String> names = executor.execute("persons", persons,
+                stream -> stream.filter(p -> p.age >= 18).map(p -> p.name).collect(Collectors.toList()));
+        System.out.println(names + " " + executor.metrics("persons").getLastPlan());
+        /**
+         * 以上都是拉模式：数据源必须一开始就全部就绪。数据来自 Web 请求、消息队列等较慢的生产者时，
+         * FlowPipeline 用同样的操作处理 Publisher 推送的元素，只按下游的处理速度向生产者请求数据，
+         * 每个阶段可以单独指定并行度，结果以 CompletableFuture 返回。
          */
+        List<String> adults = FlowPipeline.from(IteratorPublisher.of(persons))
+                .filter(p -> p.age >= 18)
+                .map(p -> p.name, 2)
+                .collect(Collectors.toList())
+                .join();
+        System.out.println(adults);
     }
 
 }
@@ -384,16 +531,4 @@ class Bar{
     Bar(String name){
         this.name = name;
     }
-}
-
-class Person{
-    String name;
-    int age;
-    Person(String name,int age){
-        this.name = name;
-        this.age = age;
-    }
-    public String toString(){
-        return name;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.wangrong.stream;
+
+class Person{
+    String name;
+    int age;
+    Person(String name,int age){
+        this.name = name;
+        this.age = age;
+    }
+    public String toString(){
+        return name;
+    }
+}
@@ -0,0 +1,56 @@
+package com.wangrong.stream;
+
+import com.wangrong.stream.source.MappedRecordSource;
+import com.wangrong.stream.source.MappedRecordWriter;
+import com.wangrong.stream.source.RecordLayout;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Person 的定长记录格式：name 最多 64 字节 UTF-8，age 为 int32
+ *
+ * 用法：
+ * PersonRecords.write(persons, path);
+ * try (MappedRecordSource source = MappedRecordSource.open(path)) {
+ *     double averageAge = source.ints(PersonRecords.AGE, true).average().orElse(0);
+ * }
+ */
+final class PersonRecords {
+
+    public static final String NAME = "name";
+
+    public static final String AGE = "age";
+
+    public static final RecordLayout LAYOUT = RecordLayout.builder()
+            .string(NAME, 64)
+            .int32(AGE)
+            .build();
+
+    private static final int NAME_FIELD = LAYOUT.indexOf(NAME);
+
+    private static final int AGE_FIELD = LAYOUT.indexOf(AGE);
+
+    private PersonRecords() {
+    }
+
+    public static long write(Iterable<Person> persons, Path path) throws IOException {
+        try (MappedRecordWriter writer = MappedRecordWriter.create(path, LAYOUT)) {
+            for (Person person : persons) {
+                writer.next().putString(NAME_FIELD, person.name).putInt(AGE_FIELD, person.age);
+            }
+            return writer.count();
+        }
+    }
+
+    /**
+     * 按需把记录还原为 Person，只在需要对象时使用；聚合年龄请直接用 source.ints(AGE, parallel)
+     */
+    public static Stream<Person> persons(MappedRecordSource source, boolean parallel) {
+        if (!LAYOUT.equals(source.layout())) {
+            throw new IllegalArgumentException("not a person record file: " + source.layout());
+        }
+        return source.records(record -> new Person(record.getString(NAME_FIELD), record.getInt(AGE_FIELD)), parallel);
+    }
+}
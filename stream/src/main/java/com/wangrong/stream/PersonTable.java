@@ -0,0 +1,293 @@
+package com.wangrong.stream;
+
+import com.wangrong.stream.columnar.StringDictionary;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Person 的列式存储（struct-of-arrays）
+ * List<Person> 每行一个对象，过滤、求平均都要逐个解引用，数据量大时指针跳转成为瓶颈。
+ * 这里把年龄存成 int[]，人名做字典编码后存成 int[]，扫描时只顺序读原始类型数组，
+ * 简单的聚合循环可以被 JIT 向量化。
+ *
+ * 查询通过 select() 构造：where 条件下推到列上求值（人名条件只在字典上求值一次），
+ * 得到选中的行号，再在列上做分组、聚合；结果与 Application.collect() 中基于对象流的写法一致。
+ *
+ * Person 是本包的示例类型，这个类与 PersonRecords 一样只在包内使用。
+ *
+ * 用法：
+ * PersonTable table = PersonTable.of(persons);
+ * double average = table.select().whereName(name -> name.startsWith("A")).averageAge();
+ */
+final class PersonTable {
+
+    private final StringDictionary names = new StringDictionary();
+
+    private int[] ages;
+
+    private int[] nameIds;
+
+    private int size;
+
+    public PersonTable(int expectedSize) {
+        ages = new int[Math.max(16, expectedSize)];
+        nameIds = new int[ages.length];
+    }
+
+    public static PersonTable of(Collection<Person> persons) {
+        PersonTable table = new PersonTable(persons.size());
+        for (Person person : persons) {
+            table.add(person.name, person.age);
+        }
+        return table;
+    }
+
+    public void add(String name, int age) {
+        if (size == ages.length) {
+            ages = Arrays.copyOf(ages, size * 2);
+            nameIds = Arrays.copyOf(nameIds, size * 2);
+        }
+        ages[size] = age;
+        nameIds[size] = names.encode(name);
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 不同人名的个数
+     */
+    public int distinctNames() {
+        return names.size();
+    }
+
+    /**
+     * 年龄列
+     */
+    public IntStream ages() {
+        return Arrays.stream(ages, 0, size);
+    }
+
+    /**
+     * 人名编号列
+     */
+    public IntStream nameIds() {
+        return Arrays.stream(nameIds, 0, size);
+    }
+
+    public Stream<String> names() {
+        return nameIds().mapToObj(names::decode);
+    }
+
+    public String name(int row) {
+        return names.decode(nameIds[checkRow(row)]);
+    }
+
+    public int age(int row) {
+        return ages[checkRow(row)];
+    }
+
+    /**
+     * 还原为 Person 对象，用于把查询结果交给既有代码
+     */
+    public Person person(int row) {
+        return new Person(name(row), age(row));
+    }
+
+    public Query select() {
+        return new Query(null, size);
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row: " + row + ", size: " + size);
+        }
+        return row;
+    }
+
+    /**
+     * 一次查询：rows 为选中的行号（升序），为 null 时表示 select() 时的前 count 行
+     * 行数在 select() 时固定，之后 add 的行不会出现在这次查询的结果中
+     */
+    public final class Query {
+
+        private final int[] rows;
+
+        private final int count;
+
+        private Query(int[] rows, int count) {
+            this.rows = rows;
+            this.count = count;
+        }
+
+        /**
+         * 人名条件：在字典上求值，再扫描人名编号列
+         */
+        public Query whereName(Predicate<? super String> predicate) {
+            boolean[] matches = names.evaluate(predicate);
+            int[] selected = new int[count];
+            int n = 0;
+            if (rows == null) {
+                for (int i = 0; i < count; i++) {
+                    if (matches[nameIds[i]]) {
+                        selected[n++] = i;
+                    }
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    int row = rows[i];
+                    if (matches[nameIds[row]]) {
+                        selected[n++] = row;
+                    }
+                }
+            }
+            return new Query(selected, n);
+        }
+
+        public Query whereAge(IntPredicate predicate) {
+            int[] selected = new int[count];
+            int n = 0;
+            if (rows == null) {
+                for (int i = 0; i < count; i++) {
+                    if (predicate.test(ages[i])) {
+                        selected[n++] = i;
+                    }
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    int row = rows[i];
+                    if (predicate.test(ages[row])) {
+                        selected[n++] = row;
+                    }
+                }
+            }
+            return new Query(selected, n);
+        }
+
+        /**
+         * 选中的行数
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * 选中的行号
+         */
+        public IntStream rows() {
+            return rows == null ? IntStream.range(0, count) : Arrays.stream(rows, 0, count);
+        }
+
+        /**
+         * 选中行的年龄
+         */
+        public IntStream ages() {
+            return rows == null ? Arrays.stream(ages, 0, count) : rows().map(row -> ages[row]);
+        }
+
+        public long sumAge() {
+            long sum = 0;
+            if (rows == null) {
+                for (int i = 0; i < count; i++) {
+                    sum += ages[i];
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    sum += ages[rows[i]];
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * 与 Collectors.averagingInt(p -> p.age) 一致，没有选中行时为 0
+         */
+        public double averageAge() {
+            return count == 0 ? 0 : (double) sumAge() / count;
+        }
+
+        /**
+         * 与 Collectors.summarizingInt(p -> p.age) 一致
+         */
+        public IntSummaryStatistics summarizeAge() {
+            IntSummaryStatistics statistics = new IntSummaryStatistics();
+            ages().forEach(statistics);
+            return statistics;
+        }
+
+        /**
+         * 各年龄的人数，按年龄升序
+         */
+        public Map<Integer, Long> countByAge() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            IntSummaryStatistics statistics = summarizeAge();
+            if (statistics.getCount() == 0) {
+                return counts;
+            }
+            //年龄范围不大时用计数数组统计，否则退回到 Map
+            int min = statistics.getMin();
+            if ((long) statistics.getMax() - min >= 1 << 16) {
+                ages().forEach(age -> counts.merge(age, 1L, Long::sum));
+                return counts;
+            }
+            int[] histogram = new int[statistics.getMax() - min + 1];
+            if (rows == null) {
+                for (int i = 0; i < count; i++) {
+                    histogram[ages[i] - min]++;
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    histogram[ages[rows[i]] - min]++;
+                }
+            }
+            for (int i = 0; i < histogram.length; i++) {
+                if (histogram[i] > 0) {
+                    counts.put(min + i, (long) histogram[i]);
+                }
+            }
+            return counts;
+        }
+
+        /**
+         * 与 Collectors.groupingBy(p -> p.age) 的分组一致（分组内保持行的顺序），按年龄升序
+         */
+        public Map<Integer, List<Person>> groupByAge() {
+            Map<Integer, List<Person>> groups = new TreeMap<>();
+            rows().forEach(row -> groups.computeIfAbsent(ages[row], age -> new ArrayList<>()).add(person(row)));
+            return groups;
+        }
+
+        /**
+         * 与 Collectors.toMap(p -> p.age, p -> p.name, (name1, name2) -> name1 + delimiter + name2) 一致，按年龄升序
+         */
+        public Map<Integer, String> namesByAge(String delimiter) {
+            Map<Integer, StringJoiner> joiners = new TreeMap<>();
+            rows().forEach(row -> joiners.computeIfAbsent(ages[row], age -> new StringJoiner(delimiter))
+                    .add(names.decode(nameIds[row])));
+            Map<Integer, String> result = new TreeMap<>();
+            joiners.forEach((age, joiner) -> result.put(age, joiner.toString()));
+            return result;
+        }
+
+        /**
+         * 与 map(person -> person.name).collect(Collectors.joining(delimiter)) 一致
+         */
+        public String joinNames(String delimiter) {
+            StringJoiner joiner = new StringJoiner(delimiter);
+            rows().forEach(row -> joiner.add(names.decode(nameIds[row])));
+            return joiner.toString();
+        }
+
+        public List<Person> toList() {
+            List<Person> list = new ArrayList<>(count);
+            rows().forEach(row -> list.add(person(row)));
+            return list;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.wangrong.stream.collector;
+
+import com.wangrong.stream.columnar.ArenaString;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * 适合并行流的字符串连接收集器
+ * collect() 中基于 StringJoiner 的自定义收集器在组合器里调用 merge，每一层合并都会把右侧的内容复制一遍，
+ * 并行流、数据量大时复制量接近平方级并产生大量垃圾。
+ * 这里每个叶子任务只记录元素的引用（块），组合器把两个块链表首尾相接，O(1) 且不复制字符；
+ * 终止器一次性算出总长度，分配恰好大小的 char[] 后依次拷贝，或者直接按顺序写到 Writer/WritableByteChannel，
+ * 完全不构造最终的大字符串。
+ * 与 Collectors.joining 一样，null 元素连接为 "null"。
+ *
+ * 用法：
+ * String names = persons.parallelStream().map(p -> p.name.toUpperCase()).collect(ChunkedJoiningCollector.joining("|"));
+ * persons.parallelStream().map(p -> p.name).collect(ChunkedJoiningCollector.toWriter("\n", writer));
+ */
+public final class ChunkedJoiningCollector<R> implements Collector<CharSequence, ChunkedJoiningCollector.Chunks, R> {
+
+    private static final Set<Characteristics> CHARACTERISTICS = Collections.emptySet();
+
+    private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+
+    private final String delimiter;
+
+    private final String prefix;
+
+    private final String suffix;
+
+    private final Function<Chunks, R> finisher;
+
+    private ChunkedJoiningCollector(CharSequence delimiter, CharSequence prefix, CharSequence suffix,
+                                    Function<Chunks, R> finisher) {
+        this.delimiter = Objects.requireNonNull(delimiter, "delimiter").toString();
+        this.prefix = Objects.requireNonNull(prefix, "prefix").toString();
+        this.suffix = Objects.requireNonNull(suffix, "suffix").toString();
+        this.finisher = finisher;
+    }
+
+    public static ChunkedJoiningCollector<String> joining(CharSequence delimiter) {
+        return joining(delimiter, "", "");
+    }
+
+    /**
+     * 与 Collectors.joining(delimiter, prefix, suffix) 结果相同
+     */
+    public static ChunkedJoiningCollector<String> joining(CharSequence delimiter, CharSequence prefix, CharSequence suffix) {
+        return new ChunkedJoiningCollector<>(delimiter, prefix, suffix, chunks -> new String(chunks.toCharArray()));
+    }
+
+    /**
+     * 按遇到顺序把连接结果写入 writer（不会关闭 writer），返回写入的字符数
+     */
+    public static ChunkedJoiningCollector<Long> toWriter(CharSequence delimiter, Writer writer) {
+        Objects.requireNonNull(writer, "writer");
+        return new ChunkedJoiningCollector<>(delimiter, "", "", chunks -> chunks.writeTo(writer));
+    }
+
+    /**
+     * 按遇到顺序编码后写入 channel（不会关闭 channel），返回写入的字节数
+     */
+    public static ChunkedJoiningCollector<Long> toChannel(CharSequence delimiter, WritableByteChannel channel, Charset charset) {
+        Objects.requireNonNull(channel, "channel");
+        Objects.requireNonNull(charset, "charset");
+        return new ChunkedJoiningCollector<>(delimiter, "", "", chunks -> chunks.writeTo(channel, charset));
+    }
+
+    @Override
+    public Supplier<Chunks> supplier() {
+        return () -> new Chunks(this);
+    }
+
+    @Override
+    public BiConsumer<Chunks, CharSequence> accumulator() {
+        return Chunks::add;
+    }
+
+    @Override
+    public BinaryOperator<Chunks> combiner() {
+        return Chunks::append;
+    }
+
+    @Override
+    public Function<Chunks, R> finisher() {
+        return finisher;
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    /**
+     * 一个叶子任务收集到的元素引用
+     */
+    private static final class Chunk {
+
+        private CharSequence[] elements = new CharSequence[16];
+
+        private int size;
+
+        private Chunk next;
+    }
+
+    /**
+     * 累加容器：块组成的单向链表，组合时首尾相接
+     */
+    public static final class Chunks {
+
+        private final ChunkedJoiningCollector<?> collector;
+
+        private Chunk head;
+
+        private Chunk tail;
+
+        private long length;
+
+        private long count;
+
+        Chunks(ChunkedJoiningCollector<?> collector) {
+            this.collector = collector;
+        }
+
+        void add(CharSequence element) {
+            if (element == null) {
+                //与 StringBuilder.append(null) 一致
+                element = "null";
+            }
+            if (tail == null) {
+                head = tail = new Chunk();
+            }
+            if (tail.size == tail.elements.length) {
+                tail.elements = Arrays.copyOf(tail.elements, tail.size * 2);
+            }
+            tail.elements[tail.size++] = element;
+            length += element.length();
+            count++;
+        }
+
+        Chunks append(Chunks other) {
+            if (other.head == null) {
+                return this;
+            }
+            if (head == null) {
+                head = other.head;
+            } else {
+                tail.next = other.head;
+            }
+            tail = other.tail;
+            length += other.length;
+            count += other.count;
+            return this;
+        }
+
+        char[] toCharArray() {
+            long total = collector.prefix.length() + length + collector.suffix.length()
+                    + Math.max(0, count - 1) * collector.delimiter.length();
+            if (total > Integer.MAX_VALUE - 8) {
+                throw new OutOfMemoryError("joined length " + total + " exceeds the maximum array size, use toWriter/toChannel instead");
+            }
+            char[] chars = new char[(int) total];
+            int position = copy(collector.prefix, chars, 0);
+            boolean first = true;
+            for (Chunk chunk = head; chunk != null; chunk = chunk.next) {
+                for (int i = 0; i < chunk.size; i++) {
+                    if (!first) {
+                        position = copy(collector.delimiter, chars, position);
+                    }
+                    first = false;
+                    position = copy(chunk.elements[i], chars, position);
+                }
+            }
+            copy(collector.suffix, chars, position);
+            return chars;
+        }
+
+        long writeTo(Writer writer) {
+            long written = 0;
+            char[] scratch = new char[1024];
+            try {
+                boolean first = true;
+                for (Chunk chunk = head; chunk != null; chunk = chunk.next) {
+                    for (int i = 0; i < chunk.size; i++) {
+                        if (!first) {
+                            writer.write(collector.delimiter);
+                            written += collector.delimiter.length();
+                        }
+                        first = false;
+                        CharSequence element = chunk.elements[i];
+                        write(writer, element, scratch);
+                        written += element.length();
+                    }
+                }
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return written;
+        }
+
+        long writeTo(WritableByteChannel channel, Charset charset) {
+            ChannelEncoder encoder = new ChannelEncoder(charset, channel);
+            try {
+                boolean first = true;
+                for (Chunk chunk = head; chunk != null; chunk = chunk.next) {
+                    for (int i = 0; i < chunk.size; i++) {
+                        if (!first) {
+                            encoder.write(collector.delimiter);
+                        }
+                        first = false;
+                        encoder.write(chunk.elements[i]);
+                    }
+                }
+                return encoder.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Writer.append(CharSequence) 会先调用 toString()，ArenaString 等视图经由 scratch 分段写出，不生成 String
+         */
+        private static void write(Writer writer, CharSequence element, char[] scratch) throws IOException {
+            if (element instanceof String) {
+                writer.write((String) element);
+                return;
+            }
+            int length = element.length();
+            for (int start = 0; start < length; start += scratch.length) {
+                int end = Math.min(length, start + scratch.length);
+                if (element instanceof ArenaString) {
+                    ((ArenaString) element).getChars(start, end, scratch, 0);
+                } else {
+                    for (int i = start; i < end; i++) {
+                        scratch[i - start] = element.charAt(i);
+                    }
+                }
+                writer.write(scratch, 0, end - start);
+            }
+        }
+
+        private static int copy(CharSequence source, char[] target, int position) {
+            int length = source.length();
+            if (source instanceof String) {
+                ((String) source).getChars(0, length, target, position);
+            } else if (source instanceof StringBuilder) {
+                ((StringBuilder) source).getChars(0, length, target, position);
+            } else if (source instanceof ArenaString) {
+                ((ArenaString) source).getChars(0, length, target, position);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    target[position + i] = source.charAt(i);
+                }
+            }
+            return position + length;
+        }
+    }
+
+    /**
+     * 把各个元素当作一段连续的字符编码
+     * 每个元素单独包装成 CharBuffer，编码器在元素末尾留下的字符（代理对的高位）不会被消费，
+     * 这些字符放进 carry，与下一个元素开头的字符拼起来再编码，否则跨元素的代理对会被替换成 ?。
+     */
+    private static final class ChannelEncoder {
+
+        private final CharsetEncoder encoder;
+
+        private final WritableByteChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+
+        private final CharBuffer carry = CharBuffer.allocate(16);
+
+        private long written;
+
+        ChannelEncoder(Charset charset, WritableByteChannel channel) {
+            this.encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.channel = channel;
+        }
+
+        void write(CharSequence element) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(element);
+            //carry 处于写模式，position 为留下的字符数
+            while (carry.position() > 0 && chars.hasRemaining()) {
+                carry.put(chars.get());
+                carry.flip();
+                encode(carry, false);
+                carry.compact();
+            }
+            encode(chars, false);
+            if (chars.hasRemaining()) {
+                carry.put(chars);
+            }
+        }
+
+        /**
+         * 编码留下的字符并冲刷编码器，返回写入的字节数
+         */
+        long finish() throws IOException {
+            carry.flip();
+            encode(carry, true);
+            while (encoder.flush(buffer).isOverflow()) {
+                drain();
+            }
+            drain();
+            return written;
+        }
+
+        private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, endOfInput);
+                if (result.isOverflow()) {
+                    drain();
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.wangrong.stream.collector;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * 分组数组前 size 个元素的只读 List 视图，不复制数组
+ */
+final class GroupView<T> extends AbstractList<T> implements RandomAccess {
+
+    private final Object[] elements;
+
+    private final int size;
+
+    GroupView(Object[] elements, int size) {
+        this.elements = elements;
+        this.size = size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (T) elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,216 @@
+package com.wangrong.stream.collector;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * int 键 -> 元素分组 的开放寻址哈希表
+ * 键直接存放在 int[] 中（线性探测），每个分组是一个可增长的 Object[]，
+ * 分组时既不装箱 Integer，也不为每个分组创建 ArrayList 和 HashMap.Node。
+ * 分组内保持元素的遇到顺序，与 Collectors.groupingBy 一致。
+ *
+ * 非线程安全，由 IntKeyGroupingCollector 在每个叶子任务内单独使用，再通过 merge 合并。
+ */
+public final class IntGroupMap<T> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final int INITIAL_GROUP_CAPACITY = 4;
+
+    private int[] keys;
+
+    /**
+     * values[slot] == null 表示该槽位为空
+     */
+    private Object[][] values;
+
+    private int[] counts;
+
+    private int size;
+
+    private int mask;
+
+    public IntGroupMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntGroupMap(int expectedGroups) {
+        int capacity = tableSizeFor(Math.max(DEFAULT_CAPACITY, expectedGroups * 2));
+        keys = new int[capacity];
+        values = new Object[capacity][];
+        counts = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * 将元素追加到 key 对应的分组
+     */
+    public void add(int key, T element) {
+        int slot = slotFor(key);
+        Object[] group = values[slot];
+        int count = counts[slot];
+        if (count == group.length) {
+            group = values[slot] = Arrays.copyOf(group, count + (count >> 1) + 1);
+        }
+        group[count] = element;
+        counts[slot] = count + 1;
+    }
+
+    /**
+     * 把 other 的所有分组追加到当前表，other 的元素排在后面（对应组合器中右侧的子任务）
+     */
+    public IntGroupMap<T> merge(IntGroupMap<T> other) {
+        for (int i = 0; i < other.values.length; i++) {
+            Object[] source = other.values[i];
+            if (source == null) {
+                continue;
+            }
+            int sourceCount = other.counts[i];
+            int slot = slotFor(other.keys[i]);
+            Object[] group = values[slot];
+            int count = counts[slot];
+            if (count + sourceCount > group.length) {
+                group = values[slot] = Arrays.copyOf(group, Math.max(count + sourceCount, count + (count >> 1) + 1));
+            }
+            System.arraycopy(source, 0, group, count, sourceCount);
+            counts[slot] = count + sourceCount;
+        }
+        return this;
+    }
+
+    /**
+     * 返回 key 对应分组的只读视图，不存在时返回 null
+     */
+    public List<T> get(int key) {
+        int slot = find(key);
+        return slot < 0 ? null : new GroupView<>(values[slot], counts[slot]);
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * 分组个数
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 所有键（无序）
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                result[n++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    public void forEach(IntGroupConsumer<T> action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i], new GroupView<>(values[i], counts[i]));
+            }
+        }
+    }
+
+    /**
+     * 转换成 Map<Integer, List<T>>，便于与 groupingBy 的结果比较或交给既有代码
+     */
+    public Map<Integer, List<T>> toMap() {
+        Map<Integer, List<T>> map = new LinkedHashMap<>(size * 2);
+        forEach(map::put);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    private int find(int key) {
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            if (values[slot] == null) {
+                return -1;
+            }
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * 查找 key 的槽位，不存在则插入一个空分组
+     */
+    private int slotFor(int key) {
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            if (values[slot] == null) {
+                if ((size + 1) * 2 > values.length) {
+                    rehash(values.length * 2);
+                    return slotFor(key);
+                }
+                keys[slot] = key;
+                values[slot] = new Object[INITIAL_GROUP_CAPACITY];
+                size++;
+                return slot;
+            }
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[][] oldValues = values;
+        int[] oldCounts = counts;
+        keys = new int[capacity];
+        values = new Object[capacity][];
+        counts = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * 年龄这类连续小整数直接取低位会聚集在一起，先打散
+     */
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(capacity - 1) << 1;
+        return n <= 0 ? 1 << 30 : n;
+    }
+
+    /**
+     * 遍历分组的回调，避免 BiConsumer<Integer, List<T>> 的装箱
+     */
+    @FunctionalInterface
+    public interface IntGroupConsumer<T> {
+
+        void accept(int key, List<T> group);
+    }
+}
@@ -0,0 +1,73 @@
+package com.wangrong.stream.collector;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
+
+/**
+ * 按 int 键分组的收集器，Collectors.groupingBy(p -> p.age) 的原始类型版本
+ * 累加器直接把 int 键写入 IntGroupMap，不产生 Integer 和 HashMap<Integer, List<T>>；
+ * 组合器把右侧子任务的分组整体追加到左侧（System.arraycopy），并行流下分组内仍保持遇到顺序。
+ *
+ * 用法：
+ * IntGroupMap<Person> personsByAge = persons.stream().collect(IntKeyGroupingCollector.groupingBy(p -> p.age));
+ */
+public final class IntKeyGroupingCollector<T> implements Collector<T, IntGroupMap<T>, IntGroupMap<T>> {
+
+    private static final Set<Characteristics> CHARACTERISTICS =
+            Collections.unmodifiableSet(EnumSet.of(Characteristics.IDENTITY_FINISH));
+
+    private final ToIntFunction<? super T> classifier;
+
+    private final int expectedGroups;
+
+    private IntKeyGroupingCollector(ToIntFunction<? super T> classifier, int expectedGroups) {
+        this.classifier = classifier;
+        this.expectedGroups = expectedGroups;
+    }
+
+    public static <T> IntKeyGroupingCollector<T> groupingBy(ToIntFunction<? super T> classifier) {
+        return groupingBy(classifier, 16);
+    }
+
+    /**
+     * @param expectedGroups 预估的分组数，用于预设哈希表容量，避免扩容
+     */
+    public static <T> IntKeyGroupingCollector<T> groupingBy(ToIntFunction<? super T> classifier, int expectedGroups) {
+        if (classifier == null) {
+            throw new NullPointerException("classifier");
+        }
+        return new IntKeyGroupingCollector<>(classifier, expectedGroups);
+    }
+
+    @Override
+    public Supplier<IntGroupMap<T>> supplier() {
+        return () -> new IntGroupMap<>(expectedGroups);
+    }
+
+    @Override
+    public BiConsumer<IntGroupMap<T>, T> accumulator() {
+        return (map, element) -> map.add(classifier.applyAsInt(element), element);
+    }
+
+    @Override
+    public BinaryOperator<IntGroupMap<T>> combiner() {
+        return IntGroupMap::merge;
+    }
+
+    @Override
+    public Function<IntGroupMap<T>, IntGroupMap<T>> finisher() {
+        return Function.identity();
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return CHARACTERISTICS;
+    }
+}
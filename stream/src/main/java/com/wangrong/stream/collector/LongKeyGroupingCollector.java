@@ -0,0 +1,73 @@
+package com.wangrong.stream.collector;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+/**
+ * 按 long 键分组的收集器，Collectors.groupingBy(o -> o.userId) 的原始类型版本
+ * 累加器直接把 long 键写入 LongGroupMap，不产生 Long 和 HashMap<Long, List<T>>；
+ * 组合器把右侧子任务的分组整体追加到左侧（System.arraycopy），并行流下分组内仍保持遇到顺序。
+ *
+ * 用法：
+ * LongGroupMap<Order> ordersByUser = orders.stream().collect(LongKeyGroupingCollector.groupingBy(o -> o.userId));
+ */
+public final class LongKeyGroupingCollector<T> implements Collector<T, LongGroupMap<T>, LongGroupMap<T>> {
+
+    private static final Set<Characteristics> CHARACTERISTICS =
+            Collections.unmodifiableSet(EnumSet.of(Characteristics.IDENTITY_FINISH));
+
+    private final ToLongFunction<? super T> classifier;
+
+    private final int expectedGroups;
+
+    private LongKeyGroupingCollector(ToLongFunction<? super T> classifier, int expectedGroups) {
+        this.classifier = classifier;
+        this.expectedGroups = expectedGroups;
+    }
+
+    public static <T> LongKeyGroupingCollector<T> groupingBy(ToLongFunction<? super T> classifier) {
+        return groupingBy(classifier, 16);
+    }
+
+    /**
+     * @param expectedGroups 预估的分组数，用于预设哈希表容量，避免扩容
+     */
+    public static <T> LongKeyGroupingCollector<T> groupingBy(ToLongFunction<? super T> classifier, int expectedGroups) {
+        if (classifier == null) {
+            throw new NullPointerException("classifier");
+        }
+        return new LongKeyGroupingCollector<>(classifier, expectedGroups);
+    }
+
+    @Override
+    public Supplier<LongGroupMap<T>> supplier() {
+        return () -> new LongGroupMap<>(expectedGroups);
+    }
+
+    @Override
+    public BiConsumer<LongGroupMap<T>, T> accumulator() {
+        return (map, element) -> map.add(classifier.applyAsLong(element), element);
+    }
+
+    @Override
+    public BinaryOperator<LongGroupMap<T>> combiner() {
+        return LongGroupMap::merge;
+    }
+
+    @Override
+    public Function<LongGroupMap<T>, LongGroupMap<T>> finisher() {
+        return Function.identity();
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return CHARACTERISTICS;
+    }
+}
@@ -0,0 +1,158 @@
+package com.wangrong.stream.collector;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * SpillingGroupingCollector 的结果：按 key 升序排列的分组
+ * 没有发生溢写时分组全部在内存中；否则每次遍历都对 run 文件做 k 路归并，
+ * 同一 key 在多个 run 中的片段按 run 的顺序拼接，得到与 groupingBy 一致的分组内顺序。
+ * 拼接时一个分组的全部元素都读入同一个 List，遍历时内存中至少有当前这一整组，单个分组必须放得下内存。
+ *
+ * 可以多次遍历，run 文件在 close() 时删除，用完后需要关闭。
+ */
+public final class SpilledGroups<K, T> implements Iterable<Map.Entry<K, List<T>>>, Closeable {
+
+    private final SpillingGroupingCollector<T, K> collector;
+
+    private final List<Map.Entry<K, List<T>>> inMemory;
+
+    private final List<Path> runs;
+
+    /**
+     * 尚未读完的 run，close() 时一并关闭
+     */
+    private final List<SpillingGroupingCollector.RunReader<K, T>> openReaders = new ArrayList<>();
+
+    private boolean closed;
+
+    SpilledGroups(SpillingGroupingCollector<T, K> collector, List<Map.Entry<K, List<T>>> inMemory, List<Path> runs) {
+        this.collector = collector;
+        this.inMemory = inMemory;
+        this.runs = runs;
+    }
+
+    /**
+     * 溢写产生的 run 文件个数，为 0 表示分组全部在内存中
+     */
+    public int runCount() {
+        return runs.size();
+    }
+
+    /**
+     * 按 key 升序逐组回调
+     */
+    public void forEach(BiConsumer<? super K, ? super List<T>> action) {
+        for (Map.Entry<K, List<T>> group : this) {
+            action.accept(group.getKey(), group.getValue());
+        }
+    }
+
+    public Stream<Map.Entry<K, List<T>>> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT), false);
+    }
+
+    /**
+     * 全部读入内存，按 key 升序；只适合分组结果本身放得下的场景
+     */
+    public Map<K, List<T>> toMap() {
+        Map<K, List<T>> map = new LinkedHashMap<>();
+        forEach(map::put);
+        return map;
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, List<T>>> iterator() {
+        if (closed) {
+            throw new IllegalStateException("groups already closed");
+        }
+        return runs.isEmpty() ? Collections.unmodifiableList(inMemory).iterator() : new MergeIterator();
+    }
+
+    /**
+     * 删除 run 文件
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        openReaders.forEach(SpillingGroupingCollector.RunReader::close);
+        openReaders.clear();
+        runs.forEach(SpillingGroupingCollector::deleteQuietly);
+    }
+
+    /**
+     * k 路归并：优先队列按 (key, run 序号) 排序，key 相同时先取前面的 run
+     */
+    private final class MergeIterator implements Iterator<Map.Entry<K, List<T>>> {
+
+        private final PriorityQueue<SpillingGroupingCollector.RunReader<K, T>> queue;
+
+        private final Comparator<? super K> keyComparator = collector.keyComparator();
+
+        MergeIterator() {
+            Comparator<SpillingGroupingCollector.RunReader<K, T>> order = (a, b) -> {
+                int c = keyComparator.compare(a.key, b.key);
+                return c != 0 ? c : Integer.compare(a.ordinal, b.ordinal);
+            };
+            queue = new PriorityQueue<>(runs.size(), order);
+            for (int i = 0; i < runs.size(); i++) {
+                SpillingGroupingCollector.RunReader<K, T> reader = collector.openRun(runs.get(i), i);
+                openReaders.add(reader);
+                if (reader.advance()) {
+                    queue.add(reader);
+                } else {
+                    openReaders.remove(reader);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<K, List<T>> next() {
+            SpillingGroupingCollector.RunReader<K, T> head = queue.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            K key = head.key;
+            List<T> group = head.values;
+            advance(head);
+            while (!queue.isEmpty() && keyComparator.compare(queue.peek().key, key) == 0) {
+                SpillingGroupingCollector.RunReader<K, T> next = queue.poll();
+                group.addAll(next.values);
+                advance(next);
+            }
+            return new AbstractMap.SimpleImmutableEntry<>(key, group);
+        }
+
+        private void advance(SpillingGroupingCollector.RunReader<K, T> reader) {
+            if (reader.advance()) {
+                queue.add(reader);
+            } else {
+                openReaders.remove(reader);
+            }
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.wangrong.stream.collector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+/**
+ * 内存有上限、超出时溢写到磁盘的分组收集器
+ * Collectors.groupingBy 在终端操作结束前把所有分组都放在内存里，分组数量暴涨时会 OOM。
+ * 这里每个累加容器估算自己占用的内存，超过预算时把当前分组按 key 排序后写成一个临时的有序 run 文件并清空内存；
+ * 终止器对所有 run 做 k 路归并，结果 SpilledGroups 按 key 顺序逐组读出，任一时刻内存中只有每个 run 的当前一组。
+ * 分组内保持元素的遇到顺序，与 groupingBy 的结果一致（key 按 keyComparator 排序）。
+ *
+ * 预算针对每个累加容器，并行流中同时存活的容器各自受预算约束。
+ * 溢写限制的是分组的数量，不是单个分组的大小：读出时一个分组的所有元素会合并成一个 List，
+ * 单个分组必须放得下内存，分组很少而每组极大的数据不适合用这个收集器。
+ *
+ * run 文件由 SpilledGroups.close() 删除；溢写、组合或终止出错时删除当前容器已写出的 run。上游抛出异常时
+ * 收集器拿不到其他累加容器，它们的 run 文件会留在 tempDirectory 中（文件名为 group-*.run），需要定期清理。
+ * 不使用 deleteOnExit：JVM 退出前不会释放登记的路径，长期运行的服务每个 run 文件都会泄漏一条记录。
+ * keyComparator 必须与 key 的 equals 一致，比较结果为 0 的 key 视为同一分组。
+ * 与 groupingBy 一样不支持 null key：classifier 返回 null 时立即抛出 NullPointerException，而不是等到溢写时才在编解码器里失败。
+ *
+ * 用法：
+ * try (SpilledGroups<Integer, String> groups = names.stream().collect(
+ *         SpillingGroupingCollector.builder(String::length, Comparator.<Integer>naturalOrder(), SpillCodec.INT, SpillCodec.STRING)
+ *                 .memoryBudget(256L << 20)
+ *                 .build())) {
+ *     groups.forEach((length, group) -> ...);
+ * }
+ */
+public final class SpillingGroupingCollector<T, K> implements Collector<T, SpillingGroupingCollector.Buffer<T, K>, SpilledGroups<K, T>> {
+
+    /**
+     * 新建一个分组时额外计入的开销（HashMap 节点、ArrayList 等）
+     */
+    private static final long GROUP_OVERHEAD = 96;
+
+    private static final Set<Characteristics> CHARACTERISTICS = Collections.emptySet();
+
+    private final Function<? super T, ? extends K> classifier;
+
+    private final Comparator<? super K> keyComparator;
+
+    private final SpillCodec<K> keyCodec;
+
+    private final SpillCodec<T> valueCodec;
+
+    private final long memoryBudget;
+
+    private final ToLongFunction<? super T> elementSize;
+
+    private final Path tempDirectory;
+
+    private final int maxOpenRuns;
+
+    private SpillingGroupingCollector(Builder<T, K> builder) {
+        this.classifier = builder.classifier;
+        this.keyComparator = builder.keyComparator;
+        this.keyCodec = builder.keyCodec;
+        this.valueCodec = builder.valueCodec;
+        this.memoryBudget = builder.memoryBudget;
+        this.elementSize = builder.elementSize;
+        this.tempDirectory = builder.tempDirectory;
+        this.maxOpenRuns = builder.maxOpenRuns;
+    }
+
+    public static <T, K> Builder<T, K> builder(Function<? super T, ? extends K> classifier, Comparator<? super K> keyComparator,
+                                               SpillCodec<K> keyCodec, SpillCodec<T> valueCodec) {
+        return new Builder<>(classifier, keyComparator, keyCodec, valueCodec);
+    }
+
+    @Override
+    public Supplier<Buffer<T, K>> supplier() {
+        return () -> new Buffer<>(this);
+    }
+
+    @Override
+    public BiConsumer<Buffer<T, K>, T> accumulator() {
+        return Buffer::add;
+    }
+
+    @Override
+    public BinaryOperator<Buffer<T, K>> combiner() {
+        return Buffer::combine;
+    }
+
+    @Override
+    public Function<Buffer<T, K>, SpilledGroups<K, T>> finisher() {
+        return Buffer::finish;
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    /**
+     * 把一组按 key 有序的分组写成 run 文件
+     * 格式：每组为 true、key、元素个数、元素...，以 false 结尾
+     */
+    Path writeRun(Iterable<? extends Map.Entry<K, List<T>>> groups) {
+        Path run = null;
+        try {
+            run = Files.createTempFile(tempDirectory, "group-", ".run");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+                for (Map.Entry<K, List<T>> group : groups) {
+                    out.writeBoolean(true);
+                    keyCodec.write(out, group.getKey());
+                    out.writeInt(group.getValue().size());
+                    for (T value : group.getValue()) {
+                        valueCodec.write(out, value);
+                    }
+                }
+                out.writeBoolean(false);
+            }
+            return run;
+        } catch (IOException e) {
+            deleteQuietly(run);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    RunReader<K, T> openRun(Path run, int ordinal) {
+        try {
+            return new RunReader<>(this, new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16)), ordinal);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    Comparator<? super K> keyComparator() {
+        return keyComparator;
+    }
+
+    static void deleteQuietly(Path path) {
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+                //临时文件删除失败不影响结果
+            }
+        }
+    }
+
+    static void deleteAll(List<Path> paths) {
+        paths.forEach(SpillingGroupingCollector::deleteQuietly);
+    }
+
+    /**
+     * 累加容器：内存中的分组 + 已经溢写的 run（按遇到顺序排列）
+     */
+    public static final class Buffer<T, K> {
+
+        private final SpillingGroupingCollector<T, K> collector;
+
+        private Map<K, List<T>> groups = new HashMap<>();
+
+        private long bytes;
+
+        private final List<Path> runs = new ArrayList<>();
+
+        Buffer(SpillingGroupingCollector<T, K> collector) {
+            this.collector = collector;
+        }
+
+        void add(T element) {
+            try {
+                K key = Objects.requireNonNull(collector.classifier.apply(element), "element cannot be mapped to a null key");
+                List<T> group = groups.get(key);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    groups.put(key, group);
+                    bytes += GROUP_OVERHEAD;
+                }
+                group.add(element);
+                bytes += collector.elementSize.applyAsLong(element);
+                if (bytes > collector.memoryBudget) {
+                    spill();
+                }
+            } catch (RuntimeException | Error e) {
+                //classifier、elementSize 或溢写出错时整个流水线终止，这个容器不会再被组合或终止
+                deleteAll(runs);
+                throw e;
+            }
+        }
+
+        Buffer<T, K> combine(Buffer<T, K> other) {
+            try {
+                if (other.runs.isEmpty()) {
+                    //右侧全部在内存中，直接追加到左侧的分组后面
+                    other.groups.forEach((key, values) -> groups.computeIfAbsent(key, k -> new ArrayList<>()).addAll(values));
+                    bytes += other.bytes;
+                    if (bytes > collector.memoryBudget) {
+                        spill();
+                    }
+                    return this;
+                }
+                //左侧内存中的元素排在右侧 run 之前，先写出去以保持顺序
+                spill();
+                runs.addAll(other.runs);
+                groups = other.groups;
+                bytes = other.bytes;
+                return this;
+            } catch (RuntimeException | Error e) {
+                deleteAll(runs);
+                deleteAll(other.runs);
+                throw e;
+            }
+        }
+
+        void spill() {
+            if (groups.isEmpty()) {
+                return;
+            }
+            List<Map.Entry<K, List<T>>> sorted = new ArrayList<>(groups.entrySet());
+            sorted.sort(Map.Entry.comparingByKey(collector.keyComparator));
+            runs.add(collector.writeRun(sorted));
+            groups = new HashMap<>();
+            bytes = 0;
+        }
+
+        SpilledGroups<K, T> finish() {
+            if (runs.isEmpty()) {
+                List<Map.Entry<K, List<T>>> sorted = new ArrayList<>(groups.entrySet());
+                sorted.sort(Map.Entry.comparingByKey(collector.keyComparator));
+                return new SpilledGroups<>(collector, sorted, Collections.emptyList());
+            }
+            List<Path> merged = runs;
+            List<Path> next = new ArrayList<>();
+            try {
+                spill();
+                //run 太多时分批归并，避免同时打开过多文件
+                while (merged.size() > collector.maxOpenRuns) {
+                    next = new ArrayList<>();
+                    for (int i = 0; i < merged.size(); i += collector.maxOpenRuns) {
+                        List<Path> batch = merged.subList(i, Math.min(merged.size(), i + collector.maxOpenRuns));
+                        if (batch.size() == 1) {
+                            next.add(batch.get(0));
+                            continue;
+                        }
+                        try (SpilledGroups<K, T> partial = new SpilledGroups<>(collector, Collections.emptyList(), new ArrayList<>(batch))) {
+                            next.add(collector.writeRun(partial));
+                        }
+                    }
+                    merged = next;
+                }
+                return new SpilledGroups<>(collector, Collections.emptyList(), merged);
+            } catch (RuntimeException | Error e) {
+                deleteAll(merged);
+                deleteAll(next);
+                throw e;
+            }
+        }
+    }
+
+    public static final class Builder<T, K> {
+
+        private final Function<? super T, ? extends K> classifier;
+
+        private final Comparator<? super K> keyComparator;
+
+        private final SpillCodec<K> keyCodec;
+
+        private final SpillCodec<T> valueCodec;
+
+        private long memoryBudget = 64L << 20;
+
+        private ToLongFunction<? super T> elementSize = element -> 64;
+
+        private Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+
+        private int maxOpenRuns = 64;
+
+        private Builder(Function<? super T, ? extends K> classifier, Comparator<? super K> keyComparator,
+                        SpillCodec<K> keyCodec, SpillCodec<T> valueCodec) {
+            this.classifier = Objects.requireNonNull(classifier, "classifier");
+            this.keyComparator = Objects.requireNonNull(keyComparator, "keyComparator");
+            this.keyCodec = Objects.requireNonNull(keyCodec, "keyCodec");
+            this.valueCodec = Objects.requireNonNull(valueCodec, "valueCodec");
+        }
+
+        /**
+         * 每个累加容器的内存预算（字节），默认 64MB
+         */
+        public Builder<T, K> memoryBudget(long bytes) {
+            if (bytes <= 0) {
+                throw new IllegalArgumentException("memoryBudget must be positive: " + bytes);
+            }
+            this.memoryBudget = bytes;
+            return this;
+        }
+
+        /**
+         * 估算单个元素占用的字节数，默认每个元素 64 字节
+         */
+        public Builder<T, K> elementSize(ToLongFunction<? super T> elementSize) {
+            this.elementSize = Objects.requireNonNull(elementSize, "elementSize");
+            return this;
+        }
+
+        /**
+         * run 文件所在目录，默认 java.io.tmpdir
+         */
+        public Builder<T, K> tempDirectory(Path tempDirectory) {
+            this.tempDirectory = Objects.requireNonNull(tempDirectory, "tempDirectory");
+            return this;
+        }
+
+        /**
+         * 归并时最多同时打开的 run 文件数，默认 64
+         */
+        public Builder<T, K> maxOpenRuns(int maxOpenRuns) {
+            if (maxOpenRuns < 2) {
+                throw new IllegalArgumentException("maxOpenRuns must be at least 2: " + maxOpenRuns);
+            }
+            this.maxOpenRuns = maxOpenRuns;
+            return this;
+        }
+
+        public SpillingGroupingCollector<T, K> build() {
+            return new SpillingGroupingCollector<>(this);
+        }
+    }
+
+    /**
+     * 顺序读取一个 run 文件，current 为当前一组
+     */
+    static final class RunReader<K, T> {
+
+        private final SpillingGroupingCollector<T, K> collector;
+
+        private final DataInputStream in;
+
+        final int ordinal;
+
+        K key;
+
+        List<T> values;
+
+        RunReader(SpillingGroupingCollector<T, K> collector, DataInputStream in, int ordinal) {
+            this.collector = collector;
+            this.in = in;
+            this.ordinal = ordinal;
+        }
+
+        /**
+         * 读取下一组，没有更多分组时返回 false 并关闭文件
+         */
+        boolean advance() {
+            try {
+                if (!in.readBoolean()) {
+                    close();
+                    return false;
+                }
+                key = collector.keyCodec.read(in);
+                int size = in.readInt();
+                values = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(collector.valueCodec.read(in));
+                }
+                return true;
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void close() {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                //只读文件，关闭失败可以忽略
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.wangrong.stream.collector;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 分段加锁的 键 -> 可变缓冲区 哈希表，供多个线程同时追加
+ * 键按哈希的高位分到 stripes 个段中，每段是一个 HashMap，由该段自己的锁保护；
+ * 查找键和向缓冲区追加在同一次加锁内完成，缓冲区本身不需要线程安全。
+ * 段数远大于线程数时，不同线程很少落在同一段上。
+ *
+ * 由 StripedMapCollector 在并行流的所有线程间共享使用。
+ */
+public final class StripedBufferMap<K, V, B> {
+
+    private final Stripe<K, B>[] stripes;
+
+    private final int shift;
+
+    private final Supplier<B> bufferFactory;
+
+    private final BiConsumer<B, ? super V> appender;
+
+    private final BiConsumer<B, B> merger;
+
+    /**
+     * @param stripes       段数，向上取整为 2 的幂，最多 65536
+     * @param bufferFactory 键第一次出现时创建缓冲区
+     * @param appender      把值追加到缓冲区
+     * @param merger        把右侧缓冲区追加到左侧，合并两个表时使用
+     */
+    @SuppressWarnings("unchecked")
+    public StripedBufferMap(int stripes, Supplier<B> bufferFactory, BiConsumer<B, ? super V> appender, BiConsumer<B, B> merger) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        }
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(Math.min(stripes, 1 << 16) - 1) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe<>();
+        }
+        this.shift = 32 - Integer.numberOfTrailingZeros(size);
+        this.bufferFactory = Objects.requireNonNull(bufferFactory, "bufferFactory");
+        this.appender = Objects.requireNonNull(appender, "appender");
+        this.merger = Objects.requireNonNull(merger, "merger");
+    }
+
+    /**
+     * 把 value 追加到 key 的缓冲区，可以被多个线程同时调用
+     */
+    public void append(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        Stripe<K, B> stripe = stripeFor(key);
+        synchronized (stripe) {
+            B buffer = stripe.get(key);
+            if (buffer == null) {
+                buffer = bufferFactory.get();
+                stripe.put(key, buffer);
+            }
+            appender.accept(buffer, value);
+        }
+    }
+
+    /**
+     * 把 other 的缓冲区合并进来，相同键的缓冲区由 merger 把 other 的内容追加到后面
+     */
+    public StripedBufferMap<K, V, B> merge(StripedBufferMap<K, V, B> other) {
+        if (other == this) {
+            return this;
+        }
+        other.forEach((key, source) -> {
+            Stripe<K, B> stripe = stripeFor(key);
+            synchronized (stripe) {
+                B buffer = stripe.get(key);
+                if (buffer == null) {
+                    stripe.put(key, source);
+                } else {
+                    merger.accept(buffer, source);
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * 键的个数；有线程在追加时只是一个近似值
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe<K, B> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 逐段遍历，遍历某一段时持有该段的锁
+     */
+    public void forEach(BiConsumer<? super K, ? super B> action) {
+        for (Stripe<K, B> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.forEach(action);
+            }
+        }
+    }
+
+    /**
+     * 对每个缓冲区执行 finisher，得到普通的 HashMap
+     */
+    public <R> Map<K, R> toMap(Function<? super B, ? extends R> finisher) {
+        Map<K, R> map = new HashMap<>(Math.max(16, size() * 4 / 3 + 1));
+        forEach((key, buffer) -> map.put(key, finisher.apply(buffer)));
+        return map;
+    }
+
+    /**
+     * 实际段数
+     */
+    public int stripes() {
+        return stripes.length;
+    }
+
+    private Stripe<K, B> stripeFor(K key) {
+        //用打散后的高位选段，段内 HashMap 使用低位，两者互不相关
+        return shift == 32 ? stripes[0] : stripes[(key.hashCode() * 0x9E3779B9) >>> shift];
+    }
+
+    private static final class Stripe<K, B> extends HashMap<K, B> {
+    }
+}
@@ -0,0 +1,130 @@
+package com.wangrong.stream.collector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * 并行流中所有线程共同写入一个分段加锁哈希表的 toMap 收集器，重复键的值追加到该键的可变缓冲区
+ * collect() 中 Collectors.toMap(p -> p.age, p -> p.name, (a, b) -> a + ";" + b) 在并行流中为每个叶子任务建一个 HashMap，
+ * 再两两合并，每次键冲突都重新拼接一次字符串，同一个键的值越多，复制量越接近平方级。
+ * 这里是 CONCURRENT | UNORDERED 收集器：并行流只创建一个 StripedBufferMap，所有线程直接写入，没有合并阶段；
+ * 重复键的值追加到 StringJoiner / ArrayList 等缓冲区中，终止器对每个键只生成一次结果。
+ *
+ * 与 Collectors.toConcurrentMap 一样，并行时同一键下各值的先后顺序不确定；键不能为 null。
+ *
+ * 用法：
+ * Map<Integer, String> namesByAge = persons.parallelStream()
+ *         .collect(StripedMapCollector.joining(p -> p.age, p -> p.name, ";"));
+ */
+public final class StripedMapCollector<T, K, V, B, R> implements Collector<T, StripedBufferMap<K, V, B>, Map<K, R>> {
+
+    private static final Set<Characteristics> CHARACTERISTICS =
+            Collections.unmodifiableSet(EnumSet.of(Characteristics.CONCURRENT, Characteristics.UNORDERED));
+
+    private static final int DEFAULT_STRIPES = Math.max(64, 16 * Runtime.getRuntime().availableProcessors());
+
+    private final Function<? super T, ? extends K> keyMapper;
+
+    private final Function<? super T, ? extends V> valueMapper;
+
+    private final Supplier<B> bufferFactory;
+
+    private final BiConsumer<B, ? super V> appender;
+
+    private final BiConsumer<B, B> merger;
+
+    private final Function<? super B, ? extends R> finisher;
+
+    private final int stripes;
+
+    private StripedMapCollector(Function<? super T, ? extends K> keyMapper, Function<? super T, ? extends V> valueMapper,
+                                Supplier<B> bufferFactory, BiConsumer<B, ? super V> appender, BiConsumer<B, B> merger,
+                                Function<? super B, ? extends R> finisher, int stripes) {
+        this.keyMapper = Objects.requireNonNull(keyMapper, "keyMapper");
+        this.valueMapper = Objects.requireNonNull(valueMapper, "valueMapper");
+        this.bufferFactory = Objects.requireNonNull(bufferFactory, "bufferFactory");
+        this.appender = Objects.requireNonNull(appender, "appender");
+        this.merger = Objects.requireNonNull(merger, "merger");
+        this.finisher = Objects.requireNonNull(finisher, "finisher");
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        }
+        this.stripes = stripes;
+    }
+
+    /**
+     * 重复键的值以 delimiter 连接，对应 toMap(key, value, (a, b) -> a + delimiter + b)
+     */
+    public static <T, K> StripedMapCollector<T, K, CharSequence, StringJoiner, String> joining(
+            Function<? super T, ? extends K> keyMapper, Function<? super T, ? extends CharSequence> valueMapper,
+            CharSequence delimiter) {
+        Objects.requireNonNull(delimiter, "delimiter");
+        return new StripedMapCollector<>(keyMapper, valueMapper, () -> new StringJoiner(delimiter),
+                StringJoiner::add, StringJoiner::merge, StringJoiner::toString, DEFAULT_STRIPES);
+    }
+
+    /**
+     * 重复键的值收集为 List
+     */
+    public static <T, K, V> StripedMapCollector<T, K, V, List<V>, List<V>> toList(
+            Function<? super T, ? extends K> keyMapper, Function<? super T, ? extends V> valueMapper) {
+        return new StripedMapCollector<>(keyMapper, valueMapper, ArrayList::new, List::add, List::addAll,
+                Function.identity(), DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param bufferFactory 键第一次出现时创建缓冲区
+     * @param appender      把值追加到缓冲区
+     * @param merger        把右侧缓冲区追加到左侧；并行流按 CONCURRENT 执行时不会调用
+     * @param finisher      由缓冲区生成该键的结果
+     */
+    public static <T, K, V, B, R> StripedMapCollector<T, K, V, B, R> of(
+            Function<? super T, ? extends K> keyMapper, Function<? super T, ? extends V> valueMapper,
+            Supplier<B> bufferFactory, BiConsumer<B, ? super V> appender, BiConsumer<B, B> merger,
+            Function<? super B, ? extends R> finisher) {
+        return new StripedMapCollector<>(keyMapper, valueMapper, bufferFactory, appender, merger, finisher, DEFAULT_STRIPES);
+    }
+
+    /**
+     * 指定段数的副本，默认为 max(64, 16 × CPU 核数)
+     */
+    public StripedMapCollector<T, K, V, B, R> stripes(int stripes) {
+        return new StripedMapCollector<>(keyMapper, valueMapper, bufferFactory, appender, merger, finisher, stripes);
+    }
+
+    @Override
+    public Supplier<StripedBufferMap<K, V, B>> supplier() {
+        return () -> new StripedBufferMap<>(stripes, bufferFactory, appender, merger);
+    }
+
+    @Override
+    public BiConsumer<StripedBufferMap<K, V, B>, T> accumulator() {
+        return (map, element) -> map.append(keyMapper.apply(element), valueMapper.apply(element));
+    }
+
+    @Override
+    public BinaryOperator<StripedBufferMap<K, V, B>> combiner() {
+        return StripedBufferMap::merge;
+    }
+
+    @Override
+    public Function<StripedBufferMap<K, V, B>, Map<K, R>> finisher() {
+        return map -> map.toMap(finisher);
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return CHARACTERISTICS;
+    }
+}
@@ -0,0 +1,158 @@
+package com.wangrong.stream.columnar;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * StringArena 中一个字符串的只读视图，字符直接从字符区的 byte[] 中读取
+ * 同一字符区中内容相同的字符串是同一个实例，因此 equals 只比较引用；不同字符区之间按内容比较。
+ * 与 StringBuilder 一样不等于内容相同的 String，需要与 String 比较时使用 contentEquals。
+ * hashCode 与内容相同的 String 一致。
+ */
+public final class ArenaString implements CharSequence, Comparable<ArenaString> {
+
+    final StringArena arena;
+
+    private final int id;
+
+    private final int offset;
+
+    private final int length;
+
+    private final boolean latin1;
+
+    private final int hash;
+
+    ArenaString(StringArena arena, int id, int offset, int length, boolean latin1, int hash) {
+        this.arena = arena;
+        this.id = id;
+        this.offset = offset;
+        this.length = length;
+        this.latin1 = latin1;
+        this.hash = hash;
+    }
+
+    /**
+     * 在字符区中的编号
+     */
+    public int id() {
+        return id;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new StringIndexOutOfBoundsException(index);
+        }
+        byte[] bytes = arena.bytes();
+        if (latin1) {
+            return (char) (bytes[offset + index] & 0xFF);
+        }
+        int position = offset + 2 * index;
+        return (char) (((bytes[position] & 0xFF) << 8) | (bytes[position + 1] & 0xFF));
+    }
+
+    /**
+     * 与 String.getChars 相同，把 [srcBegin, srcEnd) 的字符复制到 dst
+     */
+    public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        if (srcBegin < 0 || srcBegin > srcEnd || srcEnd > length) {
+            throw new StringIndexOutOfBoundsException("begin " + srcBegin + ", end " + srcEnd + ", length " + length);
+        }
+        byte[] bytes = arena.bytes();
+        if (latin1) {
+            for (int i = srcBegin; i < srcEnd; i++) {
+                dst[dstBegin++] = (char) (bytes[offset + i] & 0xFF);
+            }
+        } else {
+            for (int i = srcBegin; i < srcEnd; i++) {
+                int position = offset + 2 * i;
+                dst[dstBegin++] = (char) (((bytes[position] & 0xFF) << 8) | (bytes[position + 1] & 0xFF));
+            }
+        }
+    }
+
+    public boolean startsWith(CharSequence prefix) {
+        int prefixLength = prefix.length();
+        if (prefixLength > length) {
+            return false;
+        }
+        for (int i = 0; i < prefixLength; i++) {
+            if (charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 与任意 CharSequence 按内容比较
+     */
+    public boolean contentEquals(CharSequence other) {
+        if (other == this) {
+            return true;
+        }
+        if (other.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (charAt(i) != other.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 生成 String，只在需要交给只接受 String 的代码时调用
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (latin1) {
+            return new String(arena.bytes(), offset, length, StandardCharsets.ISO_8859_1);
+        }
+        char[] chars = new char[length];
+        getChars(0, length, chars, 0);
+        return new String(chars);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (!(other instanceof ArenaString)) {
+            return false;
+        }
+        ArenaString that = (ArenaString) other;
+        //同一字符区中内容相同的只有一个实例
+        return that.arena != arena && that.hash == hash && contentEquals(that);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public int compareTo(ArenaString other) {
+        int limit = Math.min(length, other.length);
+        for (int i = 0; i < limit; i++) {
+            char a = charAt(i);
+            char b = other.charAt(i);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return length - other.length;
+    }
+}
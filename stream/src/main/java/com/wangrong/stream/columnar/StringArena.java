@@ -0,0 +1,185 @@
+package com.wangrong.stream.columnar;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 去重的字符串区：所有不同的字符串依次存放在一个共享的 byte[] 中
+ * Person.name、Foo.name 和 flatMap() 中 "Bar" + i + " <- " + foo.name 这类字段大多是重复的，
+ * 每个 String 却各自带着对象头和 char[]。这里每个不同的内容只存一份：
+ * 全部字符不超过 0xFF 时按 Latin-1 每个字符 1 字节，否则按 UTF-16 每个字符 2 字节（charAt 仍是 O(1)）；
+ * 以内容的哈希值做开放寻址去重表，intern 返回该内容唯一的 ArenaString 视图。
+ *
+ * 同一个字符区中内容相同即为同一个 ArenaString 实例，equals 和 HashMap 分组只需比较引用，哈希值预先算好。
+ * intern 是同步的，可以在并行流中调用；ArenaString 可以交给 Collectors.joining、ChunkedJoiningCollector 等
+ * 接受 CharSequence 的地方，不需要先转成 String。
+ *
+ * 用法：
+ * StringArena arena = new StringArena();
+ * Map<ArenaString, Long> countByName = persons.stream().collect(groupingBy(p -> arena.intern(p.name), counting()));
+ */
+public final class StringArena {
+
+    private volatile byte[] bytes;
+
+    private int position;
+
+    private ArenaString[] strings = new ArenaString[16];
+
+    private int size;
+
+    /**
+     * 去重表，存放 编号 + 1，0 表示空槽
+     */
+    private int[] table = new int[32];
+
+    public StringArena() {
+        this(1024);
+    }
+
+    /**
+     * @param expectedBytes 预估的字节数，用于预设 byte[] 容量
+     */
+    public StringArena(int expectedBytes) {
+        bytes = new byte[Math.max(16, expectedBytes)];
+    }
+
+    /**
+     * 返回与 value 内容相同的 ArenaString，不存在则写入字符区
+     */
+    public synchronized ArenaString intern(CharSequence value) {
+        Objects.requireNonNull(value, "value");
+        if (value instanceof ArenaString && ((ArenaString) value).arena == this) {
+            return (ArenaString) value;
+        }
+        int hash = hash(value);
+        int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0) {
+                ArenaString string = append(value, hash);
+                table[slot] = string.id() + 1;
+                if (size * 2 > table.length) {
+                    rehash(table.length * 2);
+                }
+                return string;
+            }
+            ArenaString candidate = strings[id];
+            if (candidate.hashCode() == hash && candidate.contentEquals(value)) {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * 返回与 value 内容相同的 ArenaString，不存在时返回 null，不写入
+     */
+    public synchronized ArenaString lookup(CharSequence value) {
+        int hash = hash(value);
+        int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0) {
+                return null;
+            }
+            ArenaString candidate = strings[id];
+            if (candidate.hashCode() == hash && candidate.contentEquals(value)) {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * 按编号取得，编号从 0 开始按写入顺序分配
+     */
+    public synchronized ArenaString get(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("id: " + id + ", size: " + size);
+        }
+        return strings[id];
+    }
+
+    /**
+     * 不同字符串的个数
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 字符内容占用的字节数
+     */
+    public synchronized long byteSize() {
+        return position;
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+
+    private ArenaString append(CharSequence value, int hash) {
+        int length = value.length();
+        boolean latin1 = true;
+        for (int i = 0; i < length && latin1; i++) {
+            latin1 = value.charAt(i) <= 0xFF;
+        }
+        int byteLength = latin1 ? length : length * 2;
+        byte[] target = bytes;
+        if (position + byteLength > target.length) {
+            //先在新数组中写好再替换引用，读取方拿到的数组总是包含已发布的内容
+            target = Arrays.copyOf(target, Math.max(target.length * 2, position + byteLength));
+        }
+        int offset = position;
+        if (latin1) {
+            for (int i = 0; i < length; i++) {
+                target[offset + i] = (byte) value.charAt(i);
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                target[offset + 2 * i] = (byte) (c >>> 8);
+                target[offset + 2 * i + 1] = (byte) c;
+            }
+        }
+        bytes = target;
+        position += byteLength;
+        if (size == strings.length) {
+            strings = Arrays.copyOf(strings, size * 2);
+        }
+        ArenaString string = new ArenaString(this, size, offset, length, latin1, hash);
+        strings[size++] = string;
+        return string;
+    }
+
+    private void rehash(int capacity) {
+        int[] rehashed = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(strings[id].hashCode()) & mask;
+            while (rehashed[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            rehashed[slot] = id + 1;
+        }
+        table = rehashed;
+    }
+
+    /**
+     * 与 String.hashCode 相同的算法，ArenaString.hashCode 与对应 String 的哈希值相等
+     */
+    static int hash(CharSequence value) {
+        if (value instanceof String || value instanceof ArenaString) {
+            return value.hashCode();
+        }
+        int hash = 0;
+        for (int i = 0; i < value.length(); i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
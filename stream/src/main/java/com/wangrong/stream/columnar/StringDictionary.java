@@ -0,0 +1,65 @@
+package com.wangrong.stream.columnar;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 字典编码：每个不同的字符串只保存一份，列中只存 int 编号
+ * 对字符串列的谓词只需要在字典上求值一次（不同值的个数通常远小于行数），再按编号查表。
+ */
+public final class StringDictionary {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    private String[] values = new String[16];
+
+    private int size;
+
+    /**
+     * 返回字符串的编号，不存在则加入字典
+     */
+    public int encode(String value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        ids.put(value, size);
+        return size++;
+    }
+
+    /**
+     * 返回字符串的编号，不存在时返回 -1
+     */
+    public int lookup(String value) {
+        Integer id = ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    public String decode(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("id: " + id + ", size: " + size);
+        }
+        return values[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 对每个字典项求值一次，返回按编号索引的结果
+     */
+    public boolean[] evaluate(Predicate<? super String> predicate) {
+        boolean[] matches = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            matches[i] = predicate.test(values[i]);
+        }
+        return matches;
+    }
+}
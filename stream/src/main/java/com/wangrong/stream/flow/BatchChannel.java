@@ -0,0 +1,152 @@
+package com.wangrong.stream.flow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+/**
+ * 相邻两个阶段之间的有界批次队列
+ * 上游阶段的工作线程用 put 放入整批，队列满时阻塞，压力由此逐级传回数据源；
+ * 数据源用 offer 逐个放入元素，先攒在 pending 中，攒满 batchSize 才成为一批。
+ * 下游空闲时 take 直接取走未攒满的 pending，所以生产者慢时每个元素都会立即交给下游，
+ * 只有下游跟不上时批次才会变大。offer 不检查容量，由数据源的请求量保证不超过 capacity 批。
+ */
+final class BatchChannel {
+
+    private final int batchSize;
+
+    private final int capacity;
+
+    /**
+     * 每取走一批后回调其元素个数，数据源的通道用它向上游补充请求量
+     */
+    private final IntConsumer onTake;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private final Condition notFull = lock.newCondition();
+
+    private final Deque<List<Object>> batches = new ArrayDeque<>();
+
+    private List<Object> pending;
+
+    private boolean completed;
+
+    private boolean closed;
+
+    BatchChannel(int batchSize, int capacity, IntConsumer onTake) {
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.onTake = onTake;
+    }
+
+    void offer(Object element) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (pending == null) {
+                pending = new ArrayList<>(Math.min(batchSize, 16));
+            }
+            pending.add(element);
+            if (pending.size() >= batchSize) {
+                batches.add(pending);
+                pending = null;
+            }
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 队列满时阻塞；通道已关闭时丢弃该批
+     */
+    void put(List<Object> batch) throws InterruptedException {
+        lock.lock();
+        try {
+            while (batches.size() >= capacity && !closed) {
+                notFull.await();
+            }
+            if (closed) {
+                return;
+            }
+            batches.add(batch);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 下一批元素；上游已完成且没有剩余元素，或通道已关闭时返回 null
+     */
+    List<Object> take() throws InterruptedException {
+        List<Object> batch;
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    return null;
+                }
+                batch = batches.poll();
+                if (batch == null && pending != null) {
+                    batch = pending;
+                    pending = null;
+                }
+                if (batch != null) {
+                    notFull.signal();
+                    break;
+                }
+                if (completed) {
+                    //通知其他等待的工作线程也结束
+                    notEmpty.signalAll();
+                    return null;
+                }
+                notEmpty.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (onTake != null) {
+            onTake.accept(batch.size());
+        }
+        return batch;
+    }
+
+    /**
+     * 上游不会再放入元素，剩余的批次仍可取出
+     */
+    void complete() {
+        lock.lock();
+        try {
+            completed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 丢弃剩余的批次并唤醒所有阻塞的线程，用于出错或取消
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            batches.clear();
+            pending = null;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.wangrong.stream.flow;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 以 Reactive Streams 的 Publisher 为数据源的推模式流水线
+ * Application 中的流都是拉模式：终端操作从数据源逐个拉取元素，数据源必须一开始就全部就绪。
+ * Web 请求、消息队列这类慢生产者只能先把所有元素缓冲起来再建流。这里提供同样的 filter、map、flatMap、collect、reduce，
+ * 但元素由 Publisher 推送：
+ * - 背压：只向 Publisher 请求 bufferBatches * batchSize 个元素，下游每取走一批才补充同样多的请求量
+ * - 微批：相邻阶段之间传递批次而不是单个元素，每个阶段的队列最多 bufferBatches 批；
+ *   下游空闲时未攒满的批次也会立即交给它，所以生产者慢时延迟不受 batchSize 影响
+ * - 并行度：每个阶段可以单独指定工作线程数，并行度为 1 的阶段保持遇到顺序，大于 1 时批次之间不保证顺序
+ * 生产者快于消费者时，流水线中的元素不超过 (阶段数 + 1) * bufferBatches * batchSize，再加上每个工作线程手上的一批。
+ *
+ * 每次终端操作都会重新订阅 Publisher，在 executor 上为每个阶段启动并行度个工作线程，另加一个线程执行终端操作；
+ * 这些线程在队列上阻塞等待，executor 必须能同时运行它们，不要使用公共 ForkJoinPool 或线程数较少的固定线程池。
+ * 终端操作在单个线程上累加，collect 可以使用非并发的收集器。
+ * 任一阶段抛出异常、Publisher 调用 onError 或取消返回的 CompletableFuture 时，取消订阅并丢弃队列中的元素。
+ *
+ * 用法：
+ * CompletableFuture<Map<String, Long>> counts = FlowPipeline.from(publisher)
+ *         .filter(order -> order.amount > 0)
+ *         .map(Order::getCity, 4)
+ *         .collect(Collectors.groupingBy(city -> city, Collectors.counting()));
+ */
+public final class FlowPipeline<T> {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    public static final int DEFAULT_BUFFER_BATCHES = 4;
+
+    private static final Executor DEFAULT_EXECUTOR;
+
+    static {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "flow-pipeline-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        DEFAULT_EXECUTOR = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    private final Publisher<?> source;
+
+    private final List<Stage> stages;
+
+    private final int batchSize;
+
+    private final int bufferBatches;
+
+    private final Executor executor;
+
+    private FlowPipeline(Publisher<?> source, List<Stage> stages, int batchSize, int bufferBatches, Executor executor) {
+        this.source = source;
+        this.stages = stages;
+        this.batchSize = batchSize;
+        this.bufferBatches = bufferBatches;
+        this.executor = executor;
+    }
+
+    public static <T> FlowPipeline<T> from(Publisher<? extends T> publisher) {
+        Objects.requireNonNull(publisher, "publisher");
+        return new FlowPipeline<>(publisher, Collections.emptyList(), DEFAULT_BATCH_SIZE, DEFAULT_BUFFER_BATCHES, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * 每批最多的元素个数，同时也是向 Publisher 补充请求的粒度
+     */
+    public FlowPipeline<T> batchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        return new FlowPipeline<>(source, stages, batchSize, bufferBatches, executor);
+    }
+
+    /**
+     * 每个阶段的队列最多缓存的批次数
+     */
+    public FlowPipeline<T> bufferBatches(int bufferBatches) {
+        if (bufferBatches < 1) {
+            throw new IllegalArgumentException("bufferBatches must be positive: " + bufferBatches);
+        }
+        return new FlowPipeline<>(source, stages, batchSize, bufferBatches, executor);
+    }
+
+    /**
+     * 运行工作线程的线程池，默认为共享的守护线程缓存线程池
+     */
+    public FlowPipeline<T> executor(Executor executor) {
+        Objects.requireNonNull(executor, "executor");
+        return new FlowPipeline<>(source, stages, batchSize, bufferBatches, executor);
+    }
+
+    public FlowPipeline<T> filter(Predicate<? super T> predicate) {
+        return filter(predicate, 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public FlowPipeline<T> filter(Predicate<? super T> predicate, int parallelism) {
+        Objects.requireNonNull(predicate, "predicate");
+        return then(parallelism, (element, downstream) -> {
+            if (predicate.test((T) element)) {
+                downstream.accept(element);
+            }
+        });
+    }
+
+    public <R> FlowPipeline<R> map(Function<? super T, ? extends R> mapper) {
+        return map(mapper, 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <R> FlowPipeline<R> map(Function<? super T, ? extends R> mapper, int parallelism) {
+        Objects.requireNonNull(mapper, "mapper");
+        return then(parallelism, (element, downstream) -> downstream.accept(mapper.apply((T) element)));
+    }
+
+    public <R> FlowPipeline<R> flatMap(Function<? super T, ? extends Stream<? extends R>> mapper) {
+        return flatMap(mapper, 1);
+    }
+
+    /**
+     * 展开的流按需消费，每攒满 batchSize 个就交给下游，单个元素展开得再多也不会一次全部进入内存
+     */
+    @SuppressWarnings("unchecked")
+    public <R> FlowPipeline<R> flatMap(Function<? super T, ? extends Stream<? extends R>> mapper, int parallelism) {
+        Objects.requireNonNull(mapper, "mapper");
+        return then(parallelism, (element, downstream) -> {
+            try (Stream<? extends R> stream = mapper.apply((T) element)) {
+                if (stream != null) {
+                    stream.forEach(downstream);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return 收集结果；取消它会取消对 Publisher 的订阅
+     */
+    @SuppressWarnings("unchecked")
+    public <R, A> CompletableFuture<R> collect(Collector<? super T, A, R> collector) {
+        Objects.requireNonNull(collector, "collector");
+        Run<A, R> run = new Run<>((Collector<Object, A, R>) collector);
+        run.start();
+        return run.result;
+    }
+
+    public CompletableFuture<T> reduce(T identity, BinaryOperator<T> accumulator) {
+        return collect(Collectors.reducing(identity, accumulator));
+    }
+
+    public CompletableFuture<Optional<T>> reduce(BinaryOperator<T> accumulator) {
+        return collect(Collectors.reducing(accumulator));
+    }
+
+    private <R> FlowPipeline<R> then(int parallelism, Operator operator) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        List<Stage> next = new ArrayList<>(stages);
+        next.add(new Stage(operator, parallelism));
+        return new FlowPipeline<>(source, Collections.unmodifiableList(next), batchSize, bufferBatches, executor);
+    }
+
+    /**
+     * 对单个元素的处理，结果交给 downstream，可以是零个或多个
+     */
+    private interface Operator {
+        void apply(Object element, Consumer<Object> downstream);
+    }
+
+    private static final class Stage {
+
+        private final Operator operator;
+
+        private final int parallelism;
+
+        private Stage(Operator operator, int parallelism) {
+            this.operator = operator;
+            this.parallelism = parallelism;
+        }
+    }
+
+    /**
+     * 一次终端操作：订阅 Publisher、各阶段的工作线程与终端线程
+     */
+    private final class Run<A, R> implements Subscriber<Object> {
+
+        private final Collector<Object, A, R> collector;
+
+        private final CompletableFuture<R> result = new CompletableFuture<>();
+
+        private final BatchChannel[] channels = new BatchChannel[stages.size() + 1];
+
+        private final AtomicBoolean terminated = new AtomicBoolean();
+
+        private volatile Subscription subscription;
+
+        private Run(Collector<Object, A, R> collector) {
+            this.collector = collector;
+        }
+
+        private void start() {
+            channels[0] = new BatchChannel(batchSize, bufferBatches, this::request);
+            for (int i = 1; i < channels.length; i++) {
+                channels[i] = new BatchChannel(batchSize, bufferBatches, null);
+            }
+            result.whenComplete((value, e) -> {
+                if (e != null) {
+                    fail(e);
+                }
+            });
+            try {
+                for (int i = 0; i < stages.size(); i++) {
+                    Stage stage = stages.get(i);
+                    BatchChannel in = channels[i];
+                    BatchChannel out = channels[i + 1];
+                    AtomicInteger remaining = new AtomicInteger(stage.parallelism);
+                    for (int worker = 0; worker < stage.parallelism; worker++) {
+                        executor.execute(() -> runStage(stage, in, out, remaining));
+                    }
+                }
+                executor.execute(this::runTerminal);
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+            source.subscribe(this);
+        }
+
+        private void runStage(Stage stage, BatchChannel in, BatchChannel out, AtomicInteger remaining) {
+            try {
+                Emitter emitter = new Emitter(out);
+                List<Object> batch;
+                while ((batch = in.take()) != null) {
+                    for (Object element : batch) {
+                        stage.operator.apply(element, emitter);
+                    }
+                    emitter.flush();
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    out.complete();
+                }
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private void runTerminal() {
+            try {
+                A container = collector.supplier().get();
+                BiConsumer<A, Object> accumulator = collector.accumulator();
+                BatchChannel in = channels[channels.length - 1];
+                List<Object> batch;
+                while ((batch = in.take()) != null) {
+                    for (Object element : batch) {
+                        accumulator.accept(container, element);
+                    }
+                }
+                //出错或取消时通道被关闭，take 同样返回 null
+                if (terminated.compareAndSet(false, true)) {
+                    result.complete(collector.finisher().apply(container));
+                }
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable e) {
+            if (!terminated.compareAndSet(false, true)) {
+                return;
+            }
+            result.completeExceptionally(e);
+            for (BatchChannel channel : channels) {
+                channel.close();
+            }
+            Subscription s = subscription;
+            if (s != null) {
+                s.cancel();
+            }
+        }
+
+        /**
+         * 规范要求对同一个 Subscription 的 request 调用串行执行，各阶段的工作线程都可能补充请求
+         */
+        private void request(int n) {
+            Subscription s = subscription;
+            if (s != null && !terminated.get()) {
+                synchronized (this) {
+                    s.request(n);
+                }
+            }
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            Objects.requireNonNull(s, "subscription");
+            if (subscription != null || terminated.get()) {
+                s.cancel();
+                return;
+            }
+            subscription = s;
+            synchronized (this) {
+                s.request((long) bufferBatches * batchSize);
+            }
+        }
+
+        @Override
+        public void onNext(Object element) {
+            Objects.requireNonNull(element, "element");
+            channels[0].offer(element);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            Objects.requireNonNull(e, "throwable");
+            fail(e);
+        }
+
+        @Override
+        public void onComplete() {
+            channels[0].complete();
+        }
+    }
+
+    /**
+     * 收集一个工作线程的输出，攒满 batchSize 个就放入下游队列
+     */
+    private final class Emitter implements Consumer<Object> {
+
+        private final BatchChannel out;
+
+        private List<Object> batch;
+
+        private Emitter(BatchChannel out) {
+            this.out = out;
+        }
+
+        @Override
+        public void accept(Object element) {
+            if (batch == null) {
+                batch = new ArrayList<>(Math.min(batchSize, 16));
+            }
+            batch.add(element);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (batch == null) {
+                return;
+            }
+            List<Object> full = batch;
+            batch = null;
+            try {
+                out.put(full);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                CancellationException cancelled = new CancellationException("interrupted");
+                cancelled.initCause(e);
+                throw cancelled;
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.wangrong.stream.flow;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按订阅者的请求量逐个读取 Iterator 的 Publisher
+ * 每次订阅都调用 iterable.iterator() 取一个新的 Iterator，也可以传入 () -> iterator 这样的 lambda；
+ * 只有在收到请求时才调用 next()，所以数据源可以是无限的或逐条从外部读取的。hasNext()、next() 在调用 request 的线程上执行，
+ * 同一时刻只有一个线程在读取。
+ *
+ * 用法：
+ * FlowPipeline.from(IteratorPublisher.of(persons)).map(p -> p.name).collect(Collectors.toList());
+ */
+public final class IteratorPublisher<T> implements Publisher<T> {
+
+    private final Iterable<? extends T> iterable;
+
+    private IteratorPublisher(Iterable<? extends T> iterable) {
+        this.iterable = iterable;
+    }
+
+    public static <T> IteratorPublisher<T> of(Iterable<? extends T> iterable) {
+        Objects.requireNonNull(iterable, "iterable");
+        return new IteratorPublisher<>(iterable);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        Iterator<? extends T> iterator;
+        try {
+            iterator = iterable.iterator();
+        } catch (RuntimeException e) {
+            subscriber.onSubscribe(new EmptySubscription());
+            subscriber.onError(e);
+            return;
+        }
+        subscriber.onSubscribe(new IteratorSubscription<>(subscriber, iterator));
+    }
+
+    private static final class IteratorSubscription<T> implements Subscription {
+
+        private final Subscriber<? super T> subscriber;
+
+        private final Iterator<? extends T> iterator;
+
+        private final AtomicLong requested = new AtomicLong();
+
+        /**
+         * 正在发送的线程数加上发送期间新到的请求次数，非 0 时其他线程只累加请求量，由正在发送的线程接着发送
+         */
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+
+        private IteratorSubscription(Subscriber<? super T> subscriber, Iterator<? extends T> iterator) {
+            this.subscriber = subscriber;
+            this.iterator = iterator;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+                return;
+            }
+            long current;
+            do {
+                current = requested.get();
+                if (current == Long.MAX_VALUE) {
+                    break;
+                }
+            } while (!requested.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            try {
+                while (true) {
+                    long demand = requested.get();
+                    long emitted = 0;
+                    while (emitted != demand) {
+                        if (cancelled) {
+                            return;
+                        }
+                        if (!iterator.hasNext()) {
+                            cancelled = true;
+                            subscriber.onComplete();
+                            return;
+                        }
+                        subscriber.onNext(Objects.requireNonNull(iterator.next(), "iterator returned null"));
+                        emitted++;
+                    }
+                    if (cancelled) {
+                        return;
+                    }
+                    if (!iterator.hasNext()) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    if (demand != Long.MAX_VALUE) {
+                        requested.addAndGet(-emitted);
+                    }
+                    missed = wip.addAndGet(-missed);
+                    if (missed == 0) {
+                        return;
+                    }
+                }
+            } catch (RuntimeException e) {
+                cancelled = true;
+                subscriber.onError(e);
+            }
+        }
+    }
+
+    private static final class EmptySubscription implements Subscription {
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.wangrong.stream.instrument;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * 带阶段指标的流装饰器，替代在 filter/map 中 System.out.println 的调试方式
+ * 每个中间操作带一个阶段名，记录进出元素数、选择率，并抽样记录耗时与线程分布，指标写入 StreamMetricsRegistry。
+ * 注册表关闭时 lambda 原样交给底层流，没有任何包装。
+ *
+ * sorted、distinct、limit 等不带用户函数的操作通过 then() 直接作用在底层流上，终端操作通过 stream() 取得底层流。
+ *
+ * 用法：
+ * long count = InstrumentedStream.of(registry, "codes", list.stream())
+ *         .filter("startsWithC", s -> s.startsWith("c"))
+ *         .map("toUpperCase", String::toUpperCase)
+ *         .stream()
+ *         .count();
+ */
+public final class InstrumentedStream<T> {
+
+    private final StreamMetricsRegistry registry;
+
+    private final String pipeline;
+
+    private final Stream<T> stream;
+
+    private InstrumentedStream(StreamMetricsRegistry registry, String pipeline, Stream<T> stream) {
+        this.registry = registry;
+        this.pipeline = pipeline;
+        this.stream = stream;
+    }
+
+    public static <T> InstrumentedStream<T> of(StreamMetricsRegistry registry, String pipeline, Stream<T> stream) {
+        return new InstrumentedStream<>(Objects.requireNonNull(registry, "registry"),
+                Objects.requireNonNull(pipeline, "pipeline"), Objects.requireNonNull(stream, "stream"));
+    }
+
+    public InstrumentedStream<T> filter(String stage, Predicate<? super T> predicate) {
+        if (!registry.isEnabled()) {
+            return next(stream.filter(predicate));
+        }
+        StageMetrics metrics = registry.stage(pipeline, stage);
+        return next(stream.filter(element -> {
+            metrics.recordInput();
+            boolean matched;
+            if (registry.sample()) {
+                long start = System.nanoTime();
+                matched = predicate.test(element);
+                metrics.recordSample(System.nanoTime() - start);
+            } else {
+                matched = predicate.test(element);
+            }
+            if (matched) {
+                metrics.recordOutput();
+            }
+            return matched;
+        }));
+    }
+
+    public <R> InstrumentedStream<R> map(String stage, Function<? super T, ? extends R> mapper) {
+        if (!registry.isEnabled()) {
+            return next(stream.map(mapper));
+        }
+        StageMetrics metrics = registry.stage(pipeline, stage, true);
+        return next(stream.map(element -> {
+            metrics.recordInput();
+            R result;
+            if (registry.sample()) {
+                long start = System.nanoTime();
+                result = mapper.apply(element);
+                metrics.recordSample(System.nanoTime() - start);
+            } else {
+                result = mapper.apply(element);
+            }
+            return result;
+        }));
+    }
+
+    /**
+     * 耗时只包含 mapper 本身，子流是惰性的，元素的生成计入下游阶段
+     */
+    public <R> InstrumentedStream<R> flatMap(String stage, Function<? super T, ? extends Stream<? extends R>> mapper) {
+        if (!registry.isEnabled()) {
+            return next(stream.flatMap(mapper));
+        }
+        StageMetrics metrics = registry.stage(pipeline, stage);
+        return next(stream.flatMap(element -> {
+            metrics.recordInput();
+            Stream<? extends R> result;
+            if (registry.sample()) {
+                long start = System.nanoTime();
+                result = mapper.apply(element);
+                metrics.recordSample(System.nanoTime() - start);
+            } else {
+                result = mapper.apply(element);
+            }
+            return result == null ? null : result.peek(r -> metrics.recordOutput());
+        }));
+    }
+
+    public InstrumentedStream<T> peek(String stage, Consumer<? super T> action) {
+        if (!registry.isEnabled()) {
+            return next(stream.peek(action));
+        }
+        StageMetrics metrics = registry.stage(pipeline, stage, true);
+        return next(stream.peek(element -> {
+            metrics.recordInput();
+            if (registry.sample()) {
+                long start = System.nanoTime();
+                action.accept(element);
+                metrics.recordSample(System.nanoTime() - start);
+            } else {
+                action.accept(element);
+            }
+        }));
+    }
+
+    /**
+     * 在底层流上追加不需要计量的操作，例如 s -> s.sorted().limit(10)
+     */
+    public <R> InstrumentedStream<R> then(Function<? super Stream<T>, ? extends Stream<R>> operation) {
+        return next(operation.apply(stream));
+    }
+
+    /**
+     * 底层流，用于执行终端操作
+     */
+    public Stream<T> stream() {
+        return stream;
+    }
+
+    private <R> InstrumentedStream<R> next(Stream<R> next) {
+        return new InstrumentedStream<>(registry, pipeline, next);
+    }
+}
@@ -0,0 +1,165 @@
+package com.wangrong.stream.instrument;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 流水线中某个阶段的计数器
+ * 进出元素数每个元素都计数，耗时和线程分布只在抽样到的元素上记录；
+ * 全部使用 LongAdder，并行流的多个工作线程同时更新时不会争用同一个缓存行。
+ * 线程分布按线程名记录，最多 MAX_THREADS 个不同的线程，之后出现的线程合并计入 OTHER_THREADS：
+ * 线程池回收后新建的工作线程名字会递增，不限制时长期运行的服务中这张表只增不减。
+ */
+public final class StageMetrics {
+
+    /**
+     * 单独记录的线程数上限
+     */
+    static final int MAX_THREADS = 64;
+
+    /**
+     * 超出上限的线程合并后的名字
+     */
+    public static final String OTHER_THREADS = "other";
+
+    private final String pipeline;
+
+    private final String stage;
+
+    private final int order;
+
+    /**
+     * map、peek 每个输入恰好产生一个输出，不必单独计数输出
+     */
+    private final boolean oneToOne;
+
+    private final LongAdder input = new LongAdder();
+
+    private final LongAdder output = new LongAdder();
+
+    private final LongAdder sampledCount = new LongAdder();
+
+    private final LongAdder sampledNanos = new LongAdder();
+
+    private final ConcurrentMap<String, LongAdder> threads = new ConcurrentHashMap<>();
+
+    private final LongAdder otherThreads = new LongAdder();
+
+    StageMetrics(String pipeline, String stage, int order, boolean oneToOne) {
+        this.pipeline = pipeline;
+        this.stage = stage;
+        this.order = order;
+        this.oneToOne = oneToOne;
+    }
+
+    void recordInput() {
+        input.increment();
+    }
+
+    void recordOutput() {
+        output.increment();
+    }
+
+    void recordSample(long nanos) {
+        sampledCount.increment();
+        sampledNanos.add(nanos);
+        String name = Thread.currentThread().getName();
+        LongAdder counter = threads.get(name);
+        if (counter == null) {
+            //并发时可能略微超过上限，只是为了不无限增长，不需要精确
+            counter = threads.size() < MAX_THREADS ? threads.computeIfAbsent(name, key -> new LongAdder()) : otherThreads;
+        }
+        counter.increment();
+    }
+
+    void reset() {
+        input.reset();
+        output.reset();
+        sampledCount.reset();
+        sampledNanos.reset();
+        threads.clear();
+        otherThreads.reset();
+    }
+
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    /**
+     * 阶段在流水线中的先后顺序
+     */
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * 进入该阶段的元素数
+     */
+    public long getInput() {
+        return input.sum();
+    }
+
+    /**
+     * 离开该阶段的元素数（filter 为通过的元素，flatMap 为展开后的元素）
+     */
+    public long getOutput() {
+        return oneToOne ? input.sum() : output.sum();
+    }
+
+    /**
+     * 输出 / 输入，没有输入时为 1
+     */
+    public double getSelectivity() {
+        long in = getInput();
+        return in == 0 ? 1 : (double) getOutput() / in;
+    }
+
+    /**
+     * 计时抽样的元素数
+     */
+    public long getSampledCount() {
+        return sampledCount.sum();
+    }
+
+    /**
+     * 抽样元素的总耗时（纳秒）
+     */
+    public long getSampledNanos() {
+        return sampledNanos.sum();
+    }
+
+    /**
+     * 抽样元素的平均耗时（纳秒）
+     */
+    public double getMeanNanos() {
+        long count = getSampledCount();
+        return count == 0 ? 0 : (double) getSampledNanos() / count;
+    }
+
+    /**
+     * 抽样元素在各线程上的分布，超出 MAX_THREADS 的线程合并为 OTHER_THREADS
+     */
+    public Map<String, Long> getThreads() {
+        Map<String, Long> result = new TreeMap<>();
+        threads.forEach((name, counter) -> result.put(name, counter.sum()));
+        long other = otherThreads.sum();
+        if (other > 0) {
+            result.merge(OTHER_THREADS, other, Long::sum);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "StageMetrics{pipeline=" + pipeline + ", stage=" + stage + ", input=" + getInput()
+                + ", output=" + getOutput() + ", selectivity=" + getSelectivity()
+                + ", meanNanos=" + getMeanNanos() + ", threads=" + getThreads() + "}";
+    }
+}
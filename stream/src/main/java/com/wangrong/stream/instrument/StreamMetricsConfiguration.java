@@ -0,0 +1,15 @@
+package com.wangrong.stream.instrument;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(StreamMetricsProperties.class)
+public class StreamMetricsConfiguration {
+
+    @Bean
+    public StreamMetricsRegistry streamMetricsRegistry(StreamMetricsProperties properties) {
+        return new StreamMetricsRegistry(properties.isEnabled(), properties.getSampleRate());
+    }
+}
@@ -0,0 +1,38 @@
+package com.wangrong.stream.instrument;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 流水线指标配置
+ * stream.metrics.enabled=true
+ * stream.metrics.sample-rate=64
+ */
+@ConfigurationProperties(prefix = "stream.metrics")
+public class StreamMetricsProperties {
+
+    /**
+     * 是否记录指标，关闭时 InstrumentedStream 不做任何包装
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每多少个元素抽样一个记录耗时和线程，向上取整为 2 的幂
+     */
+    private int sampleRate = 64;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+}
@@ -0,0 +1,119 @@
+package com.wangrong.stream.instrument;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * 流水线阶段指标的注册表，按 流水线名 -> 阶段名 保存 StageMetrics
+ * 关闭时 InstrumentedStream 直接把 lambda 交给底层流，不做任何包装，没有额外开销。
+ * 新阶段创建时通知监听器，Micrometer 等导出器可以据此注册对应的 Meter。
+ */
+public class StreamMetricsRegistry {
+
+    /**
+     * 不记录任何指标的注册表
+     */
+    public static final StreamMetricsRegistry DISABLED = new StreamMetricsRegistry(false, 1);
+
+    private final boolean enabled;
+
+    private final int sampleMask;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, StageMetrics>> pipelines = new ConcurrentHashMap<>();
+
+    private final List<Consumer<StageMetrics>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param sampleRate 每 sampleRate 个元素抽样一个记录耗时和线程，向上取整为 2 的幂
+     */
+    public StreamMetricsRegistry(boolean enabled, int sampleRate) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sampleRate must be positive: " + sampleRate);
+        }
+        this.enabled = enabled;
+        this.sampleMask = sampleRate == 1 ? 0 : Integer.highestOneBit(sampleRate - 1) * 2 - 1;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 实际使用的抽样间隔
+     */
+    public int getSampleRate() {
+        return sampleMask + 1;
+    }
+
+    /**
+     * 取得（不存在时创建）某个阶段的指标
+     */
+    public StageMetrics stage(String pipeline, String stage) {
+        return stage(pipeline, stage, false);
+    }
+
+    StageMetrics stage(String pipeline, String stage, boolean oneToOne) {
+        ConcurrentMap<String, StageMetrics> stages = pipelines.computeIfAbsent(pipeline, name -> new ConcurrentHashMap<>());
+        StageMetrics metrics = stages.get(stage);
+        if (metrics == null) {
+            StageMetrics candidate = new StageMetrics(pipeline, stage, stages.size(), oneToOne);
+            metrics = stages.putIfAbsent(stage, candidate);
+            if (metrics == null) {
+                metrics = candidate;
+                listeners.forEach(listener -> listener.accept(candidate));
+            }
+        }
+        return metrics;
+    }
+
+    public Set<String> pipelines() {
+        return new TreeSet<>(pipelines.keySet());
+    }
+
+    /**
+     * 某条流水线的所有阶段，按阶段顺序
+     */
+    public List<StageMetrics> stages(String pipeline) {
+        Map<String, StageMetrics> stages = pipelines.get(pipeline);
+        List<StageMetrics> result = stages == null ? new ArrayList<>() : new ArrayList<>(stages.values());
+        result.sort(Comparator.comparingInt(StageMetrics::getOrder));
+        return result;
+    }
+
+    /**
+     * 所有阶段，按流水线名和阶段顺序
+     */
+    public List<StageMetrics> stages() {
+        List<StageMetrics> result = new ArrayList<>();
+        pipelines().forEach(pipeline -> result.addAll(stages(pipeline)));
+        return result;
+    }
+
+    /**
+     * 新阶段创建时回调，注册前已经存在的阶段也会回调一次
+     */
+    public void onNewStage(Consumer<StageMetrics> listener) {
+        listeners.add(listener);
+        stages().forEach(listener);
+    }
+
+    /**
+     * 计数清零，已注册的阶段保留
+     */
+    public void reset() {
+        pipelines.values().forEach(stages -> stages.values().forEach(StageMetrics::reset));
+    }
+
+    boolean sample() {
+        return (ThreadLocalRandom.current().nextInt() & sampleMask) == 0;
+    }
+}
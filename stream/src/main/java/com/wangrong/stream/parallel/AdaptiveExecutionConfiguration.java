@@ -0,0 +1,20 @@
+package com.wangrong.stream.parallel;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(AdaptiveExecutionProperties.class)
+public class AdaptiveExecutionConfiguration {
+
+    @Bean
+    public AdaptiveExecutor adaptiveExecutor(AdaptiveExecutionProperties properties) {
+        return AdaptiveExecutor.builder()
+                .sampleSize(properties.getSampleSize())
+                .parallelThreshold(properties.getParallelThreshold())
+                .minLeafTime(properties.getMinLeafTime())
+                .resampleInterval(properties.getResampleInterval())
+                .build();
+    }
+}
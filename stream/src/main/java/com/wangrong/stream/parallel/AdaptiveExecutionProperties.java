@@ -0,0 +1,68 @@
+package com.wangrong.stream.parallel;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 自动选择串行/并行的配置，见 AdaptiveExecutor
+ * stream.adaptive.sample-size=64
+ * stream.adaptive.parallel-threshold=1ms
+ * stream.adaptive.min-leaf-time=50us
+ * stream.adaptive.resample-interval=1000
+ */
+@ConfigurationProperties(prefix = "stream.adaptive")
+public class AdaptiveExecutionProperties {
+
+    /**
+     * 抽样的元素数，不超过该值的数据源直接串行执行
+     */
+    private int sampleSize = 64;
+
+    /**
+     * 估计的串行耗时达到该值时并行执行
+     */
+    private Duration parallelThreshold = Duration.ofMillis(1);
+
+    /**
+     * 并行时每个叶子任务至少处理的工作量
+     */
+    private Duration minLeafTime = Duration.ofNanos(50_000);
+
+    /**
+     * 每多少次执行重新抽样
+     */
+    private int resampleInterval = 1000;
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    public Duration getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public void setParallelThreshold(Duration parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public Duration getMinLeafTime() {
+        return minLeafTime;
+    }
+
+    public void setMinLeafTime(Duration minLeafTime) {
+        this.minLeafTime = minLeafTime;
+    }
+
+    public int getResampleInterval() {
+        return resampleInterval;
+    }
+
+    public void setResampleInterval(int resampleInterval) {
+        this.resampleInterval = resampleInterval;
+    }
+}
@@ -0,0 +1,318 @@
+package com.wangrong.stream.parallel;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 自动选择串行或并行执行流水线
+ * parallel() 中说并行流适合元素很多的情况，但在代码里写死 stream() 或 parallelStream() 时，
+ * 像 persons 这样的小集合要白白付出 fork/join 的开销，大集合又常常被留在串行。
+ * 这里按数据源大小和流水线在前 sampleSize 个元素上的实测耗时估计串行总耗时：
+ * - 元素数不超过 sampleSize：串行，不抽样
+ * - 估计耗时低于 parallelThreshold：串行
+ * - 否则并行，叶子任务至少处理 minLeafTime 的工作量，避免元素很便宜时拆得过细
+ * 每个元素的耗时按流水线名缓存，每 resampleInterval 次执行重新抽样，串行执行的实际耗时也会修正它。
+ * 并行执行比估计的串行耗时还慢时，该流水线的并行阈值加倍（PlanMetrics.corrections），重新抽样时恢复。
+ * 每次决定和实际耗时记录在 PlanMetrics 中，onNewPipeline 可以把它们注册到 Micrometer 等导出器。
+ *
+ * 抽样会在前 sampleSize 个元素上多执行几次流水线，流水线应当像并行流一样没有副作用。
+ *
+ * 用法：
+ * List<String> names = executor.execute("adults", persons,
+ *         stream -> stream.filter(p -> p.age >= 18).map(p -> p.name).collect(toList()));
+ */
+public class AdaptiveExecutor {
+
+    private final int sampleSize;
+
+    private final long parallelThresholdNanos;
+
+    private final long minLeafNanos;
+
+    private final int resampleInterval;
+
+    private final ForkJoinPool pool;
+
+    private final ConcurrentMap<String, PipelineState> pipelines = new ConcurrentHashMap<>();
+
+    private final List<Consumer<PlanMetrics>> listeners = new CopyOnWriteArrayList<>();
+
+    private AdaptiveExecutor(Builder builder) {
+        this.sampleSize = builder.sampleSize;
+        this.parallelThresholdNanos = builder.parallelThreshold.toNanos();
+        this.minLeafNanos = builder.minLeafTime.toNanos();
+        this.resampleInterval = builder.resampleInterval;
+        this.pool = builder.pool;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 选择执行方式并执行流水线，pipeline 接收按决定创建的串行或并行流
+     */
+    public <T, R> R execute(String name, Collection<T> source, Function<? super Stream<T>, R> pipeline) {
+        PipelineState state = state(name);
+        ExecutionPlan plan = plan(state, source, pipeline);
+        long start = System.nanoTime();
+        R result = plan.isParallel() ? parallel(source, plan, pipeline) : pipeline.apply(source.stream());
+        state.completed(plan, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * 只做决定不执行，需要抽样时会在前 sampleSize 个元素上执行流水线
+     */
+    public <T, R> ExecutionPlan plan(String name, Collection<T> source, Function<? super Stream<T>, R> pipeline) {
+        return plan(state(name), source, pipeline);
+    }
+
+    private <T, R> ExecutionPlan plan(PipelineState state, Collection<T> source, Function<? super Stream<T>, R> pipeline) {
+        long size = source.size();
+        if (size <= sampleSize) {
+            return new ExecutionPlan(false, size, Double.NaN, size, 1, "small");
+        }
+        int parallelism = parallelism();
+        if (parallelism < 2) {
+            return new ExecutionPlan(false, size, Double.NaN, size, parallelism, "single-thread");
+        }
+        if (Double.isNaN(state.nanosPerElement) || state.runsSinceSample.get() >= resampleInterval) {
+            state.sampled(sample(source, pipeline), parallelThresholdNanos);
+        }
+        double nanosPerElement = state.nanosPerElement;
+        double estimate = size * nanosPerElement;
+        if (estimate < state.thresholdNanos) {
+            return new ExecutionPlan(false, size, nanosPerElement, size, parallelism, "cheap");
+        }
+        long byCost = (long) Math.ceil(minLeafNanos / Math.max(nanosPerElement, 1e-3));
+        long byParallelism = (size + 4L * parallelism - 1) / (4L * parallelism);
+        long leafSize = Math.min(size, Math.max(1, Math.max(byCost, byParallelism)));
+        return new ExecutionPlan(true, size, nanosPerElement, leafSize, parallelism, "costly");
+    }
+
+    /**
+     * 在前 sampleSize / 2 和前 sampleSize 个元素上各执行三次，取较快的一次，按两者之差计算单个元素的耗时，
+     * 扣除创建流水线等固定开销；差值不可靠（计时误差）时按总耗时平均
+     */
+    private <T, R> double sample(Collection<T> source, Function<? super Stream<T>, R> pipeline) {
+        List<T> sample = new ArrayList<>(sampleSize);
+        Iterator<T> iterator = source.iterator();
+        while (sample.size() < sampleSize && iterator.hasNext()) {
+            sample.add(iterator.next());
+        }
+        int half = sample.size() / 2;
+        long full = Long.MAX_VALUE;
+        long partial = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            partial = Math.min(partial, time(sample.subList(0, half), pipeline));
+            full = Math.min(full, time(sample, pipeline));
+        }
+        if (half > 0 && full > partial) {
+            return (double) (full - partial) / (sample.size() - half);
+        }
+        return (double) full / sample.size();
+    }
+
+    private static <T, R> long time(List<T> sample, Function<? super Stream<T>, R> pipeline) {
+        long start = System.nanoTime();
+        pipeline.apply(sample.stream());
+        return System.nanoTime() - start;
+    }
+
+    private <T, R> R parallel(Collection<T> source, ExecutionPlan plan, Function<? super Stream<T>, R> pipeline) {
+        Stream<T> stream = StreamSupport.stream(new GranularSpliterator<>(source.spliterator(), plan.getLeafSize()), true);
+        Thread current = Thread.currentThread();
+        //指定了池且不在该池中时提交到该池，其中启动的并行流在该池上执行
+        if (pool != null && !(current instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) current).getPool() == pool)) {
+            return pool.submit(() -> pipeline.apply(stream)).join();
+        }
+        return pipeline.apply(stream);
+    }
+
+    private int parallelism() {
+        if (pool != null) {
+            return pool.getParallelism();
+        }
+        Thread current = Thread.currentThread();
+        if (current instanceof ForkJoinWorkerThread) {
+            return ((ForkJoinWorkerThread) current).getPool().getParallelism();
+        }
+        return ForkJoinPool.getCommonPoolParallelism();
+    }
+
+    private PipelineState state(String name) {
+        PipelineState state = pipelines.get(name);
+        if (state == null) {
+            PipelineState candidate = new PipelineState(name, parallelThresholdNanos);
+            state = pipelines.putIfAbsent(name, candidate);
+            if (state == null) {
+                state = candidate;
+                listeners.forEach(listener -> listener.accept(candidate.metrics));
+            }
+        }
+        return state;
+    }
+
+    public PlanMetrics metrics(String pipeline) {
+        PipelineState state = pipelines.get(pipeline);
+        return state == null ? null : state.metrics;
+    }
+
+    /**
+     * 所有流水线，按名字排序
+     */
+    public List<PlanMetrics> metrics() {
+        List<PlanMetrics> result = new ArrayList<>();
+        pipelines.values().forEach(state -> result.add(state.metrics));
+        result.sort(Comparator.comparing(PlanMetrics::getPipeline));
+        return result;
+    }
+
+    /**
+     * 新流水线第一次执行时回调，注册前已经存在的流水线也会回调一次
+     */
+    public void onNewPipeline(Consumer<PlanMetrics> listener) {
+        listeners.add(listener);
+        metrics().forEach(listener);
+    }
+
+    /**
+     * 计数清零并丢弃缓存的耗时，下次执行时重新抽样
+     */
+    public void reset() {
+        pipelines.values().forEach(PipelineState::reset);
+    }
+
+    private static final class PipelineState {
+
+        final PlanMetrics metrics;
+
+        final AtomicInteger runsSinceSample = new AtomicInteger();
+
+        volatile double nanosPerElement = Double.NaN;
+
+        volatile long thresholdNanos;
+
+        PipelineState(String name, long thresholdNanos) {
+            this.metrics = new PlanMetrics(name);
+            this.thresholdNanos = thresholdNanos;
+        }
+
+        void sampled(double nanosPerElement, long thresholdNanos) {
+            this.nanosPerElement = nanosPerElement;
+            this.thresholdNanos = thresholdNanos;
+            runsSinceSample.set(0);
+            metrics.sampled();
+        }
+
+        void completed(ExecutionPlan plan, long nanos) {
+            metrics.record(plan, nanos);
+            if (Double.isNaN(plan.getNanosPerElement())) {
+                return;
+            }
+            runsSinceSample.incrementAndGet();
+            double estimate = plan.getSize() * plan.getNanosPerElement();
+            if (plan.isParallel()) {
+                if (nanos > estimate) {
+                    //至少提高到本次估计值的两倍，同样大小的数据源之后串行执行，不会因为计时抖动来回切换
+                    thresholdNanos = Math.max(Math.min(thresholdNanos * 2, Long.MAX_VALUE / 2), (long) (estimate * 2) + 1);
+                    metrics.corrected();
+                }
+                //并行耗时 × 线程数是单个元素耗时的上界，JVM 刚启动时抽样偏高，靠它逐步修正
+                double bound = (double) nanos * plan.getParallelism() / plan.getSize();
+                if (bound < nanosPerElement) {
+                    nanosPerElement = (nanosPerElement + bound) / 2;
+                }
+            } else {
+                //串行执行的实际耗时比抽样更准确（包含了缓存未命中等），平滑地修正
+                nanosPerElement = (nanosPerElement + (double) nanos / plan.getSize()) / 2;
+            }
+        }
+
+        void reset() {
+            nanosPerElement = Double.NaN;
+            metrics.reset();
+        }
+    }
+
+    public static final class Builder {
+
+        private int sampleSize = 64;
+
+        private Duration parallelThreshold = Duration.ofMillis(1);
+
+        private Duration minLeafTime = Duration.ofNanos(50_000);
+
+        private int resampleInterval = 1000;
+
+        private ForkJoinPool pool;
+
+        private Builder() {
+        }
+
+        /**
+         * 抽样的元素数，默认 64；元素数不超过该值的数据源直接串行执行
+         */
+        public Builder sampleSize(int sampleSize) {
+            if (sampleSize < 1) {
+                throw new IllegalArgumentException("sampleSize must be positive: " + sampleSize);
+            }
+            this.sampleSize = sampleSize;
+            return this;
+        }
+
+        /**
+         * 估计的串行耗时达到该值时并行执行，默认 1ms
+         */
+        public Builder parallelThreshold(Duration parallelThreshold) {
+            this.parallelThreshold = parallelThreshold;
+            return this;
+        }
+
+        /**
+         * 并行时每个叶子任务至少处理的工作量，默认 50µs
+         */
+        public Builder minLeafTime(Duration minLeafTime) {
+            this.minLeafTime = minLeafTime;
+            return this;
+        }
+
+        /**
+         * 每多少次执行重新抽样，默认 1000
+         */
+        public Builder resampleInterval(int resampleInterval) {
+            if (resampleInterval < 1) {
+                throw new IllegalArgumentException("resampleInterval must be positive: " + resampleInterval);
+            }
+            this.resampleInterval = resampleInterval;
+            return this;
+        }
+
+        /**
+         * 并行执行使用的 ForkJoinPool，默认为调用线程所在的池或公共池
+         */
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public AdaptiveExecutor build() {
+            return new AdaptiveExecutor(this);
+        }
+    }
+}
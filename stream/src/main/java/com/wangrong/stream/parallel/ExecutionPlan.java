@@ -0,0 +1,74 @@
+package com.wangrong.stream.parallel;
+
+/**
+ * AdaptiveExecutor 对一次执行的决定：串行还是并行，以及并行时每个叶子任务至少处理的元素数
+ */
+public final class ExecutionPlan {
+
+    private final boolean parallel;
+
+    private final long size;
+
+    private final double nanosPerElement;
+
+    private final long leafSize;
+
+    private final int parallelism;
+
+    private final String reason;
+
+    ExecutionPlan(boolean parallel, long size, double nanosPerElement, long leafSize, int parallelism, String reason) {
+        this.parallel = parallel;
+        this.size = size;
+        this.nanosPerElement = nanosPerElement;
+        this.leafSize = leafSize;
+        this.parallelism = parallelism;
+        this.reason = reason;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * 数据源的元素数
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * 做决定时使用的单个元素耗时，small、single-thread 时不抽样，为 NaN
+     */
+    public double getNanosPerElement() {
+        return nanosPerElement;
+    }
+
+    /**
+     * 并行时叶子任务的最小元素数，串行时为数据源大小
+     */
+    public long getLeafSize() {
+        return leafSize;
+    }
+
+    /**
+     * 做决定时执行线程池的并行度
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 决定的依据：small（不超过抽样数）、single-thread（池只有一个线程）、cheap（预计总耗时低于阈值）、costly（超过阈值）
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionPlan{" + (parallel ? "parallel" : "sequential") + ", size=" + size
+                + ", nanosPerElement=" + String.format("%.1f", nanosPerElement)
+                + ", leafSize=" + leafSize + ", parallelism=" + parallelism + ", reason=" + reason + "}";
+    }
+}
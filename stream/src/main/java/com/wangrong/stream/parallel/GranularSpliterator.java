@@ -0,0 +1,60 @@
+package com.wangrong.stream.parallel;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * 剩余元素不超过 2 * leafSize 时不再拆分，控制并行流叶子任务的粒度
+ * 流框架按公共池并行度的 4 倍拆分，每个元素很便宜时叶子太小，fork/join 的开销超过了计算本身。
+ */
+final class GranularSpliterator<T> implements Spliterator<T> {
+
+    private final Spliterator<T> source;
+
+    private final long leafSize;
+
+    GranularSpliterator(Spliterator<T> source, long leafSize) {
+        this.source = source;
+        this.leafSize = leafSize;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        if (source.estimateSize() < 2 * leafSize) {
+            return null;
+        }
+        Spliterator<T> prefix = source.trySplit();
+        return prefix == null ? null : new GranularSpliterator<>(prefix, leafSize);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        return source.tryAdvance(action);
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        source.forEachRemaining(action);
+    }
+
+    @Override
+    public long estimateSize() {
+        return source.estimateSize();
+    }
+
+    @Override
+    public long getExactSizeIfKnown() {
+        return source.getExactSizeIfKnown();
+    }
+
+    @Override
+    public int characteristics() {
+        return source.characteristics();
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+        return source.getComparator();
+    }
+}
@@ -0,0 +1,15 @@
+package com.wangrong.stream.parallel;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ParallelStreamProperties.class)
+public class ParallelStreamConfiguration {
+
+    @Bean
+    public ParallelStreamExecutor parallelStreamExecutor(ParallelStreamProperties properties) {
+        return new ParallelStreamExecutor(properties.getPools());
+    }
+}
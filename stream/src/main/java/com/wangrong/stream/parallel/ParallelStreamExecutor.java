@@ -0,0 +1,235 @@
+package com.wangrong.stream.parallel;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 在命名的专用 ForkJoinPool 上执行并行流
+ * parallel() 中提到，所有 parallelStream() 默认共享 ForkJoinPool.commonPool()，一个又慢又重的流水线会拖慢整个 JVM。
+ * 在某个 ForkJoinPool 的任务内部启动的并行流，其子任务会提交到这个池而不是公共池，
+ * 因此把重的批处理流水线放到独立、限定线程数的池中执行，可以与 web 线程和其它流水线隔离。
+ *
+ * 注意：并行流的拆分粒度仍按公共池的并行度计算（叶子任务数约为其 4 倍），只是执行线程换成了专用池。
+ *
+ * 用法：
+ * List<String> result = executor.execute("batch", () -> list.parallelStream().map(...).collect(toList()));
+ */
+public class ParallelStreamExecutor implements DisposableBean {
+
+    private final Map<String, NamedPool> pools;
+
+    public ParallelStreamExecutor(Map<String, ParallelStreamProperties.Pool> settings) {
+        Map<String, NamedPool> map = new LinkedHashMap<>();
+        settings.forEach((name, pool) -> map.put(name, new NamedPool(name, pool)));
+        this.pools = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * 在指定池中执行流水线并等待结果，流水线抛出的异常原样抛出
+     *
+     * @throws RejectedExecutionException 池中未结束的流水线已达到 max-pending
+     */
+    public <R> R execute(String pool, Supplier<R> pipeline) {
+        NamedPool namedPool = pool(pool);
+        //已经在该池的工作线程中，直接执行，避免重复占用名额
+        if (namedPool.owns(Thread.currentThread())) {
+            return pipeline.get();
+        }
+        namedPool.acquire();
+        PipelineTask<R> task = new PipelineTask<>(namedPool, pipeline);
+        try {
+            return namedPool.forkJoinPool.invoke(task);
+        } catch (RejectedExecutionException e) {
+            task.abandon();
+            throw e;
+        }
+    }
+
+    public void run(String pool, Runnable pipeline) {
+        execute(pool, () -> {
+            pipeline.run();
+            return null;
+        });
+    }
+
+    /**
+     * 异步提交流水线，调用线程不阻塞
+     *
+     * @throws RejectedExecutionException 池中未结束的流水线已达到 max-pending
+     */
+    public <R> CompletableFuture<R> submit(String pool, Supplier<R> pipeline) {
+        NamedPool namedPool = pool(pool);
+        namedPool.acquire();
+        PipelineTask<R> task = new PipelineTask<>(namedPool, pipeline);
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            namedPool.forkJoinPool.execute(() -> {
+                try {
+                    future.complete(task.compute());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            task.abandon();
+            throw e;
+        }
+        return future;
+    }
+
+    public Set<String> poolNames() {
+        return pools.keySet();
+    }
+
+    public PoolMetrics metrics(String pool) {
+        return pool(pool).metrics();
+    }
+
+    public Map<String, PoolMetrics> metrics() {
+        Map<String, PoolMetrics> metrics = new LinkedHashMap<>();
+        pools.forEach((name, pool) -> metrics.put(name, pool.metrics()));
+        return metrics;
+    }
+
+    /**
+     * 关闭所有池，等待正在执行的流水线结束
+     */
+    public void shutdown() throws InterruptedException {
+        for (NamedPool pool : pools.values()) {
+            pool.forkJoinPool.shutdown();
+        }
+        for (NamedPool pool : pools.values()) {
+            pool.forkJoinPool.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        shutdown();
+    }
+
+    private NamedPool pool(String name) {
+        NamedPool pool = pools.get(name);
+        if (pool == null) {
+            throw new IllegalArgumentException("unknown pool: " + name + ", configured pools: " + pools.keySet());
+        }
+        return pool;
+    }
+
+    /**
+     * 包装流水线，结束时归还名额并计数
+     */
+    private static final class PipelineTask<R> extends RecursiveTask<R> {
+
+        private final NamedPool pool;
+
+        private final Supplier<R> pipeline;
+
+        PipelineTask(NamedPool pool, Supplier<R> pipeline) {
+            this.pool = pool;
+            this.pipeline = pipeline;
+        }
+
+        private volatile boolean started;
+
+        @Override
+        protected R compute() {
+            started = true;
+            boolean success = false;
+            try {
+                R result = pipeline.get();
+                success = true;
+                return result;
+            } finally {
+                pool.release(success);
+            }
+        }
+
+        /**
+         * 池已关闭、任务未能开始时归还名额
+         */
+        void abandon() {
+            if (!started) {
+                pool.release(false);
+            }
+        }
+    }
+
+    private static final class NamedPool {
+
+        private final String name;
+
+        private final ForkJoinPool forkJoinPool;
+
+        private final int maxPending;
+
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private final LongAdder submitted = new LongAdder();
+
+        private final LongAdder completed = new LongAdder();
+
+        private final LongAdder failed = new LongAdder();
+
+        private final LongAdder rejected = new LongAdder();
+
+        NamedPool(String name, ParallelStreamProperties.Pool settings) {
+            if (settings.getParallelism() <= 0) {
+                throw new IllegalArgumentException("parallelism of pool " + name + " must be positive");
+            }
+            this.name = name;
+            this.maxPending = settings.getMaxPending();
+            AtomicInteger index = new AtomicInteger();
+            this.forkJoinPool = new ForkJoinPool(settings.getParallelism(), pool -> {
+                ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+                };
+                thread.setName("stream-" + name + "-" + index.incrementAndGet());
+                return thread;
+            }, null, false);
+        }
+
+        boolean owns(Thread thread) {
+            return thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == forkJoinPool;
+        }
+
+        void acquire() {
+            while (true) {
+                int current = pending.get();
+                if (maxPending > 0 && current >= maxPending) {
+                    rejected.increment();
+                    throw new RejectedExecutionException("pool " + name + " has " + current + " pending pipelines");
+                }
+                if (pending.compareAndSet(current, current + 1)) {
+                    submitted.increment();
+                    return;
+                }
+            }
+        }
+
+        void release(boolean success) {
+            pending.decrementAndGet();
+            (success ? completed : failed).increment();
+        }
+
+        PoolMetrics metrics() {
+            return new PoolMetrics(name, forkJoinPool.getParallelism(), forkJoinPool.getPoolSize(),
+                    forkJoinPool.getActiveThreadCount(), forkJoinPool.getRunningThreadCount(),
+                    forkJoinPool.getQueuedTaskCount(), forkJoinPool.getQueuedSubmissionCount(),
+                    forkJoinPool.getStealCount(), pending.get(),
+                    submitted.sum(), completed.sum(), failed.sum(), rejected.sum());
+        }
+    }
+}
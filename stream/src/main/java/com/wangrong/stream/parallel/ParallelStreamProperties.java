@@ -0,0 +1,54 @@
+package com.wangrong.stream.parallel;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 并行流专用线程池配置
+ * stream.parallel.pools.<name>.parallelism=2
+ * stream.parallel.pools.<name>.max-pending=16
+ */
+@ConfigurationProperties(prefix = "stream.parallel")
+public class ParallelStreamProperties {
+
+    private Map<String, Pool> pools = new LinkedHashMap<>();
+
+    public Map<String, Pool> getPools() {
+        return pools;
+    }
+
+    public void setPools(Map<String, Pool> pools) {
+        this.pools = pools;
+    }
+
+    public static class Pool {
+
+        /**
+         * 线程数，默认为 CPU 核数
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * 允许同时提交（执行中 + 排队）的流水线数量，超出时拒绝，0 表示不限制
+         */
+        private int maxPending = 0;
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public int getMaxPending() {
+            return maxPending;
+        }
+
+        public void setMaxPending(int maxPending) {
+            this.maxPending = maxPending;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.wangrong.stream.parallel;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 某条流水线的执行决定与结果
+ * 按执行方式分别累计执行次数、元素数和耗时，可以对比两种方式下每个元素的实际耗时；
+ * corrections 为并行执行比抽样估计的串行耗时更慢、因而提高该流水线并行阈值的次数。
+ */
+public final class PlanMetrics {
+
+    private final String pipeline;
+
+    private final LongAdder sequentialRuns = new LongAdder();
+
+    private final LongAdder sequentialElements = new LongAdder();
+
+    private final LongAdder sequentialNanos = new LongAdder();
+
+    private final LongAdder parallelRuns = new LongAdder();
+
+    private final LongAdder parallelElements = new LongAdder();
+
+    private final LongAdder parallelNanos = new LongAdder();
+
+    private final LongAdder samplings = new LongAdder();
+
+    private final LongAdder corrections = new LongAdder();
+
+    private volatile ExecutionPlan lastPlan;
+
+    PlanMetrics(String pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    void record(ExecutionPlan plan, long nanos) {
+        lastPlan = plan;
+        if (plan.isParallel()) {
+            parallelRuns.increment();
+            parallelElements.add(plan.getSize());
+            parallelNanos.add(nanos);
+        } else {
+            sequentialRuns.increment();
+            sequentialElements.add(plan.getSize());
+            sequentialNanos.add(nanos);
+        }
+    }
+
+    void sampled() {
+        samplings.increment();
+    }
+
+    void corrected() {
+        corrections.increment();
+    }
+
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    public long getSequentialRuns() {
+        return sequentialRuns.sum();
+    }
+
+    public long getSequentialElements() {
+        return sequentialElements.sum();
+    }
+
+    public long getSequentialNanos() {
+        return sequentialNanos.sum();
+    }
+
+    public long getParallelRuns() {
+        return parallelRuns.sum();
+    }
+
+    public long getParallelElements() {
+        return parallelElements.sum();
+    }
+
+    public long getParallelNanos() {
+        return parallelNanos.sum();
+    }
+
+    public long getSamplings() {
+        return samplings.sum();
+    }
+
+    public long getCorrections() {
+        return corrections.sum();
+    }
+
+    public ExecutionPlan getLastPlan() {
+        return lastPlan;
+    }
+
+    /**
+     * 计数清零，最近一次决定保留
+     */
+    public void reset() {
+        sequentialRuns.reset();
+        sequentialElements.reset();
+        sequentialNanos.reset();
+        parallelRuns.reset();
+        parallelElements.reset();
+        parallelNanos.reset();
+        samplings.reset();
+        corrections.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "PlanMetrics{pipeline=" + pipeline + ", sequentialRuns=" + getSequentialRuns()
+                + ", parallelRuns=" + getParallelRuns() + ", samplings=" + getSamplings()
+                + ", corrections=" + getCorrections() + ", lastPlan=" + lastPlan + "}";
+    }
+}
@@ -0,0 +1,124 @@
+package com.wangrong.stream.parallel;
+
+/**
+ * 某个线程池在某一时刻的指标快照
+ */
+public final class PoolMetrics {
+
+    private final String name;
+
+    private final int parallelism;
+
+    private final int poolSize;
+
+    private final int activeThreadCount;
+
+    private final int runningThreadCount;
+
+    private final long queuedTaskCount;
+
+    private final int queuedSubmissionCount;
+
+    private final long stealCount;
+
+    private final int pending;
+
+    private final long submitted;
+
+    private final long completed;
+
+    private final long failed;
+
+    private final long rejected;
+
+    PoolMetrics(String name, int parallelism, int poolSize, int activeThreadCount, int runningThreadCount,
+                long queuedTaskCount, int queuedSubmissionCount, long stealCount,
+                int pending, long submitted, long completed, long failed, long rejected) {
+        this.name = name;
+        this.parallelism = parallelism;
+        this.poolSize = poolSize;
+        this.activeThreadCount = activeThreadCount;
+        this.runningThreadCount = runningThreadCount;
+        this.queuedTaskCount = queuedTaskCount;
+        this.queuedSubmissionCount = queuedSubmissionCount;
+        this.stealCount = stealCount;
+        this.pending = pending;
+        this.submitted = submitted;
+        this.completed = completed;
+        this.failed = failed;
+        this.rejected = rejected;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getActiveThreadCount() {
+        return activeThreadCount;
+    }
+
+    public int getRunningThreadCount() {
+        return runningThreadCount;
+    }
+
+    /**
+     * 工作线程队列中等待执行的子任务数（队列深度）
+     */
+    public long getQueuedTaskCount() {
+        return queuedTaskCount;
+    }
+
+    /**
+     * 外部提交、尚未被工作线程取走的流水线数
+     */
+    public int getQueuedSubmissionCount() {
+        return queuedSubmissionCount;
+    }
+
+    /**
+     * 工作线程之间窃取任务的累计次数
+     */
+    public long getStealCount() {
+        return stealCount;
+    }
+
+    /**
+     * 已提交但尚未结束的流水线数
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolMetrics{name=" + name + ", parallelism=" + parallelism + ", poolSize=" + poolSize
+                + ", active=" + activeThreadCount + ", running=" + runningThreadCount
+                + ", queuedTasks=" + queuedTaskCount + ", queuedSubmissions=" + queuedSubmissionCount
+                + ", steals=" + stealCount + ", pending=" + pending + ", submitted=" + submitted
+                + ", completed=" + completed + ", failed=" + failed + ", rejected=" + rejected + "}";
+    }
+}
@@ -0,0 +1,232 @@
+package com.wangrong.stream.path;
+
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleInfo;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 解析一次、取值时不分配中间对象的空值安全属性路径
+ * flatMap() 中用 Optional.of(outer).flatMap(o -> ofNullable(o.nested)).flatMap(...) 取 outer.nested.inner.foo，
+ * 每次取值最多创建四个 Optional。这里把 "nested.inner.foo" 按段解析为 getter 方法或字段，每一段生成一个 Function，
+ * 取值时依次调用各段，任何一段为 null 时直接返回默认值（默认为 null），不创建任何对象。
+ * 路径的最后一段为原始类型时会装箱。
+ *
+ * getter 方法的一段用 LambdaMetafactory 生成，与手写的 o -> o.getNested() 一样是直接调用；
+ * 字段的一段（以及 Lookup 没有私有访问权限、或方法为其它类的 private 方法时）退回为调用 MethodHandle，
+ * 句柄保存在对象中而不是常量，JIT 不能把它内联，每次取值都要经过句柄的调用，比直接读字段慢得多。
+ * 所以对字段组成的路径（如 Application 中的 outer.nested.inner.foo）这里省掉的只是 Optional 的分配，
+ * 并不比手写的 null 判断快；热点路径上请给这些类加 getter，或者直接手写 null 判断。
+ * 各段在 apply 中的调用点由所有 PathAccessor 共用，路径种类多时为接口调用，不会内联成一个 getter。
+ *
+ * 每一段按 getXxx()、isXxx()（仅 boolean）、xxx() 方法、xxx 字段的顺序查找，跳过编译器生成的桥接方法，
+ * 访问权限按传入的 Lookup 检查，传入调用方的 MethodHandles.lookup() 即可访问调用方能访问的包级可见字段。
+ *
+ * 用法：
+ * PathAccessor<Outer, String> foo = PathAccessor.of(MethodHandles.lookup(), Outer.class, "nested.inner.foo", String.class);
+ * outers.stream().map(foo.orElse("")).filter(foo -> !foo.isEmpty())...
+ */
+public final class PathAccessor<T, R> implements Function<T, R> {
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    private final String path;
+
+    private final Class<R> type;
+
+    private final Function<Object, Object>[] segments;
+
+    private final R defaultValue;
+
+    private PathAccessor(String path, Class<R> type, Function<Object, Object>[] segments, R defaultValue) {
+        this.path = path;
+        this.type = type;
+        this.segments = segments;
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * @param lookup   用于检查访问权限，通常传入调用方的 MethodHandles.lookup()
+     * @param rootType 路径起点的类型
+     * @param path     以 . 分隔的属性名，如 "nested.inner.foo"
+     * @param type     路径终点的类型，原始类型的属性对应其包装类型，传入 int.class 等原始类型时按包装类型处理
+     * @throws IllegalArgumentException 某一段找不到、无权访问、不是最后一段却是原始类型，或终点类型不匹配
+     */
+    public static <T, R> PathAccessor<T, R> of(MethodHandles.Lookup lookup, Class<T> rootType, String path, Class<R> type) {
+        Objects.requireNonNull(lookup, "lookup");
+        Objects.requireNonNull(type, "type");
+        String[] names = path.split("\\.", -1);
+        @SuppressWarnings("unchecked")
+        Function<Object, Object>[] segments = new Function[names.length];
+        Class<?> current = rootType;
+        for (int i = 0; i < names.length; i++) {
+            if (current.isPrimitive()) {
+                throw new IllegalArgumentException("'" + names[i - 1] + "' in path '" + path + "' is primitive " + current);
+            }
+            MethodHandle segment = resolve(lookup, current, names[i], path);
+            current = segment.type().returnType();
+            segments[i] = function(lookup, segment, path);
+        }
+        if (!wrap(current).isAssignableFrom(wrap(type)) && !wrap(type).isAssignableFrom(wrap(current))) {
+            throw new IllegalArgumentException("path '" + path + "' ends with " + current.getName() + ", not " + type.getName());
+        }
+        //取值结果总是装箱的，按包装类型做 cast
+        @SuppressWarnings("unchecked")
+        Class<R> resultType = (Class<R>) wrap(type);
+        return new PathAccessor<>(path, resultType, segments, null);
+    }
+
+    /**
+     * 任何一段为 null 时返回 defaultValue 的副本，各段的句柄复用
+     */
+    public PathAccessor<T, R> orElse(R defaultValue) {
+        return new PathAccessor<>(path, type, segments, defaultValue);
+    }
+
+    /**
+     * 取值，root 或路径上任何一段为 null 时返回默认值
+     */
+    @Override
+    public R apply(T root) {
+        Object value = root;
+        for (Function<Object, Object> segment : segments) {
+            if (value == null) {
+                return defaultValue;
+            }
+            value = segment.apply(value);
+        }
+        return value == null ? defaultValue : type.cast(value);
+    }
+
+    /**
+     * 路径上没有 null 且终点满足 condition，用于 filter
+     */
+    public Predicate<T> matches(Predicate<? super R> condition) {
+        PathAccessor<T, R> accessor = defaultValue == null ? this : orElse(null);
+        return root -> {
+            R value = accessor.apply(root);
+            return value != null && condition.test(value);
+        };
+    }
+
+    /**
+     * 路径上没有 null，用于 filter
+     */
+    public Predicate<T> isPresent() {
+        return matches(value -> true);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        return "PathAccessor{" + path + " -> " + type.getSimpleName() + (defaultValue == null ? "" : ", default=" + defaultValue) + "}";
+    }
+
+    /**
+     * 方法生成直接调用的 lambda；字段以及 LambdaMetafactory 不支持的情况退回为调用句柄
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> function(MethodHandles.Lookup lookup, MethodHandle segment, String path) {
+        MethodHandleInfo info = lookup.revealDirect(segment);
+        boolean method = info.getReferenceKind() != MethodHandleInfo.REF_getField;
+        //JDK 8 生成的 lambda 类不能调用其它类（包括同一外部类的嵌套类）的 private 方法
+        boolean reachable = !Modifier.isPrivate(info.getModifiers()) || info.getDeclaringClass() == lookup.lookupClass();
+        if (method && reachable) {
+            MethodType type = segment.type();
+            try {
+                return (Function<Object, Object>) LambdaMetafactory.metafactory(lookup, "apply",
+                        MethodType.methodType(Function.class), GETTER, segment, type.wrap()).getTarget().invoke();
+            } catch (LambdaConversionException e) {
+                //Lookup 没有私有访问权限，如 publicLookup()
+            } catch (Throwable e) {
+                throw new IllegalStateException("failed to spin getter for path '" + path + "'", e);
+            }
+        }
+        MethodHandle getter = segment.asType(GETTER);
+        return value -> {
+            try {
+                return (Object) getter.invokeExact(value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("failed to read '" + path + "'", e);
+            }
+        };
+    }
+
+    private static MethodHandle resolve(MethodHandles.Lookup lookup, Class<?> owner, String name, String path) {
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("empty segment in path '" + path + "'");
+        }
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        try {
+            String is = "is" + capitalized;
+            for (String candidate : new String[]{"get" + capitalized, is, name}) {
+                Method method = findMethod(owner, candidate);
+                //只有 isXxx() 要求返回 boolean，issuer()、isbn() 这样的属性名本身以 is 开头不受影响
+                if (method != null && (!candidate.equals(is) || method.getReturnType() == boolean.class)) {
+                    return lookup.unreflect(method);
+                }
+            }
+            Field field = findField(owner, name);
+            if (field != null) {
+                return lookup.unreflectGetter(field);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("cannot access '" + name + "' of " + owner.getName() + " in path '" + path + "'", e);
+        }
+        throw new IllegalArgumentException("no getter or field '" + name + "' on " + owner.getName() + " in path '" + path + "'");
+    }
+
+    private static Method findMethod(Class<?> owner, String name) {
+        for (Class<?> type = owner; type != null; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (isGetter(method, name)) {
+                    return method;
+                }
+            }
+        }
+        for (Method method : owner.getMethods()) {
+            //接口中的默认方法
+            if (method.getName().equals(name) && method.getParameterCount() == 0
+                    && method.getReturnType() != void.class && !Modifier.isStatic(method.getModifiers())) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 协变返回类型的子类会多出一个返回父类型的桥接方法，取到它会丢失真正的返回类型
+     */
+    private static boolean isGetter(Method method, String name) {
+        return method.getName().equals(name) && method.getParameterCount() == 0 && !method.isBridge()
+                && method.getReturnType() != void.class && !Modifier.isStatic(method.getModifiers());
+    }
+
+    private static Field findField(Class<?> owner, String name) {
+        for (Class<?> type = owner; type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (field.getName().equals(name) && !Modifier.isStatic(field.getModifiers())) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        return type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+    }
+}
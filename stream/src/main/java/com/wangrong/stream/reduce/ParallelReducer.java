@@ -0,0 +1,449 @@
+package com.wangrong.stream.reduce;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * 并行归约
+ * reduce() 中第二个例子把 new Person("", 0) 作为标识值并在累加器中原地修改，并行时所有线程共享、修改同一个对象，
+ * 结果随线程调度而变，而且不会报错。这里标识值由 supplier 提供，每个叶子任务各自创建一个容器；
+ * 叶子的部分结果按遇到顺序排成一列，再两两组合成平衡二叉树（深度为 log2(叶子数)），
+ * 与数据源的拆分方式无关（IteratorSpliterator 等拆分很不均匀的数据源也一样）。
+ *
+ * 累加器返回新的容器（不可变值）或原地修改后返回同一个容器（可变容器）都可以；组合器可以不满足交换律，但必须满足结合律。
+ * 调试模式（debug）在归约时从输入中抽样，检查以下约定，违反时抛出 IllegalStateException：
+ * - 标识：combine(supplier(), x) 与 combine(x, supplier()) 都等于 x
+ * - 结合律：combine(combine(x, y), z) 等于 combine(x, combine(y, z))
+ * - 累加器与组合器一致：accumulate(accumulate(new, a), b) 等于 combine(accumulate(new, a), accumulate(new, b))
+ * - supplier 每次返回新的容器：返回同一个实例且累加器原地修改它时，即上面 reduce() 中的错误
+ * 比较的是 finisher 之后的结果，结果类型没有实现 equals 时需要用 equivalence 指定比较方式。
+ * 也可以用 -Dstream.reduce.debug=true 对所有未显式设置的归约开启调试模式。
+ *
+ * 用法：
+ * Person total = ParallelReducer.of(() -> new Person("", 0), Person::add, Person::merge).reduce(persons);
+ */
+public final class ParallelReducer<T, A, R> {
+
+    /**
+     * 调试模式的默认开关
+     */
+    public static final String DEBUG_PROPERTY = "stream.reduce.debug";
+
+    /**
+     * 调试模式抽样使用的固定种子
+     */
+    private static final long SAMPLE_SEED = 20190423L;
+
+    private final Supplier<A> supplier;
+
+    private final BiFunction<A, ? super T, A> accumulator;
+
+    private final BinaryOperator<A> combiner;
+
+    private final Function<A, R> finisher;
+
+    private final int minLeafSize;
+
+    private final ForkJoinPool pool;
+
+    private final int debugSamples;
+
+    private final BiPredicate<? super R, ? super R> equivalence;
+
+    private ParallelReducer(Builder<T, A, R> builder) {
+        this.supplier = builder.supplier;
+        this.accumulator = builder.accumulator;
+        this.combiner = builder.combiner;
+        this.finisher = builder.finisher;
+        this.minLeafSize = builder.minLeafSize;
+        this.pool = builder.pool;
+        this.debugSamples = builder.debugSamples;
+        this.equivalence = builder.equivalence;
+    }
+
+    /**
+     * 不需要 finisher 的归约
+     */
+    public static <T, A> ParallelReducer<T, A, A> of(Supplier<A> supplier, BiFunction<A, ? super T, A> accumulator,
+                                                     BinaryOperator<A> combiner) {
+        return ParallelReducer.<T, A, A>builder(supplier, accumulator, combiner, Function.<A>identity()).build();
+    }
+
+    public static <T, A> Builder<T, A, A> builder(Supplier<A> supplier, BiFunction<A, ? super T, A> accumulator,
+                                                  BinaryOperator<A> combiner) {
+        return builder(supplier, accumulator, combiner, Function.<A>identity());
+    }
+
+    public static <T, A, R> Builder<T, A, R> builder(Supplier<A> supplier, BiFunction<A, ? super T, A> accumulator,
+                                                     BinaryOperator<A> combiner, Function<A, R> finisher) {
+        return new Builder<>(supplier, accumulator, combiner, finisher);
+    }
+
+    /**
+     * 由 Collector 构造，可以对已有的收集器做同样的调试检查
+     */
+    public static <T, A, R> Builder<T, A, R> builder(Collector<T, A, R> collector) {
+        java.util.function.BiConsumer<A, T> consumer = collector.accumulator();
+        return new Builder<>(collector.supplier(), (container, element) -> {
+            consumer.accept(container, element);
+            return container;
+        }, collector.combiner(), collector.finisher());
+    }
+
+    public R reduce(Collection<? extends T> source) {
+        return reduce(source.spliterator());
+    }
+
+    /**
+     * 流的中间操作在拆分后的各个部分上执行，不要求流本身是并行的
+     */
+    public R reduce(Stream<? extends T> source) {
+        try (Stream<? extends T> stream = source) {
+            return reduce(stream.spliterator());
+        }
+    }
+
+    public R reduce(Spliterator<? extends T> source) {
+        long size = source.estimateSize();
+        int parallelism = pool.getParallelism();
+        //已知大小时每个叶子约 size / (4 * 并行度) 个元素；未知大小时按拆分深度限制叶子数
+        long leafSize = size == Long.MAX_VALUE ? minLeafSize : Math.max(minLeafSize, size / (4L * parallelism));
+        int maxDepth = 2 + 32 - Integer.numberOfLeadingZeros(Math.max(1, parallelism));
+        LeafTask<T, A> leaves = new LeafTask<>(this, source, leafSize, maxDepth, 0);
+        //已知大小且不超过一个叶子时不会拆分，直接在调用线程上累加，不经过线程池
+        List<Leaf<T, A>> partials = size <= minLeafSize ? leaves.compute() : invoke(leaves);
+        A container;
+        if (partials.isEmpty()) {
+            container = supplier.get();
+        } else if (partials.size() == 1) {
+            container = partials.get(0).container;
+        } else {
+            container = invoke(new CombineTask<>(combiner, partials, 0, partials.size()));
+        }
+        R result = finisher.apply(container);
+        if (debugSamples > 0) {
+            verify(samples(partials));
+        }
+        return result;
+    }
+
+    /**
+     * 转换为 Collector，用于 stream.collect()；容器由一个可变的外壳持有，累加器可以返回新值
+     */
+    public Collector<T, ?, R> asCollector() {
+        return Collector.<T, Object[], R>of(
+                () -> new Object[]{supplier.get()},
+                (box, element) -> box[0] = accumulator.apply(container(box), element),
+                (left, right) -> {
+                    left[0] = combiner.apply(container(left), container(right));
+                    return left;
+                },
+                box -> finisher.apply(container(box)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private A container(Object[] box) {
+        return (A) box[0];
+    }
+
+    private <V> V invoke(ForkJoinTask<V> task) {
+        Thread current = Thread.currentThread();
+        //已经在某个 ForkJoinPool 的工作线程中（例如 ParallelStreamExecutor 的专用池），在该池中执行
+        if (current instanceof ForkJoinWorkerThread) {
+            return task.invoke();
+        }
+        return pool.invoke(task);
+    }
+
+    private List<T> samples(List<Leaf<T, A>> partials) {
+        List<T> samples = new ArrayList<>();
+        for (Leaf<T, A> leaf : partials) {
+            samples.addAll(leaf.samples);
+        }
+        //各叶子的样本合在一起后再随机取 debugSamples 个；叶子内的蓄水池抽样与这里都用固定种子，
+        //同样的输入拆分方式相同，重复运行抽到同样的样本，失败可以复现
+        Collections.shuffle(samples, new Random(SAMPLE_SEED));
+        return samples.subList(0, Math.min(debugSamples, samples.size()));
+    }
+
+    /**
+     * 在样本上检查归约的约定，见类注释
+     */
+    void verify(List<? extends T> samples) {
+        if (samples.isEmpty()) {
+            return;
+        }
+        checkSupplier(samples);
+        for (int i = 0; i < samples.size(); i++) {
+            T a = samples.get(i);
+            R single = finisher.apply(single(a));
+            check("identity: combine(supplier(), x) != x for x = accumulate(supplier(), " + a + ")",
+                    finisher.apply(combiner.apply(supplier.get(), single(a))), single);
+            check("identity: combine(x, supplier()) != x for x = accumulate(supplier(), " + a + ")",
+                    finisher.apply(combiner.apply(single(a), supplier.get())), single);
+            if (i + 1 < samples.size()) {
+                T b = samples.get(i + 1);
+                check("accumulator and combiner disagree on [" + a + ", " + b + "]",
+                        finisher.apply(accumulator.apply(single(a), b)),
+                        finisher.apply(combiner.apply(single(a), single(b))));
+            }
+            if (i + 2 < samples.size()) {
+                T b = samples.get(i + 1);
+                T c = samples.get(i + 2);
+                check("combiner is not associative on [" + a + ", " + b + ", " + c + "]",
+                        finisher.apply(combiner.apply(combiner.apply(single(a), single(b)), single(c))),
+                        finisher.apply(combiner.apply(single(a), combiner.apply(single(b), single(c)))));
+            }
+        }
+    }
+
+    /**
+     * supplier 返回同一个实例，而累加器总是原地修改并返回它：所有叶子共享同一个容器
+     */
+    private void checkSupplier(List<? extends T> samples) {
+        A first = supplier.get();
+        if (first == null || first != supplier.get()) {
+            return;
+        }
+        for (T sample : samples) {
+            A container = supplier.get();
+            if (accumulator.apply(container, sample) != container) {
+                return;
+            }
+        }
+        throw new IllegalStateException("supplier returns a shared container that the accumulator mutates: " + first);
+    }
+
+    private A single(T element) {
+        return accumulator.apply(supplier.get(), element);
+    }
+
+    private void check(String message, R actual, R expected) {
+        if (equivalence == null) {
+            requireEquals(expected);
+            if (!Objects.equals(actual, expected)) {
+                throw new IllegalStateException(message + ": " + actual + " vs " + expected);
+            }
+        } else if (!equivalence.test(actual, expected)) {
+            throw new IllegalStateException(message + ": " + actual + " vs " + expected);
+        }
+    }
+
+    private static void requireEquals(Object value) {
+        if (value == null) {
+            return;
+        }
+        try {
+            if (value.getClass().getMethod("equals", Object.class).getDeclaringClass() == Object.class) {
+                throw new IllegalStateException(value.getClass().getName()
+                        + " does not implement equals, set an equivalence to use debug mode");
+            }
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * 一个叶子的部分结果，调试模式下附带从该叶子输入中抽取的样本
+     */
+    private static final class Leaf<T, A> {
+
+        final A container;
+
+        final List<T> samples;
+
+        Leaf(A container, List<T> samples) {
+            this.container = container;
+            this.samples = samples;
+        }
+    }
+
+    /**
+     * 拆分数据源并累加各叶子，返回按遇到顺序排列的部分结果
+     */
+    private static final class LeafTask<T, A> extends RecursiveTask<List<Leaf<T, A>>> {
+
+        private final ParallelReducer<T, A, ?> reducer;
+
+        private final Spliterator<? extends T> spliterator;
+
+        private final long leafSize;
+
+        private final int maxDepth;
+
+        private final int depth;
+
+        LeafTask(ParallelReducer<T, A, ?> reducer, Spliterator<? extends T> spliterator, long leafSize, int maxDepth, int depth) {
+            this.reducer = reducer;
+            this.spliterator = spliterator;
+            this.leafSize = leafSize;
+            this.maxDepth = maxDepth;
+            this.depth = depth;
+        }
+
+        @Override
+        protected List<Leaf<T, A>> compute() {
+            long size = spliterator.estimateSize();
+            boolean unknownSize = size == Long.MAX_VALUE;
+            if ((unknownSize ? depth < maxDepth : size > leafSize)) {
+                Spliterator<? extends T> prefix = spliterator.trySplit();
+                if (prefix != null) {
+                    LeafTask<T, A> left = new LeafTask<>(reducer, prefix, leafSize, maxDepth, depth + 1);
+                    left.fork();
+                    List<Leaf<T, A>> right = new LeafTask<>(reducer, spliterator, leafSize, maxDepth, depth + 1).compute();
+                    List<Leaf<T, A>> result = new ArrayList<>(left.join());
+                    result.addAll(right);
+                    return result;
+                }
+            }
+            return Collections.singletonList(accumulate());
+        }
+
+        private Leaf<T, A> accumulate() {
+            int capacity = reducer.debugSamples;
+            List<T> samples = capacity > 0 ? new ArrayList<>(capacity) : Collections.emptyList();
+            Random random = capacity > 0 ? new Random(SAMPLE_SEED) : null;
+            Object[] state = {reducer.supplier.get(), 0L};
+            spliterator.forEachRemaining(element -> {
+                state[0] = reducer.accumulator.apply(reducer.<A>cast(state[0]), element);
+                if (capacity > 0) {
+                    //蓄水池抽样
+                    long seen = (Long) state[1] + 1;
+                    state[1] = seen;
+                    if (samples.size() < capacity) {
+                        samples.add(element);
+                    } else {
+                        long index = (long) (random.nextDouble() * seen);
+                        if (index < capacity) {
+                            samples.set((int) index, element);
+                        }
+                    }
+                }
+            });
+            return new Leaf<>(reducer.cast(state[0]), samples);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    /**
+     * 把 [from, to) 范围内的部分结果组合成平衡二叉树
+     */
+    private static final class CombineTask<T, A> extends RecursiveTask<A> {
+
+        private final BinaryOperator<A> combiner;
+
+        private final List<Leaf<T, A>> partials;
+
+        private final int from;
+
+        private final int to;
+
+        CombineTask(BinaryOperator<A> combiner, List<Leaf<T, A>> partials, int from, int to) {
+            this.combiner = combiner;
+            this.partials = partials;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from == 1) {
+                return partials.get(from).container;
+            }
+            int middle = (from + to) >>> 1;
+            CombineTask<T, A> left = new CombineTask<>(combiner, partials, from, middle);
+            left.fork();
+            A right = new CombineTask<>(combiner, partials, middle, to).compute();
+            return combiner.apply(left.join(), right);
+        }
+    }
+
+    public static final class Builder<T, A, R> {
+
+        private final Supplier<A> supplier;
+
+        private final BiFunction<A, ? super T, A> accumulator;
+
+        private final BinaryOperator<A> combiner;
+
+        private final Function<A, R> finisher;
+
+        private int minLeafSize = 1024;
+
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        private int debugSamples = Boolean.getBoolean(DEBUG_PROPERTY) ? 32 : 0;
+
+        private BiPredicate<? super R, ? super R> equivalence;
+
+        private Builder(Supplier<A> supplier, BiFunction<A, ? super T, A> accumulator,
+                        BinaryOperator<A> combiner, Function<A, R> finisher) {
+            this.supplier = Objects.requireNonNull(supplier, "supplier");
+            this.accumulator = Objects.requireNonNull(accumulator, "accumulator");
+            this.combiner = Objects.requireNonNull(combiner, "combiner");
+            this.finisher = Objects.requireNonNull(finisher, "finisher");
+        }
+
+        /**
+         * 每个叶子至少累加的元素数，默认 1024；大小已知且不超过该值时不拆分，在调用线程上顺序执行
+         */
+        public Builder<T, A, R> minLeafSize(int minLeafSize) {
+            if (minLeafSize < 1) {
+                throw new IllegalArgumentException("minLeafSize must be positive: " + minLeafSize);
+            }
+            this.minLeafSize = minLeafSize;
+            return this;
+        }
+
+        /**
+         * 执行归约的 ForkJoinPool，默认公共池；在 ForkJoinPool 工作线程中调用时使用当前池
+         */
+        public Builder<T, A, R> pool(ForkJoinPool pool) {
+            this.pool = Objects.requireNonNull(pool, "pool");
+            return this;
+        }
+
+        /**
+         * 开启调试模式，抽取 samples 个输入检查归约的约定；0 表示关闭
+         */
+        public Builder<T, A, R> debug(int samples) {
+            if (samples < 0) {
+                throw new IllegalArgumentException("samples must not be negative: " + samples);
+            }
+            this.debugSamples = samples;
+            return this;
+        }
+
+        /**
+         * 调试模式比较结果的方式，默认 Objects.equals
+         */
+        public Builder<T, A, R> equivalence(BiPredicate<? super R, ? super R> equivalence) {
+            this.equivalence = Objects.requireNonNull(equivalence, "equivalence");
+            return this;
+        }
+
+        public ParallelReducer<T, A, R> build() {
+            return new ParallelReducer<>(this);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.wangrong.stream.snapshot;
+
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 由 StreamSnapshotCache 托管的可复用流，替代 Supplier<Stream<T>>
+ * 每次 stream() 都从缓存中的快照创建新流，只有快照不存在、过期或被淘汰时才重新执行上游流水线。
+ */
+public final class CachedStream<T> {
+
+    private final StreamSnapshotCache cache;
+
+    private final Object key;
+
+    private final Supplier<? extends Stream<? extends T>> loader;
+
+    CachedStream(StreamSnapshotCache cache, Object key, Supplier<? extends Stream<? extends T>> loader) {
+        this.cache = cache;
+        this.key = key;
+        this.loader = loader;
+    }
+
+    public Stream<T> stream() {
+        return snapshot().stream();
+    }
+
+    public Stream<T> parallelStream() {
+        return snapshot().parallelStream();
+    }
+
+    public StreamSnapshot<T> snapshot() {
+        return cache.get(key, loader);
+    }
+
+    /**
+     * 丢弃快照，下一次 stream() 重新执行流水线
+     */
+    public void invalidate() {
+        cache.invalidate(key);
+    }
+
+    public Object key() {
+        return key;
+    }
+}
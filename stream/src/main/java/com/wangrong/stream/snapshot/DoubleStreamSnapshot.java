@@ -0,0 +1,48 @@
+package com.wangrong.stream.snapshot;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.DoubleStream;
+
+/**
+ * DoubleStream 的快照，元素保存在 double[] 中，不装箱
+ */
+public final class DoubleStreamSnapshot implements Snapshot {
+
+    private final double[] elements;
+
+    private DoubleStreamSnapshot(double[] elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * 执行 stream 并保存结果，stream 执行后即关闭
+     */
+    public static DoubleStreamSnapshot of(DoubleStream stream) {
+        try (DoubleStream source = Objects.requireNonNull(stream, "stream")) {
+            return new DoubleStreamSnapshot(source.toArray());
+        }
+    }
+
+    public DoubleStream stream() {
+        return Arrays.stream(elements);
+    }
+
+    public DoubleStream parallelStream() {
+        return Arrays.stream(elements).parallel();
+    }
+
+    public double get(int index) {
+        return elements[index];
+    }
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(elements);
+    }
+}
@@ -0,0 +1,48 @@
+package com.wangrong.stream.snapshot;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * IntStream 的快照，元素保存在 int[] 中，不装箱
+ */
+public final class IntStreamSnapshot implements Snapshot {
+
+    private final int[] elements;
+
+    private IntStreamSnapshot(int[] elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * 执行 stream 并保存结果，stream 执行后即关闭
+     */
+    public static IntStreamSnapshot of(IntStream stream) {
+        try (IntStream source = Objects.requireNonNull(stream, "stream")) {
+            return new IntStreamSnapshot(source.toArray());
+        }
+    }
+
+    public IntStream stream() {
+        return Arrays.stream(elements);
+    }
+
+    public IntStream parallelStream() {
+        return Arrays.stream(elements).parallel();
+    }
+
+    public int get(int index) {
+        return elements[index];
+    }
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(elements);
+    }
+}
@@ -0,0 +1,48 @@
+package com.wangrong.stream.snapshot;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.LongStream;
+
+/**
+ * LongStream 的快照，元素保存在 long[] 中，不装箱
+ */
+public final class LongStreamSnapshot implements Snapshot {
+
+    private final long[] elements;
+
+    private LongStreamSnapshot(long[] elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * 执行 stream 并保存结果，stream 执行后即关闭
+     */
+    public static LongStreamSnapshot of(LongStream stream) {
+        try (LongStream source = Objects.requireNonNull(stream, "stream")) {
+            return new LongStreamSnapshot(source.toArray());
+        }
+    }
+
+    public LongStream stream() {
+        return Arrays.stream(elements);
+    }
+
+    public LongStream parallelStream() {
+        return Arrays.stream(elements).parallel();
+    }
+
+    public long get(int index) {
+        return elements[index];
+    }
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(elements);
+    }
+}
@@ -0,0 +1,12 @@
+package com.wangrong.stream.snapshot;
+
+/**
+ * 物化后的流数据，不可变，可以任意次重新创建流
+ */
+public interface Snapshot {
+
+    /**
+     * 元素个数
+     */
+    int size();
+}
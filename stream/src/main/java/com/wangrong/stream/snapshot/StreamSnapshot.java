@@ -0,0 +1,80 @@
+package com.wangrong.stream.snapshot;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 对象流的快照：上游流水线只执行一次，结果存放在按元素个数精确分配的 Object[] 中
+ * stream() 每次基于数组创建新流，Spliterator 带 SIZED/SUBSIZED，并行时按下标均分，不再重复执行上游的 filter/map。
+ *
+ * 用法：
+ * StreamSnapshot<String> snapshot = StreamSnapshot.of(list.stream().filter(s -> s.startsWith("a")));
+ * snapshot.stream().anyMatch(s -> true);
+ * snapshot.stream().noneMatch(s -> true);
+ */
+public final class StreamSnapshot<T> implements Snapshot {
+
+    private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.IMMUTABLE;
+
+    private final Object[] elements;
+
+    private StreamSnapshot(Object[] elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * 执行 stream 并保存结果，stream 执行后即关闭
+     */
+    public static <T> StreamSnapshot<T> of(Stream<? extends T> stream) {
+        try (Stream<? extends T> source = Objects.requireNonNull(stream, "stream")) {
+            return new StreamSnapshot<>(source.toArray());
+        }
+    }
+
+    public static IntStreamSnapshot ofInts(IntStream stream) {
+        return IntStreamSnapshot.of(stream);
+    }
+
+    public static LongStreamSnapshot ofLongs(LongStream stream) {
+        return LongStreamSnapshot.of(stream);
+    }
+
+    public static DoubleStreamSnapshot ofDoubles(DoubleStream stream) {
+        return DoubleStreamSnapshot.of(stream);
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Spliterator<T> spliterator() {
+        return (Spliterator<T>) Spliterators.spliterator(elements, CHARACTERISTICS);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) elements[index];
+    }
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(elements);
+    }
+}
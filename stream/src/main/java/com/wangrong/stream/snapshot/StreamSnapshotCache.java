@@ -0,0 +1,291 @@
+package com.wangrong.stream.snapshot;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * 共享的快照缓存：同一个 key 的流水线只物化一次，之后的终端操作都基于快照重新创建流
+ * 按访问顺序做 LRU 淘汰，可以同时限制条目数、所有快照的元素总数，以及写入后的存活时间。
+ * 同一 key 并发未命中时只有一个线程执行流水线，其余线程等待它的结果。
+ * 一个 key 只对应一种快照：用 get 缓存的 key 再用 getInts 取会抛出 IllegalArgumentException，不同类型的快照请用不同的 key。
+ * invalidate 时正在执行的流水线的结果不会写入缓存，已经在等待它的线程仍然拿到这个结果。
+ *
+ * 用法：
+ * StreamSnapshotCache cache = StreamSnapshotCache.builder().maximumSize(100).expireAfterWrite(Duration.ofMinutes(5)).build();
+ * CachedStream<Person> adults = cache.cached("adults", () -> persons.stream().filter(p -> p.age >= 18));
+ * adults.stream().count();
+ * adults.stream().mapToInt(p -> p.age).average();
+ */
+public final class StreamSnapshotCache {
+
+    private final long maximumSize;
+
+    private final long maximumElements;
+
+    private final long expireAfterWriteNanos;
+
+    private final LongSupplier ticker;
+
+    /**
+     * accessOrder = true，迭代顺序即最近最少使用的顺序
+     */
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<Object, CompletableFuture<Snapshot>> loading = new HashMap<>();
+
+    private long elements;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    private StreamSnapshotCache(Builder builder) {
+        this.maximumSize = builder.maximumSize;
+        this.maximumElements = builder.maximumElements;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.ticker = builder.ticker;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 返回一个可以反复创建流的句柄，快照被淘汰后下一次 stream() 会重新执行 loader
+     */
+    public <T> CachedStream<T> cached(Object key, Supplier<? extends Stream<? extends T>> loader) {
+        return new CachedStream<>(this, key, loader);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> StreamSnapshot<T> get(Object key, Supplier<? extends Stream<? extends T>> loader) {
+        return load(key, StreamSnapshot.class, () -> StreamSnapshot.of(loader.get()));
+    }
+
+    public IntStreamSnapshot getInts(Object key, Supplier<? extends IntStream> loader) {
+        return load(key, IntStreamSnapshot.class, () -> IntStreamSnapshot.of(loader.get()));
+    }
+
+    public LongStreamSnapshot getLongs(Object key, Supplier<? extends LongStream> loader) {
+        return load(key, LongStreamSnapshot.class, () -> LongStreamSnapshot.of(loader.get()));
+    }
+
+    public DoubleStreamSnapshot getDoubles(Object key, Supplier<? extends DoubleStream> loader) {
+        return load(key, DoubleStreamSnapshot.class, () -> DoubleStreamSnapshot.of(loader.get()));
+    }
+
+    /**
+     * 删除快照；正在执行的流水线完成后不会写入缓存
+     */
+    public synchronized void invalidate(Object key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            elements -= entry.snapshot.size();
+        }
+        loading.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        elements = 0;
+        loading.clear();
+    }
+
+    /**
+     * 当前缓存的条目数
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 当前所有快照的元素总数
+     */
+    public synchronized long elements() {
+        return elements;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    private <S extends Snapshot> S load(Object key, Class<S> type, Supplier<S> loader) {
+        Objects.requireNonNull(key, "key");
+        CompletableFuture<Snapshot> future;
+        boolean owner = false;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (!expired(entry)) {
+                    hits++;
+                    return cast(key, type, entry.snapshot);
+                }
+                entries.remove(key);
+                elements -= entry.snapshot.size();
+                evictions++;
+            }
+            misses++;
+            future = loading.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                loading.put(key, future);
+                owner = true;
+            }
+        }
+        if (!owner) {
+            Snapshot snapshot;
+            try {
+                snapshot = future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+            return cast(key, type, snapshot);
+        }
+        S snapshot;
+        try {
+            snapshot = loader.get();
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                loading.remove(key, future);
+            }
+            future.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            //加载期间被 invalidate 时 loading 中已经没有这个 future（或者是之后开始的另一次加载），结果不写入缓存
+            if (loading.remove(key, future)) {
+                entries.put(key, new Entry(snapshot, ticker.getAsLong()));
+                elements += snapshot.size();
+                evict();
+            }
+        }
+        future.complete(snapshot);
+        return snapshot;
+    }
+
+    private static <S extends Snapshot> S cast(Object key, Class<S> type, Snapshot snapshot) {
+        if (!type.isInstance(snapshot)) {
+            throw new IllegalArgumentException("key '" + key + "' is cached as " + snapshot.getClass().getSimpleName()
+                    + ", not " + type.getSimpleName());
+        }
+        return type.cast(snapshot);
+    }
+
+    private boolean expired(Entry entry) {
+        return expireAfterWriteNanos > 0 && ticker.getAsLong() - entry.writeTime >= expireAfterWriteNanos;
+    }
+
+    /**
+     * 从最近最少使用的一端淘汰，直到满足条目数和元素总数限制；刚写入的条目即使超出元素限制也保留
+     */
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext() && entries.size() > 1
+                && (entries.size() > maximumSize || elements > maximumElements)) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            elements -= eldest.snapshot.size();
+            evictions++;
+        }
+    }
+
+    private static final class Entry {
+
+        final Snapshot snapshot;
+
+        final long writeTime;
+
+        Entry(Snapshot snapshot, long writeTime) {
+            this.snapshot = snapshot;
+            this.writeTime = writeTime;
+        }
+    }
+
+    public static final class Builder {
+
+        private long maximumSize = Long.MAX_VALUE;
+
+        private long maximumElements = Long.MAX_VALUE;
+
+        private long expireAfterWriteNanos;
+
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder() {
+        }
+
+        /**
+         * 最多缓存的条目数
+         */
+        public Builder maximumSize(long maximumSize) {
+            if (maximumSize < 1) {
+                throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * 所有快照的元素总数上限
+         */
+        public Builder maximumElements(long maximumElements) {
+            if (maximumElements < 1) {
+                throw new IllegalArgumentException("maximumElements must be positive: " + maximumElements);
+            }
+            this.maximumElements = maximumElements;
+            return this;
+        }
+
+        /**
+         * 写入后超过该时间的快照视为过期，下一次访问时重新执行流水线
+         */
+        public Builder expireAfterWrite(Duration duration) {
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("expireAfterWrite must be positive: " + duration);
+            }
+            this.expireAfterWriteNanos = duration.toNanos();
+            return this;
+        }
+
+        /**
+         * 纳秒时钟，测试中可以替换
+         */
+        public Builder ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker, "ticker");
+            return this;
+        }
+
+        public StreamSnapshotCache build() {
+            return new StreamSnapshotCache(this);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.wangrong.stream.sort;
+
+import com.wangrong.stream.collector.SpillCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * 分段排序 + k 路归并的排序收集器，替代并行流中的 sorted()
+ * 每个叶子任务把元素攒成最多 runSize 个的段，在本线程内排好序（run generation），
+ * 组合器只拼接段列表，不再像 sorted() 那样把所有元素复制到一个 Object[] 后整体排序；
+ * 结果 SortedRuns 在遍历时对各段做 k 路归并，是惰性的。
+ *
+ * 指定 codec 后，容器内存中的元素数超过 memoryBudget 时，已排好序的段会写到临时文件，归并时顺序读回，
+ * 可以排序超出堆大小的数据。比较相等的元素保持遇到顺序，结果与 sorted(comparator) 一致。
+ * 段文件超过 maxOpenRuns 个时，终止器先把相邻的段分批归并成更长的段，遍历时同时打开的文件不超过 maxOpenRuns 个。
+ *
+ * 段文件由 SortedRuns.close() 删除；溢写、组合或终止出错时删除当前容器已写出的段。上游抛出异常时
+ * 收集器拿不到其他累加容器，它们的段文件会留在临时目录中，需要定期清理。
+ * 不使用 deleteOnExit：JVM 退出前不会释放登记的路径，长期运行的服务每个段文件都会泄漏一条记录。
+ *
+ * 用法：
+ * try (Stream<String> sorted = codes.parallelStream()
+ *         .collect(ExternalSortCollector.builder(Comparator.<String>naturalOrder()).build())
+ *         .stream()) {
+ *     sorted.forEach(...);
+ * }
+ */
+public final class ExternalSortCollector<T> implements Collector<T, ExternalSortCollector.RunBuffer<T>, SortedRuns<T>> {
+
+    private static final Set<Characteristics> CHARACTERISTICS = Collections.emptySet();
+
+    private final Comparator<? super T> comparator;
+
+    private final int runSize;
+
+    private final SpillCodec<T> codec;
+
+    private final long memoryBudget;
+
+    private final Path tempDirectory;
+
+    private final int maxOpenRuns;
+
+    private ExternalSortCollector(Builder<T> builder) {
+        this.comparator = builder.comparator;
+        this.runSize = builder.runSize;
+        this.codec = builder.codec;
+        this.memoryBudget = builder.memoryBudget;
+        this.tempDirectory = builder.tempDirectory;
+        this.maxOpenRuns = builder.maxOpenRuns;
+    }
+
+    public static <T> Builder<T> builder(Comparator<? super T> comparator) {
+        return new Builder<>(comparator);
+    }
+
+    @Override
+    public Supplier<RunBuffer<T>> supplier() {
+        return () -> new RunBuffer<>(this);
+    }
+
+    @Override
+    public BiConsumer<RunBuffer<T>, T> accumulator() {
+        return RunBuffer::add;
+    }
+
+    @Override
+    public BinaryOperator<RunBuffer<T>> combiner() {
+        return RunBuffer::combine;
+    }
+
+    @Override
+    public Function<RunBuffer<T>, SortedRuns<T>> finisher() {
+        return RunBuffer::finish;
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    /**
+     * 写一个有序段：元素个数 + 元素
+     */
+    private SortedRuns.Run<T> spill(SortedRuns.MemoryRun<T> run) {
+        return writeRun(run.iterator(), run.size());
+    }
+
+    private SortedRuns.Run<T> writeRun(Iterator<T> elements, long size) {
+        Path file = null;
+        try {
+            file = Files.createTempFile(tempDirectory, "sort-", ".run");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+                out.writeLong(size);
+                while (elements.hasNext()) {
+                    codec.write(out, elements.next());
+                }
+            }
+            return new SortedRuns.FileRun<>(file, size, codec);
+        } catch (IOException e) {
+            if (file != null) {
+                SortedRuns.deleteQuietly(file);
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 累加容器：已排好序的段（按遇到顺序）+ 正在填充的当前段
+     */
+    public static final class RunBuffer<T> {
+
+        private final ExternalSortCollector<T> collector;
+
+        private final List<SortedRuns.Run<T>> runs = new ArrayList<>();
+
+        private Object[] current = new Object[16];
+
+        private int count;
+
+        /**
+         * 内存中的元素数（内存段 + 当前段）
+         */
+        private long inMemory;
+
+        RunBuffer(ExternalSortCollector<T> collector) {
+            this.collector = collector;
+        }
+
+        void add(T element) {
+            if (count == current.length) {
+                current = Arrays.copyOf(current, Math.min(collector.runSize, count * 2));
+            }
+            current[count++] = element;
+            inMemory++;
+            if (count == collector.runSize) {
+                try {
+                    seal();
+                } catch (RuntimeException | Error e) {
+                    SortedRuns.deleteFiles(runs);
+                    throw e;
+                }
+            }
+        }
+
+        RunBuffer<T> combine(RunBuffer<T> right) {
+            try {
+                //左侧未满的当前段排在右侧所有段之前，先封闭
+                seal();
+                runs.addAll(right.runs);
+                current = right.current;
+                count = right.count;
+                inMemory += right.inMemory;
+                spillIfNeeded();
+                return this;
+            } catch (RuntimeException | Error e) {
+                SortedRuns.deleteFiles(runs);
+                SortedRuns.deleteFiles(right.runs);
+                throw e;
+            }
+        }
+
+        SortedRuns<T> finish() {
+            List<SortedRuns.Run<T>> merged = runs;
+            List<SortedRuns.Run<T>> next = new ArrayList<>();
+            try {
+                seal();
+                //文件段太多时把相邻的段分批归并，相邻段的归并保持相等元素的遇到顺序
+                while (fileRuns(merged) > collector.maxOpenRuns) {
+                    next = new ArrayList<>();
+                    for (int i = 0; i < merged.size(); i += collector.maxOpenRuns) {
+                        List<SortedRuns.Run<T>> batch = merged.subList(i, Math.min(merged.size(), i + collector.maxOpenRuns));
+                        if (batch.size() == 1) {
+                            next.add(batch.get(0));
+                            continue;
+                        }
+                        try (SortedRuns<T> partial = new SortedRuns<>(new ArrayList<>(batch), collector.comparator)) {
+                            next.add(collector.writeRun(partial.iterator(), partial.size()));
+                        }
+                    }
+                    merged = next;
+                }
+                return new SortedRuns<>(merged, collector.comparator);
+            } catch (RuntimeException | Error e) {
+                SortedRuns.deleteFiles(merged);
+                SortedRuns.deleteFiles(next);
+                throw e;
+            }
+        }
+
+        private static <T> int fileRuns(List<SortedRuns.Run<T>> runs) {
+            int n = 0;
+            for (SortedRuns.Run<T> run : runs) {
+                if (run instanceof SortedRuns.FileRun) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void seal() {
+            if (count == 0) {
+                return;
+            }
+            T[] run = (T[]) Arrays.copyOf(current, count);
+            //TimSort 是稳定排序，段内相等元素保持遇到顺序
+            Arrays.sort(run, collector.comparator);
+            runs.add(new SortedRuns.MemoryRun<>(run));
+            current = new Object[16];
+            count = 0;
+            spillIfNeeded();
+        }
+
+        private void spillIfNeeded() {
+            if (collector.codec == null || inMemory <= collector.memoryBudget) {
+                return;
+            }
+            for (int i = 0; i < runs.size(); i++) {
+                SortedRuns.Run<T> run = runs.get(i);
+                if (run instanceof SortedRuns.MemoryRun) {
+                    runs.set(i, collector.spill((SortedRuns.MemoryRun<T>) run));
+                    inMemory -= run.size();
+                }
+            }
+        }
+    }
+
+    public static final class Builder<T> {
+
+        private final Comparator<? super T> comparator;
+
+        private int runSize = 1 << 20;
+
+        private SpillCodec<T> codec;
+
+        private long memoryBudget = Long.MAX_VALUE;
+
+        private Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+
+        private int maxOpenRuns = 64;
+
+        private Builder(Comparator<? super T> comparator) {
+            this.comparator = Objects.requireNonNull(comparator, "comparator");
+        }
+
+        /**
+         * 每段最多的元素数，默认 1M
+         */
+        public Builder<T> runSize(int runSize) {
+            if (runSize < 1) {
+                throw new IllegalArgumentException("runSize must be positive: " + runSize);
+            }
+            this.runSize = runSize;
+            return this;
+        }
+
+        /**
+         * 允许溢写到磁盘：每个累加容器内存中的元素超过 memoryBudget 个时把已排序的段写到临时文件
+         */
+        public Builder<T> spill(SpillCodec<T> codec, long memoryBudget) {
+            if (memoryBudget < 0) {
+                throw new IllegalArgumentException("memoryBudget must not be negative: " + memoryBudget);
+            }
+            this.codec = Objects.requireNonNull(codec, "codec");
+            this.memoryBudget = memoryBudget;
+            return this;
+        }
+
+        /**
+         * 段文件所在目录，默认 java.io.tmpdir
+         */
+        public Builder<T> tempDirectory(Path tempDirectory) {
+            this.tempDirectory = Objects.requireNonNull(tempDirectory, "tempDirectory");
+            return this;
+        }
+
+        /**
+         * 遍历时最多同时打开的段文件数，默认 64
+         */
+        public Builder<T> maxOpenRuns(int maxOpenRuns) {
+            if (maxOpenRuns < 2) {
+                throw new IllegalArgumentException("maxOpenRuns must be at least 2: " + maxOpenRuns);
+            }
+            this.maxOpenRuns = maxOpenRuns;
+            return this;
+        }
+
+        public ExternalSortCollector<T> build() {
+            return new ExternalSortCollector<>(this);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.wangrong.stream.sort;
+
+import com.wangrong.stream.collector.SpillCodec;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * ExternalSortCollector 的结果：若干个各自有序的段
+ * 遍历时对各段做 k 路归并（优先队列按 (元素, 段序号) 排序，相等元素先取前面的段，保证稳定）；
+ * 只有一个段时直接顺序读取。可以多次遍历，段文件在 close() 时删除，stream() 返回的流关闭时也会删除。
+ * 遍历时所有段同时打开，ExternalSortCollector 保证文件段不超过 maxOpenRuns 个。
+ */
+public final class SortedRuns<T> implements Iterable<T>, Closeable {
+
+    private final List<Run<T>> runs;
+
+    private final Comparator<? super T> comparator;
+
+    private final long size;
+
+    private final List<Cursor<T>> openCursors = new ArrayList<>();
+
+    private boolean closed;
+
+    SortedRuns(List<Run<T>> runs, Comparator<? super T> comparator) {
+        this.runs = runs;
+        this.comparator = comparator;
+        long total = 0;
+        for (Run<T> run : runs) {
+            total += run.size();
+        }
+        this.size = total;
+    }
+
+    /**
+     * 元素总数
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * 段的个数
+     */
+    public int runCount() {
+        return runs.size();
+    }
+
+    /**
+     * 写到磁盘上的段的个数
+     */
+    public int spilledRunCount() {
+        int n = 0;
+        for (Run<T> run : runs) {
+            if (run instanceof FileRun) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (closed) {
+            throw new IllegalStateException("runs already closed");
+        }
+        return new MergeIterator();
+    }
+
+    /**
+     * 有序流，关闭时删除段文件
+     */
+    public Stream<T> stream() {
+        Spliterator<T> spliterator = Spliterators.spliterator(iterator(), size, Spliterator.ORDERED);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    public List<T> toList() {
+        List<T> list = new ArrayList<>((int) Math.min(Integer.MAX_VALUE - 8, size));
+        forEach(list::add);
+        return list;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        openCursors.forEach(Cursor::close);
+        openCursors.clear();
+        deleteFiles(runs);
+    }
+
+    /**
+     * 删除段文件，用于出错时清理还没有交给调用方的段
+     */
+    static <T> void deleteFiles(List<Run<T>> runs) {
+        for (Run<T> run : runs) {
+            if (run instanceof FileRun) {
+                deleteQuietly(((FileRun<T>) run).file);
+            }
+        }
+    }
+
+    static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            //临时文件删除失败不影响结果
+        }
+    }
+
+    private final class MergeIterator implements Iterator<T> {
+
+        private final PriorityQueue<Cursor<T>> queue;
+
+        MergeIterator() {
+            queue = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+                int c = comparator.compare(a.head, b.head);
+                return c != 0 ? c : Integer.compare(a.ordinal, b.ordinal);
+            });
+            for (int i = 0; i < runs.size(); i++) {
+                Cursor<T> cursor = runs.get(i).open(i);
+                openCursors.add(cursor);
+                push(cursor);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            Cursor<T> cursor = queue.poll();
+            if (cursor == null) {
+                throw new NoSuchElementException();
+            }
+            T next = cursor.head;
+            push(cursor);
+            return next;
+        }
+
+        private void push(Cursor<T> cursor) {
+            if (cursor.advance()) {
+                queue.add(cursor);
+            } else {
+                cursor.close();
+                openCursors.remove(cursor);
+            }
+        }
+    }
+
+    /**
+     * 一个有序段
+     */
+    abstract static class Run<T> {
+
+        abstract long size();
+
+        abstract Cursor<T> open(int ordinal);
+    }
+
+    static final class MemoryRun<T> extends Run<T> {
+
+        private final T[] elements;
+
+        MemoryRun(T[] elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        long size() {
+            return elements.length;
+        }
+
+        Iterator<T> iterator() {
+            return Arrays.asList(elements).iterator();
+        }
+
+        @Override
+        Cursor<T> open(int ordinal) {
+            return new Cursor<T>(ordinal) {
+
+                private int index;
+
+                @Override
+                boolean advance() {
+                    if (index == elements.length) {
+                        return false;
+                    }
+                    head = elements[index++];
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(elements);
+        }
+    }
+
+    static final class FileRun<T> extends Run<T> {
+
+        private final Path file;
+
+        private final long size;
+
+        private final SpillCodec<T> codec;
+
+        FileRun(Path file, long size, SpillCodec<T> codec) {
+            this.file = file;
+            this.size = size;
+            this.codec = codec;
+        }
+
+        @Override
+        long size() {
+            return size;
+        }
+
+        @Override
+        Cursor<T> open(int ordinal) {
+            DataInputStream in;
+            try {
+                in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+                in.readLong();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new Cursor<T>(ordinal) {
+
+                private long remaining = size;
+
+                @Override
+                boolean advance() {
+                    if (remaining == 0) {
+                        return false;
+                    }
+                    try {
+                        head = codec.read(in);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    remaining--;
+                    return true;
+                }
+
+                @Override
+                void close() {
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                        //只读文件，关闭失败可以忽略
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * 段上的读取位置，head 为当前元素
+     */
+    abstract static class Cursor<T> {
+
+        final int ordinal;
+
+        T head;
+
+        Cursor(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        abstract boolean advance();
+
+        void close() {
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.wangrong.stream.sort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * 并行流中 sorted().limit(k) 的替代
+ * sorted() 在并行流中要先把全部元素收集到一个数组里整体排序（一次全局屏障），再截取前 k 个。
+ * 这里每个叶子任务只维护一个容量为 k 的最大堆，组合时把右侧堆并入左侧，最终只对 k 个元素排序。
+ *
+ * 结果与 sorted(comparator).limit(k) 完全一致：比较相等的元素按遇到顺序排列，
+ * 堆中记录每个元素在各自子任务内的序号，组合时右侧序号加上左侧已处理的元素数。
+ *
+ * 用法：
+ * List<String> top = codes.parallelStream().collect(TopKCollector.topK(10, Comparator.naturalOrder()));
+ */
+public final class TopKCollector<T> implements Collector<T, TopKCollector.BoundedHeap<T>, List<T>> {
+
+    private static final Set<Characteristics> CHARACTERISTICS = Collections.emptySet();
+
+    private final int k;
+
+    private final Comparator<? super T> comparator;
+
+    private TopKCollector(int k, Comparator<? super T> comparator) {
+        this.k = k;
+        this.comparator = comparator;
+    }
+
+    public static <T> TopKCollector<T> topK(int k, Comparator<? super T> comparator) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        return new TopKCollector<>(k, Objects.requireNonNull(comparator, "comparator"));
+    }
+
+    public static <T extends Comparable<? super T>> TopKCollector<T> topK(int k) {
+        return topK(k, Comparator.naturalOrder());
+    }
+
+    @Override
+    public Supplier<BoundedHeap<T>> supplier() {
+        return () -> new BoundedHeap<>(k, comparator);
+    }
+
+    @Override
+    public BiConsumer<BoundedHeap<T>, T> accumulator() {
+        return BoundedHeap::add;
+    }
+
+    @Override
+    public BinaryOperator<BoundedHeap<T>> combiner() {
+        return BoundedHeap::merge;
+    }
+
+    @Override
+    public Function<BoundedHeap<T>, List<T>> finisher() {
+        return BoundedHeap::toSortedList;
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    /**
+     * 按 (comparator, 序号) 排序的最大堆，堆顶是当前 k 个元素中最大、最晚遇到的那个
+     */
+    public static final class BoundedHeap<T> {
+
+        private final int capacity;
+
+        private final Comparator<? super T> comparator;
+
+        /**
+         * 初始容量，之后按需加倍直到 capacity；并行流的每个叶子都有一个堆，k 很大而元素很少时不预先分配 k 个槽位
+         */
+        private static final int INITIAL_CAPACITY = 16;
+
+        private Object[] values;
+
+        private long[] sequences;
+
+        private int size;
+
+        /**
+         * 已经遇到的元素数，用作下一个元素的序号
+         */
+        private long seen;
+
+        BoundedHeap(int capacity, Comparator<? super T> comparator) {
+            this.capacity = capacity;
+            this.comparator = comparator;
+            int initial = Math.min(capacity, INITIAL_CAPACITY);
+            this.values = new Object[initial];
+            this.sequences = new long[initial];
+        }
+
+        void add(T value) {
+            offer(value, seen++);
+        }
+
+        BoundedHeap<T> merge(BoundedHeap<T> right) {
+            long offset = seen;
+            for (int i = 0; i < right.size; i++) {
+                offer(right.value(i), right.sequences[i] + offset);
+            }
+            seen += right.seen;
+            return this;
+        }
+
+        List<T> toSortedList() {
+            List<T> result = new ArrayList<>(size);
+            //依次弹出堆顶得到降序，再反转
+            while (size > 0) {
+                result.add(value(0));
+                removeTop();
+            }
+            Collections.reverse(result);
+            return result;
+        }
+
+        private void offer(T value, long sequence) {
+            if (size < capacity) {
+                if (size == values.length) {
+                    grow();
+                }
+                values[size] = value;
+                sequences[size] = sequence;
+                siftUp(size++);
+            } else if (capacity > 0 && compare(value, sequence, 0) < 0) {
+                values[0] = value;
+                sequences[0] = sequence;
+                siftDown(0);
+            }
+        }
+
+        private void grow() {
+            int length = (int) Math.min(capacity, values.length * 2L);
+            values = Arrays.copyOf(values, length);
+            sequences = Arrays.copyOf(sequences, length);
+        }
+
+        private void removeTop() {
+            size--;
+            values[0] = values[size];
+            sequences[0] = sequences[size];
+            values[size] = null;
+            if (size > 0) {
+                siftDown(0);
+            }
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (compare(index, parent) <= 0) {
+                    return;
+                }
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            int half = size >>> 1;
+            while (index < half) {
+                int child = 2 * index + 1;
+                if (child + 1 < size && compare(child + 1, child) > 0) {
+                    child++;
+                }
+                if (compare(index, child) >= 0) {
+                    return;
+                }
+                swap(index, child);
+                index = child;
+            }
+        }
+
+        private int compare(int i, int j) {
+            return compare(value(i), sequences[i], j);
+        }
+
+        private int compare(T value, long sequence, int j) {
+            int c = comparator.compare(value, value(j));
+            return c != 0 ? c : Long.compare(sequence, sequences[j]);
+        }
+
+        private void swap(int i, int j) {
+            Object value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+            long sequence = sequences[i];
+            sequences[i] = sequences[j];
+            sequences[j] = sequence;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T value(int index) {
+            return (T) values[index];
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.wangrong.stream.source;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 映射区域中一条记录的只读视图（享元）
+ * 在 MappedRecordSource.records 的 mapper 中使用时，视图会被复用，不要在 mapper 之外保存它。
+ */
+public final class MappedRecord {
+
+    private final RecordLayout layout;
+
+    private ByteBuffer segment;
+
+    private int base;
+
+    MappedRecord(RecordLayout layout) {
+        this.layout = layout;
+    }
+
+    MappedRecord moveTo(ByteBuffer segment, int base) {
+        this.segment = segment;
+        this.base = base;
+        return this;
+    }
+
+    public int getInt(int field) {
+        return segment.getInt(base + layout.field(field, RecordLayout.Type.INT32).offset());
+    }
+
+    public long getLong(int field) {
+        return segment.getLong(base + layout.field(field, RecordLayout.Type.INT64).offset());
+    }
+
+    public double getDouble(int field) {
+        return segment.getDouble(base + layout.field(field, RecordLayout.Type.FLOAT64).offset());
+    }
+
+    /**
+     * 读取字符串字段，会在堆上创建 String
+     */
+    public String getString(int field) {
+        int offset = base + layout.field(field, RecordLayout.Type.STRING).offset();
+        int length = segment.getShort(offset);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = segment.get(offset + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public RecordLayout layout() {
+        return layout;
+    }
+}
@@ -0,0 +1,383 @@
+package com.wangrong.stream.source;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 通过 FileChannel.map 把 MappedRecordWriter 写出的定长记录文件映射到内存，作为流的数据源
+ * 数据留在页缓存中，不需要先把整个数据集加载到堆上；对 int/long/double 字段的流每个元素都不分配对象。
+ * 单个 MappedByteBuffer 最大 2GB，大文件按记录边界切成多个映射段，记录不会跨段。
+ * Spliterator 按记录下标对半拆分（SIZED | SUBSIZED），并行流下各线程读取文件的不同区域。
+ *
+ * 映射在 Java 8 中无法主动解除，close() 只关闭文件通道，映射内存在缓冲区被回收时释放。
+ *
+ * 用法：
+ * try (MappedRecordSource source = MappedRecordSource.open(path)) {
+ *     double average = source.ints("age", true).average().orElse(0);
+ * }
+ */
+public final class MappedRecordSource implements Closeable {
+
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED
+            | Spliterator.IMMUTABLE | Spliterator.NONNULL;
+
+    private final FileChannel channel;
+
+    private final RecordLayout layout;
+
+    private final long size;
+
+    private final int recordSize;
+
+    private final long recordsPerSegment;
+
+    private final ByteBuffer[] segments;
+
+    private MappedRecordSource(FileChannel channel, long maxSegmentBytes) throws IOException {
+        this.channel = channel;
+        ByteBuffer fixed = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(fixed, 0);
+        fixed.flip();
+        if (fixed.getInt() != MappedRecordWriter.MAGIC) {
+            throw new IOException("not a record file");
+        }
+        int version = fixed.getInt();
+        if (version != MappedRecordWriter.VERSION) {
+            throw new IOException("unsupported record file version: " + version);
+        }
+        int headerSize = fixed.getInt();
+        this.recordSize = fixed.getInt();
+        this.size = fixed.getLong();
+        ByteBuffer header = ByteBuffer.allocate(headerSize - 24).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header, 24);
+        header.flip();
+        this.layout = RecordLayout.readFrom(header);
+        if (layout.recordSize() != recordSize) {
+            throw new IOException("corrupted record file: record size " + recordSize + " does not match layout " + layout);
+        }
+        if (headerSize + size * recordSize > channel.size()) {
+            throw new IOException("truncated record file: expected " + size + " records");
+        }
+        this.recordsPerSegment = Math.max(1, maxSegmentBytes / recordSize);
+        int segmentCount = (int) ((size + recordsPerSegment - 1) / recordsPerSegment);
+        this.segments = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long first = i * recordsPerSegment;
+            long records = Math.min(recordsPerSegment, size - first);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, headerSize + first * recordSize,
+                    records * recordSize);
+            segments[i] = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    public static MappedRecordSource open(Path path) throws IOException {
+        return open(path, MAX_SEGMENT_BYTES);
+    }
+
+    /**
+     * @param maxSegmentBytes 每个映射段的最大字节数，不超过 Integer.MAX_VALUE
+     */
+    public static MappedRecordSource open(Path path, long maxSegmentBytes) throws IOException {
+        if (maxSegmentBytes <= 0 || maxSegmentBytes > MAX_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("maxSegmentBytes must be in (0, " + MAX_SEGMENT_BYTES + "]");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedRecordSource(channel, maxSegmentBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public RecordLayout layout() {
+        return layout;
+    }
+
+    /**
+     * 记录数
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * 映射段个数
+     */
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * 随机读取一条记录，返回新的视图
+     */
+    public MappedRecord record(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        return new MappedRecord(layout).moveTo(segments[(int) (index / recordsPerSegment)],
+                (int) (index % recordsPerSegment) * recordSize);
+    }
+
+    public IntStream ints(String field, boolean parallel) {
+        int offset = layout.field(layout.indexOf(field), RecordLayout.Type.INT32).offset();
+        return StreamSupport.intStream(new IntRecordSpliterator(0, size, offset), parallel);
+    }
+
+    public LongStream longs(String field, boolean parallel) {
+        int offset = layout.field(layout.indexOf(field), RecordLayout.Type.INT64).offset();
+        return StreamSupport.longStream(new LongRecordSpliterator(0, size, offset), parallel);
+    }
+
+    public DoubleStream doubles(String field, boolean parallel) {
+        int offset = layout.field(layout.indexOf(field), RecordLayout.Type.FLOAT64).offset();
+        return StreamSupport.doubleStream(new DoubleRecordSpliterator(0, size, offset), parallel);
+    }
+
+    /**
+     * 把每条记录映射成对象，mapper 收到的视图会被复用
+     */
+    public <T> Stream<T> records(Function<? super MappedRecord, ? extends T> mapper, boolean parallel) {
+        return StreamSupport.stream(new ObjectRecordSpliterator<T>(0, size, mapper), parallel);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of record file");
+            }
+        }
+    }
+
+    /**
+     * 按记录下标 [index, fence) 遍历的公共部分，子类只负责读取一条记录
+     */
+    private abstract class RecordSpliterator<S extends Spliterator<?>> {
+
+        long index;
+
+        final long fence;
+
+        RecordSpliterator(long origin, long fence) {
+            this.index = origin;
+            this.fence = fence;
+        }
+
+        abstract S split(long origin, long fence);
+
+        abstract void accept(ByteBuffer segment, int base);
+
+        public S trySplit() {
+            long mid = (index + fence) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            S prefix = split(index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        boolean advance() {
+            if (index >= fence) {
+                return false;
+            }
+            accept(segments[(int) (index / recordsPerSegment)], (int) (index % recordsPerSegment) * recordSize);
+            index++;
+            return true;
+        }
+
+        /**
+         * 逐段遍历，段内只做 int 偏移的累加
+         */
+        void forEach() {
+            long i = index;
+            index = fence;
+            while (i < fence) {
+                int segment = (int) (i / recordsPerSegment);
+                long segmentEnd = Math.min(fence, (segment + 1) * recordsPerSegment);
+                ByteBuffer buffer = segments[segment];
+                int base = (int) (i % recordsPerSegment) * recordSize;
+                for (long j = i; j < segmentEnd; j++, base += recordSize) {
+                    accept(buffer, base);
+                }
+                i = segmentEnd;
+            }
+        }
+
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        public int characteristics() {
+            return CHARACTERISTICS;
+        }
+    }
+
+    private final class IntRecordSpliterator extends RecordSpliterator<Spliterator.OfInt> implements Spliterator.OfInt {
+
+        private final int offset;
+
+        private IntConsumer action;
+
+        IntRecordSpliterator(long origin, long fence, int offset) {
+            super(origin, fence);
+            this.offset = offset;
+        }
+
+        @Override
+        IntRecordSpliterator split(long origin, long fence) {
+            return new IntRecordSpliterator(origin, fence, offset);
+        }
+
+        @Override
+        void accept(ByteBuffer segment, int base) {
+            action.accept(segment.getInt(base + offset));
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            this.action = action;
+            return advance();
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            this.action = action;
+            forEach();
+        }
+    }
+
+    private final class LongRecordSpliterator extends RecordSpliterator<Spliterator.OfLong> implements Spliterator.OfLong {
+
+        private final int offset;
+
+        private LongConsumer action;
+
+        LongRecordSpliterator(long origin, long fence, int offset) {
+            super(origin, fence);
+            this.offset = offset;
+        }
+
+        @Override
+        LongRecordSpliterator split(long origin, long fence) {
+            return new LongRecordSpliterator(origin, fence, offset);
+        }
+
+        @Override
+        void accept(ByteBuffer segment, int base) {
+            action.accept(segment.getLong(base + offset));
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            this.action = action;
+            return advance();
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            this.action = action;
+            forEach();
+        }
+    }
+
+    private final class DoubleRecordSpliterator extends RecordSpliterator<Spliterator.OfDouble> implements Spliterator.OfDouble {
+
+        private final int offset;
+
+        private DoubleConsumer action;
+
+        DoubleRecordSpliterator(long origin, long fence, int offset) {
+            super(origin, fence);
+            this.offset = offset;
+        }
+
+        @Override
+        DoubleRecordSpliterator split(long origin, long fence) {
+            return new DoubleRecordSpliterator(origin, fence, offset);
+        }
+
+        @Override
+        void accept(ByteBuffer segment, int base) {
+            action.accept(segment.getDouble(base + offset));
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            this.action = action;
+            return advance();
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            this.action = action;
+            forEach();
+        }
+    }
+
+    private final class ObjectRecordSpliterator<T> extends RecordSpliterator<Spliterator<T>> implements Spliterator<T> {
+
+        private final Function<? super MappedRecord, ? extends T> mapper;
+
+        private final MappedRecord record = new MappedRecord(layout);
+
+        private Consumer<? super T> action;
+
+        ObjectRecordSpliterator(long origin, long fence, Function<? super MappedRecord, ? extends T> mapper) {
+            super(origin, fence);
+            this.mapper = mapper;
+        }
+
+        @Override
+        ObjectRecordSpliterator<T> split(long origin, long fence) {
+            return new ObjectRecordSpliterator<>(origin, fence, mapper);
+        }
+
+        @Override
+        void accept(ByteBuffer segment, int base) {
+            action.accept(mapper.apply(record.moveTo(segment, base)));
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            this.action = action;
+            return advance();
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            this.action = action;
+            forEach();
+        }
+
+        @Override
+        public int characteristics() {
+            //mapper 可能返回 null
+            return CHARACTERISTICS & ~Spliterator.NONNULL;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.wangrong.stream.source;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 定长二进制记录的布局：字段依次排列，每条记录占 recordSize 字节
+ * 支持 int32、int64、float64 和定长字符串（2 字节长度 + 最多 width 字节 UTF-8）。
+ */
+public final class RecordLayout {
+
+    public enum Type {
+        INT32(4), INT64(8), FLOAT64(8), STRING(2);
+
+        private final int size;
+
+        Type(int size) {
+            this.size = size;
+        }
+    }
+
+    private final List<Field> fields;
+
+    private final int recordSize;
+
+    private RecordLayout(List<Field> fields) {
+        this.fields = Collections.unmodifiableList(fields);
+        int size = 0;
+        for (Field field : fields) {
+            size = Math.max(size, field.offset + field.size());
+        }
+        this.recordSize = size;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int recordSize() {
+        return recordSize;
+    }
+
+    public List<Field> fields() {
+        return fields;
+    }
+
+    /**
+     * 按名字查找字段下标，读写时使用下标以避免每条记录都查找名字
+     *
+     * @throws IllegalArgumentException 字段不存在
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get(i).name.equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("unknown field: " + name);
+    }
+
+    Field field(int index, Type expected) {
+        Field field = fields.get(index);
+        if (field.type != expected) {
+            throw new IllegalArgumentException("field " + field.name + " is " + field.type + ", not " + expected);
+        }
+        return field;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(fields.size());
+        for (Field field : fields) {
+            byte[] name = field.name.getBytes(StandardCharsets.UTF_8);
+            buffer.put((byte) field.type.ordinal());
+            buffer.putInt(field.width);
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+        }
+    }
+
+    int serializedSize() {
+        int size = 4;
+        for (Field field : fields) {
+            size += 1 + 4 + 2 + field.name.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return size;
+    }
+
+    static RecordLayout readFrom(ByteBuffer buffer) {
+        Builder builder = new Builder();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            Type type = Type.values()[buffer.get()];
+            int width = buffer.getInt();
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            builder.add(new String(name, StandardCharsets.UTF_8), type, width);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof RecordLayout && fields.equals(((RecordLayout) o).fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return fields.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "RecordLayout{recordSize=" + recordSize + ", fields=" + fields + "}";
+    }
+
+    public static final class Field {
+
+        private final String name;
+
+        private final Type type;
+
+        /**
+         * 字符串的最大字节数，其它类型为 0
+         */
+        private final int width;
+
+        private final int offset;
+
+        Field(String name, Type type, int width, int offset) {
+            this.name = name;
+            this.type = type;
+            this.width = width;
+            this.offset = offset;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public Type type() {
+            return type;
+        }
+
+        public int width() {
+            return width;
+        }
+
+        public int offset() {
+            return offset;
+        }
+
+        int size() {
+            return type.size + width;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Field)) {
+                return false;
+            }
+            Field other = (Field) o;
+            return name.equals(other.name) && type == other.type && width == other.width && offset == other.offset;
+        }
+
+        @Override
+        public int hashCode() {
+            return (name.hashCode() * 31 + type.hashCode()) * 31 + width;
+        }
+
+        @Override
+        public String toString() {
+            return name + ":" + type + (type == Type.STRING ? "(" + width + ")" : "") + "@" + offset;
+        }
+    }
+
+    public static final class Builder {
+
+        private final List<Field> fields = new ArrayList<>();
+
+        private int offset;
+
+        private Builder() {
+        }
+
+        public Builder int32(String name) {
+            return add(name, Type.INT32, 0);
+        }
+
+        public Builder int64(String name) {
+            return add(name, Type.INT64, 0);
+        }
+
+        public Builder float64(String name) {
+            return add(name, Type.FLOAT64, 0);
+        }
+
+        /**
+         * @param width UTF-8 编码后的最大字节数
+         */
+        public Builder string(String name, int width) {
+            if (width <= 0 || width > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("width must be in (0, " + Short.MAX_VALUE + "]: " + width);
+            }
+            return add(name, Type.STRING, width);
+        }
+
+        private Builder add(String name, Type type, int width) {
+            for (Field field : fields) {
+                if (field.name.equals(name)) {
+                    throw new IllegalArgumentException("duplicate field: " + name);
+                }
+            }
+            Field field = new Field(name, type, width, offset);
+            fields.add(field);
+            offset += field.size();
+            return this;
+        }
+
+        public RecordLayout build() {
+            if (fields.isEmpty()) {
+                throw new IllegalStateException("at least one field is required");
+            }
+            return new RecordLayout(new ArrayList<>(fields));
+        }
+    }
+}
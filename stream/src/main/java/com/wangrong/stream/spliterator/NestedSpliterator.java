@@ -0,0 +1,165 @@
+package com.wangrong.stream.spliterator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 把 父 -> 子列表 的关系展开成一个 SIZED | SUBSIZED 的 Spliterator
+ * flatMap() 中 foos.stream().flatMap(foo -> foo.bars.stream()) 会为每个 Foo 创建一个流对象，
+ * 并且展开后的流丢失了 SIZED 特性：并行时无法按元素数均匀拆分，toArray() 也无法预分配数组。
+ * 这里先遍历一次父列表，记录每个子列表的起始下标（前缀和），之后把所有子元素看成一个连续的下标区间：
+ * trySplit 按下标对半拆分，两半的元素数都是精确的；遍历时直接按下标访问子列表，不创建中间流。
+ *
+ * 要求遍历期间父列表和子列表都不被修改，子列表最好是 RandomAccess 的（如 ArrayList）。
+ *
+ * 用法：
+ * NestedSpliterator.stream(foos, foo -> foo.bars, true).forEach(bar -> System.out.println(bar.name));
+ */
+public final class NestedSpliterator<C> implements Spliterator<C> {
+
+    private static final int CHARACTERISTICS = ORDERED | SIZED | SUBSIZED;
+
+    private final List<? extends C>[] lists;
+
+    /**
+     * offsets[i] 为第 i 个子列表第一个元素的全局下标，offsets[lists.length] 为元素总数
+     */
+    private final long[] offsets;
+
+    private long index;
+
+    private final long fence;
+
+    private int list;
+
+    private NestedSpliterator(List<? extends C>[] lists, long[] offsets, long origin, long fence) {
+        this.lists = lists;
+        this.offsets = offsets;
+        this.index = origin;
+        this.fence = fence;
+        this.list = listOf(origin);
+    }
+
+    public static <P, C> NestedSpliterator<C> of(List<P> parents, Function<? super P, ? extends List<? extends C>> children) {
+        Objects.requireNonNull(parents, "parents");
+        Objects.requireNonNull(children, "children");
+        @SuppressWarnings("unchecked")
+        List<? extends C>[] lists = new List[parents.size()];
+        long[] offsets = new long[lists.length + 1];
+        int i = 0;
+        for (P parent : parents) {
+            List<? extends C> childList = children.apply(parent);
+            lists[i] = childList == null ? Collections.<C>emptyList() : childList;
+            offsets[i + 1] = offsets[i] + lists[i].size();
+            i++;
+        }
+        return new NestedSpliterator<>(lists, offsets, 0, offsets[lists.length]);
+    }
+
+    /**
+     * 相当于 parents.stream().flatMap(p -> children.apply(p).stream())，但保留元素总数
+     */
+    public static <P, C> Stream<C> stream(List<P> parents, Function<? super P, ? extends List<? extends C>> children,
+                                          boolean parallel) {
+        return StreamSupport.stream(of(parents, children), parallel);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super C> action) {
+        if (index >= fence) {
+            return false;
+        }
+        while (index >= offsets[list + 1]) {
+            list++;
+        }
+        action.accept(element(list, index));
+        index++;
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super C> action) {
+        long i = index;
+        int l = list;
+        index = fence;
+        while (i < fence) {
+            while (i >= offsets[l + 1]) {
+                l++;
+            }
+            List<? extends C> current = lists[l];
+            long end = Math.min(fence, offsets[l + 1]);
+            int local = (int) (i - offsets[l]);
+            int localEnd = (int) (end - offsets[l]);
+            checkSize(l);
+            for (C element : current.subList(local, localEnd)) {
+                action.accept(element);
+            }
+            i = end;
+        }
+        list = l;
+    }
+
+    @Override
+    public Spliterator<C> trySplit() {
+        long mid = (index + fence) >>> 1;
+        if (mid <= index) {
+            return null;
+        }
+        NestedSpliterator<C> prefix = new NestedSpliterator<>(lists, offsets, index, mid);
+        index = mid;
+        list = listOf(mid);
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public long getExactSizeIfKnown() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    private C element(int l, long globalIndex) {
+        checkSize(l);
+        return lists[l].get((int) (globalIndex - offsets[l]));
+    }
+
+    private void checkSize(int l) {
+        if (lists[l].size() != offsets[l + 1] - offsets[l]) {
+            throw new ConcurrentModificationException("child list " + l + " was modified during traversal");
+        }
+    }
+
+    /**
+     * 全局下标所在的子列表（跳过空列表），二分查找前缀和
+     */
+    private int listOf(long globalIndex) {
+        if (lists.length == 0) {
+            return 0;
+        }
+        int found = Arrays.binarySearch(offsets, 0, lists.length, globalIndex);
+        if (found < 0) {
+            return -found - 2;
+        }
+        //多个空列表的起始下标相同，取最后一个
+        while (found + 1 < lists.length && offsets[found + 1] == globalIndex) {
+            found++;
+        }
+        return found;
+    }
+}
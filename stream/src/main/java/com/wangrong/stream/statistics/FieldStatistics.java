@@ -0,0 +1,179 @@
+package com.wangrong.stream.statistics;
+
+/**
+ * 单个字段的统计量：count/sum/min/max/average/variance 以及分位数草图
+ * 方差使用 Welford 在线算法，合并时使用 Chan 等人的并行公式，因此并行流下与串行结果一致（浮点误差内）。
+ * 整数字段（int/long）的 sum、min、max 以 long 精确保存，与 IntSummaryStatistics 一致；
+ * double 字段的 sum 使用 Kahan 补偿求和，与 DoubleSummaryStatistics 一致。
+ */
+public final class FieldStatistics {
+
+    private final String name;
+
+    private final boolean integral;
+
+    private long count;
+
+    private long longSum;
+
+    private long longMin = Long.MAX_VALUE;
+
+    private long longMax = Long.MIN_VALUE;
+
+    private double sum;
+
+    private double sumCompensation;
+
+    private double min = Double.POSITIVE_INFINITY;
+
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private double mean;
+
+    private double m2;
+
+    private final QuantileSketch sketch;
+
+    FieldStatistics(String name, boolean integral, double relativeAccuracy) {
+        this.name = name;
+        this.integral = integral;
+        this.sketch = new QuantileSketch(relativeAccuracy);
+    }
+
+    void accept(long value) {
+        count++;
+        longSum += value;
+        longMin = Math.min(longMin, value);
+        longMax = Math.max(longMax, value);
+        updateMoments(value);
+    }
+
+    void accept(double value) {
+        count++;
+        double y = value - sumCompensation;
+        double t = sum + y;
+        sumCompensation = (t - sum) - y;
+        sum = t;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        updateMoments(value);
+    }
+
+    private void updateMoments(double value) {
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        sketch.accept(value);
+    }
+
+    void combine(FieldStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+        longSum += other.longSum;
+        longMin = Math.min(longMin, other.longMin);
+        longMax = Math.max(longMax, other.longMax);
+        //两个补偿和相加时带上对方的补偿项
+        double y = other.sum - other.sumCompensation - sumCompensation;
+        double t = sum + y;
+        sumCompensation = (t - sum) - y;
+        sum = t;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sketch.merge(other.sketch);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return integral ? longSum : sum - sumCompensation;
+    }
+
+    /**
+     * 整数字段的精确和，double 字段返回截断后的值
+     */
+    public long getLongSum() {
+        return integral ? longSum : (long) getSum();
+    }
+
+    public double getMin() {
+        return integral ? (count == 0 ? Double.POSITIVE_INFINITY : longMin) : min;
+    }
+
+    public double getMax() {
+        return integral ? (count == 0 ? Double.NEGATIVE_INFINITY : longMax) : max;
+    }
+
+    /**
+     * 整数字段的精确最小值，空时为 Long.MAX_VALUE
+     */
+    public long getLongMin() {
+        return integral ? longMin : (long) min;
+    }
+
+    /**
+     * 整数字段的精确最大值，空时为 Long.MIN_VALUE
+     */
+    public long getLongMax() {
+        return integral ? longMax : (long) max;
+    }
+
+    /**
+     * 平均值，与 Collectors.averagingInt 等一致，空时为 0
+     */
+    public double getAverage() {
+        if (count == 0) {
+            return 0;
+        }
+        return integral ? (double) longSum / count : getSum() / count;
+    }
+
+    /**
+     * 总体方差
+     */
+    public double getVariance() {
+        return count == 0 ? 0 : m2 / count;
+    }
+
+    /**
+     * 样本方差（n - 1）
+     */
+    public double getSampleVariance() {
+        return count < 2 ? 0 : m2 / (count - 1);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * 近似分位数，相对误差见 QuantileSketch
+     *
+     * @param quantile 0 到 1 之间，例如 0.99 为 p99
+     */
+    public double getQuantile(double quantile) {
+        return sketch.quantile(quantile);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{name=%s, count=%d, sum=%s, min=%s, average=%f, max=%s, variance=%f, p50=%f, p99=%f}",
+                getClass().getSimpleName(), name, count,
+                integral ? String.valueOf(longSum) : String.valueOf(getSum()),
+                integral ? String.valueOf(longMin) : String.valueOf(min),
+                getAverage(),
+                integral ? String.valueOf(longMax) : String.valueOf(max),
+                getVariance(), getQuantile(0.5), getQuantile(0.99));
+    }
+}
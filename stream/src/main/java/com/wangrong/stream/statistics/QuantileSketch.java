@@ -0,0 +1,195 @@
+package com.wangrong.stream.statistics;
+
+/**
+ * 相对误差有界的分位数草图（DDSketch 思路）
+ * 把 |v| 映射到按 gamma 等比划分的桶 ceil(log_gamma(|v|))，只记录每个桶的计数，
+ * 任一分位数的估计值与真实值的相对误差不超过 relativeAccuracy。
+ * 桶数组只在值域扩大时增长，记录元素本身不分配对象；两个草图按桶相加即可合并。
+ * 非有限值（NaN、Infinity）不计入草图。
+ */
+public final class QuantileSketch {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    /**
+     * 绝对值小于该值的数计入零桶
+     */
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    private final double relativeAccuracy;
+
+    private final double gamma;
+
+    private final double logGamma;
+
+    private final Bins positive = new Bins();
+
+    private final Bins negative = new Bins();
+
+    private long zeroCount;
+
+    private long count;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("relativeAccuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public void accept(double value) {
+        if (value > MIN_INDEXABLE) {
+            if (value == Double.POSITIVE_INFINITY) {
+                return;
+            }
+            positive.increment(index(value), 1);
+        } else if (value < -MIN_INDEXABLE) {
+            if (value == Double.NEGATIVE_INFINITY) {
+                return;
+            }
+            negative.increment(index(-value), 1);
+        } else if (value == value) {
+            zeroCount++;
+        } else {
+            return;
+        }
+        count++;
+    }
+
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("cannot merge sketches with different relative accuracy");
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    /**
+     * @param quantile 0 到 1 之间，例如 0.5 为中位数，0.99 为 p99
+     * @return 估计值，草图为空时返回 NaN
+     */
+    public double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("quantile must be in [0, 1]: " + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        long seen = 0;
+        //负数按绝对值从大到小，即数值从小到大
+        for (int i = negative.max; i >= negative.min; i--) {
+            seen += negative.get(i);
+            if (seen > rank) {
+                return -value(i);
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = positive.min; i <= positive.max; i++) {
+            seen += positive.get(i);
+            if (seen > rank) {
+                return value(i);
+            }
+        }
+        return positive.isEmpty() ? 0 : value(positive.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * 桶 (gamma^(i-1), gamma^i] 的代表值，使相对误差对称
+     */
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    /**
+     * 连续桶计数，counts[i - offset] 为桶 i 的计数，按需向两侧扩展
+     */
+    private static final class Bins {
+
+        private static final int INITIAL_LENGTH = 64;
+
+        private long[] counts;
+
+        private int offset;
+
+        private int min = Integer.MAX_VALUE;
+
+        private int max = Integer.MIN_VALUE;
+
+        boolean isEmpty() {
+            return counts == null;
+        }
+
+        long get(int index) {
+            return counts[index - offset];
+        }
+
+        void increment(int index, long n) {
+            ensure(index);
+            counts[index - offset] += n;
+            if (index < min) {
+                min = index;
+            }
+            if (index > max) {
+                max = index;
+            }
+        }
+
+        void merge(Bins other) {
+            if (other.isEmpty()) {
+                return;
+            }
+            ensure(other.min);
+            ensure(other.max);
+            for (int i = other.min; i <= other.max; i++) {
+                long n = other.get(i);
+                if (n != 0) {
+                    increment(i, n);
+                }
+            }
+        }
+
+        private void ensure(int index) {
+            if (counts == null) {
+                counts = new long[INITIAL_LENGTH];
+                offset = index - INITIAL_LENGTH / 2;
+                return;
+            }
+            int end = offset + counts.length;
+            if (index >= offset && index < end) {
+                return;
+            }
+            //向缺口一侧多留出一半长度，避免值域缓慢扩大时频繁复制
+            int headroom = counts.length / 2;
+            int newOffset = index < offset ? index - headroom : offset;
+            int newEnd = index >= end ? index + 1 + headroom : end;
+            long[] grown = new long[newEnd - newOffset];
+            System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+            counts = grown;
+            offset = newOffset;
+        }
+    }
+}
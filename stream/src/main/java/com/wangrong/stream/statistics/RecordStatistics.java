@@ -0,0 +1,71 @@
+package com.wangrong.stream.statistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一次遍历得到的多字段统计结果，同时也是 RecordStatisticsCollector 的累加容器
+ * 字段统计对象在创建容器时一次性分配，累加每个元素时只更新原始类型字段。
+ */
+public final class RecordStatistics<T> {
+
+    private final RecordStatisticsCollector<T> collector;
+
+    private final FieldStatistics[] fields;
+
+    private long count;
+
+    RecordStatistics(RecordStatisticsCollector<T> collector, FieldStatistics[] fields) {
+        this.collector = collector;
+        this.fields = fields;
+    }
+
+    void accept(T record) {
+        count++;
+        collector.accept(record, fields);
+    }
+
+    RecordStatistics<T> combine(RecordStatistics<T> other) {
+        count += other.count;
+        for (int i = 0; i < fields.length; i++) {
+            fields[i].combine(other.fields[i]);
+        }
+        return this;
+    }
+
+    /**
+     * 记录数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 按声明时的字段名取统计量
+     *
+     * @throws IllegalArgumentException 字段不存在
+     */
+    public FieldStatistics get(String name) {
+        for (FieldStatistics field : fields) {
+            if (field.getName().equals(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("unknown field: " + name);
+    }
+
+    /**
+     * 所有字段的统计量，顺序与声明顺序一致
+     */
+    public List<FieldStatistics> getFields() {
+        List<FieldStatistics> list = new ArrayList<>(fields.length);
+        Collections.addAll(list, fields);
+        return Collections.unmodifiableList(list);
+    }
+
+    @Override
+    public String toString() {
+        return "RecordStatistics{count=" + count + ", fields=" + getFields() + "}";
+    }
+}
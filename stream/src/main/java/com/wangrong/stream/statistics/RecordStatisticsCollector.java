@@ -0,0 +1,207 @@
+package com.wangrong.stream.statistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+/**
+ * 单次遍历、多字段、多指标的统计收集器
+ * collect() 中 averagingInt、summarizingInt 各遍历一次 persons，reduce() 还需要可变的 Person 作为累加器；
+ * 这里一次遍历同时计算多个 int/long/double 字段的 count/sum/min/max/average/variance/分位数。
+ * 每个元素只更新原始类型字段，不分配对象；组合器逐字段合并，可直接用于 parallelStream()。
+ *
+ * 用法：
+ * RecordStatistics<Person> statistics = persons.parallelStream().collect(
+ *         RecordStatisticsCollector.<Person>builder()
+ *                 .intField("age", p -> p.age)
+ *                 .intField("nameLength", p -> p.name.length())
+ *                 .build());
+ * statistics.get("age").getAverage();
+ */
+public final class RecordStatisticsCollector<T> implements Collector<T, RecordStatistics<T>, RecordStatistics<T>> {
+
+    private static final Set<Characteristics> CHARACTERISTICS =
+            Collections.unmodifiableSet(EnumSet.of(Characteristics.IDENTITY_FINISH, Characteristics.UNORDERED));
+
+    private final Field<T>[] fields;
+
+    private final double relativeAccuracy;
+
+    private RecordStatisticsCollector(Field<T>[] fields, double relativeAccuracy) {
+        this.fields = fields;
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    void accept(T record, FieldStatistics[] statistics) {
+        for (int i = 0; i < fields.length; i++) {
+            fields[i].accept(record, statistics[i]);
+        }
+    }
+
+    @Override
+    public Supplier<RecordStatistics<T>> supplier() {
+        return () -> {
+            FieldStatistics[] statistics = new FieldStatistics[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                statistics[i] = new FieldStatistics(fields[i].name, fields[i].isIntegral(), relativeAccuracy);
+            }
+            return new RecordStatistics<>(this, statistics);
+        };
+    }
+
+    @Override
+    public BiConsumer<RecordStatistics<T>, T> accumulator() {
+        return RecordStatistics::accept;
+    }
+
+    @Override
+    public BinaryOperator<RecordStatistics<T>> combiner() {
+        return RecordStatistics::combine;
+    }
+
+    @Override
+    public Function<RecordStatistics<T>, RecordStatistics<T>> finisher() {
+        return Function.identity();
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    public static final class Builder<T> {
+
+        private final List<Field<T>> fields = new ArrayList<>();
+
+        private double relativeAccuracy = QuantileSketch.DEFAULT_RELATIVE_ACCURACY;
+
+        private Builder() {
+        }
+
+        public Builder<T> intField(String name, ToIntFunction<? super T> getter) {
+            return add(new IntField<>(name, getter));
+        }
+
+        public Builder<T> longField(String name, ToLongFunction<? super T> getter) {
+            return add(new LongField<>(name, getter));
+        }
+
+        public Builder<T> doubleField(String name, ToDoubleFunction<? super T> getter) {
+            return add(new DoubleField<>(name, getter));
+        }
+
+        /**
+         * 分位数的相对误差，默认 1%
+         */
+        public Builder<T> relativeAccuracy(double relativeAccuracy) {
+            this.relativeAccuracy = relativeAccuracy;
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        public RecordStatisticsCollector<T> build() {
+            if (fields.isEmpty()) {
+                throw new IllegalStateException("at least one field is required");
+            }
+            return new RecordStatisticsCollector<>(fields.toArray(new Field[0]), relativeAccuracy);
+        }
+
+        private Builder<T> add(Field<T> field) {
+            for (Field<T> existing : fields) {
+                if (existing.name.equals(field.name)) {
+                    throw new IllegalArgumentException("duplicate field: " + field.name);
+                }
+            }
+            fields.add(field);
+            return this;
+        }
+    }
+
+    private abstract static class Field<T> {
+
+        final String name;
+
+        Field(String name) {
+            this.name = Objects.requireNonNull(name, "name");
+        }
+
+        abstract boolean isIntegral();
+
+        abstract void accept(T record, FieldStatistics statistics);
+    }
+
+    private static final class IntField<T> extends Field<T> {
+
+        private final ToIntFunction<? super T> getter;
+
+        IntField(String name, ToIntFunction<? super T> getter) {
+            super(name);
+            this.getter = Objects.requireNonNull(getter, "getter");
+        }
+
+        @Override
+        boolean isIntegral() {
+            return true;
+        }
+
+        @Override
+        void accept(T record, FieldStatistics statistics) {
+            statistics.accept((long) getter.applyAsInt(record));
+        }
+    }
+
+    private static final class LongField<T> extends Field<T> {
+
+        private final ToLongFunction<? super T> getter;
+
+        LongField(String name, ToLongFunction<? super T> getter) {
+            super(name);
+            this.getter = Objects.requireNonNull(getter, "getter");
+        }
+
+        @Override
+        boolean isIntegral() {
+            return true;
+        }
+
+        @Override
+        void accept(T record, FieldStatistics statistics) {
+            statistics.accept(getter.applyAsLong(record));
+        }
+    }
+
+    private static final class DoubleField<T> extends Field<T> {
+
+        private final ToDoubleFunction<? super T> getter;
+
+        DoubleField(String name, ToDoubleFunction<? super T> getter) {
+            super(name);
+            this.getter = Objects.requireNonNull(getter, "getter");
+        }
+
+        @Override
+        boolean isIntegral() {
+            return false;
+        }
+
+        @Override
+        void accept(T record, FieldStatistics statistics) {
+            statistics.accept(getter.applyAsDouble(record));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.wangrong.stream;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class PersonTableTests {
+
+    private final List<Person> persons = new Application().persons;
+
+    private final PersonTable table = PersonTable.of(persons);
+
+    @Test
+    public void sameResultsAsCollectExamples() {
+        assertEquals(persons.stream().filter(p -> p.name.startsWith("A")).collect(Collectors.toList()).toString(),
+                table.select().whereName(name -> name.startsWith("A")).toList().toString());
+        assertEquals(new TreeMap<>(persons.stream().collect(Collectors.groupingBy(p -> p.age))).toString(),
+                table.select().groupByAge().toString());
+        assertEquals(persons.stream().collect(Collectors.averagingInt(p -> p.age)), table.select().averageAge(), 0);
+        assertEquals(persons.stream().collect(Collectors.summarizingInt(p -> p.age)).toString(),
+                table.select().summarizeAge().toString());
+        assertEquals(persons.stream().map(p -> p.name).collect(Collectors.joining(" and ")),
+                table.select().joinNames(" and "));
+        assertEquals(new TreeMap<>(persons.stream().collect(Collectors.toMap(p -> p.age, p -> p.name, (a, b) -> a + ";" + b))),
+                table.select().namesByAge(";"));
+    }
+
+    @Test
+    public void filterGroupAggregate() {
+        List<Person> many = IntStream.range(0, 50_000)
+                .mapToObj(i -> new Person((i % 3 == 0 ? "A" : "B") + (i % 101), i % 90))
+                .collect(Collectors.toList());
+        PersonTable manyTable = PersonTable.of(many);
+        Map<Integer, Long> expected = new TreeMap<>(many.stream()
+                .filter(p -> p.name.startsWith("A") && p.age >= 18)
+                .collect(Collectors.groupingBy(p -> p.age, Collectors.counting())));
+        PersonTable.Query query = manyTable.select().whereName(name -> name.startsWith("A")).whereAge(age -> age >= 18);
+        assertEquals(expected, query.countByAge());
+        assertEquals(expected.values().stream().mapToLong(Long::longValue).sum(), query.count());
+        assertEquals(many.stream().map(p -> p.name).distinct().count(), manyTable.distinctNames());
+    }
+
+    @Test
+    public void querySeesRowsAtSelect() {
+        PersonTable growing = new PersonTable(16);
+        for (int i = 0; i < 16; i++) {
+            growing.add("A" + i, i);
+        }
+        PersonTable.Query all = growing.select();
+        //超过初始容量，列数组会被重新分配
+        for (int i = 16; i < 40; i++) {
+            growing.add("A" + i, i);
+        }
+        assertEquals(16, all.count());
+        assertEquals(16, all.ages().count());
+        assertEquals(15L * 16 / 2, all.sumAge());
+        assertEquals(7.5, all.averageAge(), 0);
+        assertEquals(16, all.toList().size());
+        assertEquals(16, all.whereName(name -> name.startsWith("A")).count());
+        assertEquals(6, all.whereAge(age -> age >= 10).count());
+    }
+}
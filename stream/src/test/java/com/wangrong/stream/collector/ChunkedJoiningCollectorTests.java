@@ -0,0 +1,67 @@
+package com.wangrong.stream.collector;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class ChunkedJoiningCollectorTests {
+
+    private final List<String> names = IntStream.range(0, 100_000)
+            .mapToObj(i -> "名字" + i)
+            .collect(Collectors.toList());
+
+    @Test
+    public void sameAsCollectorsJoining() {
+        String expected = names.stream().collect(Collectors.joining(" and ", "[", "]"));
+        assertEquals(expected, names.stream().collect(ChunkedJoiningCollector.joining(" and ", "[", "]")));
+        assertEquals(expected, names.parallelStream().collect(ChunkedJoiningCollector.joining(" and ", "[", "]")));
+        assertEquals("[]", names.stream().limit(0).collect(ChunkedJoiningCollector.joining(",", "[", "]")));
+    }
+
+    @Test
+    public void writesToWriterAndChannel() {
+        String expected = String.join("|", names);
+
+        StringWriter writer = new StringWriter();
+        long chars = names.parallelStream().collect(ChunkedJoiningCollector.toWriter("|", writer));
+        assertEquals(expected, writer.toString());
+        assertEquals(expected.length(), chars);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long bytes = names.parallelStream()
+                .collect(ChunkedJoiningCollector.toChannel("|", Channels.newChannel(out), StandardCharsets.UTF_8));
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(out.size(), bytes);
+    }
+
+    @Test
+    public void nullElementsJoinAsNull() {
+        List<String> withNulls = Arrays.asList("a", null, "b");
+        assertEquals(withNulls.stream().collect(Collectors.joining(",")),
+                withNulls.stream().collect(ChunkedJoiningCollector.joining(",")));
+        StringWriter writer = new StringWriter();
+        withNulls.stream().collect(ChunkedJoiningCollector.toWriter(",", writer));
+        assertEquals("a,null,b", writer.toString());
+    }
+
+    @Test
+    public void surrogatePairSplitAcrossElements() {
+        //😀 的高位和低位代理分在两个元素里，连接后是一个完整的字符
+        List<String> parts = Arrays.asList("a\uD83D", "\uDE00b", "\uD83D", "", "\uDE00");
+        String expected = String.join("", parts);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long bytes = parts.stream()
+                .collect(ChunkedJoiningCollector.toChannel("", Channels.newChannel(out), StandardCharsets.UTF_8));
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+        assertEquals(out.size(), bytes);
+    }
+}
@@ -0,0 +1,48 @@
+package com.wangrong.stream.collector;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.*;
+
+public class IntKeyGroupingCollectorTests {
+
+    @Test
+    public void sameGroupsAsGroupingBy() {
+        List<Integer> numbers = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+        Map<Integer, List<Integer>> expected = numbers.stream().collect(Collectors.groupingBy(i -> i % 97));
+
+        IntGroupMap<Integer> sequential = numbers.stream().collect(IntKeyGroupingCollector.groupingBy(i -> i % 97));
+        IntGroupMap<Integer> parallel = numbers.parallelStream().collect(IntKeyGroupingCollector.groupingBy(i -> i % 97));
+
+        assertEquals(expected, sequential.toMap());
+        //并行合并后分组内顺序与串行一致
+        assertEquals(expected, parallel.toMap());
+        assertEquals(97, parallel.size());
+        assertEquals(expected.get(3), parallel.get(3));
+        assertNull(parallel.get(97));
+    }
+
+    @Test
+    public void negativeAndZeroKeys() {
+        IntGroupMap<Integer> map = IntStream.rangeClosed(-1000, 1000).boxed()
+                .collect(IntKeyGroupingCollector.groupingBy(i -> i, 1));
+        assertEquals(2001, map.size());
+        assertTrue(map.containsKey(0));
+        assertEquals(Integer.valueOf(-1000), map.get(-1000).get(0));
+    }
+
+    @Test
+    public void longKeys() {
+        Map<Long, List<Long>> expected = LongStream.range(0, 50_000).boxed()
+                .collect(Collectors.groupingBy(i -> i * 1_000_000_007L % 1013));
+        LongGroupMap<Long> actual = LongStream.range(0, 50_000).boxed().parallel()
+                .collect(LongKeyGroupingCollector.groupingBy(i -> i * 1_000_000_007L % 1013));
+        assertEquals(expected, actual.toMap());
+    }
+}
@@ -0,0 +1,132 @@
+package com.wangrong.stream.collector;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class SpillingGroupingCollectorTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> words = IntStream.range(0, 100_000)
+            .mapToObj(i -> "w" + (i * 7919 % 100_003))
+            .collect(Collectors.toList());
+
+    private SpillingGroupingCollector<String, Integer> collector(long budget, int maxOpenRuns) {
+        return SpillingGroupingCollector
+                .builder((String s) -> s.hashCode() % 1009, Comparator.<Integer>naturalOrder(), SpillCodec.INT, SpillCodec.STRING)
+                .memoryBudget(budget)
+                .maxOpenRuns(maxOpenRuns)
+                .tempDirectory(folder.getRoot().toPath())
+                .build();
+    }
+
+    @Test
+    public void sameGroupsAsGroupingBy() {
+        Map<Integer, List<String>> expected = new TreeMap<>(words.stream().collect(Collectors.groupingBy(s -> s.hashCode() % 1009)));
+
+        //预算足够时不溢写
+        try (SpilledGroups<Integer, String> groups = words.stream().collect(collector(1L << 30, 64))) {
+            assertEquals(0, groups.runCount());
+            assertEquals(expected, groups.toMap());
+        }
+        //预算很小，串行与并行都会溢写多个 run，分组内顺序保持不变
+        try (SpilledGroups<Integer, String> groups = words.stream().collect(collector(64 * 1024, 64))) {
+            assertTrue(groups.runCount() > 1);
+            assertEquals(expected, groups.toMap());
+            //可以重复遍历
+            assertEquals(expected.keySet(), groups.toMap().keySet());
+        }
+        try (SpilledGroups<Integer, String> groups = words.parallelStream().collect(collector(64 * 1024, 64))) {
+            assertTrue(groups.runCount() > 1);
+            assertEquals(expected, groups.toMap());
+        }
+        File[] left = folder.getRoot().listFiles();
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+
+    @Test
+    public void multiPassMerge() {
+        Map<Integer, List<String>> expected = new TreeMap<>(words.stream().collect(Collectors.groupingBy(s -> s.hashCode() % 1009)));
+        try (SpilledGroups<Integer, String> groups = words.parallelStream().collect(collector(16 * 1024, 4))) {
+            assertTrue(groups.runCount() <= 4);
+            assertEquals(expected, groups.toMap());
+        }
+        File[] left = folder.getRoot().listFiles();
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+
+    @Test
+    public void failedPipelineDeletesRuns() {
+        SpillingGroupingCollector<String, Integer> failing = SpillingGroupingCollector
+                .builder((String s) -> {
+                    if (s.equals(words.get(words.size() / 2))) {
+                        throw new IllegalStateException("boom");
+                    }
+                    return s.hashCode() % 1009;
+                }, Comparator.<Integer>naturalOrder(), SpillCodec.INT, SpillCodec.STRING)
+                .memoryBudget(16 * 1024)
+                .tempDirectory(folder.getRoot().toPath())
+                .build();
+        try {
+            //出错前已经溢写了多个 run
+            words.stream().collect(failing);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        File[] left = folder.getRoot().listFiles();
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+
+    @Test
+    public void spillsLongStrings() {
+        //超过 writeUTF 的 64KB 上限，包含多字节字符
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 100_000) {
+            builder.append("长字符串-");
+        }
+        String large = builder.toString();
+        List<String> values = IntStream.range(0, 8).mapToObj(i -> large + i).collect(Collectors.toList());
+        SpillingGroupingCollector<String, String> byPrefix = SpillingGroupingCollector
+                .builder((String s) -> s.substring(0, s.length() - 1), Comparator.<String>naturalOrder(), SpillCodec.STRING, SpillCodec.STRING)
+                .memoryBudget(1)
+                .tempDirectory(folder.getRoot().toPath())
+                .build();
+        try (SpilledGroups<String, String> groups = values.stream().collect(byPrefix)) {
+            assertEquals(8, groups.runCount());
+            Map<String, List<String>> result = groups.toMap();
+            assertEquals(1, result.size());
+            assertEquals(values, result.get(large));
+        }
+    }
+
+    @Test
+    public void rejectsNullKey() {
+        SpillingGroupingCollector<String, Integer> nullKey = SpillingGroupingCollector
+                .builder((String s) -> s.equals(words.get(words.size() / 2)) ? null : s.length(), Comparator.<Integer>naturalOrder(), SpillCodec.INT, SpillCodec.STRING)
+                .memoryBudget(16 * 1024)
+                .tempDirectory(folder.getRoot().toPath())
+                .build();
+        try {
+            //null key 出现在已经溢写之后，不能等到下一次溢写才在编解码器里失败
+            words.stream().collect(nullKey);
+            fail();
+        } catch (NullPointerException e) {
+            assertEquals("element cannot be mapped to a null key", e.getMessage());
+        }
+        File[] left = folder.getRoot().listFiles();
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+}
@@ -0,0 +1,158 @@
+package com.wangrong.stream.collector;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class StripedMapCollectorTests {
+
+    private final List<Integer> numbers = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+
+    @Test
+    public void sequentialSameAsToMap() {
+        Map<Integer, String> expected = numbers.stream()
+                .collect(Collectors.toMap(i -> i % 97, String::valueOf, (a, b) -> a + ";" + b));
+        Map<Integer, String> actual = numbers.stream()
+                .collect(StripedMapCollector.joining(i -> i % 97, String::valueOf, ";"));
+        //串行流中值按遇到顺序追加
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void parallelSameValuesAsToMap() {
+        Map<Integer, String> expected = numbers.stream()
+                .collect(Collectors.toMap(i -> i % 97, String::valueOf, (a, b) -> a + ";" + b));
+        Map<Integer, String> actual = numbers.parallelStream()
+                .collect(StripedMapCollector.joining(i -> i % 97, String::valueOf, ";"));
+        assertEquals(expected.keySet(), actual.keySet());
+        //并行时同一键下的顺序不确定，比较值的集合
+        expected.forEach((key, value) -> assertEquals(
+                new TreeSet<>(Arrays.asList(value.split(";"))), new TreeSet<>(Arrays.asList(actual.get(key).split(";")))));
+    }
+
+    @Test
+    public void parallelStreamSharesOneTable() {
+        AtomicInteger tables = new AtomicInteger();
+        StripedMapCollector<Integer, Integer, Integer, List<Integer>, Integer> counting = StripedMapCollector.of(
+                i -> i % 10,
+                i -> i,
+                ArrayList::new,
+                List::add,
+                (left, right) -> {
+                    throw new AssertionError("combiner should not be called");
+                },
+                List::size);
+        Map<Integer, Integer> counts = numbers.parallelStream()
+                .collect(new CountingSupplier<>(counting, tables));
+        assertEquals(1, tables.get());
+        assertEquals(10, counts.size());
+        counts.values().forEach(count -> assertEquals(10_000, count.intValue()));
+    }
+
+    @Test
+    public void concurrentAppends() throws Exception {
+        StripedBufferMap<Integer, Integer, List<Integer>> map = new StripedBufferMap<>(8, ArrayList::new, List::add, List::addAll);
+        assertEquals(8, map.stripes());
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 50_000; i++) {
+                    map.append(i % 100, offset);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        assertEquals(100, map.size());
+        map.forEach((key, values) -> assertEquals(threads * 500, values.size()));
+    }
+
+    @Test
+    public void mergeAppendsRightBuffers() {
+        StripedMapCollector<Integer, Integer, Integer, List<Integer>, List<Integer>> collector =
+                StripedMapCollector.<Integer, Integer, Integer>toList(i -> i % 2, i -> i).stripes(1);
+        StripedBufferMap<Integer, Integer, List<Integer>> left = collector.supplier().get();
+        StripedBufferMap<Integer, Integer, List<Integer>> right = collector.supplier().get();
+        Arrays.asList(0, 1, 2).forEach(i -> collector.accumulator().accept(left, i));
+        Arrays.asList(3, 4).forEach(i -> collector.accumulator().accept(right, i));
+        Map<Integer, List<Integer>> merged = collector.finisher().apply(collector.combiner().apply(left, right));
+        assertEquals(Arrays.asList(0, 2, 4), merged.get(0));
+        assertEquals(Arrays.asList(1, 3), merged.get(1));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullKey() {
+        Arrays.asList("a", "b").stream().collect(StripedMapCollector.joining(s -> null, s -> s, ","));
+    }
+
+    /**
+     * 统计 supplier 的调用次数
+     */
+    private static final class CountingSupplier<T, A, R> implements Collector<T, A, R> {
+
+        private final Collector<T, A, R> delegate;
+
+        private final AtomicInteger calls;
+
+        CountingSupplier(Collector<T, A, R> delegate, AtomicInteger calls) {
+            this.delegate = delegate;
+            this.calls = calls;
+        }
+
+        @Override
+        public Supplier<A> supplier() {
+            return () -> {
+                calls.incrementAndGet();
+                return delegate.supplier().get();
+            };
+        }
+
+        @Override
+        public BiConsumer<A, T> accumulator() {
+            return delegate.accumulator();
+        }
+
+        @Override
+        public BinaryOperator<A> combiner() {
+            return delegate.combiner();
+        }
+
+        @Override
+        public Function<A, R> finisher() {
+            return delegate.finisher();
+        }
+
+        @Override
+        public Set<Characteristics> characteristics() {
+            return delegate.characteristics();
+        }
+    }
+}
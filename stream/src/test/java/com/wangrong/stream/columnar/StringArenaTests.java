@@ -0,0 +1,107 @@
+package com.wangrong.stream.columnar;
+
+import com.wangrong.stream.collector.ChunkedJoiningCollector;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class StringArenaTests {
+
+    /**
+     * 10 万个名字，只有 1000 种内容，每个都是单独的 String 对象
+     */
+    private final List<String> names = IntStream.range(0, 100_000)
+            .mapToObj(i -> new StringBuilder("name").append(i % 1000).toString())
+            .collect(Collectors.toList());
+
+    @Test
+    public void deduplicates() {
+        StringArena arena = new StringArena(16);
+        List<ArenaString> interned = names.stream().map(arena::intern).collect(Collectors.toList());
+        assertEquals(1000, arena.size());
+        //"name0" ~ "name999"，Latin-1 每个字符 1 字节
+        assertEquals(10 * 5 + 90 * 6 + 900 * 7, arena.byteSize());
+        assertSame(interned.get(7), interned.get(1007));
+        assertSame(interned.get(7), arena.lookup("name7"));
+        assertSame(interned.get(7), arena.get(interned.get(7).id()));
+        assertSame(interned.get(7), arena.intern(interned.get(7)));
+        assertNull(arena.lookup("name1000"));
+        assertEquals(1000, arena.size());
+    }
+
+    @Test
+    public void latin1AndUtf16Content() {
+        StringArena arena = new StringArena();
+        for (String value : Arrays.asList("", "Bar1 <- Foo1", "café", "名字1", "a😀b")) {
+            ArenaString string = arena.intern(value);
+            assertEquals(value, string.toString());
+            assertEquals(value.length(), string.length());
+            assertEquals(value.hashCode(), string.hashCode());
+            assertTrue(string.contentEquals(value));
+            assertEquals(value.substring(0, value.length() / 2), string.subSequence(0, value.length() / 2));
+            char[] chars = new char[value.length()];
+            string.getChars(0, value.length(), chars, 0);
+            assertEquals(value, new String(chars));
+        }
+        assertEquals(0 + 12 + 4 + 3 * 2 + 4 * 2, arena.byteSize());
+        assertTrue(arena.intern("Bar1 <- Foo1").startsWith("Bar1"));
+        assertFalse(arena.intern("Bar1").startsWith("Bar1 <- Foo1"));
+    }
+
+    @Test
+    public void equalityAndOrdering() {
+        StringArena arena = new StringArena();
+        StringArena other = new StringArena();
+        ArenaString a = arena.intern("Anna");
+        assertEquals(a, other.intern("Anna"));
+        assertNotEquals(a, arena.intern("Anne"));
+        //与 StringBuilder 一样不等于 String
+        assertNotEquals(a, "Anna");
+        assertEquals(Integer.signum("Anna".compareTo("Anne")), Integer.signum(a.compareTo(arena.intern("Anne"))));
+        assertTrue(a.compareTo(arena.intern("Ann")) > 0);
+    }
+
+    @Test
+    public void groupingSameAsStrings() {
+        StringArena arena = new StringArena();
+        Map<String, Long> expected = names.stream().collect(Collectors.groupingBy(name -> name, TreeMap::new, Collectors.counting()));
+        Map<ArenaString, Long> grouped = names.parallelStream()
+                .collect(Collectors.groupingBy(arena::intern, Collectors.counting()));
+        Map<String, Long> actual = new TreeMap<>();
+        grouped.forEach((name, count) -> actual.put(name.toString(), count));
+        assertEquals(expected, actual);
+        //并行 intern 后内容相同的仍是同一个实例
+        Set<ArenaString> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        names.parallelStream().map(arena::intern).forEach(name -> {
+            synchronized (distinct) {
+                distinct.add(name);
+            }
+        });
+        assertEquals(1000, distinct.size());
+    }
+
+    @Test
+    public void joiningAcceptsArenaStrings() {
+        StringArena arena = new StringArena();
+        List<String> values = Arrays.asList("Max", "Peter", "名字", "David");
+        String expected = String.join(" and ", values);
+        assertEquals(expected, values.stream().map(arena::intern).collect(Collectors.joining(" and ")));
+        assertEquals(expected, values.parallelStream().map(arena::intern).collect(ChunkedJoiningCollector.joining(" and ")));
+
+        StringWriter writer = new StringWriter();
+        long written = names.stream().map(arena::intern).collect(ChunkedJoiningCollector.toWriter(",", writer));
+        assertEquals(String.join(",", names), writer.toString());
+        assertEquals(writer.toString().length(), written);
+    }
+}
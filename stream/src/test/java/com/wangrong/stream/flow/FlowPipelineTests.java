@@ -0,0 +1,215 @@
+package com.wangrong.stream.flow;
+
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class FlowPipelineTests {
+
+    private final List<Integer> numbers = IntStream.range(0, 10_000).boxed().collect(Collectors.toList());
+
+    @Test
+    public void sameResultAsStream() throws Exception {
+        List<String> expected = numbers.stream()
+                .filter(i -> i % 3 == 0)
+                .map(i -> "n" + i)
+                .flatMap(s -> Stream.of(s, s + "'"))
+                .collect(Collectors.toList());
+        List<String> actual = FlowPipeline.from(IteratorPublisher.of(numbers))
+                .batchSize(7)
+                .bufferBatches(2)
+                .filter(i -> i % 3 == 0)
+                .map(i -> "n" + i)
+                .flatMap(s -> Stream.of(s, s + "'"))
+                .collect(Collectors.toList())
+                .get(10, TimeUnit.SECONDS);
+        //并行度都为 1 时保持遇到顺序
+        assertEquals(expected, actual);
+        assertEquals(Integer.valueOf(49_995_000), FlowPipeline.from(IteratorPublisher.of(numbers))
+                .reduce(0, Integer::sum).get(10, TimeUnit.SECONDS));
+        assertEquals(Optional.empty(), FlowPipeline.from(IteratorPublisher.of(Collections.<Integer>emptyList()))
+                .reduce(Integer::sum).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void parallelStages() throws Exception {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<Integer> actual = FlowPipeline.from(IteratorPublisher.of(numbers))
+                .batchSize(16)
+                .map(i -> {
+                    threads.add(Thread.currentThread().getName());
+                    sleepQuietly(i % 100 == 0 ? 1 : 0);
+                    return i * 2;
+                }, 4)
+                .filter(i -> i % 4 == 0, 2)
+                .collect(Collectors.toList())
+                .get(30, TimeUnit.SECONDS);
+        //并行度大于 1 时批次之间不保证顺序
+        Collections.sort(actual);
+        assertEquals(numbers.stream().map(i -> i * 2).filter(i -> i % 4 == 0).collect(Collectors.toList()), actual);
+        assertTrue(threads.toString(), threads.size() > 1);
+    }
+
+    @Test
+    public void boundedWhenProducerOutrunsConsumer() throws Exception {
+        AtomicLong produced = new AtomicLong();
+        AtomicLong consumed = new AtomicLong();
+        AtomicLong maxInFlight = new AtomicLong();
+        Long count = FlowPipeline.from(IteratorPublisher.of(() -> counting(produced, 5000)))
+                .batchSize(10)
+                .bufferBatches(2)
+                .map(i -> {
+                    maxInFlight.accumulateAndGet(produced.get() - consumed.incrementAndGet(), Math::max);
+                    if (i % 500 == 0) {
+                        sleepQuietly(5);
+                    }
+                    return i;
+                })
+                .collect(Collectors.counting())
+                .get(30, TimeUnit.SECONDS);
+        assertEquals(Long.valueOf(5000), count);
+        //数据源的队列最多 2 批，加上工作线程手上的一批
+        assertTrue("in flight: " + maxInFlight.get(), maxInFlight.get() <= 30);
+    }
+
+    @Test
+    public void flatMapIsBounded() throws Exception {
+        AtomicLong expanded = new AtomicLong();
+        AtomicLong consumed = new AtomicLong();
+        AtomicLong maxInFlight = new AtomicLong();
+        Long count = FlowPipeline.from(IteratorPublisher.of(Collections.singletonList(1_000_000)))
+                .batchSize(100)
+                .bufferBatches(2)
+                .flatMap(n -> IntStream.range(0, n).peek(i -> expanded.incrementAndGet()).boxed())
+                .filter(i -> {
+                    maxInFlight.accumulateAndGet(expanded.get() - consumed.incrementAndGet(), Math::max);
+                    return true;
+                })
+                .collect(Collectors.counting())
+                .get(30, TimeUnit.SECONDS);
+        assertEquals(Long.valueOf(1_000_000), count);
+        //一个元素展开成一百万个，中间最多缓存 2 批，加上 flatMap 正在攒的一批和 filter 手上的一批
+        assertTrue("in flight: " + maxInFlight.get(), maxInFlight.get() <= 400);
+    }
+
+    @Test
+    public void slowProducerIsNotDelayedByBatching() throws Exception {
+        CountDownLatch seen = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        //只发一个元素，等下游处理了它才结束
+        Publisher<String> slow = subscriber -> {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            new Thread(() -> {
+                subscriber.onNext("a");
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                subscriber.onComplete();
+            }).start();
+        };
+        CompletableFuture<List<String>> result = FlowPipeline.from(slow)
+                .batchSize(1000)
+                .map(s -> {
+                    seen.countDown();
+                    return s.toUpperCase();
+                })
+                .collect(Collectors.toList());
+        assertTrue(seen.await(10, TimeUnit.SECONDS));
+        assertFalse(result.isDone());
+        release.countDown();
+        assertEquals(Collections.singletonList("A"), result.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failureCancelsUpstream() throws Exception {
+        AtomicLong produced = new AtomicLong();
+        CompletableFuture<List<Integer>> result = FlowPipeline.from(IteratorPublisher.of(() -> counting(produced, Integer.MAX_VALUE)))
+                .batchSize(8)
+                .map(i -> {
+                    if (i == 1000) {
+                        throw new IllegalStateException("boom");
+                    }
+                    return i;
+                }, 2)
+                .collect(Collectors.toList());
+        try {
+            result.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals("boom", e.getCause().getMessage());
+        }
+        assertStopsProducing(produced);
+    }
+
+    @Test
+    public void cancelStopsUpstream() throws Exception {
+        AtomicLong produced = new AtomicLong();
+        CompletableFuture<Long> result = FlowPipeline.from(IteratorPublisher.of(() -> counting(produced, Integer.MAX_VALUE)))
+                .map(i -> {
+                    sleepQuietly(1);
+                    return i;
+                })
+                .collect(Collectors.counting());
+        while (produced.get() == 0) {
+            Thread.sleep(1);
+        }
+        assertTrue(result.cancel(true));
+        assertStopsProducing(produced);
+    }
+
+    private static Iterator<Integer> counting(AtomicLong produced, int size) {
+        return new Iterator<Integer>() {
+            @Override
+            public boolean hasNext() {
+                return produced.get() < size;
+            }
+
+            @Override
+            public Integer next() {
+                return (int) produced.getAndIncrement();
+            }
+        };
+    }
+
+    private static void assertStopsProducing(AtomicLong produced) throws InterruptedException {
+        Thread.sleep(50);
+        long stopped = produced.get();
+        Thread.sleep(50);
+        assertEquals(stopped, produced.get());
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
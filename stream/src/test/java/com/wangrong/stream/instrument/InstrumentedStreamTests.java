@@ -0,0 +1,85 @@
+package com.wangrong.stream.instrument;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class InstrumentedStreamTests {
+
+    @Test
+    public void recordsStageCountsAndSelectivity() {
+        StreamMetricsRegistry registry = new StreamMetricsRegistry(true, 1);
+        List<Integer> result = InstrumentedStream.of(registry, "numbers", IntStream.range(0, 10_000).boxed().parallel())
+                .filter("even", i -> i % 2 == 0)
+                .map("square", i -> i * i)
+                .flatMap("twice", i -> Stream.of(i, i))
+                .stream()
+                .collect(Collectors.toList());
+
+        assertEquals(10_000, result.size());
+        List<StageMetrics> stages = registry.stages("numbers");
+        assertEquals("even", stages.get(0).getStage());
+        assertEquals(10_000, stages.get(0).getInput());
+        assertEquals(5_000, stages.get(0).getOutput());
+        assertEquals(0.5, stages.get(0).getSelectivity(), 1e-9);
+        assertEquals(5_000, stages.get(1).getOutput());
+        assertEquals(10_000, stages.get(2).getOutput());
+        //抽样间隔为 1 时每个元素都计时，线程分布之和等于抽样数
+        assertEquals(10_000, stages.get(0).getSampledCount());
+        assertEquals(10_000L, stages.get(0).getThreads().values().stream().mapToLong(Long::longValue).sum());
+
+        registry.reset();
+        assertEquals(0, registry.stages("numbers").get(0).getInput());
+    }
+
+    @Test
+    public void sampledTimings() {
+        StreamMetricsRegistry registry = new StreamMetricsRegistry(true, 100);
+        assertEquals(128, registry.getSampleRate());
+        InstrumentedStream.of(registry, "numbers", IntStream.range(0, 100_000).boxed())
+                .map("identity", i -> i)
+                .stream()
+                .count();
+        long sampled = registry.stage("numbers", "identity").getSampledCount();
+        assertTrue(sampled > 0 && sampled < 100_000 / 32);
+    }
+
+    @Test
+    public void disabledRegistryRecordsNothing() {
+        List<StageMetrics> created = new ArrayList<>();
+        StreamMetricsRegistry.DISABLED.onNewStage(created::add);
+        long count = InstrumentedStream.of(StreamMetricsRegistry.DISABLED, "numbers", Stream.of(1, 2, 3))
+                .filter("odd", i -> i % 2 == 1)
+                .then(s -> s.sorted())
+                .stream()
+                .count();
+        assertEquals(2, count);
+        assertTrue(created.isEmpty());
+        assertTrue(StreamMetricsRegistry.DISABLED.pipelines().isEmpty());
+    }
+
+    @Test
+    public void threadDistributionIsBounded() throws InterruptedException {
+        StreamMetricsRegistry registry = new StreamMetricsRegistry(true, 1);
+        //每次都在一个新命名的线程上执行，类似线程池回收后新建的工作线程
+        for (int i = 0; i < StageMetrics.MAX_THREADS + 36; i++) {
+            Thread thread = new Thread(() -> InstrumentedStream.of(registry, "threads", Stream.of(1, 2))
+                    .map("identity", n -> n)
+                    .stream()
+                    .count(), "worker-" + i);
+            thread.start();
+            thread.join();
+        }
+        Map<String, Long> threads = registry.stage("threads", "identity").getThreads();
+        assertEquals(StageMetrics.MAX_THREADS + 1, threads.size());
+        assertEquals(72, (long) threads.get(StageMetrics.OTHER_THREADS));
+        assertEquals(200L, threads.values().stream().mapToLong(Long::longValue).sum());
+    }
+}
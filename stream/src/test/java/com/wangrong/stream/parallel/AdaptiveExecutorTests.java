@@ -0,0 +1,134 @@
+package com.wangrong.stream.parallel;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveExecutorTests {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    private final List<Integer> numbers = IntStream.range(0, 20_000).boxed().collect(Collectors.toList());
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void smallSourceRunsSequentiallyWithoutSampling() {
+        AdaptiveExecutor executor = AdaptiveExecutor.builder().pool(pool).build();
+        List<String> persons = Arrays.asList("Max", "Peter", "Pamela", "David");
+        List<String> upper = executor.execute("persons", persons,
+                stream -> stream.map(String::toUpperCase).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("MAX", "PETER", "PAMELA", "DAVID"), upper);
+
+        PlanMetrics metrics = executor.metrics("persons");
+        assertEquals(1, metrics.getSequentialRuns());
+        assertEquals(0, metrics.getSamplings());
+        assertEquals("small", metrics.getLastPlan().getReason());
+    }
+
+    @Test
+    public void cheapPipelineRunsSequentially() {
+        AdaptiveExecutor executor = AdaptiveExecutor.builder().pool(pool).build();
+        //JVM 刚启动时代码还在解释执行，抽样可能偏高而选择并行，几次执行后由实际耗时修正为串行
+        for (int i = 0; i < 5; i++) {
+            long sum = executor.execute("sum", numbers.subList(0, 5000), stream -> stream.mapToLong(Integer::longValue).sum());
+            assertEquals(4999L * 5000 / 2, sum);
+        }
+        ExecutionPlan plan = executor.metrics("sum").getLastPlan();
+        assertFalse(plan.toString(), plan.isParallel());
+        assertEquals("cheap", plan.getReason());
+        assertEquals(1, executor.metrics("sum").getSamplings());
+    }
+
+    @Test
+    public void costlyPipelineRunsInParallel() {
+        AdaptiveExecutor executor = AdaptiveExecutor.builder().pool(pool).build();
+        List<Integer> source = numbers.subList(0, 2000);
+        Set<String> threads = executor.execute("costly", source, stream -> stream
+                .map(i -> {
+                    spin(20);
+                    return Thread.currentThread().getName();
+                })
+                .collect(Collectors.toSet()));
+
+        ExecutionPlan plan = executor.metrics("costly").getLastPlan();
+        assertTrue(plan.toString(), plan.isParallel());
+        assertEquals("costly", plan.getReason());
+        //每个元素约 20µs，叶子至少 50µs 的工作量；2000 个元素、4 个线程时按并行度拆分为 125 个一组
+        assertEquals(125, plan.getLeafSize());
+        assertTrue(threads.toString(), threads.size() > 1);
+        assertEquals(1, executor.metrics("costly").getParallelRuns());
+    }
+
+    @Test
+    public void leafSizeLimitsSplitting() {
+        AdaptiveExecutor executor = AdaptiveExecutor.builder()
+                .pool(pool)
+                .parallelThreshold(Duration.ZERO)
+                .minLeafTime(Duration.ofSeconds(1))
+                .build();
+        //叶子的工作量下限超过了全部元素，只有一个叶子
+        Set<String> threads = executor.execute("coarse", numbers,
+                stream -> stream.map(i -> Thread.currentThread().getName()).collect(Collectors.toSet()));
+        ExecutionPlan plan = executor.metrics("coarse").getLastPlan();
+        assertTrue(plan.isParallel());
+        assertEquals(numbers.size(), plan.getLeafSize());
+        assertEquals(1, threads.size());
+    }
+
+    @Test
+    public void slowParallelRunRaisesThreshold() {
+        AdaptiveExecutor executor = AdaptiveExecutor.builder()
+                .pool(pool)
+                .parallelThreshold(Duration.ZERO)
+                .build();
+        //每个元素只有几纳秒，并行执行很快会比估计的串行耗时慢，每次修正至少把阈值提高到估计值的两倍；
+        //JIT 编译完成前串行的实测耗时偏高，可能再次选择并行，最终稳定在串行
+        int sequentialInRow = 0;
+        for (int i = 0; i < 50 && sequentialInRow < 3; i++) {
+            assertEquals(numbers.size(), (long) executor.execute("tiny", numbers, stream -> stream.count()));
+            sequentialInRow = executor.metrics("tiny").getLastPlan().isParallel() ? 0 : sequentialInRow + 1;
+        }
+        PlanMetrics metrics = executor.metrics("tiny");
+        assertEquals(metrics.toString(), 3, sequentialInRow);
+        assertTrue(metrics.getCorrections() >= 1);
+        assertTrue(metrics.getParallelRuns() >= metrics.getCorrections());
+    }
+
+    @Test
+    public void listenersSeeExistingAndNewPipelines() {
+        AdaptiveExecutor executor = AdaptiveExecutor.builder().pool(pool).build();
+        executor.execute("first", numbers, stream -> stream.count());
+        List<String> seen = new ArrayList<>();
+        executor.onNewPipeline(metrics -> seen.add(metrics.getPipeline()));
+        executor.execute("second", numbers, stream -> stream.count());
+        executor.execute("second", numbers, stream -> stream.count());
+        assertEquals(Arrays.asList("first", "second"), seen);
+
+        executor.reset();
+        assertEquals(0, executor.metrics("second").getSequentialRuns());
+        executor.execute("second", numbers, stream -> stream.count());
+        assertEquals(1, executor.metrics("second").getSamplings());
+    }
+
+    private static void spin(long micros) {
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(micros);
+        while (System.nanoTime() < deadline) {
+            //忙等，模拟计算量大的元素
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.wangrong.stream.parallel;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class ParallelStreamExecutorTests {
+
+    private final ParallelStreamExecutor executor = new ParallelStreamExecutor(Collections.singletonMap("batch", pool(2, 1)));
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Test
+    public void parallelStreamRunsOnNamedPool() {
+        Set<String> threads = executor.execute("batch", () -> IntStream.range(0, 10_000)
+                .parallel()
+                .mapToObj(i -> Thread.currentThread().getName())
+                .collect(Collectors.toSet()));
+        assertFalse(threads.isEmpty());
+        threads.forEach(name -> assertTrue(name, name.startsWith("stream-batch-")));
+
+        PoolMetrics metrics = executor.metrics("batch");
+        assertEquals(2, metrics.getParallelism());
+        assertEquals(1, metrics.getCompleted());
+        assertEquals(0, metrics.getPending());
+    }
+
+    @Test
+    public void rejectsWhenMaxPendingReached() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> first = executor.submit("batch", () -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        });
+        running.await();
+        try {
+            executor.execute("batch", () -> 2);
+            fail("expected RejectedExecutionException");
+        } catch (RejectedExecutionException expected) {
+            assertEquals(1, executor.metrics("batch").getRejected());
+        }
+        release.countDown();
+        assertEquals(Integer.valueOf(1), first.get());
+        assertEquals(Integer.valueOf(2), executor.execute("batch", () -> 2));
+    }
+
+    @Test
+    public void pipelineExceptionIsRethrown() {
+        try {
+            executor.execute("batch", () -> {
+                throw new IllegalStateException("boom");
+            });
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            assertEquals(1, executor.metrics("batch").getFailed());
+            assertEquals(0, executor.metrics("batch").getPending());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownPool() {
+        executor.execute("missing", () -> 1);
+    }
+
+    private static ParallelStreamProperties.Pool pool(int parallelism, int maxPending) {
+        ParallelStreamProperties.Pool pool = new ParallelStreamProperties.Pool();
+        pool.setParallelism(parallelism);
+        pool.setMaxPending(maxPending);
+        return pool;
+    }
+}
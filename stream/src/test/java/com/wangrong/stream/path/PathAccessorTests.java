@@ -0,0 +1,182 @@
+package com.wangrong.stream.path;
+
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class PathAccessorTests {
+
+    static class Order {
+        Customer customer;
+
+        Order(Customer customer) {
+            this.customer = customer;
+        }
+    }
+
+    static class Customer {
+        private final Address address;
+
+        private final boolean active;
+
+        Customer(Address address, boolean active) {
+            this.address = address;
+            this.active = active;
+        }
+
+        public Address getAddress() {
+            return address;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+    }
+
+    static class Address {
+        private final String city;
+
+        private final int zip;
+
+        Address(String city, int zip) {
+            this.city = city;
+            this.zip = zip;
+        }
+
+        public String city() {
+            return city;
+        }
+
+        int getZip() {
+            return zip;
+        }
+    }
+
+    interface HasCustomer {
+        Object getCustomer();
+    }
+
+    static class Invoice implements HasCustomer {
+        private final Customer customer;
+
+        final String isbn = "978-7";
+
+        Invoice(Customer customer) {
+            this.customer = customer;
+        }
+
+        //协变返回类型，编译器另外生成 Object getCustomer() 桥接方法
+        @Override
+        public Customer getCustomer() {
+            return customer;
+        }
+
+        public String issuer() {
+            return "acme";
+        }
+    }
+
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    private final List<Order> orders = Arrays.asList(
+            new Order(new Customer(new Address("Berlin", 10115), true)),
+            new Order(new Customer(new Address(null, 20095), false)),
+            new Order(new Customer(null, true)),
+            new Order(null),
+            null);
+
+    @Test
+    public void readsFieldsAndGetters() {
+        //customer 为包级可见字段，address 为 getAddress()，city 为 city()
+        PathAccessor<Order, String> city = PathAccessor.of(lookup, Order.class, "customer.address.city", String.class);
+        assertEquals(Arrays.asList("Berlin", null, null, null, null),
+                orders.stream().map(city).collect(Collectors.toList()));
+        assertEquals("customer.address.city", city.getPath());
+    }
+
+    @Test
+    public void returnsDefault() {
+        PathAccessor<Order, String> city = PathAccessor.of(lookup, Order.class, "customer.address.city", String.class)
+                .orElse("unknown");
+        assertEquals(Arrays.asList("Berlin", "unknown", "unknown", "unknown", "unknown"),
+                orders.stream().map(city).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void boxesPrimitiveEnd() {
+        PathAccessor<Order, Integer> zip = PathAccessor.of(lookup, Order.class, "customer.address.zip", Integer.class);
+        assertEquals(Integer.valueOf(20095), zip.apply(orders.get(1)));
+        assertNull(zip.apply(orders.get(2)));
+        PathAccessor<Order, Boolean> active = PathAccessor.of(lookup, Order.class, "customer.active", Boolean.class);
+        assertEquals(Boolean.FALSE, active.apply(orders.get(1)));
+        //传入原始类型时按包装类型返回
+        PathAccessor<Order, Integer> intZip = PathAccessor.of(lookup, Order.class, "customer.address.zip", int.class);
+        assertEquals(Integer.valueOf(10115), intZip.apply(orders.get(0)));
+        assertEquals(Integer.valueOf(-1), intZip.orElse(-1).apply(orders.get(3)));
+    }
+
+    @Test
+    public void filters() {
+        PathAccessor<Order, String> city = PathAccessor.of(lookup, Order.class, "customer.address.city", String.class)
+                .orElse("unknown");
+        //有默认值时 isPresent 依然只看路径上是否有 null
+        assertEquals(1, orders.stream().filter(city.isPresent()).count());
+        assertEquals(1, orders.stream().filter(city.matches(c -> c.startsWith("B"))).count());
+        assertEquals(0, orders.stream().filter(city.matches(c -> c.equals("unknown"))).count());
+    }
+
+    @Test
+    public void namesStartingWithIs() {
+        Invoice invoice = new Invoice(null);
+        assertEquals("acme", PathAccessor.of(lookup, Invoice.class, "issuer", String.class).apply(invoice));
+        assertEquals("978-7", PathAccessor.of(lookup, Invoice.class, "isbn", String.class).apply(invoice));
+    }
+
+    @Test
+    public void skipsBridgeMethods() {
+        PathAccessor<Invoice, String> city = PathAccessor.of(lookup, Invoice.class, "customer.address.city", String.class);
+        assertEquals("Berlin", city.apply(new Invoice(orders.get(0).customer)));
+        assertNull(city.apply(new Invoice(null)));
+    }
+
+    @Test
+    public void publicLookupReadsPublicGetters() {
+        //publicLookup() 不能生成 lambda，退回为调用句柄
+        PathAccessor<String, Boolean> empty = PathAccessor.of(MethodHandles.publicLookup(), String.class, "empty", Boolean.class);
+        assertEquals(Boolean.TRUE, empty.apply(""));
+        assertEquals(Boolean.FALSE, empty.apply("abc"));
+    }
+
+    @Test
+    public void rejectsInvalidPaths() {
+        assertInvalid("customer.address.street", String.class, "no getter or field 'street'");
+        assertInvalid("customer.address.zip.value", Object.class, "is primitive");
+        assertInvalid("customer.address.city", Integer.class, "ends with java.lang.String");
+        assertInvalid("customer..city", String.class, "empty segment");
+    }
+
+    @Test
+    public void checksAccess() {
+        //公共的 Lookup 无权访问包级可见的字段
+        try {
+            PathAccessor.of(MethodHandles.publicLookup(), Order.class, "customer", Customer.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("cannot access 'customer'"));
+        }
+    }
+
+    private void assertInvalid(String path, Class<?> type, String message) {
+        try {
+            PathAccessor.of(lookup, Order.class, path, type);
+            fail(path);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
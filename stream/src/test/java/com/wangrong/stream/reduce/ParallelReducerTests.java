@@ -0,0 +1,175 @@
+package com.wangrong.stream.reduce;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ParallelReducerTests {
+
+    private final List<Integer> numbers = IntStream.range(0, 200_000).boxed().collect(Collectors.toList());
+
+    @Test
+    public void immutableValueReduction() {
+        ParallelReducer<Integer, Long, Long> sum = ParallelReducer.of(() -> 0L, (total, i) -> total + i, Long::sum);
+        assertEquals(Long.valueOf(199_999L * 200_000 / 2), sum.reduce(numbers));
+        assertEquals(Long.valueOf(0), sum.reduce(new ArrayList<>()));
+    }
+
+    @Test
+    public void containerPerLeafAndOrderPreserved() {
+        Set<StringBuilder> containers = ConcurrentHashMap.newKeySet();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelReducer<Integer, StringBuilder, String> joining = ParallelReducer.builder(
+                    () -> {
+                        StringBuilder builder = new StringBuilder();
+                        containers.add(builder);
+                        return builder;
+                    },
+                    (StringBuilder builder, Integer i) -> builder.append(i).append(','),
+                    StringBuilder::append,
+                    StringBuilder::toString)
+                    .minLeafSize(1000)
+                    .pool(pool)
+                    .build();
+            String expected = numbers.stream().map(i -> i + ",").collect(Collectors.joining());
+            assertEquals(expected, joining.reduce(numbers));
+            assertTrue(containers.size() > 1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void smallInputRunsOnCallingThread() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        ParallelReducer<Integer, Long, Long> sum = ParallelReducer.of(() -> 0L, (Long total, Integer i) -> {
+            threads.add(Thread.currentThread());
+            return total + i;
+        }, Long::sum);
+        assertEquals(Long.valueOf(45), sum.reduce(numbers.subList(0, 10)));
+        assertEquals(Collections.singleton(Thread.currentThread()), threads);
+    }
+
+    @Test
+    public void unsizedSource() {
+        //迭代器数据源的拆分是按批次递增的，部分结果仍按遇到顺序组合
+        ParallelReducer<Integer, List<Integer>, List<Integer>> toList = ParallelReducer.<Integer, List<Integer>>builder(
+                ArrayList::new,
+                (list, i) -> {
+                    list.add(i);
+                    return list;
+                },
+                (left, right) -> {
+                    left.addAll(right);
+                    return left;
+                })
+                .minLeafSize(100)
+                .debug(32)
+                .build();
+        assertEquals(numbers, toList.reduce(Stream.iterate(0, i -> i + 1).limit(numbers.size())));
+    }
+
+    @Test
+    public void asCollector() {
+        ParallelReducer<Integer, Integer, Integer> max = ParallelReducer.of(() -> Integer.MIN_VALUE, Math::max, Math::max);
+        assertEquals(Integer.valueOf(199_999), numbers.parallelStream().collect(max.asCollector()));
+    }
+
+    @Test
+    public void debugAcceptsLawfulReduction() {
+        ParallelReducer<String, String, String> reducer = ParallelReducer.<String, String>builder(
+                () -> "", String::concat, String::concat).debug(64).build();
+        List<String> words = numbers.stream().map(String::valueOf).collect(Collectors.toList());
+        assertEquals(String.join("", words), reducer.reduce(words));
+    }
+
+    @Test
+    public void debugDetectsAccumulatorMismatch() {
+        ParallelReducer<Integer, Integer, Integer> reducer = ParallelReducer.<Integer, Integer>builder(
+                () -> 0, (total, i) -> total + i, Math::max).debug(32).build();
+        assertViolation(reducer, "accumulator and combiner disagree");
+    }
+
+    @Test
+    public void debugDetectsWrongIdentity() {
+        ParallelReducer<Integer, Long, Long> reducer = ParallelReducer.<Integer, Long>builder(
+                () -> 1L, (total, i) -> total + i, Long::sum).debug(32).build();
+        assertViolation(reducer, "identity");
+    }
+
+    @Test
+    public void debugDetectsNonAssociativeCombiner() {
+        //单个元素时与累加器一致、标识也成立，只有三个部分结果组合时才暴露问题
+        ParallelReducer<Integer, List<Integer>, List<Integer>> reducer = ParallelReducer.<Integer, List<Integer>>builder(
+                ArrayList::new,
+                (list, i) -> {
+                    list.add(i);
+                    return list;
+                },
+                (left, right) -> {
+                    List<Integer> tail = new ArrayList<>(right);
+                    if (tail.size() > 1) {
+                        Collections.reverse(tail);
+                    }
+                    left.addAll(tail);
+                    return left;
+                })
+                .debug(32)
+                .build();
+        assertViolation(reducer, "not associative");
+    }
+
+    @Test
+    public void debugDetectsSharedIdentity() {
+        //Application.reduce() 中第二种写法：标识值是同一个对象并被累加器修改
+        int[] shared = new int[1];
+        ParallelReducer<Integer, int[], Integer> reducer = ParallelReducer.<Integer, int[], Integer>builder(
+                () -> shared,
+                (total, i) -> {
+                    total[0] += i;
+                    return total;
+                },
+                (left, right) -> {
+                    left[0] += right[0];
+                    return left;
+                },
+                total -> total[0])
+                .debug(8)
+                .build();
+        assertViolation(reducer, "shared container");
+    }
+
+    @Test
+    public void debugRequiresEquivalenceWithoutEquals() {
+        ParallelReducer<Integer, StringBuilder, StringBuilder> reducer = ParallelReducer.<Integer, StringBuilder>builder(
+                StringBuilder::new, StringBuilder::append, StringBuilder::append).debug(8).build();
+        assertViolation(reducer, "does not implement equals");
+        ParallelReducer<Integer, StringBuilder, StringBuilder> withEquivalence = ParallelReducer.<Integer, StringBuilder>builder(
+                StringBuilder::new, StringBuilder::append, StringBuilder::append)
+                .debug(8)
+                .equivalence((left, right) -> left.toString().equals(right.toString()))
+                .build();
+        assertEquals("123", withEquivalence.reduce(Arrays.asList(1, 2, 3)).toString());
+    }
+
+    private void assertViolation(ParallelReducer<Integer, ?, ?> reducer, String message) {
+        try {
+            reducer.reduce(numbers);
+            fail("expected a violation: " + message);
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
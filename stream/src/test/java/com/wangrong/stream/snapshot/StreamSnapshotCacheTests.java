@@ -0,0 +1,128 @@
+package com.wangrong.stream.snapshot;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class StreamSnapshotCacheTests {
+
+    private final List<String> codes = Arrays.asList("d2", "a2", "b1", "b3", "c", "a1");
+
+    @Test
+    public void upstreamRunsOnce() {
+        AtomicInteger filtered = new AtomicInteger();
+        StreamSnapshotCache cache = StreamSnapshotCache.builder().build();
+        CachedStream<String> startsWithA = cache.cached("a", () -> codes.stream().filter(s -> {
+            filtered.incrementAndGet();
+            return s.startsWith("a");
+        }));
+
+        assertTrue(startsWithA.stream().anyMatch(s -> true));
+        assertFalse(startsWithA.stream().noneMatch(s -> true));
+        assertEquals(Arrays.asList("a2", "a1"), startsWithA.parallelStream().collect(Collectors.toList()));
+        assertEquals(codes.size(), filtered.get());
+        assertEquals(1, cache.misses());
+        assertEquals(2, cache.hits());
+
+        startsWithA.invalidate();
+        startsWithA.stream().count();
+        assertEquals(codes.size() * 2, filtered.get());
+    }
+
+    @Test
+    public void primitiveSnapshotSplitsEvenly() {
+        IntStreamSnapshot snapshot = StreamSnapshot.ofInts(IntStream.range(0, 1_000_000).filter(i -> i % 3 == 0));
+        assertEquals(333_334, snapshot.size());
+        assertEquals(snapshot.stream().asLongStream().sum(), snapshot.parallelStream().asLongStream().sum());
+        assertEquals(snapshot.size(), snapshot.stream().spliterator().getExactSizeIfKnown());
+    }
+
+    @Test
+    public void leastRecentlyUsedEvictedBySizeAndElements() {
+        StreamSnapshotCache cache = StreamSnapshotCache.builder().maximumSize(2).maximumElements(25).build();
+        cache.getInts("a", () -> IntStream.range(0, 10));
+        cache.getInts("b", () -> IntStream.range(0, 10));
+        //访问 a 后 b 成为最久未使用
+        cache.getInts("a", () -> IntStream.range(0, 10));
+        cache.getInts("c", () -> IntStream.range(0, 10));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+        AtomicInteger loads = new AtomicInteger();
+        cache.getInts("a", () -> {
+            loads.incrementAndGet();
+            return IntStream.range(0, 10);
+        });
+        assertEquals(0, loads.get());
+        //元素总数超出 25，淘汰最久未使用的 c
+        cache.getInts("d", () -> IntStream.range(0, 15));
+        assertEquals(25, cache.elements());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void expiresAfterWrite() {
+        AtomicLong now = new AtomicLong();
+        StreamSnapshotCache cache = StreamSnapshotCache.builder()
+                .expireAfterWrite(Duration.ofSeconds(10))
+                .ticker(now::get)
+                .build();
+        AtomicInteger loads = new AtomicInteger();
+        CachedStream<Integer> numbers = cache.cached("numbers", () -> {
+            loads.incrementAndGet();
+            return IntStream.range(0, 100).boxed();
+        });
+        numbers.stream().count();
+        now.addAndGet(Duration.ofSeconds(9).toNanos());
+        numbers.stream().count();
+        assertEquals(1, loads.get());
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertEquals(100, numbers.stream().count());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void keyHoldsOneSnapshotType() {
+        StreamSnapshotCache cache = StreamSnapshotCache.builder().build();
+        cache.get("codes", codes::stream);
+        try {
+            cache.getInts("codes", () -> IntStream.range(0, 10));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("StreamSnapshot, not IntStreamSnapshot"));
+        }
+    }
+
+    @Test
+    public void invalidateDuringLoadIsNotCached() throws Exception {
+        StreamSnapshotCache cache = StreamSnapshotCache.builder().build();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<IntStreamSnapshot> stale = CompletableFuture.supplyAsync(() -> cache.getInts("n", () -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return IntStream.range(0, 10);
+        }));
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+        //数据源已经变了，正在加载的旧结果不能写入缓存
+        cache.invalidate("n");
+        release.countDown();
+        assertEquals(10, stale.get(10, TimeUnit.SECONDS).size());
+        assertEquals(0, cache.size());
+        assertEquals(20, cache.getInts("n", () -> IntStream.range(0, 20)).size());
+    }
+}
@@ -0,0 +1,132 @@
+package com.wangrong.stream.sort;
+
+import com.wangrong.stream.collector.SpillCodec;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ParallelSortTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> codes = new Random(42).ints(200_000, 0, 50_000)
+            .mapToObj(i -> "c" + i)
+            .collect(Collectors.toList());
+
+    /**
+     * 只比较长度，大量相等元素用来验证稳定性
+     */
+    private final Comparator<String> byLength = Comparator.comparingInt(String::length);
+
+    @Test
+    public void topKSameAsSortedLimit() {
+        for (int k : new int[]{0, 1, 10, 1000}) {
+            assertEquals(codes.stream().sorted().limit(k).collect(Collectors.toList()),
+                    codes.parallelStream().collect(TopKCollector.topK(k)));
+            assertEquals(codes.stream().sorted(byLength).limit(k).collect(Collectors.toList()),
+                    codes.parallelStream().collect(TopKCollector.topK(k, byLength)));
+        }
+        assertEquals(codes.stream().sorted().collect(Collectors.toList()),
+                codes.parallelStream().collect(TopKCollector.topK(codes.size() + 1)));
+    }
+
+    @Test
+    public void largeKWithFewElements() {
+        //每个叶子的堆按元素数增长，不按 k 预先分配
+        List<String> few = codes.subList(0, 1000);
+        assertEquals(few.stream().sorted().collect(Collectors.toList()),
+                few.parallelStream().collect(TopKCollector.topK(100_000_000)));
+    }
+
+    @Test
+    public void inMemoryRunsSameAsSorted() {
+        SortedRuns<String> runs = codes.parallelStream()
+                .collect(ExternalSortCollector.builder(byLength).runSize(10_000).build());
+        assertTrue(runs.runCount() >= 20);
+        assertEquals(0, runs.spilledRunCount());
+        assertEquals(codes.stream().sorted(byLength).collect(Collectors.toList()), runs.toList());
+    }
+
+    @Test
+    public void spilledRunsSameAsSorted() {
+        List<String> expected = codes.stream().sorted().collect(Collectors.toList());
+        SortedRuns<String> runs = codes.parallelStream()
+                .collect(ExternalSortCollector.builder(Comparator.<String>naturalOrder())
+                        .runSize(8_192)
+                        .spill(SpillCodec.STRING, 20_000)
+                        .tempDirectory(folder.getRoot().toPath())
+                        .build());
+        assertTrue(runs.spilledRunCount() > 0);
+        assertEquals(codes.size(), runs.size());
+        try (Stream<String> sorted = runs.stream()) {
+            assertEquals(expected, sorted.collect(Collectors.toList()));
+        }
+        File[] left = folder.getRoot().listFiles();
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+
+    @Test
+    public void mergesRunsBeyondMaxOpenRuns() {
+        List<String> expected = codes.stream().sorted(byLength).collect(Collectors.toList());
+        SortedRuns<String> runs = codes.parallelStream()
+                .collect(ExternalSortCollector.builder(byLength)
+                        .runSize(1_000)
+                        .spill(SpillCodec.STRING, 0)
+                        .maxOpenRuns(4)
+                        .tempDirectory(folder.getRoot().toPath())
+                        .build());
+        //200 个段分批归并后，遍历时最多同时打开 4 个文件，相等元素仍保持遇到顺序
+        assertTrue(runs.spilledRunCount() <= 4);
+        try (Stream<String> sorted = runs.stream()) {
+            assertEquals(expected, sorted.collect(Collectors.toList()));
+        }
+        File[] left = folder.getRoot().listFiles();
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+
+    @Test
+    public void failedSpillDeletesRuns() {
+        AtomicInteger writes = new AtomicInteger();
+        SpillCodec<String> failing = new SpillCodec<String>() {
+            @Override
+            public void write(DataOutput out, String value) throws IOException {
+                if (writes.incrementAndGet() > 5_000) {
+                    throw new IOException("disk full");
+                }
+                SpillCodec.STRING.write(out, value);
+            }
+
+            @Override
+            public String read(DataInput in) throws IOException {
+                return SpillCodec.STRING.read(in);
+            }
+        };
+        try {
+            codes.stream().collect(ExternalSortCollector.builder(Comparator.<String>naturalOrder())
+                    .runSize(1_000)
+                    .spill(failing, 0)
+                    .tempDirectory(folder.getRoot().toPath())
+                    .build());
+            fail();
+        } catch (UncheckedIOException e) {
+            assertEquals("disk full", e.getCause().getMessage());
+        }
+        File[] left = folder.getRoot().listFiles();
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+}
@@ -0,0 +1,75 @@
+package com.wangrong.stream.source;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class MappedRecordSourceTests {
+
+    private static final RecordLayout LAYOUT = RecordLayout.builder()
+            .string("name", 16)
+            .int32("age")
+            .int64("id")
+            .float64("score")
+            .build();
+
+    private static final int RECORDS = 10_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path write() throws IOException {
+        Path path = folder.newFile("persons.rec").toPath();
+        int name = LAYOUT.indexOf("name");
+        int age = LAYOUT.indexOf("age");
+        int id = LAYOUT.indexOf("id");
+        int score = LAYOUT.indexOf("score");
+        try (MappedRecordWriter writer = MappedRecordWriter.create(path, LAYOUT)) {
+            for (int i = 0; i < RECORDS; i++) {
+                writer.next()
+                        .putString(name, "名字" + i)
+                        .putInt(age, i % 100)
+                        .putLong(id, 1L << 40 | i)
+                        .putDouble(score, i / 4.0);
+            }
+        }
+        return path;
+    }
+
+    @Test
+    public void readsBackAcrossSegments() throws IOException {
+        Path path = write();
+        //每段最多 1000 条记录，强制使用多个映射段
+        try (MappedRecordSource source = MappedRecordSource.open(path, 1000L * LAYOUT.recordSize())) {
+            assertEquals(RECORDS, source.size());
+            assertEquals(10, source.segmentCount());
+            assertEquals(LAYOUT, source.layout());
+
+            long expectedAgeSum = IntStream.range(0, RECORDS).map(i -> i % 100).sum();
+            assertEquals(expectedAgeSum, source.ints("age", false).sum());
+            assertEquals(expectedAgeSum, source.ints("age", true).sum());
+            assertEquals(IntStream.range(0, RECORDS).mapToLong(i -> 1L << 40 | i).sum(), source.longs("id", true).sum());
+            assertEquals(IntStream.range(0, RECORDS).mapToDouble(i -> i / 4.0).sum(), source.doubles("score", true).sum(), 1e-6);
+
+            int name = source.layout().indexOf("name");
+            List<String> names = source.records(record -> record.getString(name), true).collect(Collectors.toList());
+            assertEquals(IntStream.range(0, RECORDS).mapToObj(i -> "名字" + i).collect(Collectors.toList()), names);
+            assertEquals("名字4321", source.record(4321).getString(name));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooLongString() throws IOException {
+        try (MappedRecordWriter writer = MappedRecordWriter.create(folder.newFile().toPath(), LAYOUT)) {
+            writer.next().putString(LAYOUT.indexOf("name"), "12345678901234567");
+        }
+    }
+}
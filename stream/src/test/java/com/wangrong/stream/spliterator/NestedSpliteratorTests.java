@@ -0,0 +1,52 @@
+package com.wangrong.stream.spliterator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class NestedSpliteratorTests {
+
+    /**
+     * 子列表长度为 i % 7，包含空列表
+     */
+    private final List<List<Integer>> parents = IntStream.range(0, 10_000)
+            .mapToObj(i -> IntStream.range(0, i % 7).map(j -> i * 10 + j).boxed().collect(Collectors.toList()))
+            .collect(Collectors.toList());
+
+    @Test
+    public void sameOrderAsFlatMap() {
+        List<Integer> expected = parents.stream().flatMap(List::stream).collect(Collectors.toList());
+        assertEquals(expected, NestedSpliterator.stream(parents, p -> p, false).collect(Collectors.toList()));
+        assertEquals(expected, NestedSpliterator.stream(parents, p -> p, true).collect(Collectors.toList()));
+        assertEquals(expected.size(), NestedSpliterator.stream(parents, p -> p, true).toArray().length);
+
+        List<Integer> advanced = new ArrayList<>();
+        Spliterator<Integer> spliterator = NestedSpliterator.of(parents, p -> p);
+        while (spliterator.tryAdvance(advanced::add)) {
+        }
+        assertEquals(expected, advanced);
+    }
+
+    @Test
+    public void splitsIntoExactHalves() {
+        Spliterator<Integer> right = NestedSpliterator.of(parents, p -> p);
+        long total = right.getExactSizeIfKnown();
+        assertTrue(right.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+        Spliterator<Integer> left = right.trySplit();
+        assertEquals(total / 2, left.getExactSizeIfKnown());
+        assertEquals(total - total / 2, right.getExactSizeIfKnown());
+    }
+
+    @Test
+    public void emptyParents() {
+        assertEquals(0, NestedSpliterator.stream(Collections.<List<Integer>>emptyList(), p -> p, true).count());
+        assertEquals(0, NestedSpliterator.stream(parents.subList(0, 1), p -> p, false).count());
+    }
+}
@@ -0,0 +1,65 @@
+package com.wangrong.stream.statistics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class RecordStatisticsCollectorTests {
+
+    private static final RecordStatisticsCollector<int[]> COLLECTOR = RecordStatisticsCollector.<int[]>builder()
+            .intField("a", r -> r[0])
+            .longField("b", r -> (long) r[1] * 1_000_000L)
+            .doubleField("c", r -> r[0] / 7.0)
+            .build();
+
+    private final List<int[]> records = IntStream.range(0, 200_000)
+            .mapToObj(i -> new int[]{i % 1000, i % 37 - 18})
+            .collect(Collectors.toList());
+
+    @Test
+    public void matchesSummarizingAndAveraging() {
+        IntSummaryStatistics expected = records.stream().collect(Collectors.summarizingInt(r -> r[0]));
+        double expectedAverage = records.stream().collect(Collectors.averagingDouble(r -> r[0] / 7.0));
+
+        RecordStatistics<int[]> statistics = records.stream().collect(COLLECTOR);
+        FieldStatistics a = statistics.get("a");
+        assertEquals(records.size(), statistics.getCount());
+        assertEquals(expected.getCount(), a.getCount());
+        assertEquals(expected.getSum(), a.getLongSum());
+        assertEquals(expected.getMin(), a.getLongMin());
+        assertEquals(expected.getMax(), a.getLongMax());
+        assertEquals(expected.getAverage(), a.getAverage(), 0);
+        assertEquals(expectedAverage, statistics.get("c").getAverage(), 1e-9);
+        assertEquals(-18_000_000L, statistics.get("b").getLongMin());
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        RecordStatistics<int[]> sequential = records.stream().collect(COLLECTOR);
+        RecordStatistics<int[]> parallel = records.parallelStream().collect(COLLECTOR);
+        for (String name : Arrays.asList("a", "b", "c")) {
+            FieldStatistics s = sequential.get(name);
+            FieldStatistics p = parallel.get(name);
+            assertEquals(s.getCount(), p.getCount());
+            assertEquals(s.getSum(), p.getSum(), Math.abs(s.getSum()) * 1e-12);
+            assertEquals(s.getVariance(), p.getVariance(), s.getVariance() * 1e-9);
+            assertEquals(s.getQuantile(0.99), p.getQuantile(0.99), 0);
+        }
+    }
+
+    @Test
+    public void varianceAndQuantiles() {
+        FieldStatistics a = records.parallelStream().collect(COLLECTOR).get("a");
+        //0..999 均匀分布：方差 (n^2 - 1) / 12
+        assertEquals((1000.0 * 1000 - 1) / 12, a.getVariance(), 1e-6);
+        assertEquals(500, a.getQuantile(0.5), 500 * 0.01 + 1);
+        assertEquals(990, a.getQuantile(0.99), 990 * 0.01 + 1);
+        assertEquals(0, a.getQuantile(0), 0);
+    }
+}